@@ -30,8 +30,11 @@ import org.locationtech.geogig.storage.bdbje.JEStagingDatabase_v0_1;
 import org.locationtech.geogig.storage.bdbje.JEStagingDatabase_v0_2;
 import org.locationtech.geogig.storage.fs.FileRefDatabase;
 import org.locationtech.geogig.storage.mongo.MongoGraphDatabase;
+import org.locationtech.geogig.storage.mongo.MongoGraphDatabase_v0_2;
 import org.locationtech.geogig.storage.mongo.MongoObjectDatabase;
+import org.locationtech.geogig.storage.mongo.MongoObjectDatabase_v0_2;
 import org.locationtech.geogig.storage.mongo.MongoStagingDatabase;
+import org.locationtech.geogig.storage.mongo.MongoStagingDatabase_v0_2;
 import org.locationtech.geogig.storage.sqlite.SQLiteStorage;
 import org.locationtech.geogig.storage.sqlite.XerialGraphDatabase;
 import org.locationtech.geogig.storage.sqlite.XerialObjectDatabase;
@@ -86,6 +89,10 @@ public class CLIContextBuilder extends ContextBuilder {
                     .addBinding(new VersionedFormat("bdbje", "0.1"))//
                     .to(JEObjectDatabase_v0_1.class)//
                     .in(Scopes.SINGLETON);
+            objectPlugins //
+                    .addBinding(new VersionedFormat("mongodb", "0.2"))//
+                    .to(MongoObjectDatabase_v0_2.class)//
+                    .in(Scopes.SINGLETON);
             objectPlugins //
                     .addBinding(new VersionedFormat("mongodb", "0.1"))//
                     .to(MongoObjectDatabase.class)//
@@ -97,6 +104,10 @@ public class CLIContextBuilder extends ContextBuilder {
                     .in(Scopes.SINGLETON);
             MapBinder<VersionedFormat, StagingDatabase> stagingPlugins = MapBinder.newMapBinder(
                     binder(), VersionedFormat.class, StagingDatabase.class);
+            stagingPlugins //
+                    .addBinding(new VersionedFormat("mongodb", "0.2"))//
+                    .to(MongoStagingDatabase_v0_2.class)//
+                    .in(Scopes.SINGLETON);
             stagingPlugins //
                     .addBinding(new VersionedFormat("mongodb", "0.1"))//
                     .to(MongoStagingDatabase.class)//
@@ -124,6 +135,10 @@ public class CLIContextBuilder extends ContextBuilder {
                     .addBinding(new VersionedFormat("bdbje", "0.1")) //
                     .to(JEGraphDatabase_v0_1.class) //
                     .in(Scopes.SINGLETON);
+            graphPlugins //
+                    .addBinding(new VersionedFormat("mongodb", "0.2")) //
+                    .to(MongoGraphDatabase_v0_2.class) //
+                    .in(Scopes.SINGLETON);
             graphPlugins //
                     .addBinding(new VersionedFormat("mongodb", "0.1")) //
                     .to(MongoGraphDatabase.class) //
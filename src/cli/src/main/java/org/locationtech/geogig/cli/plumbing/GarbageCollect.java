@@ -0,0 +1,48 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.cli.plumbing;
+
+import java.io.IOException;
+
+import jline.console.ConsoleReader;
+
+import org.locationtech.geogig.api.plumbing.GarbageCollectOp;
+import org.locationtech.geogig.cli.AbstractCommand;
+import org.locationtech.geogig.cli.CLICommand;
+import org.locationtech.geogig.cli.GeogigCLI;
+import org.locationtech.geogig.cli.annotation.StagingDatabaseReadOnly;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+/**
+ * Deletes the objects that are not reachable from any ref, and optionally repacks the reachable
+ * ones.
+ * 
+ * @see GarbageCollectOp
+ */
+@StagingDatabaseReadOnly
+@Parameters(commandNames = "gc", commandDescription = "Deletes unreachable objects.")
+public class GarbageCollect extends AbstractCommand implements CLICommand {
+
+    @Parameter(names = "--repack", description = "Rewrite the reachable objects in the order "
+            + "they're reached afterwards, if supported by the storage backend.")
+    private boolean repack = false;
+
+    @Override
+    public void runInternal(GeogigCLI cli) throws IOException {
+        GarbageCollectOp.Result result = cli.getGeogig().command(GarbageCollectOp.class)
+                .setRepack(repack).setProgressListener(cli.getProgressListener()).call();
+
+        final ConsoleReader console = cli.getConsole();
+        console.println(String.format("%,d reachable objects, %,d unreachable objects deleted.",
+                result.getReachable(), result.getDeleted()));
+    }
+}
@@ -30,6 +30,7 @@ import org.locationtech.geogig.api.plumbing.HashObject;
 import org.locationtech.geogig.repository.DepthSearch;
 import org.locationtech.geogig.repository.SpatialOps;
 import org.locationtech.geogig.storage.NodePathStorageOrder;
+import org.locationtech.geogig.storage.NodeStorageOrder;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,11 +39,14 @@ import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
 import com.vividsolutions.jts.geom.Envelope;
 
@@ -563,6 +567,182 @@ public class RevTreeBuilder {
         return this;
     }
 
+    /**
+     * Shorthand for {@link #update(ObjectDatabase, RevTree, Iterator, UpdateStats)} not collecting
+     * statistics
+     */
+    public static RevTree update(final ObjectDatabase db, final RevTree original,
+            final Iterator<Node> sortedChanges) {
+        return update(db, original, sortedChanges, new UpdateStats());
+    }
+
+    /**
+     * Applies the given changes to {@code original} copy-on-write, descending only the bucket
+     * paths the changed node names hash into and rewriting just those trees, while all the other
+     * bucket trees are shared with the original tree.
+     * <p>
+     * Unlike copying the original tree to a {@code RevTreeBuilder} and normalizing it, the number
+     * of trees read and written is proportional to the number of changes times the depth of the
+     * tree, regardless of its size.
+     * 
+     * @param sortedChanges the nodes to add, replace, or remove (when their object id is
+     *        {@link ObjectId#NULL NULL}) from the original tree, sorted according to
+     *        {@link NodeStorageOrder}
+     * @param stats where to accumulate the number of trees read and written
+     * @return the new tree, not saved to the object database. Any bucket tree though is saved when
+     *         this method returns.
+     */
+    public static RevTree update(final ObjectDatabase db, final RevTree original,
+            final Iterator<Node> sortedChanges, final UpdateStats stats) {
+        checkNotNull(db);
+        checkNotNull(original);
+        checkNotNull(sortedChanges);
+        checkNotNull(stats);
+
+        PeekingIterator<Node> changes = Iterators.peekingIterator(sortedChanges);
+        if (!changes.hasNext()) {
+            return original;
+        }
+        Stopwatch sw = Stopwatch.createStarted();
+        RevTree tree = new IncrementalUpdate(db, stats).update(original, 0, changes);
+        LOGGER.debug("Tree updated in {}, {}", sw.stop(), stats);
+        return tree;
+    }
+
+    /**
+     * Number of trees read and written by
+     * {@link RevTreeBuilder#update(ObjectDatabase, RevTree, Iterator, UpdateStats)}
+     */
+    public static class UpdateStats {
+
+        private int treesRead;
+
+        private int treesWritten;
+
+        public int getTreesRead() {
+            return treesRead;
+        }
+
+        public int getTreesWritten() {
+            return treesWritten;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("trees read: %,d, trees written: %,d", treesRead, treesWritten);
+        }
+    }
+
+    private static class IncrementalUpdate {
+
+        private final ObjectDatabase db;
+
+        private final UpdateStats stats;
+
+        private final NodePathStorageOrder storageOrder = new NodePathStorageOrder();
+
+        IncrementalUpdate(ObjectDatabase db, UpdateStats stats) {
+            this.db = db;
+            this.stats = stats;
+        }
+
+        /**
+         * @param changes the changes for the given tree, consumed up to the last one
+         */
+        RevTree update(final RevTree tree, final int depth, final Iterator<Node> changes) {
+            if (!tree.buckets().isPresent()) {
+                // merge the leaf tree nodes with the changes, splitting it if needed
+                SortedRevTreeBuilder builder = new SortedRevTreeBuilder(db, tree);
+                RevTree newTree = builder.build(changes, depth);
+                stats.treesRead += builder.getTreesRead();
+                stats.treesWritten += builder.getTreesWritten();
+                return newTree;
+            }
+
+            final PeekingIterator<Node> peekingChanges = Iterators.peekingIterator(changes);
+            final Map<Integer, Bucket> buckets = Maps.newTreeMap(tree.buckets().get());
+            long size = tree.size();
+            int numTrees = tree.numTrees();
+            int lastBucketIndex = -1;
+            while (peekingChanges.hasNext()) {
+                final Integer bucketIndex = storageOrder.bucket(peekingChanges.peek().getName(),
+                        depth);
+                checkArgument(bucketIndex.intValue() > lastBucketIndex,
+                        "Nodes are not sorted in storage order: %s", peekingChanges.peek()
+                                .getName());
+                lastBucketIndex = bucketIndex.intValue();
+                final Bucket bucket = buckets.get(bucketIndex);
+                final RevTree bucketTree = bucket == null ? RevTree.EMPTY : read(bucket.id());
+
+                Iterator<Node> bucketChanges = new AbstractIterator<Node>() {
+                    @Override
+                    protected Node computeNext() {
+                        if (peekingChanges.hasNext()
+                                && bucketIndex.equals(storageOrder.bucket(peekingChanges.peek()
+                                        .getName(), depth))) {
+                            return peekingChanges.next();
+                        }
+                        return endOfData();
+                    }
+                };
+                final RevTree newBucketTree = update(bucketTree, depth + 1, bucketChanges);
+                // make sure all the changes for the bucket were consumed
+                Iterators.size(bucketChanges);
+
+                size += newBucketTree.size() - bucketTree.size();
+                numTrees += newBucketTree.numTrees() - bucketTree.numTrees();
+                if (newBucketTree.isEmpty()) {
+                    buckets.remove(bucketIndex);
+                } else if (bucket == null || !bucket.id().equals(newBucketTree.getId())) {
+                    write(newBucketTree);
+                    Envelope bounds = SpatialOps.boundsOf(newBucketTree);
+                    buckets.put(bucketIndex, Bucket.create(newBucketTree.getId(), bounds));
+                }
+            }
+
+            RevTree unnamedTree;
+            if (size <= NORMALIZED_SIZE_LIMIT) {
+                // same as RevTreeBuilder.normalize(), a bucket tree that shrank below the limit
+                // becomes a leaf tree
+                List<Node> features = Lists.newArrayList();
+                List<Node> trees = Lists.newArrayList();
+                for (Bucket bucket : buckets.values()) {
+                    collectChildren(read(bucket.id()), features, trees);
+                }
+                unnamedTree = RevTreeImpl.createLeafTree(ObjectId.NULL, size, features, trees);
+            } else {
+                unnamedTree = RevTreeImpl.createNodeTree(ObjectId.NULL, size, numTrees, buckets);
+            }
+            ObjectId treeId = new HashObject().setObject(unnamedTree).call();
+            return RevTreeImpl.create(treeId, size, unnamedTree);
+        }
+
+        private void collectChildren(RevTree tree, List<Node> features, List<Node> trees) {
+            if (tree.buckets().isPresent()) {
+                for (Bucket bucket : tree.buckets().get().values()) {
+                    collectChildren(read(bucket.id()), features, trees);
+                }
+            } else {
+                if (tree.features().isPresent()) {
+                    features.addAll(tree.features().get());
+                }
+                if (tree.trees().isPresent()) {
+                    trees.addAll(tree.trees().get());
+                }
+            }
+        }
+
+        private RevTree read(ObjectId treeId) {
+            stats.treesRead++;
+            return db.getTree(treeId);
+        }
+
+        private void write(RevTree tree) {
+            stats.treesWritten++;
+            db.put(tree);
+        }
+    }
+
     /**
      * @return a new instance of a properly "named" empty tree (as in with a proper object id after
      *         applying {@link HashObject})
@@ -0,0 +1,428 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.locationtech.geogig.api.RevTree.NORMALIZED_SIZE_LIMIT;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.plumbing.HashObject;
+import org.locationtech.geogig.repository.SpatialOps;
+import org.locationtech.geogig.storage.NodePathStorageOrder;
+import org.locationtech.geogig.storage.NodeStorageOrder;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.primitives.UnsignedLongs;
+
+/**
+ * Builds a {@link RevTree} in a single bottom-up pass out of nodes given in
+ * {@link NodeStorageOrder}, as produced for example by the node index used by the working tree to
+ * insert large amounts of features.
+ * <p>
+ * Since nodes sorted by storage order come grouped by the bucket they fall into at every depth,
+ * each leaf and bucket tree is completed, and written to the object database, as soon as the first
+ * node of the next group is found, and never needs to be read back or rewritten. At most
+ * {@link RevTree#NORMALIZED_SIZE_LIMIT} nodes per tree depth are held in memory at any time, in
+ * contrast to {@link RevTreeBuilder} which needs to hold the pending changes in memory and
+ * recursively reload and rewrite bucket trees every time it normalizes itself.
+ * <p>
+ * The resulting tree is the same one {@link RevTreeBuilder} would build for the same set of nodes,
+ * so both can be used interchangeably.
+ * <p>
+ * Nodes with a {@link ObjectId#NULL NULL} object id denote removals of the node with the same name
+ * from the original tree, if any. If the same node name is given more than once, the last one
+ * wins. Note that all the nodes of the original tree are traversed to build the new one, so this
+ * builder is the best choice when the original tree is empty or small compared to the number of
+ * changes.
+ *
+ * @since 1.0
+ */
+public class SortedRevTreeBuilder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SortedRevTreeBuilder.class);
+
+    private static final NodeStorageOrder STORAGE_ORDER = new NodeStorageOrder();
+
+    private static final NodePathStorageOrder PATH_ORDER = new NodePathStorageOrder();
+
+    /**
+     * How many completed trees to hold before saving them to the object database in a single
+     * batch
+     */
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    private final ObjectDatabase db;
+
+    @Nullable
+    private final RevTree original;
+
+    private List<RevTree> pendingWrites = new ArrayList<RevTree>();
+
+    private int treesRead;
+
+    private int treesWritten;
+
+    private PeekingIterator<Entry> source;
+
+    /**
+     * Pushed back entries, sorted, to be consumed before the ones in {@link #source}
+     */
+    private LinkedList<Entry> pushedBack = new LinkedList<Entry>();
+
+    /**
+     * Constructor to build trees from scratch
+     */
+    public SortedRevTreeBuilder(ObjectDatabase db) {
+        this(db, null);
+    }
+
+    /**
+     * Constructor to build a new tree out of the nodes of {@code original} plus the changes given
+     * to {@link #build(Iterator)}
+     */
+    public SortedRevTreeBuilder(ObjectDatabase db, @Nullable RevTree original) {
+        checkNotNull(db);
+        this.db = db;
+        this.original = original;
+    }
+
+    /**
+     * @param sortedChanges the nodes to add, replace, or remove (when their object id is
+     *        {@link ObjectId#NULL NULL}) from the original tree, sorted according to
+     *        {@link NodeStorageOrder}
+     * @return the new tree, not saved to the object database. Any bucket tree though is saved when
+     *         this method returns.
+     * @throws IllegalArgumentException if the changes are not sorted in storage order
+     */
+    public RevTree build(final Iterator<Node> sortedChanges) {
+        return build(sortedChanges, 0);
+    }
+
+    /**
+     * Builds the tree at the given depth, where all the nodes fall on the same bucket for every
+     * lower depth, as for a bucket tree of a larger tree.
+     */
+    RevTree build(final Iterator<Node> sortedChanges, final int depth) {
+        checkNotNull(sortedChanges);
+        ChangesIterator changes = new ChangesIterator(sortedChanges);
+        Iterator<Entry> entries;
+        if (original == null || original.isEmpty()) {
+            entries = changes;
+        } else {
+            Iterator<Entry> originalEntries = Iterators.transform(children(original),
+                    new Function<Node, Entry>() {
+                        @Override
+                        public Entry apply(Node node) {
+                            return new Entry(node);
+                        }
+                    });
+            entries = new MergingIterator(originalEntries, changes);
+        }
+        this.source = Iterators.peekingIterator(entries);
+        this.pushedBack.clear();
+
+        RevTree tree = buildTree(depth, 0L, 0L);
+        flush();
+        LOGGER.debug("Built tree of size {} reading {} and writing {} trees", tree.size(),
+                treesRead, treesWritten);
+        return tree;
+    }
+
+    /**
+     * @return how many trees were read from the object database by this builder
+     */
+    int getTreesRead() {
+        return treesRead;
+    }
+
+    /**
+     * @return how many leaf and bucket trees were written to the object database by this builder
+     */
+    int getTreesWritten() {
+        return treesWritten;
+    }
+
+    /**
+     * Builds the tree for the group of entries at the head of the source whose hash matches
+     * {@code groupKey} on the bits of {@code groupMask}, that is, the ones that fall on the same
+     * bucket at every depth lower than {@code depth}.
+     */
+    private RevTree buildTree(final int depth, final long groupMask, final long groupKey) {
+        List<Entry> buffer = new ArrayList<Entry>();
+        long size = 0L;
+        while (hasNext(groupMask, groupKey)) {
+            Entry entry = next();
+            buffer.add(entry);
+            size += sizeOf(entry);
+            // same condition RevTreeBuilder uses to decide whether to split a tree in buckets or
+            // to keep it as a leaf tree
+            if (buffer.size() > NORMALIZED_SIZE_LIMIT && size > NORMALIZED_SIZE_LIMIT) {
+                pushedBack.addAll(0, buffer);
+                return buildBucketTree(depth, groupMask, groupKey);
+            }
+        }
+        List<Node> features = new ArrayList<Node>(buffer.size());
+        List<Node> trees = Lists.newArrayList();
+        for (Entry entry : buffer) {
+            if (TYPE.TREE.equals(entry.node.getType())) {
+                trees.add(entry.node);
+            } else {
+                features.add(entry.node);
+            }
+        }
+        RevTree unnamedTree = RevTreeImpl.createLeafTree(ObjectId.NULL, size,
+                ImmutableList.copyOf(features), ImmutableList.copyOf(trees));
+        return name(unnamedTree);
+    }
+
+    private RevTree buildBucketTree(final int depth, final long groupMask, final long groupKey) {
+        checkArgument(depth < 8, "depth too deep: %s", Integer.valueOf(depth));
+        final int shift = 8 * (7 - depth);
+        // the bucket at a given depth is given by the 5 most significant bits of the Nth byte of
+        // the node name hash, as in NodePathStorageOrder.bucket()
+        final long childMask = groupMask | (0xF8L << shift);
+
+        Map<Integer, Bucket> buckets = Maps.newTreeMap();
+        long size = 0L;
+        int numTrees = 0;
+        while (hasNext(groupMask, groupKey)) {
+            final long hash = peek().hash;
+            final Integer bucketIndex = Integer.valueOf((int) ((hash >>> shift) & 0xFF)
+                    * RevTree.MAX_BUCKETS / 256);
+            RevTree bucketTree = buildTree(depth + 1, childMask, hash & childMask);
+            write(bucketTree);
+            buckets.put(bucketIndex, Bucket.create(bucketTree.getId(),
+                    SpatialOps.boundsOf(bucketTree)));
+            size += bucketTree.size();
+            numTrees += bucketTree.numTrees();
+        }
+        RevTree unnamedTree = RevTreeImpl.createNodeTree(ObjectId.NULL, size, numTrees, buckets);
+        return name(unnamedTree);
+    }
+
+    private static RevTree name(RevTree unnamedTree) {
+        ObjectId treeId = new HashObject().setObject(unnamedTree).call();
+        return RevTreeImpl.create(treeId, unnamedTree.size(), unnamedTree);
+    }
+
+    private boolean hasNext(final long groupMask, final long groupKey) {
+        Entry next = peek();
+        return next != null && (next.hash & groupMask) == groupKey;
+    }
+
+    @Nullable
+    private Entry peek() {
+        if (!pushedBack.isEmpty()) {
+            return pushedBack.getFirst();
+        }
+        return source.hasNext() ? source.peek() : null;
+    }
+
+    private Entry next() {
+        if (!pushedBack.isEmpty()) {
+            return pushedBack.removeFirst();
+        }
+        return source.next();
+    }
+
+    private long sizeOf(Entry entry) {
+        if (entry.size < 0) {
+            Node node = entry.node;
+            if (TYPE.TREE.equals(node.getType())) {
+                ObjectId treeId = node.getObjectId();
+                entry.size = treeId.isNull() ? 0L : getTree(treeId).size();
+            } else {
+                entry.size = 1L;
+            }
+        }
+        return entry.size;
+    }
+
+    private RevTree getTree(ObjectId treeId) {
+        treesRead++;
+        return db.getTree(treeId);
+    }
+
+    private void write(RevTree tree) {
+        pendingWrites.add(tree);
+        if (pendingWrites.size() == WRITE_BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (!pendingWrites.isEmpty()) {
+            treesWritten += pendingWrites.size();
+            db.putAll(pendingWrites.iterator());
+            pendingWrites.clear();
+        }
+    }
+
+    /**
+     * @return the children of the given tree in {@link NodeStorageOrder}
+     */
+    private Iterator<Node> children(RevTree tree) {
+        if (tree.buckets().isPresent()) {
+            // buckets are traversed in index order, which matches storage order
+            return Iterators.concat(Iterators.transform(tree.buckets().get().values().iterator(),
+                    new Function<Bucket, Iterator<Node>>() {
+                        @Override
+                        public Iterator<Node> apply(Bucket bucket) {
+                            return children(getTree(bucket.id()));
+                        }
+                    }));
+        }
+        List<Iterator<Node>> children = Lists.newArrayListWithCapacity(2);
+        if (tree.features().isPresent()) {
+            children.add(tree.features().get().iterator());
+        }
+        if (tree.trees().isPresent()) {
+            children.add(tree.trees().get().iterator());
+        }
+        return Iterators.mergeSorted(children, STORAGE_ORDER);
+    }
+
+    /**
+     * A node and the storage order hash of its name, computed once
+     */
+    private static class Entry {
+
+        final Node node;
+
+        final long hash;
+
+        /**
+         * The size the node contributes to its tree, lazily computed
+         */
+        long size = -1L;
+
+        Entry(Node node) {
+            this.node = node;
+            this.hash = PATH_ORDER.hashCodeLong(node.getName()).longValue();
+        }
+    }
+
+    /**
+     * Checks the changes are sorted, resolves repeated node names to the last one, and skips
+     * removals
+     */
+    private static class ChangesIterator extends AbstractIterator<Entry> {
+
+        private final PeekingIterator<Node> changes;
+
+        private long lastHash;
+
+        private boolean started;
+
+        ChangesIterator(Iterator<Node> changes) {
+            this.changes = Iterators.peekingIterator(changes);
+        }
+
+        /**
+         * @return the next change, including removals
+         */
+        Entry nextChange() {
+            Node node = changes.next();
+            while (changes.hasNext() && changes.peek().getName().equals(node.getName())) {
+                node = changes.next();
+            }
+            TYPE type = node.getType();
+            checkArgument(TYPE.FEATURE.equals(type) || TYPE.TREE.equals(type),
+                    "Only tree or feature nodes can be added to a tree: %s %s", node, type);
+            Entry entry = new Entry(node);
+            checkArgument(!started || UnsignedLongs.compare(lastHash, entry.hash) <= 0,
+                    "Nodes are not sorted in storage order: %s", node.getName());
+            started = true;
+            lastHash = entry.hash;
+            return entry;
+        }
+
+        boolean hasNextChange() {
+            return changes.hasNext();
+        }
+
+        @Override
+        protected Entry computeNext() {
+            while (changes.hasNext()) {
+                Entry entry = nextChange();
+                if (!entry.node.getObjectId().isNull()) {
+                    return entry;
+                }
+            }
+            return endOfData();
+        }
+    }
+
+    /**
+     * Merges the nodes of the original tree with the changes, both in storage order, with changes
+     * replacing or removing the original nodes of the same name
+     */
+    private static class MergingIterator extends AbstractIterator<Entry> {
+
+        private final PeekingIterator<Entry> original;
+
+        private final ChangesIterator changes;
+
+        private Entry change;
+
+        MergingIterator(Iterator<Entry> original, ChangesIterator changes) {
+            this.original = Iterators.peekingIterator(original);
+            this.changes = changes;
+        }
+
+        @Override
+        protected Entry computeNext() {
+            while (true) {
+                if (change == null && changes.hasNextChange()) {
+                    change = changes.nextChange();
+                }
+                if (change == null) {
+                    return original.hasNext() ? original.next() : endOfData();
+                }
+                if (original.hasNext()) {
+                    Entry entry = original.peek();
+                    int c = UnsignedLongs.compare(entry.hash, change.hash);
+                    if (c == 0 && entry.node.getName().equals(change.node.getName())) {
+                        // replaced or removed by the change
+                        original.next();
+                        continue;
+                    }
+                    // c == 0 here would be a hash collision between different names
+                    if (c <= 0) {
+                        return original.next();
+                    }
+                }
+                Entry next = change;
+                change = null;
+                if (!next.node.getObjectId().isNull()) {
+                    return next;
+                }
+            }
+        }
+    }
+}
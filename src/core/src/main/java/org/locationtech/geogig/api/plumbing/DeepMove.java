@@ -31,6 +31,7 @@ import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
 import org.locationtech.geogig.repository.StagingArea;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.StagingDatabase;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
@@ -47,6 +48,9 @@ import com.google.common.collect.Sets;
  * database} to the permanent {@link ObjectDatabase object database}, including any child reference,
  * or from the repository database to the index database if {@link #setToIndex} is set to
  * {@code true}.
+ * <p>
+ * If the index database {@link StagingDatabase#isWriteThrough() writes through} to the repository
+ * database, the objects are already there and nothing is moved.
  */
 public class DeepMove extends AbstractGeoGigOp<ObjectId> {
 
@@ -109,6 +113,16 @@ public class DeepMove extends AbstractGeoGigOp<ObjectId> {
      */
     @Override
     protected ObjectId _call() {
+        if (odb == null && stagingDatabase().isWriteThrough()) {
+            if (objectRef != null) {
+                return objectRef.get().getObjectId();
+            } else if (objectId != null) {
+                return objectId.get();
+            } else if (nodesToMove != null) {
+                return null;
+            }
+            throw new IllegalStateException("No object supplied to be moved");
+        }
         ObjectDatabase from = toIndex ? objectDatabase() : stagingDatabase();
         ObjectDatabase to = toIndex ? stagingDatabase() : objectDatabase();
 
@@ -217,8 +231,9 @@ public class DeepMove extends AbstractGeoGigOp<ObjectId> {
         try {
             final DeletingListener deletingListener = new DeletingListener(deletingService, from);
 
-            // store objects into the target db and remove them from the origin db in one shot
-            to.putAll(from.getAll(ids), deletingListener);
+            // store objects into the target db and remove them from the origin db in one shot,
+            // transferring their serialized form to avoid decoding and re-encoding them
+            to.putRaw(from.getRaw(ids, BulkOpListener.NOOP_LISTENER), deletingListener);
             // in case there are some deletes pending cause the iterator finished and the listener
             // didn't fill its buffer
             deletingListener.deleteInserted();
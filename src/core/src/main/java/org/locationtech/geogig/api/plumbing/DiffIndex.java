@@ -37,6 +37,8 @@ public class DiffIndex extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
 
     private boolean reportTrees;
 
+    private String resumeAfter;
+
     /**
      * @param pathFilter the path filter to use during the diff operation
      * @return {@code this}
@@ -90,7 +92,7 @@ public class DiffIndex extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
 
         DiffTree diff = command(DiffTree.class).setPathFilter(this.pathFilters)
                 .setReportTrees(this.reportTrees).setOldTree(rootTree.getId())
-                .setNewTree(newTree.getId());
+                .setNewTree(newTree.getId()).setResumeAfter(resumeAfter);
 
         return diff.call();
     }
@@ -104,6 +106,17 @@ public class DiffIndex extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
         return this;
     }
 
+    /**
+     * @param path the full path of the last {@link DiffEntry} already consumed, to resume the diff
+     *        right after it
+     * @return {@code this}
+     * @see DiffTree#setResumeAfter(String)
+     */
+    public DiffIndex setResumeAfter(@Nullable String path) {
+        this.resumeAfter = path;
+        return this;
+    }
+
     /**
      * Implements {@link Supplier#get()} by deferring to {@link #call()}
      * 
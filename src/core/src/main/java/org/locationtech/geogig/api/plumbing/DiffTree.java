@@ -37,6 +37,7 @@ import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk;
 import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.Consumer;
 import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.ForwardingConsumer;
 import org.locationtech.geogig.api.plumbing.diff.PathFilteringDiffConsumer;
+import org.locationtech.geogig.api.plumbing.diff.ResumingDiffConsumer;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +76,8 @@ public class DiffTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
 
     private Predicate<Bounded> customFilter;
 
+    private String resumeAfter;
+
     /**
      * Constructs a new instance of the {@code DiffTree} operation with the given parameters.
      */
@@ -155,6 +158,20 @@ public class DiffTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
         return this;
     }
 
+    /**
+     * Indicates to resume the diff right after the given path, as returned by a previous call to
+     * this operation with the same arguments, skipping all the differences up to and including it
+     * without traversing them.
+     * 
+     * @param path the full path of the last {@link DiffEntry} already consumed, or {@code null} to
+     *        start from the beginning
+     * @return {@code this}
+     */
+    public DiffTree setResumeAfter(@Nullable String path) {
+        this.resumeAfter = path == null || path.isEmpty() ? null : path;
+        return this;
+    }
+
     /**
      * Implements {@link Supplier#get()} by delegating to {@link #call()}.
      */
@@ -206,9 +223,12 @@ public class DiffTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implements
                     consumer = new BoundsFilteringDiffConsumer(boundsFilter, consumer,
                             stagingDatabase());
                 }
-                if (!pathFilters.isEmpty()) {// evaluated the former
+                if (!pathFilters.isEmpty()) {
                     consumer = new PathFilteringDiffConsumer(pathFilters, consumer);
                 }
+                if (resumeAfter != null) {// evaluated the former
+                    consumer = new ResumingDiffConsumer(resumeAfter, consumer);
+                }
                 try {
                     visitor.walk(consumer);
                 } catch (RuntimeException e) {
@@ -39,6 +39,8 @@ public class DiffWorkTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implemen
 
     private boolean reportTrees;
 
+    private String resumeAfter;
+
     /**
      * @param refSpec the name of the root tree object in the to compare the working tree against.
      *        If {@code null} or not specified, defaults to the current state of the index.
@@ -75,7 +77,8 @@ public class DiffWorkTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implemen
         final RevTree newTree = workingTree().getTree();
 
         DiffTree diff = command(DiffTree.class).setReportTrees(this.reportTrees)
-                .setOldTree(oldTree.getId()).setNewTree(newTree.getId());
+                .setOldTree(oldTree.getId()).setNewTree(newTree.getId())
+                .setResumeAfter(resumeAfter);
         if (this.pathFilter != null) {
             diff.setPathFilter(ImmutableList.of(pathFilter));
         }
@@ -99,6 +102,17 @@ public class DiffWorkTree extends AbstractGeoGigOp<Iterator<DiffEntry>> implemen
         return headTree;
     }
 
+    /**
+     * @param path the full path of the last {@link DiffEntry} already consumed, to resume the diff
+     *        right after it
+     * @return {@code this}
+     * @see DiffTree#setResumeAfter(String)
+     */
+    public DiffWorkTree setResumeAfter(@Nullable String path) {
+        this.resumeAfter = path;
+        return this;
+    }
+
     /**
      * @param reportTrees
      * @return
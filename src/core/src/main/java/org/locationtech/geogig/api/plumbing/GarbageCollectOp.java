@@ -0,0 +1,258 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.plumbing.merge.Conflict;
+import org.locationtech.geogig.repository.PreOrderIterator;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.Deduplicator;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RefDatabase;
+import org.locationtech.geogig.storage.StagingDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Deletes the objects in the repository's {@link ObjectDatabase} that are not reachable from any
+ * ref, like the ones orphaned by aborted transactions, rebases, squashes, or deleted branches.
+ * <p>
+ * Objects are marked reachable by traversing the commits, trees, buckets and features reachable
+ * from all the refs, including the ones of open transactions and {@code WORK_HEAD} and
+ * {@code STAGE_HEAD}, as well as the objects of unresolved merge conflicts. The traversal is a
+ * {@link PreOrderIterator}, which takes the ids of features from the tree nodes instead of
+ * fetching them. The set of reachable objects is held by a {@link Deduplicator}, which is backed
+ * by the repository's storage when the heap may not be enough. The ids of all the other stored
+ * objects are then spooled to a temporary file and deleted in batches, so memory use doesn't
+ * depend on the number of objects to delete.
+ * <p>
+ * If {@link #setRepack(boolean) repack} is requested, the reachable objects are then rewritten in
+ * traversal order by {@link RepackOp}, so that objects read together are stored together in
+ * backends that lay out objects in write order.
+ * <p>
+ * Objects inserted while the garbage collection is running that aren't referenced by the time
+ * the reachable objects are marked are deleted, so it shall not be run while other processes are
+ * writing to the repository.
+ */
+public class GarbageCollectOp extends AbstractGeoGigOp<GarbageCollectOp.Result> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GarbageCollectOp.class);
+
+    private static final int DELETE_BATCH_SIZE = 10 * 1000;
+
+    private boolean repack;
+
+    /**
+     * @param repack whether to repack the reachable objects after deleting the unreachable ones,
+     *        defaults to {@code false}
+     */
+    public GarbageCollectOp setRepack(boolean repack) {
+        this.repack = repack;
+        return this;
+    }
+
+    /**
+     * Executes the garbage collection.
+     *
+     * @return the number of reachable objects and of objects deleted
+     */
+    @Override
+    protected Result _call() {
+        final Repository repository = repository();
+        checkState(!repository.isSparse(), "Cannot garbage collect a sparse repository.");
+        checkState(!repository.getDepth().isPresent(),
+                "Cannot garbage collect a shallow clone, its history is incomplete.");
+
+        final ObjectDatabase objects = objectDatabase();
+        final List<ObjectId> roots = ImmutableList.copyOf(roots(refDatabase(),
+                stagingDatabase()));
+        Stopwatch sw = Stopwatch.createStarted();
+
+        getProgressListener().started();
+        getProgressListener().setDescription("Marking reachable objects...");
+        final Deduplicator reachable = command(CreateDeduplicator.class).call();
+        try {
+            long reachableCount = 0;
+            // through the staging database so the trees of the index and working tree are reached
+            Iterator<ObjectId> traversal = PreOrderIterator.all(roots, stagingDatabase(),
+                    reachable);
+            while (traversal.hasNext()) {
+                traversal.next();
+                reachableCount++;
+            }
+            LOGGER.debug("Marked {} reachable objects from {} roots in {}", reachableCount,
+                    roots.size(), sw);
+
+            getProgressListener().setDescription("Deleting unreachable objects...");
+            final long deleted = deleteUnreachable(objects, reachable);
+            LOGGER.debug("Deleted {} unreachable objects in {}", deleted, sw);
+
+            if (repack) {
+                getProgressListener().setDescription("Repacking reachable objects...");
+                command(RepackOp.class).call();
+                LOGGER.debug("Repacked reachable objects in {}", sw);
+            }
+            getProgressListener().complete();
+            return new Result(reachableCount, deleted);
+        } finally {
+            reachable.release();
+        }
+    }
+
+    /**
+     * @return the ids of all the objects referenced by refs, open transactions, and conflicts
+     */
+    static Set<ObjectId> roots(RefDatabase refs, StagingDatabase index) {
+        Set<ObjectId> roots = Sets.newLinkedHashSet();
+        addRefs(refs.getAll(), roots);
+        addRefs(refs.getAll(Ref.TRANSACTIONS_PREFIX), roots);
+        for (Conflict conflict : index.getConflicts(null, null)) {
+            addRoot(conflict.getAncestor(), roots);
+            addRoot(conflict.getOurs(), roots);
+            addRoot(conflict.getTheirs(), roots);
+        }
+        return roots;
+    }
+
+    private static void addRefs(Map<String, String> refs, Set<ObjectId> roots) {
+        for (String value : refs.values()) {
+            // symbolic refs point to other refs, which are also listed
+            if (value.length() == 2 * ObjectId.NUM_BYTES) {
+                try {
+                    addRoot(ObjectId.valueOf(value), roots);
+                } catch (IllegalArgumentException notAnObjectId) {
+                    continue;
+                }
+            }
+        }
+    }
+
+    private static void addRoot(ObjectId id, Set<ObjectId> roots) {
+        if (id != null && !id.isNull()) {
+            roots.add(id);
+        }
+    }
+
+    /**
+     * Deletes the stored objects not marked as reachable. Their ids are written to a temporary
+     * file first, as not all backends allow deleting while listing the stored ids, and then read
+     * back and deleted in batches.
+     *
+     * @return the number of objects deleted
+     */
+    private long deleteUnreachable(final ObjectDatabase objects, final Deduplicator reachable) {
+        File spool = null;
+        try {
+            spool = File.createTempFile("geogig-gc", ".ids", platform().getTempDir());
+            spool.deleteOnExit();
+
+            long unreachable = 0;
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(spool)));
+            try {
+                for (Iterator<ObjectId> stored = objects.storedIds(); stored.hasNext();) {
+                    ObjectId id = stored.next();
+                    if (!reachable.isDuplicate(id)) {
+                        out.write(id.getRawValue());
+                        unreachable++;
+                    }
+                }
+            } finally {
+                out.close();
+            }
+
+            long deleted = 0;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(spool)));
+            try {
+                List<ObjectId> batch = Lists.newArrayListWithCapacity(DELETE_BATCH_SIZE);
+                for (long i = 0; i < unreachable; i++) {
+                    byte[] raw = new byte[ObjectId.NUM_BYTES];
+                    in.readFully(raw);
+                    batch.add(ObjectId.createNoClone(raw));
+                    if (batch.size() == DELETE_BATCH_SIZE) {
+                        deleted += objects.deleteAll(batch.iterator());
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    deleted += objects.deleteAll(batch.iterator());
+                }
+            } finally {
+                in.close();
+            }
+            return deleted;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            if (spool != null) {
+                spool.delete();
+            }
+        }
+    }
+
+    /**
+     * The outcome of a {@link GarbageCollectOp}
+     */
+    public static class Result {
+
+        private final long reachable;
+
+        private final long deleted;
+
+        Result(long reachable, long deleted) {
+            this.reachable = reachable;
+            this.deleted = deleted;
+        }
+
+        /**
+         * @return the number of objects reachable from the refs
+         */
+        public long getReachable() {
+            return reachable;
+        }
+
+        /**
+         * @return the number of unreachable objects deleted
+         */
+        public long getDeleted() {
+            return deleted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("GarbageCollectOp.Result[reachable: %,d, deleted: %,d]",
+                    reachable, deleted);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import org.locationtech.geogig.api.AbstractGeoGigOp;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.repository.PreOrderIterator;
+import org.locationtech.geogig.storage.Deduplicator;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+/**
+ * Asks the repository's {@link ObjectDatabase} to {@link ObjectDatabase#repack(Iterator) repack}
+ * its objects in depth-first traversal order, so that the objects read together by full tree
+ * scans like {@link LsTreeOp} or exports are stored next to each other.
+ * <p>
+ * Objects are laid out as returned by a {@link PreOrderIterator} starting at {@code HEAD} and
+ * then at the rest of the refs, open transactions and conflicts: each commit followed by the
+ * whole contents of its tree, each tree followed by its children in the order a depth-first
+ * traversal reads them. Hence the contents of the current branch come first, and only the trees
+ * and features changed by each older commit follow it.
+ * <p>
+ * Backends that look objects up through an index over a sequential layout benefit the most;
+ * others may just compact their storage.
+ */
+public class RepackOp extends AbstractGeoGigOp<Long> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepackOp.class);
+
+    /**
+     * Executes the repack.
+     *
+     * @return the number of objects traversed
+     */
+    @Override
+    protected Long _call() {
+        Set<ObjectId> roots = Sets.newLinkedHashSet();
+        Optional<Ref> head = command(RefParse.class).setName(Ref.HEAD).call();
+        if (head.isPresent() && !head.get().getObjectId().isNull()) {
+            roots.add(head.get().getObjectId());
+        }
+        roots.addAll(GarbageCollectOp.roots(refDatabase(), stagingDatabase()));
+
+        getProgressListener().started();
+        getProgressListener().setDescription("Repacking objects...");
+        Stopwatch sw = Stopwatch.createStarted();
+        final Deduplicator deduplicator = command(CreateDeduplicator.class).call();
+        try {
+            // through the staging database so the trees of the index and working tree are reached
+            final Iterator<ObjectId> ids = PreOrderIterator.all(ImmutableList.copyOf(roots),
+                    stagingDatabase(), deduplicator);
+            final long[] count = new long[1];
+            objectDatabase().repack(new AbstractIterator<ObjectId>() {
+                @Override
+                protected ObjectId computeNext() {
+                    if (!ids.hasNext()) {
+                        return endOfData();
+                    }
+                    count[0]++;
+                    return ids.next();
+                }
+            });
+            LOGGER.debug("Repacked {} objects reachable from {} roots in {}", count[0],
+                    roots.size(), sw);
+            getProgressListener().complete();
+            return Long.valueOf(count[0]);
+        } finally {
+            deduplicator.release();
+        }
+    }
+}
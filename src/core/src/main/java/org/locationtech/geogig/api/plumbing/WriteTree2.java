@@ -15,6 +15,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -43,11 +48,16 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.vividsolutions.jts.geom.Envelope;
 
 /**
@@ -191,6 +201,7 @@ public class WriteTree2 extends AbstractGeoGigOp<ObjectId> {
                 if (filterApplies(path, treeDifference.getRightTree())) {
                     // can't optimize
                     RevTree newTree = applyChanges(ref, null);
+                    objectDatabase().put(newTree);
                     Node newNode = Node.tree(ref.name(), newTree.getId(), ref.getMetadataId());
                     MutableTree leftTree = treeDifference.getLeftTree();
                     leftTree.forceChild(ref.getParentPath(), newNode);
@@ -216,6 +227,7 @@ public class WriteTree2 extends AbstractGeoGigOp<ObjectId> {
                 if (filterApplies(path, rightTree)) {
                     // can't optimize
                     RevTree newTree = applyChanges(null, ref);
+                    objectDatabase().put(newTree);
                     Node newNode = Node.tree(ref.name(), newTree.getId(), ref.getMetadataId());
                     MutableTree leftTree = treeDifference.getLeftTree();
                     leftTree.forceChild(ref.getParentPath(), newNode);
@@ -268,9 +280,13 @@ public class WriteTree2 extends AbstractGeoGigOp<ObjectId> {
         final SortedMap<NodeRef, NodeRef> changedTrees = treeDifference.findChanges();
         final SortedMap<NodeRef, NodeRef> filteredChangedTrees = changedTrees;// filterChanges(changedTrees);
 
+        // trees at the same depth are independent of each other and can be built concurrently,
+        // but a parent tree needs its changed child trees to be saved to compute its size, so
+        // they're built level by level, deepest first
+        final SortedMap<Integer, List<Map.Entry<NodeRef, NodeRef>>> changesByDepth = Maps
+                .newTreeMap(Ordering.natural().reverse());
+        int numTrees = 0;
         for (Map.Entry<NodeRef, NodeRef> changedTreeRefs : filteredChangedTrees.entrySet()) {
-
-            NodeRef leftTreeRef = changedTreeRefs.getKey();
             NodeRef rightTreeRef = changedTreeRefs.getValue();
             String newPath = rightTreeRef.path();
             if (ignoreList.contains(newPath)) {
@@ -280,18 +296,89 @@ public class WriteTree2 extends AbstractGeoGigOp<ObjectId> {
                 continue;
             }
             ignoreList.add(newPath);
-            RevTree tree = applyChanges(leftTreeRef, rightTreeRef);
+            Integer depth = Integer.valueOf(NodeRef.depth(newPath));
+            List<Map.Entry<NodeRef, NodeRef>> level = changesByDepth.get(depth);
+            if (level == null) {
+                level = Lists.newArrayList();
+                changesByDepth.put(depth, level);
+            }
+            level.add(changedTreeRefs);
+            numTrees++;
+        }
+        if (numTrees == 0) {
+            return;
+        }
 
-            Envelope bounds = SpatialOps.boundsOf(tree);
-            Node newTreeNode = Node.create(rightTreeRef.name(), tree.getId(),
-                    rightTreeRef.getMetadataId(), TYPE.TREE, bounds);
+        final ProgressListener progress = getProgressListener();
+        final ObjectDatabase repositoryDatabase = objectDatabase();
+        final int nThreads = Math.max(1, Math.min(numTrees, platform().availableProcessors()));
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads,
+                new ThreadFactoryBuilder().setNameFormat("WriteTree2-tree-builder-%d").build());
+        try {
+            int built = 0;
+            for (List<Map.Entry<NodeRef, NodeRef>> level : changesByDepth.values()) {
+                List<Future<RevTree>> futures = Lists.newArrayListWithCapacity(level.size());
+                List<Stopwatch> timings = Lists.newArrayListWithCapacity(level.size());
+                for (Map.Entry<NodeRef, NodeRef> changedTreeRefs : level) {
+                    final NodeRef leftTreeRef = changedTreeRefs.getKey();
+                    final NodeRef rightTreeRef = changedTreeRefs.getValue();
+                    final Stopwatch sw = Stopwatch.createUnstarted();
+                    timings.add(sw);
+                    futures.add(executor.submit(new Callable<RevTree>() {
+                        @Override
+                        public RevTree call() {
+                            sw.start();
+                            RevTree tree = applyChanges(leftTreeRef, rightTreeRef);
+                            sw.stop();
+                            return tree;
+                        }
+                    }));
+                }
 
-            MutableTree leftRoot = treeDifference.getLeftTree();
-            String parentPath = rightTreeRef.getParentPath();
-            leftRoot.setChild(parentPath, newTreeNode);
+                List<RevTree> newTrees = Lists.newArrayListWithCapacity(level.size());
+                for (int i = 0; i < level.size(); i++) {
+                    RevTree tree = get(futures.get(i));
+                    newTrees.add(tree);
+                    String path = level.get(i).getValue().path();
+                    String timing = String.format("Tree %s (%,d features) built in %s", path,
+                            tree.size(), timings.get(i));
+                    LOGGER.debug(timing);
+                    progress.setDescription(timing);
+                    built++;
+                    progress.setProgress((built * 100f) / numTrees);
+                }
+                repositoryDatabase.putAll(newTrees.iterator());
+
+                MutableTree leftRoot = treeDifference.getLeftTree();
+                for (int i = 0; i < level.size(); i++) {
+                    NodeRef rightTreeRef = level.get(i).getValue();
+                    RevTree tree = newTrees.get(i);
+                    Envelope bounds = SpatialOps.boundsOf(tree);
+                    Node newTreeNode = Node.create(rightTreeRef.name(), tree.getId(),
+                            rightTreeRef.getMetadataId(), TYPE.TREE, bounds);
+                    String parentPath = rightTreeRef.getParentPath();
+                    leftRoot.setChild(parentPath, newTreeNode);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    private static RevTree get(Future<RevTree> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (InterruptedException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Builds the new tree out of the changes between the left and right trees. The new tree is not
+     * saved to the repository database, but any bucket tree is.
+     */
     private RevTree applyChanges(@Nullable final NodeRef leftTreeRef,
             @Nullable final NodeRef rightTreeRef) {
 
@@ -379,7 +466,6 @@ public class WriteTree2 extends AbstractGeoGigOp<ObjectId> {
         }
 
         final RevTree newTree = builder.build();
-        repositoryDatabase.put(newTree);
         return newTree;
     }
 
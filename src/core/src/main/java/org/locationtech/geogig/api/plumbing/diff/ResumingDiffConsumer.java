@@ -0,0 +1,140 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.api.plumbing.diff;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.plumbing.diff.PreOrderDiffWalk.Consumer;
+import org.locationtech.geogig.storage.NodePathStorageOrder;
+
+/**
+ * A {@link Consumer} decorator that resumes a {@link PreOrderDiffWalk} right after a given path,
+ * so that only the events for nodes that come after it in the walk order are forwarded to the
+ * actual consumer.
+ * <p>
+ * Since the walk visits the children of each tree (and the buckets they're split in) in
+ * {@link NodePathStorageOrder storage order}, whole subtrees and buckets that come before the
+ * resume path are skipped without being loaded, making resuming a diff an operation proportional to
+ * the depth of the resume path rather than to the number of differences already reported.
+ * <p>
+ * Trees that are ancestors of the resume path are still forwarded to the delegate, for it to keep
+ * track of the current path; hence if the delegate reports tree differences, those will be
+ * reported again.
+ */
+public class ResumingDiffConsumer extends PreOrderDiffWalk.ForwardingConsumer {
+
+    private static final NodePathStorageOrder ORDER = new NodePathStorageOrder();
+
+    private final List<String> resumePath;
+
+    private final DiffPathTracker tracker = new DiffPathTracker();
+
+    private boolean passed;
+
+    /**
+     * Whether the last tree or bucket event was skipped, in which case the walk will immediately
+     * call its {@code end} counterpart, which is to be skipped too.
+     */
+    private boolean skipEnd;
+
+    /**
+     * @param resumeAfter the full path of the last node already consumed, all nodes up to and
+     *        including it will be skipped
+     * @param delegate the consumer to forward the events for the nodes after {@code resumeAfter} to
+     */
+    public ResumingDiffConsumer(String resumeAfter, Consumer delegate) {
+        super(delegate);
+        this.resumePath = NodeRef.split(resumeAfter);
+        checkArgument(!resumePath.isEmpty(), "resume path can't be empty");
+    }
+
+    @Override
+    public boolean tree(Node left, Node right) {
+        final String path = tracker.tree(left, right);
+        if (passed || NodeRef.ROOT.equals(path)) {
+            return super.tree(left, right);
+        }
+        final int depth = NodeRef.depth(path) - 1;
+        final int c = ORDER.compare(tracker.name(left, right), resumePath.get(depth));
+        if (c < 0) {
+            skipEnd = true;
+            return false;
+        }
+        if (c > 0 || depth == resumePath.size() - 1) {
+            // either past the resume path, or the resume path is this tree itself, whose
+            // children all come after it
+            passed = true;
+        }
+        return super.tree(left, right);
+    }
+
+    @Override
+    public void endTree(Node left, Node right) {
+        final String path = tracker.getCurrentPath();
+        tracker.endTree(left, right);
+        if (skipEnd) {
+            skipEnd = false;
+            return;
+        }
+        if (!NodeRef.ROOT.equals(path)) {
+            // done with an ancestor of the resume path, anything that follows comes after it
+            passed = true;
+        }
+        super.endTree(left, right);
+    }
+
+    @Override
+    public boolean bucket(int bucketIndex, int bucketDepth, Bucket left, Bucket right) {
+        if (passed) {
+            return super.bucket(bucketIndex, bucketDepth, left, right);
+        }
+        final int depth = NodeRef.depth(tracker.getCurrentPath());
+        final int resumeBucket = ORDER.bucket(resumePath.get(depth), bucketDepth).intValue();
+        if (bucketIndex < resumeBucket) {
+            skipEnd = true;
+            return false;
+        }
+        if (bucketIndex > resumeBucket) {
+            passed = true;
+        }
+        return super.bucket(bucketIndex, bucketDepth, left, right);
+    }
+
+    @Override
+    public void endBucket(int bucketIndex, int bucketDepth, Bucket left, Bucket right) {
+        if (skipEnd) {
+            skipEnd = false;
+            return;
+        }
+        super.endBucket(bucketIndex, bucketDepth, left, right);
+    }
+
+    @Override
+    public void feature(Node left, Node right) {
+        if (passed) {
+            super.feature(left, right);
+            return;
+        }
+        final int depth = NodeRef.depth(tracker.getCurrentPath());
+        final int c = ORDER.compare(tracker.name(left, right), resumePath.get(depth));
+        if (c > 0) {
+            passed = true;
+            super.feature(left, right);
+        } else if (c == 0 && depth == resumePath.size() - 1) {
+            // the resume node itself, already consumed
+            passed = true;
+        }
+    }
+}
@@ -63,6 +63,8 @@ public class DiffOp extends AbstractGeoGigOp<Iterator<DiffEntry>> implements Ite
 
     private boolean reportTrees;
 
+    private String resumeAfter;
+
     /**
      * @param compareIndex if true, the index will be used in the comparison
      */
@@ -114,6 +116,20 @@ public class DiffOp extends AbstractGeoGigOp<Iterator<DiffEntry>> implements Ite
         return this;
     }
 
+    /**
+     * Indicates to resume the diff right after the given path, as returned by a previous call to
+     * this operation with the same arguments.
+     * 
+     * @param path the full path of the last {@link DiffEntry} already consumed, or {@code null} to
+     *        start from the beginning
+     * @return {@code this}
+     * @see DiffTree#setResumeAfter(String)
+     */
+    public DiffOp setResumeAfter(@Nullable String path) {
+        this.resumeAfter = path;
+        return this;
+    }
+
     /**
      * Executes the diff operation.
      * 
@@ -132,7 +148,7 @@ public class DiffOp extends AbstractGeoGigOp<Iterator<DiffEntry>> implements Ite
         if (cached) {
             // compare the tree-ish (default to HEAD) and the index
             DiffIndex diffIndex = command(DiffIndex.class).addFilter(this.pathFilter)
-                    .setReportTrees(reportTrees);
+                    .setReportTrees(reportTrees).setResumeAfter(resumeAfter);
             if (oldRefSpec != null) {
                 diffIndex.setOldVersion(oldRefSpec);
             }
@@ -140,7 +156,7 @@ public class DiffOp extends AbstractGeoGigOp<Iterator<DiffEntry>> implements Ite
         } else if (newRefSpec == null) {
 
             DiffWorkTree workTreeIndexDiff = command(DiffWorkTree.class).setFilter(pathFilter)
-                    .setReportTrees(reportTrees);
+                    .setReportTrees(reportTrees).setResumeAfter(resumeAfter);
             if (oldRefSpec != null) {
                 workTreeIndexDiff.setOldVersion(oldRefSpec);
             }
@@ -148,7 +164,8 @@ public class DiffOp extends AbstractGeoGigOp<Iterator<DiffEntry>> implements Ite
         } else {
 
             iterator = command(DiffTree.class).setOldVersion(oldRefSpec).setNewVersion(newRefSpec)
-                    .setPathFilter(pathFilter).setReportTrees(reportTrees).call();
+                    .setPathFilter(pathFilter).setReportTrees(reportTrees)
+                    .setResumeAfter(resumeAfter).call();
         }
 
         return iterator;
@@ -18,6 +18,8 @@ import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 import org.geotools.util.Range;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.NodeRef;
@@ -35,6 +37,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ForwardingIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -83,12 +86,18 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
     private List<ObjectId> commits = Lists.newArrayList();
 
+    private List<ObjectId> resumeFrom;
+
+    private ImmutableList<ObjectId> resumePoint;
+
     public LogOp() {
         timeRange = ALWAYS;
     }
 
     /**
-     * @param skip sets the number of commits to skip from the commit list
+     * @param skip sets the number of commits to skip from the commit list, ignored when
+     *        {@link #setResumeFrom(List) resuming}, as the commits skipped by the call the resume
+     *        point was taken from are not walked again
      * @return {@code this}
      */
     public LogOp setSkip(int skip) {
@@ -98,7 +107,10 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
     }
 
     /**
-     * @param limit sets the limit for the amount of commits to show
+     * @param limit sets the limit for the amount of commits to show. When
+     *        {@link #setResumeFrom(List) resuming} it limits the commits returned by this call
+     *        only, so callers enforcing an overall limit across resumed calls shall pass the
+     *        number of commits still to be returned
      * @return {@code this}
      */
     public LogOp setLimit(int limit) {
@@ -167,6 +179,36 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
         return this;
     }
 
+    /**
+     * Indicates to resume the history walk from the given point, as returned by
+     * {@link #getResumePoint()} after a previous call to this operation with the same arguments,
+     * instead of starting from the {@link #addCommit(ObjectId) tip commits}.
+     * <p>
+     * Resuming is not supported for {@link #setTopoOrder(boolean) topological order}.
+     * 
+     * @param resumePoint the ids of the commits pending to be visited by the history walk
+     * @return {@code this}
+     */
+    public LogOp setResumeFrom(@Nullable List<ObjectId> resumePoint) {
+        this.resumeFrom = resumePoint == null ? null : ImmutableList.copyOf(resumePoint);
+        return this;
+    }
+
+    /**
+     * Returns the point at which the history walk stands right after the last commit returned by
+     * the iterator of the last {@link #call()} to this operation, suitable to be given to
+     * {@link #setResumeFrom(List)} in order to continue listing the history from the next commit
+     * on, without walking again through the commits already returned.
+     * 
+     * @return the ids of the commits pending to be visited, empty if the history has been fully
+     *         walked
+     */
+    public ImmutableList<ObjectId> getResumePoint() {
+        Preconditions.checkState(resumePoint != null,
+                "resume point not available, either not called or in topological order");
+        return resumePoint;
+    }
+
     /**
      * Sets the regexp to filter out author names
      * 
@@ -255,7 +297,17 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
         }
 
         Iterator<RevCommit> history;
-        if (firstParent) {
+        if (resumeFrom != null) {
+            Preconditions.checkArgument(!topo, "Topological order log can't be resumed");
+            if (firstParent) {
+                Preconditions.checkArgument(resumeFrom.size() <= 1,
+                        "First parent log can only be resumed from a single commit");
+                history = new LinearHistoryIterator(resumeFrom.isEmpty() ? ObjectId.NULL
+                        : resumeFrom.get(0), repository());
+            } else {
+                history = new ChronologicalHistoryIterator(resumeFrom, repository());
+            }
+        } else if (firstParent) {
             history = new LinearHistoryIterator(newestCommitId, repository());
         } else {
             if (commits.isEmpty()) {
@@ -269,21 +321,58 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
         }
         LogFilter filter = new LogFilter(oldestCommitId, timeRange, paths, author, commiter);
         Iterator<RevCommit> filteredCommits = Iterators.filter(history, filter);
-        if (skip != null) {
+        if (skip != null && resumeFrom == null) {
             Iterators.advance(filteredCommits, skip.intValue());
         }
         if (limit != null) {
             filteredCommits = Iterators.limit(filteredCommits, limit.intValue());
         }
+        if (history instanceof HistoryWalk) {
+            filteredCommits = trackResumePoint(filteredCommits, (HistoryWalk) history);
+        }
         return filteredCommits;
     }
 
+    private Iterator<RevCommit> trackResumePoint(final Iterator<RevCommit> commits,
+            final HistoryWalk walk) {
+        resumePoint = walk.pending();
+        return new ForwardingIterator<RevCommit>() {
+
+            @Override
+            protected Iterator<RevCommit> delegate() {
+                return commits;
+            }
+
+            @Override
+            public RevCommit next() {
+                RevCommit commit = super.next();
+                // the filtered iterator advances the walk only up to the commit it returns, so
+                // the walk's pending commits are the ones right after it
+                resumePoint = walk.pending();
+                return commit;
+            }
+        };
+    }
+
+    /**
+     * A history iterator that can tell which commits are pending to be visited, and hence can be
+     * resumed by starting a new iterator from them
+     */
+    private static interface HistoryWalk {
+
+        /**
+         * @return the ids of the commits pending to be visited
+         */
+        public ImmutableList<ObjectId> pending();
+    }
+
     /**
      * Iterator that traverses the commit history backwards starting from the provided commit, in
      * chronological order. It performs a reverse breadth-first search
      * 
      */
-    private static class ChronologicalHistoryIterator extends AbstractIterator<RevCommit> {
+    private static class ChronologicalHistoryIterator extends AbstractIterator<RevCommit> implements
+            HistoryWalk {
 
         private final Repository repo;
 
@@ -338,6 +427,15 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             }
 
         }
+
+        @Override
+        public ImmutableList<ObjectId> pending() {
+            ImmutableList.Builder<ObjectId> ids = ImmutableList.builder();
+            for (RevCommit c : parents) {
+                ids.add(c.getId());
+            }
+            return ids.build();
+        }
     }
 
     /**
@@ -430,7 +528,8 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
      * only the first parent of each commit
      * 
      */
-    private static class LinearHistoryIterator extends AbstractIterator<RevCommit> {
+    private static class LinearHistoryIterator extends AbstractIterator<RevCommit> implements
+            HistoryWalk {
 
         private Optional<ObjectId> nextCommitId;
 
@@ -467,6 +566,11 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             return endOfData();
         }
 
+        @Override
+        public ImmutableList<ObjectId> pending() {
+            return nextCommitId.isPresent() ? ImmutableList.of(nextCommitId.get()) : ImmutableList
+                    .<ObjectId> of();
+        }
     }
 
     /**
@@ -16,6 +16,7 @@ import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.DefaultPlatform;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.api.hooks.CommandHooksDecorator;
+import org.locationtech.geogig.di.caching.TieredObjectDatabase;
 import org.locationtech.geogig.repository.Index;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.StagingArea;
@@ -99,6 +100,8 @@ public class GeogigModule extends AbstractModule {
 
         bind(DeduplicationService.class).to(HeapDeduplicationService.class).in(Scopes.SINGLETON);
 
+        bindTieredStorageDecorator();
+
         bindCommitGraphInterceptor();
 
         bindConflictCheckingInterceptor();
@@ -106,6 +109,15 @@ public class GeogigModule extends AbstractModule {
         bindDecorator(binder(), new CommandHooksDecorator());
     }
 
+    /**
+     * Bound before any other object database decorator, so that the local tier sits right in front
+     * of the backend and write-back mode doesn't defer the other decorators' side effects
+     */
+    private void bindTieredStorageDecorator() {
+        bindDecorator(binder(), TieredObjectDatabase.decorator(getProvider(Platform.class),
+                getProvider(ConfigDatabase.class), getProvider(RefDatabase.class)));
+    }
+
     private void bindConflictCheckingInterceptor() {
         bindDecorator(binder(), new ConflictInterceptor());
     }
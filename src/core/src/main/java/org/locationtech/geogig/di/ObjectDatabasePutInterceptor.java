@@ -18,6 +18,7 @@ import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ForwardingObjectDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.StagingDatabase;
 
 import com.google.common.base.Function;
@@ -113,6 +114,31 @@ class ObjectDatabasePutInterceptor implements Decorator {
 //            }
         }
 
+        /**
+         * Updates the graph database for the commits in the stream, which are identified by their
+         * serialized header and parsed only if they're commits.
+         */
+        @Override
+        public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+
+            final Iterator<RawObject> collectingIterator = Iterators.transform(objects,
+                    new Function<RawObject, RawObject>() {
+
+                        private final GraphDatabase graphDatabase = graphDb.get();
+
+                        @Override
+                        public RawObject apply(RawObject input) {
+                            if (RevObject.TYPE.COMMIT.equals(input.getType())) {
+                                RevCommit commit = (RevCommit) input.parse();
+                                graphDatabase.put(commit.getId(), commit.getParentIds());
+                            }
+                            return input;
+                        }
+                    });
+
+            super.putRaw(collectingIterator, listener);
+        }
+
     }
 
 }
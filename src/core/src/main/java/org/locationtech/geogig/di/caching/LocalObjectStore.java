@@ -0,0 +1,300 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.di.caching;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.repository.RepositoryConnectionException;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.fs.FileObjectDatabase;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * The local, persistent tier of a {@link TieredObjectDatabase}: a {@link FileObjectDatabase} under
+ * the {@code .geogig/localcache} directory whose total size on disk is bounded by evicting the
+ * least recently used objects.
+ * <p>
+ * Objects can be {@link #pin(Iterable) pinned} so that they're never evicted, which is how
+ * objects written in write-back mode are kept until they're flushed to the backend. The set of
+ * pinned objects is journaled to disk so that it survives a restart.
+ */
+class LocalObjectStore extends FileObjectDatabase {
+
+    static final String DATABASE_NAME = "localcache";
+
+    private static final String PINNED_JOURNAL = "pinned";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final long maxBytes;
+
+    /**
+     * Size in bytes of each stored object, in access order
+     */
+    private final LinkedHashMap<ObjectId, Integer> index = new LinkedHashMap<ObjectId, Integer>(
+            1024, 0.75f, true);
+
+    private final Set<ObjectId> pinned = Sets.newHashSet();
+
+    private long sizeBytes;
+
+    private long evictionCount;
+
+    /**
+     * @param maxBytes the maximum size in bytes of the stored objects before the least recently
+     *        used ones start being evicted
+     */
+    public LocalObjectStore(final Platform platform, final ConfigDatabase configDB,
+            final long maxBytes) {
+        super(platform, DATABASE_NAME, configDB);
+        checkArgument(maxBytes > 0, "maxBytes shall be > 0: %s", maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The local cache is not the repository's object database, hence it does not register any
+     * storage format on the repository config
+     */
+    @Override
+    public void configure() throws RepositoryConnectionException {
+        // nothing to do
+    }
+
+    @Override
+    public void checkConfig() throws RepositoryConnectionException {
+        // nothing to do
+    }
+
+    /**
+     * Opens the store and rebuilds the LRU index out of the existing object files, ordered by
+     * last modification time, as well as the set of pinned objects out of its journal.
+     */
+    @Override
+    public synchronized void open() {
+        if (isOpen()) {
+            return;
+        }
+        super.open();
+        index.clear();
+        pinned.clear();
+        sizeBytes = 0;
+
+        List<File> files = Lists.newArrayList();
+        for (File dir1 : listDirectories(getDataRoot())) {
+            for (File dir2 : listDirectories(dir1)) {
+                File[] objects = dir2.listFiles();
+                if (objects != null) {
+                    files.addAll(Arrays.asList(objects));
+                }
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (File f : files) {
+            ObjectId id;
+            try {
+                id = ObjectId.valueOf(f.getName());
+            } catch (IllegalArgumentException notAnObject) {
+                continue;
+            }
+            track(id, (int) f.length());
+        }
+
+        File journal = journal();
+        if (journal.exists()) {
+            try {
+                for (String line : Files.readLines(journal, UTF8)) {
+                    if (!line.isEmpty()) {
+                        ObjectId id = ObjectId.valueOf(line);
+                        if (index.containsKey(id)) {
+                            pinned.add(id);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        index.clear();
+        pinned.clear();
+        sizeBytes = 0;
+        super.close();
+    }
+
+    @Override
+    protected InputStream getRawInternal(ObjectId id, boolean failIfNotFound) {
+        InputStream raw = super.getRawInternal(id, failIfNotFound);
+        if (raw != null) {
+            synchronized (this) {
+                // updates the access order
+                index.get(id);
+            }
+        }
+        return raw;
+    }
+
+    @Override
+    protected boolean putInternal(final ObjectId id, final byte[] rawData) {
+        final boolean inserted = super.putInternal(id, rawData);
+        if (inserted) {
+            synchronized (this) {
+                track(id, rawData.length);
+                evict();
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public synchronized boolean delete(ObjectId objectId) {
+        final boolean deleted = super.delete(objectId);
+        Integer size = index.remove(objectId);
+        if (size != null) {
+            sizeBytes -= size.intValue();
+        }
+        if (pinned.remove(objectId)) {
+            writeJournal();
+        }
+        return deleted;
+    }
+
+    private void track(ObjectId id, int size) {
+        Integer previous = index.put(id, Integer.valueOf(size));
+        if (previous != null) {
+            sizeBytes -= previous.intValue();
+        }
+        sizeBytes += size;
+    }
+
+    /**
+     * Deletes the least recently used objects that are not pinned until the store fits in
+     * {@code maxBytes}
+     */
+    private void evict() {
+        if (sizeBytes <= maxBytes) {
+            return;
+        }
+        List<ObjectId> evicted = Lists.newArrayList();
+        long size = sizeBytes;
+        Iterator<Map.Entry<ObjectId, Integer>> lru = index.entrySet().iterator();
+        while (size > maxBytes && lru.hasNext()) {
+            Map.Entry<ObjectId, Integer> e = lru.next();
+            if (!pinned.contains(e.getKey())) {
+                evicted.add(e.getKey());
+                size -= e.getValue().intValue();
+            }
+        }
+        for (ObjectId id : evicted) {
+            delete(id);
+        }
+        evictionCount += evicted.size();
+    }
+
+    /**
+     * Prevents the given objects from being evicted until they're {@link #unpin(Iterable)
+     * unpinned}. Ids of objects not in this store are ignored.
+     */
+    public synchronized void pin(Iterable<ObjectId> ids) {
+        StringBuilder added = new StringBuilder();
+        for (ObjectId id : ids) {
+            if (index.containsKey(id) && pinned.add(id)) {
+                added.append(id).append('\n');
+            }
+        }
+        if (added.length() > 0) {
+            try {
+                Files.append(added, journal(), UTF8);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    public synchronized void unpin(Iterable<ObjectId> ids) {
+        boolean changed = false;
+        for (ObjectId id : ids) {
+            changed |= pinned.remove(id);
+        }
+        if (changed) {
+            writeJournal();
+        }
+    }
+
+    public synchronized ImmutableSet<ObjectId> pinned() {
+        return ImmutableSet.copyOf(pinned);
+    }
+
+    public synchronized int pinnedCount() {
+        return pinned.size();
+    }
+
+    private void writeJournal() {
+        try {
+            Files.write(Joiner.on('\n').appendTo(new StringBuilder(), pinned).append('\n'),
+                    journal(), UTF8);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private File journal() {
+        return new File(getDataRoot(), PINNED_JOURNAL);
+    }
+
+    /**
+     * @return the total size in bytes of the stored objects
+     */
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * @return the number of objects stored
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the number of objects evicted since the store was created
+     */
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+}
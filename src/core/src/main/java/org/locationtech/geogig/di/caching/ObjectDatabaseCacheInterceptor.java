@@ -128,6 +128,11 @@ class ObjectDatabaseCacheInterceptor {
         public void removeConflicts(String namespace) {
             ((StagingDatabase) subject.get()).removeConflicts(namespace);
         }
+
+        @Override
+        public boolean isWriteThrough() {
+            return ((StagingDatabase) subject.get()).isWriteThrough();
+        }
     }
 
     private static class CachingObjectDatabase extends ForwardingObjectDatabase {
@@ -0,0 +1,659 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.di.caching;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevTag;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.porcelain.ConfigException;
+import org.locationtech.geogig.di.Decorator;
+import org.locationtech.geogig.di.GeogigModule;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.ForwardingObjectDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RawObject;
+import org.locationtech.geogig.storage.RefDatabase;
+import org.locationtech.geogig.storage.StagingDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicates;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Provider;
+import com.google.inject.util.Providers;
+
+/**
+ * An {@link ObjectDatabase} decorator that keeps a persistent, size bounded, local on-disk cache of
+ * objects in front of the repository object database, meant for backends where each access has a
+ * significant latency, like network backed storage.
+ * <p>
+ * The local tier is disabled by default, and is configured through the following repository or
+ * global config keys:
+ * <ul>
+ * <li>{@code objectdb.localcache.enabled}: whether to use the local tier, defaults to
+ * {@code false}
+ * <li>{@code objectdb.localcache.mode}: either {@code write-through} (default) or
+ * {@code write-back}, see {@link WriteMode}
+ * <li>{@code objectdb.localcache.maxSizeMB}: the maximum size of the local tier in megabytes, the
+ * least recently used objects are evicted beyond it. Defaults to {@code 512}
+ * <li>{@code objectdb.localcache.writeBackBatchSize}: in {@code write-back} mode, how many
+ * objects to accumulate before flushing them to the backend. Defaults to {@code 1000}
+ * <li>{@code objectdb.localcache.warm}: whether to load the trees reachable from {@code HEAD}
+ * into the local tier on a background thread when the database is opened. Defaults to
+ * {@code true}
+ * </ul>
+ * <p>
+ * The hit rate of the local tier can be queried through {@link #stats()}, and it's logged at
+ * debug level when the database is closed.
+ * <p>
+ * {@link GeogigModule} binds the {@link #decorator decorator} before any other object database
+ * decorator, so the local tier wraps the backend directly.
+ */
+public class TieredObjectDatabase extends ForwardingObjectDatabase {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TieredObjectDatabase.class);
+
+    static final String CONFIG_PREFIX = "objectdb.localcache.";
+
+    /**
+     * How writes are propagated to the backend
+     */
+    public static enum WriteMode {
+        /**
+         * Objects are written to the backend and then to the local tier, the backend is always up
+         * to date
+         */
+        WRITE_THROUGH("write-through"),
+        /**
+         * Objects are written to the local tier and flushed to the backend in batches, as well as
+         * when the database is closed or before any operation that needs the backend to be up to
+         * date. Objects not yet flushed are never evicted from the local tier, and are flushed the
+         * next time the database is opened if the process ended before doing so.
+         */
+        WRITE_BACK("write-back");
+
+        private final String configValue;
+
+        private WriteMode(String configValue) {
+            this.configValue = configValue;
+        }
+
+        static WriteMode fromConfig(String value) {
+            for (WriteMode mode : values()) {
+                if (mode.configValue.equalsIgnoreCase(value)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException(String.format(
+                    "Invalid value for %smode: '%s'. Expected one of write-through, write-back",
+                    CONFIG_PREFIX, value));
+        }
+    }
+
+    private static final int READ_BATCH_SIZE = 1000;
+
+    private final Provider<Platform> platform;
+
+    private final Provider<ConfigDatabase> configDb;
+
+    private final Provider<RefDatabase> refDb;
+
+    @Nullable
+    private volatile LocalObjectStore cache;
+
+    private WriteMode mode = WriteMode.WRITE_THROUGH;
+
+    private int writeBackBatchSize;
+
+    private ExecutorService warmingService;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    public TieredObjectDatabase(final Provider<? extends ObjectDatabase> backend,
+            final Provider<Platform> platform, final Provider<ConfigDatabase> configDb,
+            final Provider<RefDatabase> refDb) {
+        super(backend);
+        this.platform = platform;
+        this.configDb = configDb;
+        this.refDb = refDb;
+    }
+
+    /**
+     * @return a decorator for the repository object database (but not the staging database) that
+     *         wraps it in a {@code TieredObjectDatabase}
+     */
+    public static Decorator decorator(final Provider<Platform> platform,
+            final Provider<ConfigDatabase> configDb, final Provider<RefDatabase> refDb) {
+        return new Decorator() {
+            @Override
+            public boolean canDecorate(Object subject) {
+                return subject instanceof ObjectDatabase && !(subject instanceof StagingDatabase);
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public ObjectDatabase decorate(Object subject) {
+                Provider<ObjectDatabase> backend = Providers.of((ObjectDatabase) subject);
+                return new TieredObjectDatabase(backend, platform, configDb, refDb);
+            }
+        };
+    }
+
+    /**
+     * Opens the backend, and the local tier if it's enabled, flushing any objects left unflushed
+     * in write-back mode and starting to warm the local tier if configured to do so.
+     */
+    @Override
+    public synchronized void open() {
+        super.open();
+        if (cache != null || !getConfig("enabled", Boolean.FALSE)) {
+            return;
+        }
+        final int maxSizeMB = getConfig("maxSizeMB", Integer.valueOf(512));
+        checkArgument(maxSizeMB > 0, "%smaxSizeMB shall be > 0: %s", CONFIG_PREFIX, maxSizeMB);
+        mode = WriteMode.fromConfig(getConfig("mode", "write-through"));
+        writeBackBatchSize = getConfig("writeBackBatchSize", Integer.valueOf(1000));
+        checkArgument(writeBackBatchSize > 0, "%swriteBackBatchSize shall be > 0: %s",
+                CONFIG_PREFIX, writeBackBatchSize);
+
+        LocalObjectStore store = new LocalObjectStore(platform.get(), configDb.get(),
+                1024L * 1024L * maxSizeMB);
+        store.open();
+        this.cache = store;
+        LOGGER.debug("Local object cache open in {} mode, {} objects, {} bytes", mode,
+                store.size(), store.sizeBytes());
+
+        // objects left unflushed by a previous process
+        flush();
+
+        if (getConfig("warm", Boolean.TRUE)) {
+            warmingService = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true).setNameFormat("geogig-localcache-warming-%d").build());
+            warmingService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int count = warm();
+                        LOGGER.debug("Local object cache warmed up with {} trees", count);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Error warming up local object cache", e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Flushes any pending write-back objects to the backend, closes the local tier, and closes the
+     * backend.
+     */
+    @Override
+    public synchronized void close() {
+        if (cache != null) {
+            if (warmingService != null) {
+                warmingService.shutdownNow();
+                warmingService = null;
+            }
+            try {
+                flush();
+            } finally {
+                LOGGER.debug("Closing local object cache: {}", stats());
+                cache.close();
+                cache = null;
+            }
+        }
+        super.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getConfig(final String keyword, final T defaultValue) {
+        final String key = CONFIG_PREFIX + keyword;
+        try {
+            Optional<? extends Object> value = configDb.get().get(key, defaultValue.getClass());
+            if (value.isPresent()) {
+                return (T) value.get();
+            }
+        } catch (ConfigException e) {
+            return defaultValue;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return the write mode the local tier is operating in
+     */
+    public WriteMode getWriteMode() {
+        return mode;
+    }
+
+    /**
+     * @return whether the local tier is enabled and open
+     */
+    public boolean isCacheEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Returns the local tier statistics since the database was created, where
+     * {@link CacheStats#hitCount() hits} are objects served by the local tier,
+     * {@link CacheStats#missCount() misses} are the ones requested to the backend,
+     * {@link CacheStats#loadSuccessCount() load successes} are the misses the backend did return,
+     * and {@link CacheStats#evictionCount() evictions} are the objects removed from the local tier
+     * to keep it under its maximum size.
+     */
+    public CacheStats stats() {
+        LocalObjectStore cache = this.cache;
+        long evictions = cache == null ? 0 : cache.evictionCount();
+        long misses = missCount.get();
+        long loads = loadCount.get();
+        return new CacheStats(hitCount.get(), misses, loads, misses - loads, 0L, evictions);
+    }
+
+    /**
+     * Writes the objects pending in write-back mode to the backend. Does nothing in write-through
+     * mode.
+     */
+    public synchronized void flush() {
+        final LocalObjectStore cache = this.cache;
+        if (cache == null) {
+            return;
+        }
+        List<ObjectId> pending = cache.pinned().asList();
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (List<ObjectId> batch : Lists.partition(pending, writeBackBatchSize)) {
+            Iterable<RevObject> objects = Iterables.filter(
+                    Lists.transform(batch, new Function<ObjectId, RevObject>() {
+                        @Override
+                        public RevObject apply(ObjectId id) {
+                            return cache.getIfPresent(id);
+                        }
+                    }), Predicates.notNull());
+            super.putAll(objects.iterator(), BulkOpListener.NOOP_LISTENER);
+            cache.unpin(batch);
+        }
+        LOGGER.debug("Flushed {} objects to the backend", pending.size());
+    }
+
+    /**
+     * Loads into the local tier the root tree of the {@code HEAD} commit and all the trees and
+     * buckets reachable from it, without their features.
+     *
+     * @return the number of trees and buckets traversed
+     */
+    public int warm() {
+        final ObjectId headCommit = resolveHead();
+        if (headCommit == null || !isCacheEnabled()) {
+            return 0;
+        }
+        final RevCommit commit = getCommit(headCommit);
+        int count = 0;
+        List<ObjectId> level = ImmutableList.of(commit.getTreeId());
+        while (!level.isEmpty()) {
+            List<ObjectId> next = Lists.newArrayList();
+            Iterator<RevObject> trees = getAll(level);
+            while (trees.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return count;
+                }
+                RevTree tree = (RevTree) trees.next();
+                count++;
+                if (tree.trees().isPresent()) {
+                    for (Node node : tree.trees().get()) {
+                        next.add(node.getObjectId());
+                    }
+                }
+                if (tree.buckets().isPresent()) {
+                    for (Bucket bucket : tree.buckets().get().values()) {
+                        next.add(bucket.id());
+                    }
+                }
+            }
+            level = next;
+        }
+        return count;
+    }
+
+    @Nullable
+    private ObjectId resolveHead() {
+        final RefDatabase refs = refDb.get();
+        String head;
+        try {
+            String target = refs.getSymRef(Ref.HEAD);
+            head = target == null ? null : refs.getRef(target);
+        } catch (IllegalArgumentException detached) {
+            head = refs.getRef(Ref.HEAD);
+        }
+        return head == null ? null : ObjectId.valueOf(head);
+    }
+
+    @Override
+    public boolean exists(ObjectId id) {
+        final LocalObjectStore cache = this.cache;
+        if (cache != null && cache.exists(id)) {
+            return true;
+        }
+        return super.exists(id);
+    }
+
+    @Override
+    public List<ObjectId> lookUp(String partialId) {
+        flush();
+        return super.lookUp(partialId);
+    }
+
+    @Override
+    public RevObject get(ObjectId id) throws IllegalArgumentException {
+        final LocalObjectStore cache = this.cache;
+        if (cache == null) {
+            return super.get(id);
+        }
+        RevObject object = cache.getIfPresent(id);
+        if (object == null) {
+            missCount.incrementAndGet();
+            object = super.get(id);
+            loadCount.incrementAndGet();
+            cache.put(object);
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return object;
+    }
+
+    @Override
+    public <T extends RevObject> T get(ObjectId id, Class<T> type) throws IllegalArgumentException {
+        return type.cast(get(id));
+    }
+
+    @Override
+    public @Nullable RevObject getIfPresent(ObjectId id) {
+        final LocalObjectStore cache = this.cache;
+        if (cache == null) {
+            return super.getIfPresent(id);
+        }
+        RevObject object = cache.getIfPresent(id);
+        if (object == null) {
+            missCount.incrementAndGet();
+            object = super.getIfPresent(id);
+            if (object != null) {
+                loadCount.incrementAndGet();
+                cache.put(object);
+            }
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return object;
+    }
+
+    @Override
+    public @Nullable <T extends RevObject> T getIfPresent(ObjectId id, Class<T> type)
+            throws IllegalArgumentException {
+        RevObject object = getIfPresent(id);
+        return object == null ? null : type.cast(object);
+    }
+
+    @Override
+    public RevTree getTree(ObjectId id) {
+        return get(id, RevTree.class);
+    }
+
+    @Override
+    public RevFeature getFeature(ObjectId id) {
+        return get(id, RevFeature.class);
+    }
+
+    @Override
+    public RevFeatureType getFeatureType(ObjectId id) {
+        return get(id, RevFeatureType.class);
+    }
+
+    @Override
+    public RevCommit getCommit(ObjectId id) {
+        return get(id, RevCommit.class);
+    }
+
+    @Override
+    public RevTag getTag(ObjectId id) {
+        return get(id, RevTag.class);
+    }
+
+    @Override
+    public Iterator<RevObject> getAll(final Iterable<ObjectId> ids) {
+        return getAll(ids, BulkOpListener.NOOP_LISTENER);
+    }
+
+    /**
+     * Serves the objects present in the local tier from it, and requests the rest to the backend
+     * with a single {@link ObjectDatabase#getAll(Iterable, BulkOpListener) getAll} call per batch
+     * of ids, adding them to the local tier. Objects are not returned in the requested order.
+     */
+    @Override
+    public Iterator<RevObject> getAll(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        final LocalObjectStore cache = this.cache;
+        if (cache == null) {
+            return super.getAll(ids, listener);
+        }
+        Iterator<List<ObjectId>> batches = Iterables.partition(ids, READ_BATCH_SIZE).iterator();
+        return Iterators.concat(Iterators.transform(batches,
+                new Function<List<ObjectId>, Iterator<RevObject>>() {
+                    @Override
+                    public Iterator<RevObject> apply(List<ObjectId> batch) {
+                        return getAll(batch, listener, cache);
+                    }
+                }));
+    }
+
+    private Iterator<RevObject> getAll(final List<ObjectId> batch, final BulkOpListener listener,
+            final LocalObjectStore cache) {
+
+        List<RevObject> hits = Lists.newArrayListWithCapacity(batch.size());
+        List<ObjectId> misses = Lists.newArrayList();
+        for (ObjectId id : batch) {
+            RevObject object = cache.getIfPresent(id);
+            if (object == null) {
+                misses.add(id);
+            } else {
+                hits.add(object);
+                listener.found(id, null);
+            }
+        }
+        hitCount.addAndGet(hits.size());
+        if (misses.isEmpty()) {
+            return hits.iterator();
+        }
+        missCount.addAndGet(misses.size());
+        final Iterator<RevObject> loaded = super.getAll(misses, listener);
+        Iterator<RevObject> caching = new AbstractIterator<RevObject>() {
+            @Override
+            protected RevObject computeNext() {
+                if (!loaded.hasNext()) {
+                    return endOfData();
+                }
+                RevObject object = loaded.next();
+                loadCount.incrementAndGet();
+                cache.put(object);
+                return object;
+            }
+        };
+        return Iterators.concat(hits.iterator(), caching);
+    }
+
+    /**
+     * In write-through mode, writes the object to the backend and then to the local tier. In
+     * write-back mode writes it to the local tier only, returning whether it was not already in
+     * the local tier, and flushes the pending objects if they reached the configured batch size.
+     */
+    @Override
+    public boolean put(RevObject object) {
+        final LocalObjectStore cache = this.cache;
+        if (cache == null) {
+            return super.put(object);
+        }
+        if (WriteMode.WRITE_THROUGH.equals(mode)) {
+            boolean inserted = super.put(object);
+            cache.put(object);
+            return inserted;
+        }
+        boolean inserted = cache.put(object);
+        if (inserted) {
+            cache.pin(ImmutableList.of(object.getId()));
+            flushIfNeeded(cache);
+        }
+        return inserted;
+    }
+
+    @Override
+    public void putAll(Iterator<? extends RevObject> objects) {
+        putAll(objects, BulkOpListener.NOOP_LISTENER);
+    }
+
+    @Override
+    public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
+        final LocalObjectStore cache = this.cache;
+        if (cache == null) {
+            super.putAll(objects, listener);
+            return;
+        }
+        final boolean writeThrough = WriteMode.WRITE_THROUGH.equals(mode);
+        Iterator<? extends List<? extends RevObject>> batches = Iterators.partition(objects,
+                writeBackBatchSize);
+        while (batches.hasNext()) {
+            List<? extends RevObject> batch = batches.next();
+            if (writeThrough) {
+                super.putAll(batch.iterator(), listener);
+                for (RevObject object : batch) {
+                    cache.put(object);
+                }
+            } else {
+                List<ObjectId> inserted = Lists.newArrayListWithCapacity(batch.size());
+                for (RevObject object : batch) {
+                    ObjectId id = object.getId();
+                    if (cache.put(object)) {
+                        inserted.add(id);
+                        listener.inserted(id, null);
+                    } else {
+                        listener.found(id, null);
+                    }
+                }
+                cache.pin(inserted);
+                flushIfNeeded(cache);
+            }
+        }
+    }
+
+    private void flushIfNeeded(LocalObjectStore cache) {
+        if (cache.pinnedCount() >= writeBackBatchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public boolean delete(ObjectId objectId) {
+        final LocalObjectStore cache = this.cache;
+        if (cache == null) {
+            return super.delete(objectId);
+        }
+        final boolean pending = cache.pinned().contains(objectId);
+        final boolean cached = cache.delete(objectId);
+        final boolean deleted = super.delete(objectId);
+        return deleted || (pending && cached);
+    }
+
+    @Override
+    public long deleteAll(Iterator<ObjectId> ids) {
+        return deleteAll(ids, BulkOpListener.NOOP_LISTENER);
+    }
+
+    /**
+     * Flushes any pending write-back objects so that the backend reports the deletes accurately,
+     * and removes the deleted objects from the local tier.
+     */
+    @Override
+    public long deleteAll(Iterator<ObjectId> ids, BulkOpListener listener) {
+        final LocalObjectStore cache = this.cache;
+        if (cache == null) {
+            return super.deleteAll(ids, listener);
+        }
+        flush();
+        Iterator<ObjectId> evicting = Iterators.transform(ids, new Function<ObjectId, ObjectId>() {
+            @Override
+            public ObjectId apply(ObjectId id) {
+                cache.delete(id);
+                return id;
+            }
+        });
+        return super.deleteAll(evicting, listener);
+    }
+
+    /**
+     * Served by the backend, after flushing any pending write-back objects
+     */
+    @Override
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+        flush();
+        return super.getRaw(ids, listener);
+    }
+
+    /**
+     * Written straight to the backend, the objects are added to the local tier when first read
+     */
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        flush();
+        super.putRaw(objects, listener);
+    }
+
+    /**
+     * Served by the backend, after flushing any pending write-back objects
+     */
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        flush();
+        return super.storedIds();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, local cache: %s]", getClass().getSimpleName(), subject,
+                cache == null ? "disabled" : mode);
+    }
+}
@@ -27,6 +27,7 @@ import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.repository.PostOrderIterator;
+import org.locationtech.geogig.storage.BulkLoadSession;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
 import org.locationtech.geogig.storage.Deduplicator;
@@ -218,8 +219,10 @@ public final class BinaryPackedObjects {
         Iterator<RevObject> objects = streamToObjects(in);
 
         BulkOpListener listener = new BulkOpListener() {
+            // synchronized as bulk loads may insert objects from several threads
             @Override
-            public void inserted(final ObjectId objectId, @Nullable Integer storageSizeBytes) {
+            public synchronized void inserted(final ObjectId objectId,
+                    @Nullable Integer storageSizeBytes) {
                 callback.callback(new Supplier<RevObject>() {
                     @Override
                     public RevObject get() {
@@ -231,7 +234,12 @@ public final class BinaryPackedObjects {
 
         CountingListener countingListener = BulkOpListener.newCountingListener();
         listener = BulkOpListener.composite(countingListener, listener);
-        database.putAll(objects, listener);
+        BulkLoadSession bulkLoad = database.startBulkLoad();
+        try {
+            database.putAll(objects, listener);
+        } finally {
+            bulkLoad.close();
+        }
         return new IngestResults(countingListener.inserted(), countingListener.found());
     }
 
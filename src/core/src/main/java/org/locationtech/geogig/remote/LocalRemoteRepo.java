@@ -15,10 +15,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -36,6 +34,7 @@ import org.locationtech.geogig.api.RevObject.TYPE;
 import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.SymRef;
+import org.locationtech.geogig.api.plumbing.CreateDeduplicator;
 import org.locationtech.geogig.api.plumbing.ForEachRef;
 import org.locationtech.geogig.api.plumbing.RefParse;
 import org.locationtech.geogig.api.plumbing.UpdateRef;
@@ -44,8 +43,7 @@ import org.locationtech.geogig.api.plumbing.diff.PostOrderDiffWalk;
 import org.locationtech.geogig.api.plumbing.diff.PostOrderDiffWalk.Consumer;
 import org.locationtech.geogig.api.porcelain.SynchronizationException;
 import org.locationtech.geogig.repository.Repository;
-import org.locationtech.geogig.storage.BulkOpListener;
-import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.Deduplicator;
 import org.locationtech.geogig.storage.ObjectDatabase;
 
 import com.google.common.base.Optional;
@@ -303,9 +301,12 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
         // we have in the "origin" database against trees on the same repository
         PostOrderDiffWalk diffWalk = new PostOrderDiffWalk(oldTree, newTree, fromDb, fromDb);
 
-        // holds object ids that need to be copied to the target db. Pruned when it reaches a
-        // threshold.
-        final Set<ObjectId> ids = new HashSet<ObjectId>();
+        // reads and writes the objects to copy on separate threads while the diff walk goes on,
+        // and remembers which object ids were already scheduled for copy
+        final Deduplicator deduplicator = localRepository.command(CreateDeduplicator.class)
+                .call();
+        final ObjectCopyPipeline pipeline = new ObjectCopyPipeline(fromDb, toDb, deduplicator,
+                progress);
 
         // This filter further refines the post order diff walk by making it ignore trees/buckets
         // that are already present in the target db
@@ -333,7 +334,7 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
                 } else {
                     id = ((Bucket) b).id();
                 }
-                boolean exists = ids.contains(id) || toDb.exists(id);
+                boolean exists = pipeline.isScheduled(id) || toDb.exists(id);
                 return !exists;
             }
         };
@@ -341,7 +342,6 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
         // receives notifications of feature/bucket/tree diffs. Only interested in the "new"/right
         // side of the comparisons
         Consumer consumer = new Consumer() {
-            final int bulkSize = 10_000;
 
             @Override
             public void feature(@Nullable Node left, Node right) {
@@ -359,46 +359,31 @@ class LocalRemoteRepo extends AbstractRemoteRepo {
                 if (node == null) {
                     return;
                 }
-                ids.add(node.getObjectId());
+                pipeline.add(node.getObjectId());
                 Optional<ObjectId> metadataId = node.getMetadataId();
                 if (metadataId.isPresent()) {
-                    ids.add(metadataId.get());
+                    pipeline.add(metadataId.get());
                 }
-                checkLimitAndCopy();
             }
 
             @Override
             public void bucket(int bucketIndex, int bucketDepth, @Nullable Bucket left, Bucket right) {
                 if (left != null) {
-                    ids.add(left.id());
+                    pipeline.add(left.id());
                 }
                 if (right != null) {
-                    ids.add(right.id());
-                }
-                checkLimitAndCopy();
-            }
-
-            private void checkLimitAndCopy() {
-                if (ids.size() >= bulkSize) {
-                    copy(ids, fromDb, toDb, progress);
-                    ids.clear();
+                    pipeline.add(right.id());
                 }
             }
         };
-        diffWalk.walk(filter, consumer);
-        // copy remaining objects
-        copy(ids, fromDb, toDb, progress);
-    }
-
-    private void copy(Set<ObjectId> ids, ObjectDatabase from, ObjectDatabase to,
-            ProgressListener progress) {
-        if (ids.isEmpty()) {
-            return;
+        try {
+            diffWalk.walk(filter, consumer);
+            // copy remaining objects and wait for the pipeline to drain
+            pipeline.finish();
+        } finally {
+            pipeline.close();
+            deduplicator.release();
         }
-        CountingListener countingListener = BulkOpListener.newCountingListener();
-        to.putAll(from.getAll(ids), countingListener);
-        int inserted = countingListener.inserted();
-        progress.setProgress(progress.getProgress() + inserted);
     }
 
     /**
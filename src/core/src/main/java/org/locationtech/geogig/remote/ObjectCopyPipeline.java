@@ -0,0 +1,302 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.ProgressListener;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.Deduplicator;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RawObject;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Copies objects from one {@link ObjectDatabase} to another through a three stage pipeline, so
+ * that discovering the ids to copy, reading them from the origin database, and writing them to the
+ * target database happen concurrently.
+ * <p>
+ * The calling thread {@link #add(ObjectId) adds} the ids to copy, which are deduplicated against
+ * all the ids previously added and grouped in batches. Deduplication is delegated to the given
+ * {@link Deduplicator}, so that the repository's deduplication service, which may be disk backed,
+ * decides how the ids seen so far are kept. A reader thread fetches each batch out of the origin
+ * database, and a writer thread inserts them into the target database. Stages are connected by
+ * bounded queues, so a slow writer ends up blocking the producer instead of accumulating objects
+ * in memory.
+ * <p>
+ * Objects are transferred in their {@link RawObject serialized form}, so they're only decoded if
+ * the two databases use different storage formats.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * <code>
+ * Deduplicator deduplicator = repository.command(CreateDeduplicator.class).call();
+ * ObjectCopyPipeline pipeline = new ObjectCopyPipeline(from, to, deduplicator, progress);
+ * try {
+ *     for (ObjectId id : ids) {
+ *         pipeline.add(id);
+ *     }
+ *     pipeline.finish();
+ * } finally {
+ *     pipeline.close();
+ *     deduplicator.release();
+ * }
+ * </code>
+ * </pre>
+ */
+final class ObjectCopyPipeline {
+
+    private static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    /**
+     * How many batches can be waiting on each queue before the producing stage blocks
+     */
+    private static final int QUEUE_CAPACITY = 4;
+
+    /**
+     * Sentinel batch signaling the end of the stream, compared by identity
+     */
+    private static final List<ObjectId> END_OF_IDS = new ArrayList<ObjectId>(0);
+
+    private static final List<RawObject> END_OF_OBJECTS = new ArrayList<RawObject>(0);
+
+    private final ObjectDatabase from;
+
+    private final ObjectDatabase to;
+
+    private final ProgressListener progress;
+
+    private final int batchSize;
+
+    private final Deduplicator deduplicator;
+
+    private List<ObjectId> currentBatch;
+
+    private final BlockingQueue<List<ObjectId>> idBatches;
+
+    private final BlockingQueue<List<RawObject>> objectBatches;
+
+    private final AtomicBoolean aborted = new AtomicBoolean();
+
+    /**
+     * The first exception thrown by a stage, reported to the caller instead of the failures it
+     * causes on the other stages
+     */
+    private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+    private final ExecutorService executor;
+
+    private final Future<Void> readerResult;
+
+    private final Future<Void> writerResult;
+
+    private final CountingListener countingListener = BulkOpListener.newCountingListener();
+
+    private boolean finished;
+
+    public ObjectCopyPipeline(final ObjectDatabase from, final ObjectDatabase to,
+            final Deduplicator deduplicator, final ProgressListener progress) {
+        this(from, to, deduplicator, progress, DEFAULT_BATCH_SIZE);
+    }
+
+    public ObjectCopyPipeline(final ObjectDatabase from, final ObjectDatabase to,
+            final Deduplicator deduplicator, final ProgressListener progress,
+            final int batchSize) {
+        checkNotNull(from);
+        checkNotNull(to);
+        checkNotNull(deduplicator);
+        checkNotNull(progress);
+        this.from = from;
+        this.to = to;
+        this.deduplicator = deduplicator;
+        this.progress = progress;
+        this.batchSize = batchSize;
+        this.currentBatch = Lists.newArrayListWithCapacity(batchSize);
+        this.idBatches = new ArrayBlockingQueue<List<ObjectId>>(QUEUE_CAPACITY);
+        this.objectBatches = new ArrayBlockingQueue<List<RawObject>>(QUEUE_CAPACITY);
+
+        this.executor = Executors.newFixedThreadPool(2, new ThreadFactoryBuilder()
+                .setNameFormat("geogig-object-copy-%d").setDaemon(true).build());
+        this.readerResult = executor.submit(new Reader());
+        this.writerResult = executor.submit(new Writer());
+    }
+
+    /**
+     * @return {@code true} if {@code id} was already {@link #add(ObjectId) added} to this pipeline
+     */
+    public boolean isScheduled(final ObjectId id) {
+        return deduplicator.isDuplicate(id);
+    }
+
+    /**
+     * Schedules the object identified by {@code id} to be copied, unless it was already scheduled.
+     * Blocks if the reader stage is lagging behind.
+     */
+    public void add(final ObjectId id) {
+        checkState(!finished, "pipeline already finished");
+        if (deduplicator.visit(id)) {
+            return;
+        }
+        currentBatch.add(id);
+        if (currentBatch.size() >= batchSize) {
+            List<ObjectId> batch = currentBatch;
+            currentBatch = Lists.newArrayListWithCapacity(batchSize);
+            put(idBatches, batch);
+        }
+    }
+
+    /**
+     * Flushes any pending ids and waits for all the scheduled objects to be copied.
+     *
+     * @return the number of objects actually inserted in the target database
+     */
+    public int finish() {
+        checkState(!finished, "pipeline already finished");
+        finished = true;
+        if (!currentBatch.isEmpty()) {
+            put(idBatches, currentBatch);
+            currentBatch = null;
+        }
+        put(idBatches, END_OF_IDS);
+        try {
+            readerResult.get();
+            writerResult.get();
+        } catch (InterruptedException e) {
+            aborted.set(true);
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            aborted.set(true);
+            Exception cause = failure.get();
+            throw Throwables.propagate(cause == null ? e.getCause() : cause);
+        }
+        return countingListener.inserted();
+    }
+
+    /**
+     * Releases the pipeline threads, aborting the copy if {@link #finish()} was not called or
+     * failed.
+     */
+    public void close() {
+        if (!finished || !writerResult.isDone()) {
+            aborted.set(true);
+        }
+        executor.shutdownNow();
+    }
+
+    private <T> void put(BlockingQueue<T> queue, T batch) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                checkAborted();
+            }
+        } catch (InterruptedException e) {
+            aborted.set(true);
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+        T batch;
+        while ((batch = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+            checkAborted();
+        }
+        return batch;
+    }
+
+    private void checkAborted() {
+        Exception cause = failure.get();
+        if (cause != null) {
+            throw Throwables.propagate(cause);
+        }
+        if (aborted.get()) {
+            throw new IllegalStateException("Object copy aborted");
+        }
+        if (readerResult != null && readerResult.isDone() && !finished) {
+            // reader ended before the end of stream, meaning it failed
+            propagateFailure(readerResult);
+        }
+        if (writerResult != null && writerResult.isDone()) {
+            propagateFailure(writerResult);
+        }
+    }
+
+    private void propagateFailure(Future<Void> stage) {
+        try {
+            stage.get();
+        } catch (InterruptedException e) {
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            aborted.set(true);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private void failed(Exception e) {
+        failure.compareAndSet(null, e);
+        aborted.set(true);
+    }
+
+    private class Reader implements Callable<Void> {
+        @Override
+        public Void call() throws Exception {
+            try {
+                List<ObjectId> ids;
+                while ((ids = take(idBatches)) != END_OF_IDS) {
+                    List<RawObject> objects = Lists.newArrayList(from.getRaw(ids,
+                            BulkOpListener.NOOP_LISTENER));
+                    put(objectBatches, objects);
+                }
+                put(objectBatches, END_OF_OBJECTS);
+            } catch (Exception e) {
+                failed(e);
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    private class Writer implements Callable<Void> {
+        @Override
+        public Void call() throws Exception {
+            try {
+                List<RawObject> objects;
+                while ((objects = take(objectBatches)) != END_OF_OBJECTS) {
+                    final int before = countingListener.inserted();
+                    to.putRaw(objects.iterator(), countingListener);
+                    final int inserted = countingListener.inserted() - before;
+                    progress.setProgress(progress.getProgress() + inserted);
+                }
+            } catch (Exception e) {
+                failed(e);
+                throw e;
+            }
+            return null;
+        }
+    }
+}
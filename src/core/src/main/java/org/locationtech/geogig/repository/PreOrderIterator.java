@@ -0,0 +1,162 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTag;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator;
+import org.locationtech.geogig.storage.Deduplicator;
+import org.locationtech.geogig.storage.ObjectDatabase;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+
+/**
+ * Traverses the ids of all the objects reachable from a list of start objects in pre order, that
+ * is, each object is visited before the objects it references.
+ * <p>
+ * Each commit is followed by the whole contents of its tree, and then by its parents, so the
+ * contents of the newest commits come first. Each tree is followed by its children in the same
+ * order a depth-first traversal of the tree (like {@link DepthTreeIterator}) reads them: the
+ * buckets in bucket index order, and the subtrees and features of leaf trees in node storage
+ * order, each subtree followed by its own contents, and each node preceded by its metadata id if
+ * it has one. Hence laying out objects in the order returned by this iterator makes full tree
+ * scans read them sequentially.
+ * <p>
+ * Only commits, tags and trees are fetched from the database; the ids of features and feature
+ * types are taken from the tree nodes referencing them. Objects reachable through more than one
+ * path are visited only once, the first time they're reached, as tracked by the given
+ * {@link Deduplicator}. Start objects or trees missing from the database are skipped.
+ * <p>
+ * Memory use is proportional to the number of children of the trees along the current path and
+ * to the number of pending merge parents, not to the size of the graph.
+ *
+ * @see PostOrderIterator
+ */
+public class PreOrderIterator extends AbstractIterator<ObjectId> {
+
+    /**
+     * A traversal of the ids of all the objects reachable from the given start list, in the given
+     * order, with deduplication.
+     */
+    public static Iterator<ObjectId> all(List<ObjectId> start, ObjectDatabase database,
+            Deduplicator deduplicator) {
+        return new PreOrderIterator(start, database, deduplicator);
+    }
+
+    private final ObjectDatabase database;
+
+    private final Deduplicator deduplicator;
+
+    /**
+     * The objects pending to be visited, the next one on top
+     */
+    private final Deque<Entry> toVisit = new ArrayDeque<Entry>();
+
+    private PreOrderIterator(List<ObjectId> start, ObjectDatabase database,
+            Deduplicator deduplicator) {
+        this.database = database;
+        this.deduplicator = deduplicator;
+        for (ObjectId id : Lists.reverse(start)) {
+            toVisit.push(new Entry(id, true));
+        }
+    }
+
+    @Override
+    protected ObjectId computeNext() {
+        while (!toVisit.isEmpty()) {
+            final Entry next = toVisit.pop();
+            final ObjectId id = next.id;
+            if (id.isNull() || deduplicator.visit(id)) {
+                continue;
+            }
+            if (next.expand) {
+                RevObject object = database.getIfPresent(id);
+                if (object == null) {
+                    continue;
+                }
+                expand(object);
+            }
+            return id;
+        }
+        return endOfData();
+    }
+
+    /**
+     * Schedules the objects referenced by {@code object} to be visited next, in order
+     */
+    private void expand(RevObject object) {
+        List<Entry> successors = new ArrayList<Entry>();
+        switch (object.getType()) {
+        case COMMIT: {
+            RevCommit commit = (RevCommit) object;
+            successors.add(new Entry(commit.getTreeId(), true));
+            for (ObjectId parentId : commit.getParentIds()) {
+                successors.add(new Entry(parentId, true));
+            }
+            break;
+        }
+        case TAG:
+            successors.add(new Entry(((RevTag) object).getCommitId(), true));
+            break;
+        case TREE: {
+            RevTree tree = (RevTree) object;
+            if (tree.buckets().isPresent()) {
+                for (Bucket bucket : tree.buckets().get().values()) {
+                    successors.add(new Entry(bucket.id(), true));
+                }
+            } else {
+                for (Iterator<Node> children = tree.children(); children.hasNext();) {
+                    Node node = children.next();
+                    if (node.getMetadataId().isPresent()) {
+                        successors.add(new Entry(node.getMetadataId().get(), false));
+                    }
+                    successors.add(new Entry(node.getObjectId(), TYPE.TREE
+                            .equals(node.getType())));
+                }
+            }
+            break;
+        }
+        default:
+            break;
+        }
+        for (Entry successor : Lists.reverse(successors)) {
+            toVisit.push(successor);
+        }
+    }
+
+    /**
+     * An object pending to be visited, and whether it needs to be fetched to find out the objects
+     * it references
+     */
+    private static final class Entry {
+
+        final ObjectId id;
+
+        final boolean expand;
+
+        Entry(ObjectId id, boolean expand) {
+            this.id = id;
+            this.expand = expand;
+        }
+    }
+}
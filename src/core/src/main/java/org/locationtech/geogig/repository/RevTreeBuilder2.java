@@ -25,6 +25,7 @@ import org.locationtech.geogig.api.RevFeatureTypeImpl;
 import org.locationtech.geogig.api.RevObject.TYPE;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.SortedRevTreeBuilder;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.feature.type.Name;
@@ -90,6 +91,11 @@ class RevTreeBuilder2 {
     /**
      * Traverses the nodes in the {@link NodeIndex}, deletes the ones with {@link ObjectId#NULL
      * NULL} ObjectIds, and adds the ones with non "NULL" ids.
+     * <p>
+     * If the original tree is empty or a leaf tree, the index nodes are streamed, in storage order,
+     * through a {@link SortedRevTreeBuilder} that writes each bucket tree exactly once. Otherwise
+     * they're applied {@link RevTreeBuilder#update incrementally}, so that only the buckets the
+     * changed nodes fall into are read and rewritten.
      * 
      * @return the new tree, not saved to the object database. Any bucket tree though is saved when
      *         this method returns.
@@ -100,17 +106,16 @@ class RevTreeBuilder2 {
         }
 
         Stopwatch sw = Stopwatch.createStarted();
-        RevTreeBuilder builder;
+        RevTree namedTree;
         try {
-            builder = new RevTreeBuilder(db, original);
             Iterator<Node> nodes = nodeIndex.nodes();
-            while (nodes.hasNext()) {
-                Node node = nodes.next();
-                if (node.getObjectId().isNull()) {
-                    builder.remove(node.getName());
-                } else {
-                    builder.put(node);
-                }
+            if (original == null || !original.buckets().isPresent()) {
+                namedTree = new SortedRevTreeBuilder(db, original).build(nodes);
+                LOGGER.debug("SortedRevTreeBuilder.build() in {}", sw.stop());
+            } else {
+                RevTreeBuilder.UpdateStats stats = new RevTreeBuilder.UpdateStats();
+                namedTree = RevTreeBuilder.update(db, original, nodes, stats);
+                LOGGER.debug("RevTreeBuilder.update() in {}, {}", sw.stop(), stats);
             }
         } catch (RuntimeException e) {
             e.printStackTrace();
@@ -118,12 +123,7 @@ class RevTreeBuilder2 {
         } finally {
             nodeIndex.close();
         }
-        LOGGER.debug("Index traversed in {}", sw.stop());
-        sw.reset().start();
-
-        RevTree namedTree = builder.build();
         saveExtraFeatureTypes();
-        LOGGER.debug("RevTreeBuilder.build() in {}", sw.stop());
         return namedTree;
     }
 
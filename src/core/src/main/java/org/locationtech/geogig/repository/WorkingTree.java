@@ -32,6 +32,7 @@ import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.DefaultProgressListener;
 import org.locationtech.geogig.api.FeatureBuilder;
 import org.locationtech.geogig.api.Node;
 import org.locationtech.geogig.api.NodeRef;
@@ -61,6 +62,7 @@ import org.locationtech.geogig.api.plumbing.WriteBack;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.api.plumbing.diff.DiffObjectCount;
 import org.locationtech.geogig.di.Singleton;
+import org.locationtech.geogig.storage.BulkLoadSession;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
 import org.locationtech.geogig.storage.StagingDatabase;
@@ -270,36 +272,15 @@ public class WorkingTree {
     public void delete(final Name typeName, final Filter filter,
             final Iterator<Feature> affectedFeatures) throws Exception {
 
-        Optional<NodeRef> typeTreeRef = context.command(FindTreeChild.class).setIndex(true)
-                .setParent(getTree()).setChildPath(typeName.getLocalPart()).call();
-
-        ObjectId parentMetadataId = null;
-        if (typeTreeRef.isPresent()) {
-            parentMetadataId = typeTreeRef.get().getMetadataId();
-        }
-
-        RevTreeBuilder parentTree = context.command(FindOrCreateSubtree.class)
-                .setParent(Suppliers.ofInstance(Optional.of(getTree()))).setIndex(true)
-                .setChildPath(typeName.getLocalPart()).call().builder(indexDatabase);
-
-        String fid;
-        String featurePath;
-
-        while (affectedFeatures.hasNext()) {
-            fid = affectedFeatures.next().getIdentifier().getID();
-            featurePath = NodeRef.appendChild(typeName.getLocalPart(), fid);
-            Optional<Node> ref = findUnstaged(featurePath);
-            if (ref.isPresent()) {
-                parentTree.remove(ref.get().getName());
-            }
-        }
-
-        ObjectId newTree = context.command(WriteBack.class)
-                .setAncestor(getTree().builder(indexDatabase)).setMetadataId(parentMetadataId)
-                .setChildPath(typeName.getLocalPart()).setToIndex(true).setTree(parentTree.build())
-                .call();
-
-        updateWorkHead(newTree);
+        final String treePath = typeName.getLocalPart();
+        Iterator<String> paths = Iterators.transform(affectedFeatures,
+                new Function<Feature, String>() {
+                    @Override
+                    public String apply(Feature feature) {
+                        return NodeRef.appendChild(treePath, feature.getIdentifier().getID());
+                    }
+                });
+        delete(paths);
     }
 
     /**
@@ -323,46 +304,43 @@ public class WorkingTree {
     }
 
     /**
+     * Deletes the features at the given paths from the working tree and updates the WORK_HEAD
+     * ref.
+     * <p>
+     * Like {@link #insert(Function, Iterator, ProgressListener, List, Integer) insert}, deletes
+     * are collected per parent tree and each affected tree is rebuilt only once. Paths whose parent
+     * tree doesn't exist are ignored.
      * 
-     * @param features the features to delete
+     * @param features the paths of the features to delete
      */
     public void delete(Iterator<String> features) {
-        Map<String, RevTreeBuilder> parents = Maps.newHashMap();
-
-        final RevTree currentWorkHead = getTree();
-        while (features.hasNext()) {
-            String featurePath = features.next();
-            // System.err.println("removing " + feature);
-            String parentPath = NodeRef.parentPath(featurePath);
-            RevTreeBuilder parentTree;
-            if (parents.containsKey(parentPath)) {
-                parentTree = parents.get(parentPath);
-            } else {
-                parentTree = context.command(FindOrCreateSubtree.class).setIndex(true)
-                        .setParent(Suppliers.ofInstance(Optional.of(currentWorkHead)))
-                        .setChildPath(parentPath).call().builder(indexDatabase);
-                parents.put(parentPath, parentTree);
+        delete(features, new DefaultProgressListener());
+    }
+
+    /**
+     * Deletes the features at the given paths from the working tree and updates the WORK_HEAD
+     * ref.
+     * 
+     * @param features the paths of the features to delete
+     * @param listener a progress listener
+     * @see #delete(Iterator)
+     */
+    public void delete(Iterator<String> features, final ProgressListener listener) {
+        final ExecutorService treeBuildingService = newTreeBuildingService();
+        try {
+            final WorkingTreeInsertHelper helper = new WorkingTreeInsertHelper(indexDatabase,
+                    context, getTree(), null, treeBuildingService);
+            listener.started();
+            while (features.hasNext() && !listener.isCanceled()) {
+                helper.remove(features.next());
             }
-            String featureName = NodeRef.nodeFromPath(featurePath);
-            parentTree.remove(featureName);
-        }
-        ObjectId newTree = null;
-        for (Map.Entry<String, RevTreeBuilder> entry : parents.entrySet()) {
-            String path = entry.getKey();
-
-            RevTreeBuilder parentTree = entry.getValue();
-            RevTree newTypeTree = parentTree.build();
-
-            ObjectId metadataId = null;
-            Optional<NodeRef> currentTreeRef = context.command(FindTreeChild.class).setIndex(true)
-                    .setParent(currentWorkHead).setChildPath(path).call();
-            if (currentTreeRef.isPresent()) {
-                metadataId = currentTreeRef.get().getMetadataId();
+            if (listener.isCanceled()) {
+                return;
             }
-            newTree = context.command(WriteBack.class).setAncestor(getTreeSupplier())
-                    .setChildPath(path).setToIndex(true).setTree(newTypeTree)
-                    .setMetadataId(metadataId).call();
-            updateWorkHead(newTree);
+            buildAndUpdateTrees(helper, listener);
+            listener.complete();
+        } finally {
+            treeBuildingService.shutdownNow();
         }
     }
 
@@ -483,11 +461,12 @@ public class WorkingTree {
         RevTreeBuilder2 builder = new RevTreeBuilder2(indexDatabase, origTree,
                 treeRef.getMetadataId(), platform, executorService);
 
-        List<Future<Integer>> insertBlobsFuture = insertBlobs(source, query, executorService,
-                listener, collectionSize, nFetchThreads, builder);
-
+        final BulkLoadSession bulkLoad = indexDatabase.startBulkLoad();
         RevTree newFeatureTree;
         try {
+            List<Future<Integer>> insertBlobsFuture = insertBlobs(source, query,
+                    executorService, listener, collectionSize, nFetchThreads, builder);
+
             long insertedCount = 0;
             for (Future<Integer> f : insertBlobsFuture) {
                 insertedCount += f.get().longValue();
@@ -508,6 +487,7 @@ public class WorkingTree {
             throw Throwables.propagate(Throwables.getRootCause(e));
         } finally {
             executorService.shutdown();
+            bulkLoad.close();
         }
         ObjectId newTree = context.command(WriteBack.class).setAncestor(getTreeSupplier())
                 .setChildPath(treePath).setMetadataId(treeRef.getMetadataId()).setToIndex(true)
@@ -683,9 +663,7 @@ public class WorkingTree {
 
         checkArgument(collectionSize == null || collectionSize.intValue() > -1);
 
-        final int nTreeThreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
-        final ExecutorService treeBuildingService = Executors.newFixedThreadPool(nTreeThreads,
-                new ThreadFactoryBuilder().setNameFormat("WorkingTree-tree-builder-%d").build());
+        final ExecutorService treeBuildingService = newTreeBuildingService();
 
         final WorkingTreeInsertHelper insertHelper;
 
@@ -733,6 +711,7 @@ public class WorkingTree {
                     }
 
                 });
+        final BulkLoadSession bulkLoad = indexDatabase.startBulkLoad();
         try {
             listener.started();
 
@@ -740,31 +719,47 @@ public class WorkingTree {
             if (listener.isCanceled()) {
                 return;
             }
-            listener.setDescription("Building trees for "
-                    + new TreeSet<String>(insertHelper.getTreeNames()));
-            Stopwatch sw = Stopwatch.createStarted();
+            buildAndUpdateTrees(insertHelper, listener);
+            listener.complete();
+        } finally {
+            treeBuildingService.shutdownNow();
+            bulkLoad.close();
+        }
+    }
 
-            Map<NodeRef, RevTree> trees = insertHelper.buildTrees();
+    private ExecutorService newTreeBuildingService() {
+        final int nTreeThreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        return Executors.newFixedThreadPool(nTreeThreads,
+                new ThreadFactoryBuilder().setNameFormat("WorkingTree-tree-builder-%d").build());
+    }
 
-            listener.setDescription(String.format("Trees built in %s", sw.stop()));
+    /**
+     * Builds the trees changed through the {@code helper} and writes them back to the working
+     * tree
+     */
+    private void buildAndUpdateTrees(final WorkingTreeInsertHelper helper,
+            final ProgressListener listener) {
+        listener.setDescription("Building trees for "
+                + new TreeSet<String>(helper.getTreeNames()));
+        Stopwatch sw = Stopwatch.createStarted();
 
-            for (Map.Entry<NodeRef, RevTree> treeEntry : trees.entrySet()) {
-                if (!listener.isCanceled()) {
-                    NodeRef treeRef = treeEntry.getKey();
-                    RevTree newFeatureTree = treeEntry.getValue();
+        Map<NodeRef, RevTree> trees = helper.buildTrees();
 
-                    String treePath = treeRef.path();
+        listener.setDescription(String.format("Trees built in %s", sw.stop()));
 
-                    ObjectId newRootTree = context.command(WriteBack.class)
-                            .setAncestor(getTreeSupplier()).setChildPath(treePath)
-                            .setMetadataId(treeRef.getMetadataId()).setToIndex(true)
-                            .setTree(newFeatureTree).call();
-                    updateWorkHead(newRootTree);
-                }
+        for (Map.Entry<NodeRef, RevTree> treeEntry : trees.entrySet()) {
+            if (!listener.isCanceled()) {
+                NodeRef treeRef = treeEntry.getKey();
+                RevTree newFeatureTree = treeEntry.getValue();
+
+                String treePath = treeRef.path();
+
+                ObjectId newRootTree = context.command(WriteBack.class)
+                        .setAncestor(getTreeSupplier()).setChildPath(treePath)
+                        .setMetadataId(treeRef.getMetadataId()).setToIndex(true)
+                        .setTree(newFeatureTree).call();
+                updateWorkHead(newRootTree);
             }
-            listener.complete();
-        } finally {
-            treeBuildingService.shutdownNow();
         }
     }
 
@@ -9,13 +9,18 @@
  */
 package org.locationtech.geogig.repository;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 
+import javax.annotation.Nullable;
+
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.Node;
 import org.locationtech.geogig.api.NodeRef;
@@ -26,7 +31,6 @@ import org.locationtech.geogig.api.RevFeatureTypeImpl;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevObject.TYPE;
 import org.locationtech.geogig.api.RevTree;
-import org.locationtech.geogig.api.plumbing.FindOrCreateSubtree;
 import org.locationtech.geogig.api.plumbing.FindTreeChild;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.opengis.feature.Feature;
@@ -38,6 +42,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.vividsolutions.jts.geom.Envelope;
 
 class WorkingTreeInsertHelper {
@@ -52,10 +57,21 @@ class WorkingTreeInsertHelper {
 
     private final Map<String, RevTreeBuilder2> treeBuilders = Maps.newHashMap();
 
+    /**
+     * Paths of the trees features were {@link #remove(String) removed} from but don't exist
+     */
+    private final Set<String> missingTrees = Sets.newHashSet();
+
     private final ExecutorService executorService;
 
+    /**
+     * @param treePathResolver the function that determines the tree path of the features
+     *        {@link #put put} or removed as {@link FeatureToDelete}, may be {@code null} if the
+     *        features are only {@link #remove(String) removed by path}
+     */
     public WorkingTreeInsertHelper(ObjectDatabase db, Context context, RevTree workHead,
-            final Function<Feature, String> treePathResolver, final ExecutorService executorService) {
+            @Nullable final Function<Feature, String> treePathResolver,
+            final ExecutorService executorService) {
 
         this.indexDatabase = db;
         this.context = context;
@@ -87,6 +103,33 @@ class WorkingTreeInsertHelper {
         treeBuilder.removeFeature(fid);
     }
 
+    /**
+     * Marks the feature at the given path to be removed. Nothing is done if the feature's parent
+     * tree doesn't exist.
+     */
+    public void remove(final String featurePath) {
+        final String treePath = NodeRef.parentPath(featurePath);
+        RevTreeBuilder2 builder = treeBuilders.get(treePath);
+        if (builder == null) {
+            if (missingTrees.contains(treePath)) {
+                return;
+            }
+            Optional<NodeRef> treeRef = findTree(treePath);
+            if (!treeRef.isPresent()) {
+                missingTrees.add(treePath);
+                return;
+            }
+            builder = createBuilder(treePath, null);
+            treeBuilders.put(treePath, builder);
+        }
+        builder.removeFeature(NodeRef.nodeFromPath(featurePath));
+    }
+
+    private Optional<NodeRef> findTree(final String treePath) {
+        return context.command(FindTreeChild.class).setChildPath(treePath).setIndex(true)
+                .setParent(workHead).setParentPath(NodeRef.ROOT).call();
+    }
+
     private RevTreeBuilder2 getTreeBuilder(final Feature feature) {
 
         final String treePath = treePathResolver.apply(feature);
@@ -101,8 +144,13 @@ class WorkingTreeInsertHelper {
 
     private NodeRef findOrCreateTree(final String treePath, final FeatureType type) {
 
-        RevTree tree = context.command(FindOrCreateSubtree.class).setChildPath(treePath)
-                .setIndex(true).setParent(workHead).setParentPath(NodeRef.ROOT).call();
+        final Optional<NodeRef> treeRef = findTree(treePath);
+        RevTree tree = RevTree.EMPTY;
+        if (treeRef.isPresent()) {
+            checkArgument(TYPE.TREE.equals(treeRef.get().getType()),
+                    "Object exists at %s but is not a tree", treePath);
+            tree = indexDatabase.getTree(treeRef.get().objectId());
+        }
 
         ObjectId metadataId = ObjectId.NULL;
         if (type != null) {
@@ -111,6 +159,9 @@ class WorkingTreeInsertHelper {
                 indexDatabase.put(revFeatureType);
             }
             metadataId = revFeatureType.getId();
+        } else if (treeRef.isPresent()) {
+            // removing features, keep the tree's current default feature type
+            metadataId = treeRef.get().getMetadataId();
         }
         Envelope bounds = SpatialOps.boundsOf(tree);
         Node node = Node.create(NodeRef.nodeFromPath(treePath), tree.getId(), metadataId,
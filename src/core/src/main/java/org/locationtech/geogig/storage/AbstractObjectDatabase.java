@@ -29,6 +29,8 @@ import org.locationtech.geogig.api.RevTree;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.ning.compress.lzf.LZFInputStream;
 import com.ning.compress.lzf.LZFOutputStream;
@@ -282,4 +284,89 @@ public abstract class AbstractObjectDatabase implements ObjectDatabase {
     public long deleteAll(Iterator<ObjectId> ids) {
         return deleteAll(ids, BulkOpListener.NOOP_LISTENER);
     }
+
+    /**
+     * This default implementation returns {@link BulkLoadSession#NOOP}; subclasses may override if
+     * they can speed up bulk inserts.
+     */
+    @Override
+    public BulkLoadSession startBulkLoad() {
+        return BulkLoadSession.NOOP;
+    }
+
+    /**
+     * This default implementation does nothing; subclasses may override if their storage layout
+     * depends on the insertion order, or has space to reclaim after objects are deleted.
+     */
+    @Override
+    public void repack(Iterator<ObjectId> liveIds) {
+        // nothing to do
+    }
+
+    /**
+     * This default implementation calls {@link #getRawInternal(ObjectId, boolean)} for each
+     * object; subclasses may override if appropriate.
+     */
+    @Override
+    public Iterator<RawObject> getRaw(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        return new AbstractIterator<RawObject>() {
+            final Iterator<ObjectId> iterator = ids.iterator();
+
+            @Override
+            protected RawObject computeNext() {
+                while (iterator.hasNext()) {
+                    final ObjectId id = iterator.next();
+                    final InputStream in = getRawInternal(id, false);
+                    if (in == null) {
+                        listener.notFound(id);
+                        continue;
+                    }
+                    final byte[] data;
+                    try {
+                        data = ByteStreams.toByteArray(in);
+                    } catch (IOException e) {
+                        throw Throwables.propagate(e);
+                    } finally {
+                        Closeables.closeQuietly(in);
+                    }
+                    listener.found(id, data.length);
+                    return new RawObject(id, data, serializationFactory);
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    /**
+     * This default implementation calls {@link #putInternal(ObjectId, byte[])} for each object;
+     * subclasses may override if appropriate.
+     */
+    @Override
+    public void putRaw(final Iterator<RawObject> objects, final BulkOpListener listener) {
+        while (objects.hasNext()) {
+            RawObject object = objects.next();
+            final byte[] rawData = toStorageFormat(object);
+            final ObjectId id = object.getId();
+            final boolean added = putInternal(id, rawData);
+            if (added) {
+                listener.inserted(id, rawData.length);
+            } else {
+                listener.found(id, null);
+            }
+        }
+    }
+
+    /**
+     * @return the compressed serialized form of the object as to be stored by this database,
+     *         which is {@link RawObject#getData() object's data} itself if it is encoded in this
+     *         database's format, or the re-encoded object otherwise
+     */
+    protected byte[] toStorageFormat(RawObject object) {
+        if (object.isFormat(serializationFactory)) {
+            return object.getData();
+        }
+        ByteArrayOutputStream rawOut = new ByteArrayOutputStream();
+        writeObject(object.parse(), rawOut);
+        return rawOut.toByteArray();
+    }
 }
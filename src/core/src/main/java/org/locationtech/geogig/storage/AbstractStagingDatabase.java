@@ -24,17 +24,34 @@ import org.locationtech.geogig.api.RevFeatureType;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
 /**
  * A base class for {@link StagingDatabase}s that forward all {@link ObjectDatabase} change methods
  * to the corresponding "staging" object database, and delegates all query methods to both databases
  * as appropriate.
+ * <p>
+ * If the {@link #WRITE_THROUGH_CONFIG_KEY} config key is set to {@code true}, inserts are forwarded
+ * to the repository database instead, so that committing doesn't need to re-read and re-write the
+ * staged objects. Deletes are still only forwarded to the staging object database, as the objects
+ * in the repository database may be referenced by commits; the ones that end up unreachable are
+ * left for garbage collection.
  */
 public abstract class AbstractStagingDatabase implements StagingDatabase {
 
+    /**
+     * Config key to write staged objects to the repository database, read when the database is
+     * opened
+     */
+    public static final String WRITE_THROUGH_CONFIG_KEY = "staging.writethrough";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractStagingDatabase.class);
+
     protected ObjectDatabase repositoryDb;
 
     protected volatile ObjectDatabase stagingDb;
@@ -43,6 +60,11 @@ public abstract class AbstractStagingDatabase implements StagingDatabase {
 
     private Supplier<? extends ObjectDatabase> stagingDbSupplier;
 
+    @Nullable
+    private final ConfigDatabase configDb;
+
+    private volatile boolean writeThrough;
+
     /**
      * @param repositoryDb the repository reference database, used to get delegate read operations
      *        to for objects not found here
@@ -50,8 +72,21 @@ public abstract class AbstractStagingDatabase implements StagingDatabase {
     @Inject
     public AbstractStagingDatabase(final Supplier<? extends ObjectDatabase> repositoryDb,
             final Supplier<? extends ObjectDatabase> stagingDb) {
+        this(repositoryDb, stagingDb, null);
+    }
+
+    /**
+     * @param repositoryDb the repository reference database, used to get delegate read operations
+     *        to for objects not found here
+     * @param configDb the config database to read the {@link #WRITE_THROUGH_CONFIG_KEY} from, if
+     *        {@code null} objects are always written to the staging object database
+     */
+    public AbstractStagingDatabase(final Supplier<? extends ObjectDatabase> repositoryDb,
+            final Supplier<? extends ObjectDatabase> stagingDb,
+            @Nullable final ConfigDatabase configDb) {
         this.repositoryDbSupplier = repositoryDb;
         this.stagingDbSupplier = stagingDb;
+        this.configDb = configDb;
     }
 
     // /////////////////////////////////////////
@@ -67,6 +102,44 @@ public abstract class AbstractStagingDatabase implements StagingDatabase {
     @Override
     public void open() {
         getStagingDb().open();
+        writeThrough = configDb != null
+                && configDb.get(WRITE_THROUGH_CONFIG_KEY, Boolean.class).or(Boolean.FALSE)
+                        .booleanValue();
+        if (writeThrough) {
+            moveStagedObjects();
+        }
+    }
+
+    /**
+     * Moves the objects staged while write through was disabled to the repository database, as
+     * committing won't move them anymore
+     */
+    private void moveStagedObjects() {
+        // collected first, as not all backends allow deleting while listing the stored ids
+        List<ObjectId> staged = Lists.newArrayList(stagingDb.storedIds());
+        if (staged.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Moving {} staged objects to the repository database", staged.size());
+        repositoryDb.putRaw(stagingDb.getRaw(staged, BulkOpListener.NOOP_LISTENER),
+                BulkOpListener.NOOP_LISTENER);
+        stagingDb.deleteAll(staged.iterator());
+    }
+
+    /**
+     * @return {@code true} if the {@link #WRITE_THROUGH_CONFIG_KEY} was set when the database was
+     *         opened
+     */
+    @Override
+    public boolean isWriteThrough() {
+        return writeThrough;
+    }
+
+    /**
+     * @return the database inserts are forwarded to
+     */
+    private ObjectDatabase target() {
+        return writeThrough ? repositoryDb : stagingDb;
     }
 
     @Override
@@ -110,7 +183,7 @@ public abstract class AbstractStagingDatabase implements StagingDatabase {
         // if (repositoryDb.exists(object.getId())) {
         // return false;
         // }
-        return stagingDb.put(object);
+        return target().put(object);
     }
 
     @Override
@@ -125,12 +198,41 @@ public abstract class AbstractStagingDatabase implements StagingDatabase {
 
     @Override
     public void putAll(Iterator<? extends RevObject> objects) {
-        stagingDb.putAll(objects);
+        target().putAll(objects);
     }
 
     @Override
     public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
-        stagingDb.putAll(objects, listener);
+        target().putAll(objects, listener);
+    }
+
+    @Override
+    public Iterator<RawObject> getRaw(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        return StagingDbCompositionHelper.getRaw(repositoryDb, stagingDb, ids, listener);
+    }
+
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        target().putRaw(objects, listener);
+    }
+
+    @Override
+    public BulkLoadSession startBulkLoad() {
+        return target().startBulkLoad();
+    }
+
+    /**
+     * @return the ids of the objects in the staging database only, not the ones in the repository
+     *         database, nor the ones written through to it
+     */
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        return stagingDb.storedIds();
+    }
+
+    @Override
+    public void repack(Iterator<ObjectId> liveIds) {
+        stagingDb.repack(liveIds);
     }
 
     @Override
@@ -197,7 +299,7 @@ public abstract class AbstractStagingDatabase implements StagingDatabase {
 
     @Override
     public ObjectInserter newObjectInserter() {
-        return stagingDb.newObjectInserter();
+        return target().newObjectInserter();
     }
 
     @Override
@@ -0,0 +1,55 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import java.io.Closeable;
+
+/**
+ * A bulk load session on an {@link ObjectDatabase}, as returned by
+ * {@link ObjectDatabase#startBulkLoad()}.
+ * <p>
+ * While at least one session is open, the database may trade durability for insert throughput on
+ * {@link ObjectDatabase#putAll(java.util.Iterator, BulkOpListener) putAll} and
+ * {@link ObjectDatabase#putRaw(java.util.Iterator, BulkOpListener) putRaw}: inserted objects are
+ * readable right away, but are only guaranteed to be durable once the last open session is
+ * {@link #close() closed}. Sessions may be nested, and shall be closed in a {@code finally} block:
+ *
+ * <pre>
+ * <code>
+ * BulkLoadSession session = objectDatabase.startBulkLoad();
+ * try {
+ *     objectDatabase.putAll(objects);
+ * } finally {
+ *     session.close();
+ * }
+ * </code>
+ * </pre>
+ */
+public interface BulkLoadSession extends Closeable {
+
+    /**
+     * A session for databases that don't make any difference between bulk and regular inserts
+     */
+    public static final BulkLoadSession NOOP = new BulkLoadSession() {
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    };
+
+    /**
+     * Ends the session. If it was the last open session on the database, all the objects inserted
+     * since the first one started are durable once this method returns.
+     * <p>
+     * Calling this method more than once has no effect.
+     */
+    @Override
+    public void close();
+}
@@ -158,6 +158,31 @@ public class ForwardingObjectDatabase implements ObjectDatabase {
         return subject.get().deleteAll(ids, listener);
     }
 
+    @Override
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+        return subject.get().getRaw(ids, listener);
+    }
+
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        subject.get().putRaw(objects, listener);
+    }
+
+    @Override
+    public BulkLoadSession startBulkLoad() {
+        return subject.get().startBulkLoad();
+    }
+
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        return subject.get().storedIds();
+    }
+
+    @Override
+    public void repack(Iterator<ObjectId> liveIds) {
+        subject.get().repack(liveIds);
+    }
+
     @Override
     public String toString() {
         return String.format("%s[%s]", getClass().getSimpleName(), subject);
@@ -52,4 +52,9 @@ public class ForwardingStagingDatabase extends ForwardingObjectDatabase implemen
         return ((StagingDatabase) subject.get()).hasConflicts(namespace);
     }
 
+    @Override
+    public boolean isWriteThrough() {
+        return ((StagingDatabase) subject.get()).isWriteThrough();
+    }
+
 }
@@ -220,4 +220,70 @@ public interface ObjectDatabase extends Closeable {
      * @return the number of objects actually deleted
      */
     public long deleteAll(Iterator<ObjectId> ids, BulkOpListener listener);
+
+    /**
+     * Query method to retrieve the serialized form of a collection of objects, without parsing
+     * them.
+     * <p>
+     * Each {@link RawObject} returned holds the compressed serialized object as stored by this
+     * database, and the serialization format it's encoded in, so that it can be transferred to
+     * another database through {@link #putRaw(Iterator, BulkOpListener)} without being decoded and
+     * re-encoded if both databases share the same format.
+     * <p>
+     * The listener is notified of found and not found objects as in
+     * {@link #getAll(Iterable, BulkOpListener)}, and the returned iterator may not preserve the
+     * order of the argument list of ids.
+     *
+     * @param ids the identifiers of the objects to retrieve
+     * @param listener a listener that gets notified of found and not found objects
+     * @return an iterator with the serialized objects <b>found</b> on the database
+     */
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, BulkOpListener listener);
+
+    /**
+     * Requests to insert all serialized objects into the object database, with the same semantics
+     * than {@link #putAll(Iterator, BulkOpListener)}.
+     * <p>
+     * Objects whose {@link RawObject#getFormat() format} matches the one of this database are
+     * stored as given, others are decoded and re-encoded in this database's format.
+     *
+     * @param objects the serialized objects to request for insertion into the object database
+     * @param listener a listener to get notifications of actually inserted objects
+     */
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener);
+
+    /**
+     * Starts a bulk load session, hinting the database that a large number of objects is about to
+     * be inserted through {@link #putAll(Iterator, BulkOpListener)} or
+     * {@link #putRaw(Iterator, BulkOpListener)}, possibly from several threads.
+     * <p>
+     * Until the session is closed the database may defer making inserted objects durable, see
+     * {@link BulkLoadSession} for the contract and usage pattern.
+     * 
+     * @return the session to close once the bulk load is finished
+     */
+    public BulkLoadSession startBulkLoad();
+
+    /**
+     * Lists the ids of all the objects in the database, in no particular order.
+     * <p>
+     * The iterator is lazy where the backend allows it, and is not required to reflect objects
+     * inserted or deleted while it's being consumed.
+     * 
+     * @return the ids of all the stored objects
+     */
+    public Iterator<ObjectId> storedIds();
+
+    /**
+     * Hints the database to rewrite the given live objects, in the given order, so that objects
+     * that are read together are stored close to each other, and to reclaim the space of the
+     * objects deleted up to now.
+     * <p>
+     * Only meaningful for backends that lay objects out in insertion order, like pack or log
+     * structured storage; others may do nothing, or just compact their storage.
+     * 
+     * @param liveIds the ids of all the objects that are reachable, in reachability order; ids of
+     *        objects not in the database are ignored
+     */
+    public void repack(Iterator<ObjectId> liveIds);
 }
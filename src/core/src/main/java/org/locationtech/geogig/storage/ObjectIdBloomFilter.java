@@ -0,0 +1,413 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+import com.google.common.io.Closeables;
+
+/**
+ * A Bloom filter of the ids of the objects stored in an object database, used to answer
+ * {@link ObjectDatabase#exists(ObjectId) exists} and look up queries for objects that are
+ * definitely not stored without hitting the storage backend.
+ * <p>
+ * The filter is maintained incrementally by the object database, which shall {@link #put(ObjectId)
+ * add} the ids of the objects it stores <em>before</em> storing them, and report the ones it
+ * {@link #deleted(long) deletes}, which can't be removed from a Bloom filter and hence only
+ * increase the false positive rate.
+ * <p>
+ * The filter is saved to a file when the database is closed, and the file is deleted when it's
+ * {@link #open(File, Supplier) open}ed again, so that a database that's not closed cleanly has no
+ * filter file and it's rebuilt out of the stored ids the next time. It is also rebuilt when it got
+ * saturated, that is, when more ids than it was sized for were added, or when too many objects were
+ * deleted.
+ * <p>
+ * Note the filter only knows about the objects added through the database instance that owns it,
+ * so it can only be used by databases that are not written to by other processes at the same time.
+ */
+public class ObjectIdBloomFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectIdBloomFilter.class);
+
+    private static final int MAGIC = 0x47474246;// GGBF
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The false positive probability the filter is sized for
+     */
+    public static final double DEFAULT_FPP = 0.01;
+
+    /**
+     * The minimum number of ids a filter is sized for
+     */
+    public static final int MIN_EXPECTED_INSERTIONS = 100 * 1000;
+
+    private static enum ObjectIdFunnel implements Funnel<ObjectId> {
+        INSTANCE;
+
+        @Override
+        public void funnel(ObjectId id, PrimitiveSink into) {
+            into.putBytes(id.getRawValue());
+        }
+    }
+
+    private final File file;
+
+    private final int expectedInsertions;
+
+    private final double fpp;
+
+    private final BloomFilter<ObjectId> filter;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong insertions;
+
+    private final AtomicLong deletions;
+
+    private final AtomicLong lookups = new AtomicLong();
+
+    private final AtomicLong negatives = new AtomicLong();
+
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    private ObjectIdBloomFilter(File file, BloomFilter<ObjectId> filter, int expectedInsertions,
+            double fpp, long insertions, long deletions) {
+        this.file = file;
+        this.filter = filter;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.insertions = new AtomicLong(insertions);
+        this.deletions = new AtomicLong(deletions);
+    }
+
+    /**
+     * Loads the filter saved to {@code file}, or builds a new one out of the ids in
+     * {@code storedIds} if there's no such file, it can't be read, or it's saturated.
+     *
+     * @param file where the filter is saved by {@link #save()}
+     * @param storedIds provides the ids of all the objects in the database, called twice if the
+     *        filter needs to be rebuilt: once to count them and once to add them to the filter
+     */
+    public static ObjectIdBloomFilter open(final File file,
+            final Supplier<Iterator<ObjectId>> storedIds) {
+        checkNotNull(file);
+        checkNotNull(storedIds);
+        ObjectIdBloomFilter filter = null;
+        if (file.exists()) {
+            try {
+                filter = load(file);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read object id filter {}, rebuilding it", file, e);
+            }
+            // a filter file only exists while the database is not open
+            if (!file.delete()) {
+                LOGGER.warn("Unable to delete object id filter {}", file);
+            }
+            if (filter != null && filter.isSaturated()) {
+                LOGGER.debug("Object id filter {} is saturated, rebuilding it", file);
+                filter = null;
+            }
+        }
+        if (filter == null) {
+            filter = rebuild(file, storedIds);
+        }
+        return filter;
+    }
+
+    private static ObjectIdBloomFilter load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unrecognized object id filter format: " + file);
+            }
+            final int expectedInsertions = in.readInt();
+            final double fpp = in.readDouble();
+            final long insertions = in.readLong();
+            final long deletions = in.readLong();
+            BloomFilter<ObjectId> bloomFilter = BloomFilter.readFrom(in, ObjectIdFunnel.INSTANCE);
+            return new ObjectIdBloomFilter(file, bloomFilter, expectedInsertions, fpp,
+                    insertions, deletions);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    private static ObjectIdBloomFilter rebuild(File file, Supplier<Iterator<ObjectId>> storedIds) {
+        Stopwatch sw = Stopwatch.createStarted();
+        long count = 0;
+        for (Iterator<ObjectId> ids = storedIds.get(); ids.hasNext(); ids.next()) {
+            count++;
+        }
+        final int expectedInsertions = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(MIN_EXPECTED_INSERTIONS, 2 * count));
+        BloomFilter<ObjectId> bloomFilter = BloomFilter.create(ObjectIdFunnel.INSTANCE,
+                expectedInsertions, DEFAULT_FPP);
+        long insertions = 0;
+        for (Iterator<ObjectId> ids = storedIds.get(); ids.hasNext();) {
+            bloomFilter.put(ids.next());
+            insertions++;
+        }
+        LOGGER.debug("Built object id filter {} with {} ids in {}", file, insertions, sw.stop());
+        return new ObjectIdBloomFilter(file, bloomFilter, expectedInsertions, DEFAULT_FPP,
+                insertions, 0L);
+    }
+
+    /**
+     * Saves the filter to its file, to be loaded by {@link #open(File, Supplier)} the next time
+     * the database is opened. Shall be called once the database is closed, and no more ids are
+     * being added.
+     */
+    public void save() {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(expectedInsertions);
+                out.writeDouble(fpp);
+                out.writeLong(insertions.get());
+                out.writeLong(deletions.get());
+                filter.writeTo(out);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw Throwables.propagate(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        LOGGER.debug("Saved object id filter {}: {}", file, stats());
+    }
+
+    /**
+     * @return {@code false} if the object is definitely not stored, {@code true} if it might be
+     */
+    public boolean mightContain(final ObjectId id) {
+        lookups.incrementAndGet();
+        final boolean mightContain;
+        lock.readLock().lock();
+        try {
+            mightContain = filter.mightContain(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!mightContain) {
+            negatives.incrementAndGet();
+        }
+        return mightContain;
+    }
+
+    /**
+     * Adds an id to the filter, shall be called before the object is stored
+     */
+    public void put(final ObjectId id) {
+        final boolean changed;
+        lock.writeLock().lock();
+        try {
+            changed = filter.put(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (changed && insertions.incrementAndGet() == expectedInsertions + 1) {
+            LOGGER.debug("Object id filter {} got saturated, it'll be rebuilt on next open", file);
+        }
+    }
+
+    /**
+     * Records that {@code count} objects were deleted from the database
+     */
+    public void deleted(final long count) {
+        checkArgument(count >= 0);
+        deletions.addAndGet(count);
+    }
+
+    /**
+     * Records that the object database looked up an object for which
+     * {@link #mightContain(ObjectId)} returned {@code true}, but it didn't exist
+     */
+    public void falsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    /**
+     * @return whether the filter has more ids than it was sized for, or so many deleted ones that
+     *         it needs to be rebuilt
+     */
+    public boolean isSaturated() {
+        return insertions.get() > expectedInsertions || deletions.get() > insertions.get() / 2;
+    }
+
+    public Stats stats() {
+        double expectedFpp;
+        lock.readLock().lock();
+        try {
+            expectedFpp = filter.expectedFpp();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Stats(expectedInsertions, insertions.get(), deletions.get(), expectedFpp,
+                memoryBytes(expectedInsertions, fpp), lookups.get(), negatives.get(),
+                falsePositives.get());
+    }
+
+    /**
+     * @return the size in bytes of the bit array of a Bloom filter sized for {@code n} insertions
+     *         and a false positive probability of {@code p}
+     */
+    static long memoryBytes(long n, double p) {
+        long bits = (long) (-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        // the bit array is stored as a long[]
+        return 8 * ((bits + 63) / 64);
+    }
+
+    /**
+     * Statistics of an {@link ObjectIdBloomFilter}
+     */
+    public static class Stats {
+
+        private final int expectedInsertions;
+
+        private final long insertions;
+
+        private final long deletions;
+
+        private final double expectedFpp;
+
+        private final long memoryBytes;
+
+        private final long lookups;
+
+        private final long negatives;
+
+        private final long falsePositives;
+
+        Stats(int expectedInsertions, long insertions, long deletions, double expectedFpp,
+                long memoryBytes, long lookups, long negatives, long falsePositives) {
+            this.expectedInsertions = expectedInsertions;
+            this.insertions = insertions;
+            this.deletions = deletions;
+            this.expectedFpp = expectedFpp;
+            this.memoryBytes = memoryBytes;
+            this.lookups = lookups;
+            this.negatives = negatives;
+            this.falsePositives = falsePositives;
+        }
+
+        /**
+         * @return the number of ids the filter was sized for
+         */
+        public int expectedInsertions() {
+            return expectedInsertions;
+        }
+
+        /**
+         * @return the number of ids added to the filter
+         */
+        public long insertions() {
+            return insertions;
+        }
+
+        /**
+         * @return the number of objects deleted from the database since the filter was built
+         */
+        public long deletions() {
+            return deletions;
+        }
+
+        /**
+         * @return the probability of {@link ObjectIdBloomFilter#mightContain mightContain}
+         *         returning {@code true} for an object that's not stored, as estimated out of the
+         *         number of bits set
+         */
+        public double expectedFpp() {
+            return expectedFpp;
+        }
+
+        /**
+         * @return the fraction of the look ups of objects that are not stored that the filter
+         *         couldn't short-circuit, as observed since the database was opened
+         */
+        public double observedFpp() {
+            long misses = negatives + falsePositives;
+            return misses == 0 ? 0D : (double) falsePositives / misses;
+        }
+
+        /**
+         * @return the approximate size in bytes of the filter in memory
+         */
+        public long memoryBytes() {
+            return memoryBytes;
+        }
+
+        /**
+         * @return the number of look ups since the database was opened
+         */
+        public long lookups() {
+            return lookups;
+        }
+
+        /**
+         * @return the number of look ups the filter answered as definitely not stored
+         */
+        public long negatives() {
+            return negatives;
+        }
+
+        /**
+         * @return the number of look ups the filter answered as maybe stored, that were not
+         */
+        public long falsePositives() {
+            return falsePositives;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ObjectIdBloomFilter.Stats[ids: %,d/%,d, deleted: %,d, "
+                    + "memory: %,d bytes, expected fpp: %.4f, observed fpp: %.4f, "
+                    + "lookups: %,d, negatives: %,d, false positives: %,d]", insertions,
+                    expectedInsertions, deletions, memoryBytes, expectedFpp, observedFpp(),
+                    lookups, negatives, falsePositives);
+        }
+    }
+}
@@ -9,6 +9,7 @@
  */
 package org.locationtech.geogig.storage;
 
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.Map;
 
@@ -70,4 +71,13 @@ public interface ObjectSerializingFactory {
     public <T extends RevObject> ObjectReader<T> createObjectReader(TYPE type);
 
     public ObjectReader<RevObject> createObjectReader();
+
+    /**
+     * Reads the type of the serialized object out of its header, without parsing the rest of it.
+     *
+     * @param rawData the serialized object, positioned at its beginning
+     * @return the type of the object
+     * @throws IllegalArgumentException if the header can't be recognized
+     */
+    public TYPE readType(InputStream rawData) throws IllegalArgumentException;
 }
@@ -0,0 +1,199 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.ning.compress.lzf.LZFInputStream;
+import com.ning.compress.lzf.LZFOutputStream;
+
+/**
+ * The serialized form of a {@link RevObject} as exchanged through
+ * {@link ObjectDatabase#getRaw(Iterable, BulkOpListener)} and
+ * {@link ObjectDatabase#putRaw(java.util.Iterator, BulkOpListener)}: the object id, the LZF
+ * compressed bytes of the object, and the {@link ObjectSerializingFactory serialization format}
+ * those bytes are encoded in.
+ * <p>
+ * An object database whose storage format matches {@link #getFormat()} can store {@link #getData()}
+ * as is, without parsing and re-encoding the object.
+ */
+public final class RawObject {
+
+    private final ObjectId id;
+
+    private final byte[] data;
+
+    private final ObjectSerializingFactory format;
+
+    @Nullable
+    private RevObject parsed;
+
+    @Nullable
+    private TYPE type;
+
+    /**
+     * @param id the object id
+     * @param data the LZF compressed serialized form of the object
+     * @param format the serialization format {@code data} is encoded in
+     */
+    public RawObject(final ObjectId id, final byte[] data, final ObjectSerializingFactory format) {
+        checkNotNull(id);
+        checkNotNull(data);
+        checkNotNull(format);
+        this.id = id;
+        this.data = data;
+        this.format = format;
+    }
+
+    /**
+     * Creates a raw object for which the caller already holds the parsed object, so that
+     * {@link #parse()} and {@link #getType()} don't need to decode {@code data} again.
+     */
+    public static RawObject create(final RevObject parsed, final byte[] data,
+            final ObjectSerializingFactory format) {
+        RawObject raw = new RawObject(parsed.getId(), data, format);
+        raw.parsed = parsed;
+        raw.type = parsed.getType();
+        return raw;
+    }
+
+    /**
+     * Serializes and compresses {@code object} with the given format.
+     */
+    public static RawObject encode(final RevObject object, final ObjectSerializingFactory format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LZFOutputStream cOut = new LZFOutputStream(out);
+        ObjectWriter<RevObject> writer = format.createObjectWriter(object.getType());
+        try {
+            writer.write(object, cOut);
+            cOut.close();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return create(object, out.toByteArray(), format);
+    }
+
+    public ObjectId getId() {
+        return id;
+    }
+
+    /**
+     * @return the LZF compressed serialized form of the object, in {@link #getFormat() format}
+     *         encoding. The returned array is not a copy and must not be modified.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the size in bytes of the compressed serialized object
+     */
+    public int size() {
+        return data.length;
+    }
+
+    public ObjectSerializingFactory getFormat() {
+        return format;
+    }
+
+    /**
+     * @return {@code true} if this object is encoded in the given serialization format
+     */
+    public boolean isFormat(final ObjectSerializingFactory format) {
+        return this.format.equals(format);
+    }
+
+    /**
+     * @return the object type, read from the serialized object header without parsing the whole
+     *         object
+     */
+    public TYPE getType() {
+        if (type == null) {
+            InputStream in = decompressed();
+            try {
+                type = format.readType(in);
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+        }
+        return type;
+    }
+
+    /**
+     * @return the decoded object
+     */
+    public RevObject parse() {
+        if (parsed == null) {
+            InputStream in = decompressed();
+            try {
+                parsed = format.createObjectReader().read(id, in);
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * @return the decompressed serialized object, encoded as per {@link #getFormat()}
+     */
+    public byte[] getUncompressedData() {
+        InputStream in = decompressed();
+        try {
+            return ByteStreams.toByteArray(in);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    private InputStream decompressed() {
+        try {
+            return new LZFInputStream(new ByteArrayInputStream(data));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * LZF compresses an uncompressed serialized object
+     */
+    public static byte[] compress(final byte[] uncompressed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(uncompressed.length / 2);
+        LZFOutputStream cOut = new LZFOutputStream(out);
+        try {
+            cOut.write(uncompressed);
+            cOut.close();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RawObject[%s, %,d bytes]", id, data.length);
+    }
+}
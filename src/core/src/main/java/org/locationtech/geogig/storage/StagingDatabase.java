@@ -75,4 +75,16 @@ public interface StagingDatabase extends ObjectDatabase {
      */
     public void removeConflicts(@Nullable String namespace);
 
+    /**
+     * Whether objects are written straight to the repository's object database instead of to the
+     * staging area's own storage, in which case committing doesn't need to move the staged
+     * objects.
+     * <p>
+     * Objects staged and then discarded, or written by transactions that get aborted, are left in
+     * the object database until they're garbage collected by reachability.
+     * 
+     * @return {@code true} if staged objects are written to the repository's object database
+     */
+    public boolean isWriteThrough();
+
 }
\ No newline at end of file
@@ -22,9 +22,44 @@ import com.google.common.collect.Lists;
 
 public class StagingDbCompositionHelper {
 
+    /**
+     * The bulk query to run against each database
+     */
+    private static interface BulkQuery<T> {
+        Iterator<T> run(ObjectDatabase db, Iterable<ObjectId> ids, BulkOpListener listener);
+    }
+
+    private static final BulkQuery<RevObject> GET_ALL = new BulkQuery<RevObject>() {
+        @Override
+        public Iterator<RevObject> run(ObjectDatabase db, Iterable<ObjectId> ids,
+                BulkOpListener listener) {
+            return db.getAll(ids, listener);
+        }
+    };
+
+    private static final BulkQuery<RawObject> GET_RAW = new BulkQuery<RawObject>() {
+        @Override
+        public Iterator<RawObject> run(ObjectDatabase db, Iterable<ObjectId> ids,
+                BulkOpListener listener) {
+            return db.getRaw(ids, listener);
+        }
+    };
+
     public static Iterator<RevObject> getAll(final ObjectDatabase objectDb,
             final ObjectDatabase stagingDb, final Iterable<ObjectId> ids,
             final BulkOpListener listener) {
+        return compose(objectDb, stagingDb, ids, listener, GET_ALL);
+    }
+
+    public static Iterator<RawObject> getRaw(final ObjectDatabase objectDb,
+            final ObjectDatabase stagingDb, final Iterable<ObjectId> ids,
+            final BulkOpListener listener) {
+        return compose(objectDb, stagingDb, ids, listener, GET_RAW);
+    }
+
+    private static <T> Iterator<T> compose(final ObjectDatabase objectDb,
+            final ObjectDatabase stagingDb, final Iterable<ObjectId> ids,
+            final BulkOpListener listener, final BulkQuery<T> query) {
 
         final List<ObjectId> missingInStaging = Lists.newLinkedList();
 
@@ -37,14 +72,14 @@ public class StagingDbCompositionHelper {
             }
         };
 
-        final Iterator<RevObject> foundInStaging = stagingDb.getAll(ids, stagingListener);
+        final Iterator<T> foundInStaging = query.run(stagingDb, ids, stagingListener);
 
-        Iterator<RevObject> compositeIterator = new AbstractIterator<RevObject>() {
+        Iterator<T> compositeIterator = new AbstractIterator<T>() {
 
-            Iterator<RevObject> forwardedToObjectDb = Iterators.emptyIterator();
+            Iterator<T> forwardedToObjectDb = Iterators.emptyIterator();
 
             @Override
-            protected RevObject computeNext() {
+            protected T computeNext() {
                 if (forwardedToObjectDb.hasNext()) {
                     return forwardedToObjectDb.next();
                 }
@@ -52,7 +87,7 @@ public class StagingDbCompositionHelper {
                     List<ObjectId> missing = new ArrayList<ObjectId>(missingInStaging);
                     missingInStaging.clear();
 
-                    forwardedToObjectDb = objectDb.getAll(missing, listener);
+                    forwardedToObjectDb = query.run(objectDb, missing, listener);
                     return computeNext();
                 }
                 if (foundInStaging.hasNext()) {
@@ -62,7 +97,7 @@ public class StagingDbCompositionHelper {
                 } else if (!missingInStaging.isEmpty()) {
                     List<ObjectId> missing = new ArrayList<ObjectId>(missingInStaging);
                     missingInStaging.clear();
-                    forwardedToObjectDb = objectDb.getAll(missing, listener);
+                    forwardedToObjectDb = query.run(objectDb, missing, listener);
                     return computeNext();
                 }
                 return endOfData();
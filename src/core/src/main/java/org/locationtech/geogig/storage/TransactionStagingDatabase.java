@@ -212,6 +212,54 @@ public class TransactionStagingDatabase implements StagingDatabase {
         return database.getAll(ids, listener);
     }
 
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+        return database.getRaw(ids, listener);
+    }
+
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        database.putRaw(objects, listener);
+    }
+
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public BulkLoadSession startBulkLoad() {
+        return database.startBulkLoad();
+    }
+
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        return database.storedIds();
+    }
+
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public void repack(Iterator<ObjectId> liveIds) {
+        database.repack(liveIds);
+    }
+
+    /**
+     * Pass through to the original {@link StagingDatabase}.
+     */
+    @Override
+    public boolean isWriteThrough() {
+        return database.isWriteThrough();
+    }
+
     /**
      * Pass through to {@link StagingDatabase}, replacing the namespace with the transaction
      * namespace.
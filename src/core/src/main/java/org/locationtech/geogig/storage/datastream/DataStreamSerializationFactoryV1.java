@@ -136,6 +136,29 @@ public class DataStreamSerializationFactoryV1 implements ObjectSerializingFactor
         return OBJECT_READER;
     }
 
+    @Override
+    public TYPE readType(InputStream rawData) throws IllegalArgumentException {
+        DataInput in = new DataInputStream(rawData);
+        String header;
+        try {
+            header = readToMarker(in, NUL);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if ("commit".equals(header))
+            return TYPE.COMMIT;
+        else if ("tree".equals(header))
+            return TYPE.TREE;
+        else if ("feature".equals(header))
+            return TYPE.FEATURE;
+        else if ("featuretype".equals(header))
+            return TYPE.FEATURETYPE;
+        else if ("tag".equals(header))
+            return TYPE.TAG;
+        else
+            throw new IllegalArgumentException("Unrecognized object header: " + header);
+    }
+
     private static interface Serializer<T extends RevObject> extends ObjectReader<T>,
             ObjectWriter<T> {
         //
@@ -117,6 +117,15 @@ public class DataStreamSerializationFactoryV2 implements ObjectSerializingFactor
         return OBJECT_READER;
     }
 
+    @Override
+    public TYPE readType(InputStream rawData) throws IllegalArgumentException {
+        try {
+            return readHeader(new DataInputStream(rawData));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Provides an interface for reading and writing objects.
      */
@@ -35,10 +35,13 @@ import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
 /**
@@ -264,7 +267,63 @@ public class FileObjectDatabase extends AbstractObjectDatabase implements Object
 
     @Override
     public long deleteAll(Iterator<ObjectId> ids, final BulkOpListener listener) {
-        throw new UnsupportedOperationException("This method is not yet implemented");
+        long count = 0;
+        while (ids.hasNext()) {
+            ObjectId id = ids.next();
+            if (delete(id)) {
+                count++;
+                listener.deleted(id);
+            } else {
+                listener.notFound(id);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lists the object files directory by directory, so that only the names of the files in one of
+     * the {@code <2 chars>/<2 chars>} directories are held in memory at any time
+     */
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        checkState(isOpen(), "db is closed");
+        List<File> dirs = Lists.newArrayList();
+        for (File dir1 : listDirectories(dataRoot)) {
+            dirs.addAll(listDirectories(dir1));
+        }
+        return Iterators.concat(Iterators.transform(dirs.iterator(),
+                new Function<File, Iterator<ObjectId>>() {
+                    @Override
+                    public Iterator<ObjectId> apply(File dir) {
+                        String[] names = dir.list();
+                        if (names == null) {
+                            return Iterators.emptyIterator();
+                        }
+                        List<ObjectId> ids = Lists.newArrayListWithCapacity(names.length);
+                        for (String name : names) {
+                            if (name.length() == 2 * ObjectId.NUM_BYTES) {
+                                ids.add(ObjectId.valueOf(name));
+                            }
+                        }
+                        return ids.iterator();
+                    }
+                }));
+    }
+
+    /**
+     * @return the subdirectories of {@code parent}
+     */
+    protected static List<File> listDirectories(File parent) {
+        File[] children = parent.listFiles();
+        List<File> dirs = Lists.newArrayList();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    dirs.add(child);
+                }
+            }
+        }
+        return dirs;
     }
 
     @Override
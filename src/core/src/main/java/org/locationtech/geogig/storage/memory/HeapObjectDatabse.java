@@ -23,11 +23,13 @@ import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.storage.AbstractObjectDatabase;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.ning.compress.lzf.LZFInputStream;
@@ -160,6 +162,12 @@ public class HeapObjectDatabse extends AbstractObjectDatabase implements ObjectD
         return count;
     }
 
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        Preconditions.checkState(isOpen(), "db is closed");
+        return Iterators.unmodifiableIterator(objects.keySet().iterator());
+    }
+
     @Override
     public Iterator<RevObject> getAll(final Iterable<ObjectId> ids, final BulkOpListener listener) {
 
@@ -191,6 +199,29 @@ public class HeapObjectDatabse extends AbstractObjectDatabase implements ObjectD
         };
     }
 
+    @Override
+    public Iterator<RawObject> getRaw(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+
+        return new AbstractIterator<RawObject>() {
+            final Iterator<ObjectId> iterator = ids.iterator();
+
+            @Override
+            protected RawObject computeNext() {
+                while (iterator.hasNext()) {
+                    ObjectId id = iterator.next();
+                    byte[] raw = objects.get(id);
+                    if (raw == null) {
+                        listener.notFound(id);
+                    } else {
+                        listener.found(id, raw.length);
+                        return new RawObject(id, raw, serializationFactory);
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
     @Override
     public void configure() {
         // No-op
@@ -20,6 +20,7 @@ import org.locationtech.geogig.api.plumbing.merge.Conflict;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
 import org.locationtech.geogig.storage.AbstractObjectDatabase;
 import org.locationtech.geogig.storage.AbstractStagingDatabase;
+import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 
 import com.google.common.base.Optional;
@@ -43,11 +44,20 @@ public class HeapStagingDatabase extends AbstractStagingDatabase {
      * @param repositoryDb the repository reference database, used to get delegate read operations
      *        to for objects not found here
      */
-    @Inject
     public HeapStagingDatabase(final ObjectDatabase repositoryDb) {
         super(ofInstance(repositoryDb), ofInstance(new HeapObjectDatabse()));
     }
 
+    /**
+     * @param repositoryDb the repository reference database, used to get delegate read operations
+     *        to for objects not found here
+     * @param configDb the config database to read the {@link #WRITE_THROUGH_CONFIG_KEY} from
+     */
+    @Inject
+    public HeapStagingDatabase(final ObjectDatabase repositoryDb, final ConfigDatabase configDb) {
+        super(ofInstance(repositoryDb), ofInstance(new HeapObjectDatabse()), configDb);
+    }
+
     @Override
     public void configure() throws RepositoryConnectionException {
         // No-op
@@ -210,6 +210,17 @@ public class TextSerializationFactory implements ObjectSerializingFactory {
         return OBJECT_READER;
     }
 
+    @Override
+    public TYPE readType(InputStream rawData) throws IllegalArgumentException {
+        try {
+            BufferedReader reader;
+            reader = new BufferedReader(new InputStreamReader(rawData, "UTF-8"));
+            return RevObject.TYPE.valueOf(requireLine(reader).trim());
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     /**
      * Abstract text writer that provides print methods on a {@link Writer} to consistently write
      * newlines as {@code \n} instead of using the platform's line separator as in
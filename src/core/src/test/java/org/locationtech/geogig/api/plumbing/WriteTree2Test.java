@@ -18,6 +18,7 @@ import javax.annotation.Nullable;
 import org.junit.Test;
 import org.locationtech.geogig.api.Bucket;
 import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.DefaultProgressListener;
 import org.locationtech.geogig.api.GeoGIG;
 import org.locationtech.geogig.api.Node;
 import org.locationtech.geogig.api.NodeRef;
@@ -313,6 +314,35 @@ public class WriteTree2Test extends RepositoryTestCase {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testManyChangedTrees() {
+        final int numTrees = 12;
+        NodeRef[] left = new NodeRef[numTrees];
+        NodeRef[] right = new NodeRef[numTrees];
+        Set<String> expected = Sets.newHashSet();
+        for (int i = 0; i < numTrees; i++) {
+            String path = "layer" + i;
+            left[i] = repoTree(path, "b" + Integer.toHexString(i), "d1", 1);
+            right[i] = indexTree(path, "c" + Integer.toHexString(i), "d1", 3);
+            expected.add(path);
+            for (int f = 0; f < 3; f++) {
+                expected.add(path + "/" + path + "." + f);
+            }
+        }
+        leftTree = createHeadTree(left);
+        rightTree = createStageHeadTree(right);
+
+        DefaultProgressListener listener = new DefaultProgressListener();
+        final ObjectId newRepoRoot = command.setProgressListener(listener).call();
+        assertNotNull(newRepoRoot);
+        verifyRepositoryTree(NodeRef.ROOT, newRepoRoot);
+
+        ImmutableMap<String, NodeRef> refsByPath = getRefsByPath(newRepoRoot, true);
+        assertEquals(expected, refsByPath.keySet());
+        // the last tree built reports its build time
+        assertTrue(listener.getDescription(), listener.getDescription().contains("built in"));
+    }
+
     @Test
     public void testAllKindsOfChanges() {
         leftTree = createHeadTree(//
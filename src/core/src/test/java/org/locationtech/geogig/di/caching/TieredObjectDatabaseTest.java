@@ -0,0 +1,272 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.di.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.TestPlatform;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.ForwardingObjectDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RefDatabase;
+import org.locationtech.geogig.storage.fs.IniFileConfigDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+import org.locationtech.geogig.storage.memory.HeapRefDatabase;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.util.Providers;
+
+public class TieredObjectDatabaseTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private Platform platform;
+
+    private ConfigDatabase config;
+
+    private ObjectDatabase backend;
+
+    private RefDatabase refs;
+
+    private TieredObjectDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        tmpFolder.newFolder(".geogig");
+        TestPlatform testPlatform = new TestPlatform(tmpFolder.getRoot());
+        testPlatform.setUserHome(tmpFolder.newFolder("home"));
+        platform = testPlatform;
+        config = new IniFileConfigDatabase(platform);
+
+        backend = new HeapObjectDatabse();
+        backend.open();
+        refs = new HeapRefDatabase();
+        refs.create();
+
+        db = newTieredDatabase();
+    }
+
+    private TieredObjectDatabase newTieredDatabase() {
+        // the heap database loses its contents when closed, keep them for the whole test
+        ObjectDatabase unclosable = new ForwardingObjectDatabase(Providers.of(backend)) {
+            @Override
+            public void close() {
+                // do nothing
+            }
+        };
+        return new TieredObjectDatabase(Providers.of(unclosable), Providers.of(platform),
+                Providers.of(config), Providers.of(refs));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private void enable(String mode) {
+        config.put("objectdb.localcache.enabled", "true");
+        config.put("objectdb.localcache.mode", mode);
+        // warmed up explicitly by the tests that need it
+        config.put("objectdb.localcache.warm", "false");
+        db.open();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        db.open();
+        assertFalse(db.isCacheEnabled());
+        RevCommit c = commit("c1");
+        assertTrue(db.put(c));
+        assertTrue(backend.exists(c.getId()));
+        assertEquals(c, db.get(c.getId()));
+        assertEquals(0, db.stats().requestCount());
+        assertFalse(new File(tmpFolder.getRoot(), ".geogig/" + LocalObjectStore.DATABASE_NAME)
+                .exists());
+    }
+
+    @Test
+    public void testWriteThrough() {
+        enable("write-through");
+        assertTrue(db.isCacheEnabled());
+        assertEquals(TieredObjectDatabase.WriteMode.WRITE_THROUGH, db.getWriteMode());
+
+        RevCommit c = commit("c1");
+        assertTrue(db.put(c));
+        assertTrue(backend.exists(c.getId()));
+        assertEquals(c, db.get(c.getId()));
+
+        CacheStats stats = db.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(0, stats.missCount());
+    }
+
+    @Test
+    public void testReadMissPopulatesLocalTier() {
+        enable("write-through");
+        RevCommit c = commit("c1");
+        backend.put(c);
+
+        assertEquals(c, db.get(c.getId()));
+        assertEquals(c, db.get(c.getId()));
+        assertNull(db.getIfPresent(ObjectId.forString("missing")));
+
+        CacheStats stats = db.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(1, stats.loadSuccessCount());
+
+        // survives a restart
+        db.close();
+        db.open();
+        backend.delete(c.getId());
+        assertEquals(c, db.get(c.getId()));
+    }
+
+    @Test
+    public void testGetAll() {
+        enable("write-through");
+        List<ObjectId> ids = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            RevCommit c = commit("c" + i);
+            ids.add(c.getId());
+            if (i % 2 == 0) {
+                db.put(c);
+            } else {
+                backend.put(c);
+            }
+        }
+        assertEquals(10, Lists.newArrayList(db.getAll(ids)).size());
+        assertEquals(5, db.stats().hitCount());
+        assertEquals(5, db.stats().missCount());
+
+        assertEquals(10, Lists.newArrayList(db.getAll(ids)).size());
+        assertEquals(15, db.stats().hitCount());
+    }
+
+    @Test
+    public void testWriteBack() {
+        config.put("objectdb.localcache.writeBackBatchSize", "5");
+        enable("write-back");
+
+        List<RevObject> objects = Lists.newArrayList();
+        for (int i = 0; i < 7; i++) {
+            objects.add(commit("c" + i));
+        }
+        db.putAll(objects.subList(0, 3).iterator());
+        for (RevObject o : objects.subList(0, 3)) {
+            assertFalse(backend.exists(o.getId()));
+            assertTrue(db.exists(o.getId()));
+        }
+        // reaching the batch size flushes
+        db.putAll(objects.subList(3, 6).iterator());
+        for (RevObject o : objects.subList(0, 6)) {
+            assertTrue(backend.exists(o.getId()));
+        }
+
+        RevObject last = objects.get(6);
+        assertTrue(db.put(last));
+        assertFalse(backend.exists(last.getId()));
+        db.close();
+        assertTrue(backend.exists(last.getId()));
+    }
+
+    @Test
+    public void testWriteBackPendingSurvivesRestart() {
+        enable("write-back");
+        RevCommit c = commit("c1");
+        db.put(c);
+
+        // simulate the process ending without flushing
+        LocalObjectStore store = new LocalObjectStore(platform, config, 1024 * 1024);
+        store.open();
+        assertEquals(ImmutableList.of(c.getId()), store.pinned().asList());
+        store.close();
+        assertFalse(backend.exists(c.getId()));
+
+        TieredObjectDatabase other = newTieredDatabase();
+        other.open();
+        assertTrue(backend.exists(c.getId()));
+        other.close();
+    }
+
+    @Test
+    public void testWarm() {
+        enable("write-through");
+        RevTree tree = RevTree.EMPTY;
+        RevCommit c = new CommitBuilder().setTreeId(tree.getId()).setMessage("c").build();
+        backend.put(tree);
+        backend.put(c);
+        refs.putRef(Ref.MASTER, c.getId().toString());
+        refs.putSymRef(Ref.HEAD, Ref.MASTER);
+
+        assertEquals(1, db.warm());
+        assertEquals(2, db.stats().missCount());
+        assertEquals(tree, db.getTree(tree.getId()));
+        assertEquals(1, db.stats().hitCount());
+    }
+
+    @Test
+    public void testLocalStoreEviction() {
+        List<RevCommit> commits = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            commits.add(commit("commit number " + i));
+        }
+        LocalObjectStore store = new LocalObjectStore(platform, config, 1000);
+        store.open();
+        try {
+            store.put(commits.get(0));
+            store.pin(ImmutableList.of(commits.get(0).getId()));
+            for (RevCommit c : commits.subList(1, 20)) {
+                store.put(c);
+                assertTrue(store.sizeBytes() <= 1000);
+            }
+            assertTrue(store.evictionCount() > 0);
+            assertEquals(20, store.size() + store.evictionCount());
+            // pinned objects are never evicted
+            assertTrue(store.exists(commits.get(0).getId()));
+            // the most recently used are kept
+            assertTrue(store.exists(commits.get(19).getId()));
+            assertFalse(store.exists(commits.get(1).getId()));
+
+            store.close();
+            store.open();
+            assertEquals(20 - store.evictionCount(), store.size());
+            assertEquals(ImmutableList.of(commits.get(0).getId()), store.pinned().asList());
+        } finally {
+            store.close();
+        }
+    }
+
+    private static RevCommit commit(String message) {
+        return new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID).setAuthor("groldan")
+                .setMessage(message).build();
+    }
+}
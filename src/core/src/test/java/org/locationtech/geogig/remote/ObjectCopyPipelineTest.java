@@ -0,0 +1,264 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.Bucket;
+import org.locationtech.geogig.api.DefaultProgressListener;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.RawObject;
+import org.locationtech.geogig.storage.memory.HeapDeduplicator;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+public class ObjectCopyPipelineTest extends RemoteRepositoryTestCase {
+
+    private static final String THREAD_NAME_PREFIX = "geogig-object-copy-";
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private List<RevCommit> commits;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        commits = populate(remoteGeogig.geogig, true, points1, points2, points3, lines1, lines2,
+                lines3, points1_modified);
+    }
+
+    @Test
+    public void testCopyBetweenRepositories() throws Exception {
+        final ObjectDatabase from = remoteGeogig.repo.objectDatabase();
+        final ObjectDatabase to = localGeogig.repo.objectDatabase();
+        final Set<ObjectId> reachable = reachable(from, commits);
+
+        // small batches so that the copy spans several of them
+        ObjectCopyPipeline pipeline = new ObjectCopyPipeline(from, to, new HeapDeduplicator(),
+                new DefaultProgressListener(), 3);
+        final int inserted;
+        try {
+            for (RevCommit commit : commits) {
+                for (ObjectId id : reachable(from, commit)) {
+                    pipeline.add(id);
+                }
+            }
+            inserted = pipeline.finish();
+        } finally {
+            pipeline.close();
+        }
+
+        assertEquals(reachable.size(), inserted);
+        for (ObjectId id : reachable) {
+            assertTrue(to.exists(id));
+            assertEquals(from.get(id), to.get(id));
+        }
+        assertNoPipelineThreads();
+    }
+
+    @Test
+    public void testEachObjectCopiedOnce() throws Exception {
+        final ObjectDatabase from = remoteGeogig.repo.objectDatabase();
+        final RecordingDatabase to = new RecordingDatabase();
+        to.open();
+        final Set<ObjectId> reachable = reachable(from, commits);
+
+        ObjectCopyPipeline pipeline = new ObjectCopyPipeline(from, to, new HeapDeduplicator(),
+                new DefaultProgressListener(), 2);
+        try {
+            // each commit shares most of its objects with its parent
+            for (RevCommit commit : commits) {
+                for (ObjectId id : reachable(from, commit)) {
+                    pipeline.add(id);
+                    assertTrue(pipeline.isScheduled(id));
+                }
+            }
+            assertEquals(reachable.size(), pipeline.finish());
+        } finally {
+            pipeline.close();
+        }
+
+        assertEquals(reachable, to.received.elementSet());
+        for (ObjectId id : reachable) {
+            assertEquals(id.toString(), 1, to.received.count(id));
+        }
+        assertNoPipelineThreads();
+    }
+
+    @Test
+    public void testReaderFailure() throws Exception {
+        final ObjectDatabase from = new HeapObjectDatabse() {
+            @Override
+            public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, BulkOpListener listener) {
+                throw new IllegalStateException("read failed");
+            }
+        };
+        from.open();
+        assertFailure("read failed", from, new HeapObjectDatabse());
+    }
+
+    @Test
+    public void testWriterFailure() throws Exception {
+        final ObjectDatabase to = new HeapObjectDatabse() {
+            @Override
+            public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+                throw new IllegalStateException("write failed");
+            }
+        };
+        assertFailure("write failed", remoteGeogig.repo.objectDatabase(), to);
+    }
+
+    @Test
+    public void testCloseWithoutFinish() throws Exception {
+        final ObjectDatabase from = remoteGeogig.repo.objectDatabase();
+        final RecordingDatabase to = new RecordingDatabase();
+        to.open();
+
+        ObjectCopyPipeline pipeline = new ObjectCopyPipeline(from, to, new HeapDeduplicator(),
+                new DefaultProgressListener(), 1);
+        try {
+            for (ObjectId id : reachable(from, commits)) {
+                pipeline.add(id);
+            }
+        } finally {
+            // the caller gave up before finishing, the copy is aborted
+            pipeline.close();
+        }
+        assertNoPipelineThreads();
+    }
+
+    /**
+     * Copies all the objects in the remote repository, expecting the copy to fail with the given
+     * message no matter whether it's noticed while adding ids or when finishing.
+     */
+    private void assertFailure(final String message, final ObjectDatabase from,
+            final ObjectDatabase to) throws InterruptedException {
+        to.open();
+        final Set<ObjectId> ids = reachable(remoteGeogig.repo.objectDatabase(), commits);
+
+        ObjectCopyPipeline pipeline = new ObjectCopyPipeline(from, to, new HeapDeduplicator(),
+                new DefaultProgressListener(), 1);
+        try {
+            for (ObjectId id : ids) {
+                pipeline.add(id);
+            }
+            pipeline.finish();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals(message, e.getMessage());
+        } finally {
+            pipeline.close();
+        }
+        assertNoPipelineThreads();
+    }
+
+    /**
+     * Waits for the pipeline threads to terminate
+     */
+    private void assertNoPipelineThreads() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        Set<String> threads = pipelineThreads();
+        while (!threads.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            threads = pipelineThreads();
+        }
+        assertTrue(threads.toString(), threads.isEmpty());
+    }
+
+    private Set<String> pipelineThreads() {
+        Set<String> names = Sets.newTreeSet();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(THREAD_NAME_PREFIX)) {
+                names.add(thread.getName());
+            }
+        }
+        return names;
+    }
+
+    private Set<ObjectId> reachable(ObjectDatabase db, List<RevCommit> commits) {
+        Set<ObjectId> ids = Sets.newLinkedHashSet();
+        for (RevCommit commit : commits) {
+            ids.addAll(reachable(db, commit));
+        }
+        return ids;
+    }
+
+    /**
+     * @return the ids of the commit and all the trees, features and feature types it refers to
+     */
+    private Set<ObjectId> reachable(ObjectDatabase db, RevCommit commit) {
+        Set<ObjectId> ids = Sets.newLinkedHashSet();
+        ids.add(commit.getId());
+        addTree(db, commit.getTreeId(), ids);
+        return ids;
+    }
+
+    private void addTree(ObjectDatabase db, ObjectId treeId, Set<ObjectId> ids) {
+        if (!ids.add(treeId)) {
+            return;
+        }
+        RevTree tree = db.getTree(treeId);
+        if (tree.buckets().isPresent()) {
+            for (Bucket bucket : tree.buckets().get().values()) {
+                addTree(db, bucket.id(), ids);
+            }
+        }
+        Iterator<Node> children = tree.children();
+        while (children.hasNext()) {
+            Node node = children.next();
+            Optional<ObjectId> metadataId = node.getMetadataId();
+            if (metadataId.isPresent()) {
+                ids.add(metadataId.get());
+            }
+            if (node.getType() == RevObject.TYPE.TREE) {
+                addTree(db, node.getObjectId(), ids);
+            } else {
+                ids.add(node.getObjectId());
+            }
+        }
+    }
+
+    /**
+     * Keeps track of how many times each object is handed over to the database
+     */
+    private static class RecordingDatabase extends HeapObjectDatabse {
+
+        final Multiset<ObjectId> received = ConcurrentHashMultiset.create();
+
+        @Override
+        public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+            super.putRaw(Iterators.transform(objects, new Function<RawObject, RawObject>() {
+                @Override
+                public RawObject apply(RawObject object) {
+                    received.add(object.getId());
+                    return object;
+                }
+            }), listener);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.repository;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.plumbing.CreateDeduplicator;
+import org.locationtech.geogig.api.plumbing.FindTreeChild;
+import org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator;
+import org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator.Strategy;
+import org.locationtech.geogig.api.porcelain.CommitOp;
+import org.locationtech.geogig.storage.Deduplicator;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class PreOrderIteratorTest extends RepositoryTestCase {
+
+    private ObjectDatabase odb;
+
+    private Deduplicator deduplicator;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        odb = repo.objectDatabase();
+        deduplicator = geogig.command(CreateDeduplicator.class).call();
+    }
+
+    @Test
+    public void testCommits() throws Exception {
+        final ObjectId p1 = insertAndAdd(points1);
+        final ObjectId l1 = insertAndAdd(lines1);
+        final RevCommit c1 = geogig.command(CommitOp.class).call();
+        final ObjectId p1Modified = insertAndAdd(points1_modified);
+        final RevCommit c2 = geogig.command(CommitOp.class).call();
+
+        List<ObjectId> ids = Lists.newArrayList(PreOrderIterator.all(
+                ImmutableList.of(c2.getId()), odb, deduplicator));
+
+        Set<ObjectId> expected = Sets.newHashSet();
+        Iterator<RevObject> all = PostOrderIterator.all(c2.getId(), odb, null);
+        while (all.hasNext()) {
+            expected.add(all.next().getId());
+        }
+        assertEquals(expected.size(), ids.size());
+        assertEquals(expected, Sets.newHashSet(ids));
+
+        final ObjectId points2Tree = treeId(c2, pointsName);
+        final ObjectId points1Tree = treeId(c1, pointsName);
+        // each commit is followed by its tree contents, and then by its parent
+        assertEquals(c2.getId(), ids.get(0));
+        assertEquals(c2.getTreeId(), ids.get(1));
+        assertTrue(ids.indexOf(points2Tree) < ids.indexOf(p1Modified));
+        assertTrue(ids.indexOf(p1Modified) < ids.indexOf(c1.getId()));
+        assertTrue(ids.indexOf(l1) < ids.indexOf(c1.getId()));
+        assertTrue(ids.indexOf(c1.getId()) < ids.indexOf(c1.getTreeId()));
+        assertTrue(ids.indexOf(c1.getTreeId()) < ids.indexOf(points1Tree));
+        assertTrue(ids.indexOf(points1Tree) < ids.indexOf(p1));
+    }
+
+    @Test
+    public void testDepthFirstOrder() {
+        // enough features to split the tree into buckets
+        RevTreeBuilder builder = new RevTreeBuilder(odb);
+        for (int i = 0; i < 2000; i++) {
+            builder.put(Node.create("f" + i, ObjectId.forString("feature " + i), ObjectId.NULL,
+                    TYPE.FEATURE, null));
+        }
+        RevTree tree = builder.build();
+        odb.put(tree);
+        assertTrue(tree.buckets().isPresent());
+
+        List<ObjectId> features = Lists.newArrayList();
+        for (ObjectId id : Lists.newArrayList(PreOrderIterator.all(
+                ImmutableList.of(tree.getId()), odb, deduplicator))) {
+            if (!odb.exists(id)) {
+                features.add(id);
+            }
+        }
+
+        List<ObjectId> scanned = Lists.newArrayList();
+        Iterator<NodeRef> scan = new DepthTreeIterator("", ObjectId.NULL, tree, odb,
+                Strategy.RECURSIVE_FEATURES_ONLY);
+        while (scan.hasNext()) {
+            scanned.add(scan.next().objectId());
+        }
+        assertEquals(2000, scanned.size());
+        assertEquals(scanned, features);
+    }
+
+    @Test
+    public void testMissingStartObject() {
+        ObjectId missing = ObjectId.forString("missing");
+        assertFalse(PreOrderIterator.all(ImmutableList.of(missing), odb, deduplicator)
+                .hasNext());
+    }
+
+    private ObjectId treeId(RevCommit commit, String path) {
+        RevTree root = odb.getTree(commit.getTreeId());
+        return geogig.command(FindTreeChild.class).setParent(root).setChildPath(path).call()
+                .get().objectId();
+    }
+}
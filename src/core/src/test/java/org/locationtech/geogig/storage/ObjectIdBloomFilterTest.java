@@ -0,0 +1,136 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.ObjectId;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class ObjectIdBloomFilterTest extends Assert {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private List<ObjectId> stored;
+
+    private int rebuilds;
+
+    private Supplier<Iterator<ObjectId>> storedIds;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "ids.bloom");
+        stored = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            stored.add(ObjectId.forString("stored " + i));
+        }
+        storedIds = new Supplier<Iterator<ObjectId>>() {
+            @Override
+            public Iterator<ObjectId> get() {
+                rebuilds++;
+                return stored.iterator();
+            }
+        };
+    }
+
+    @Test
+    public void testRebuild() {
+        ObjectIdBloomFilter filter = ObjectIdBloomFilter.open(file, storedIds);
+        // counted and then added
+        assertEquals(2, rebuilds);
+        for (ObjectId id : stored) {
+            assertTrue(filter.mightContain(id));
+        }
+        ObjectIdBloomFilter.Stats stats = filter.stats();
+        assertEquals(1000, stats.insertions());
+        assertEquals(ObjectIdBloomFilter.MIN_EXPECTED_INSERTIONS, stats.expectedInsertions());
+        assertEquals(1000, stats.lookups());
+        assertEquals(0, stats.negatives());
+        assertEquals(ObjectIdBloomFilter.memoryBytes(ObjectIdBloomFilter.MIN_EXPECTED_INSERTIONS,
+                ObjectIdBloomFilter.DEFAULT_FPP), stats.memoryBytes());
+    }
+
+    @Test
+    public void testNegatives() {
+        ObjectIdBloomFilter filter = ObjectIdBloomFilter.open(file, storedIds);
+        int negatives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (!filter.mightContain(ObjectId.forString("missing " + i))) {
+                negatives++;
+            } else {
+                filter.falsePositive();
+            }
+        }
+        ObjectIdBloomFilter.Stats stats = filter.stats();
+        assertEquals(negatives, stats.negatives());
+        assertEquals(1000 - negatives, stats.falsePositives());
+        assertTrue(stats.toString(), stats.observedFpp() < 0.05);
+        assertTrue(stats.toString(), stats.expectedFpp() < ObjectIdBloomFilter.DEFAULT_FPP);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        ObjectIdBloomFilter filter = ObjectIdBloomFilter.open(file, storedIds);
+        ObjectId added = ObjectId.forString("added");
+        filter.put(added);
+        filter.deleted(10);
+        assertFalse(file.exists());
+        filter.save();
+        assertTrue(file.exists());
+
+        rebuilds = 0;
+        filter = ObjectIdBloomFilter.open(file, storedIds);
+        assertEquals(0, rebuilds);
+        // the file only exists while the database is closed
+        assertFalse(file.exists());
+        assertTrue(filter.mightContain(added));
+        for (ObjectId id : stored) {
+            assertTrue(filter.mightContain(id));
+        }
+        assertEquals(1001, filter.stats().insertions());
+        assertEquals(10, filter.stats().deletions());
+    }
+
+    @Test
+    public void testRebuildIfUnreadable() throws Exception {
+        Files.write(new byte[] { 1, 2, 3 }, file);
+        ObjectIdBloomFilter.open(file, storedIds);
+        assertEquals(2, rebuilds);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testRebuildIfSaturated() {
+        ObjectIdBloomFilter filter = ObjectIdBloomFilter.open(file, storedIds);
+        assertFalse(filter.isSaturated());
+        filter.deleted(501);
+        assertTrue(filter.isSaturated());
+        filter.save();
+
+        rebuilds = 0;
+        filter = ObjectIdBloomFilter.open(file, storedIds);
+        assertEquals(2, rebuilds);
+        assertEquals(0, filter.stats().deletions());
+        assertFalse(filter.isSaturated());
+    }
+}
@@ -592,4 +592,22 @@ public class DiffOpTest extends RepositoryTestCase {
         assertEquals(TYPE.FEATURE, difflist.get(1).getNewObject().getType());
     }
 
+    @Test
+    public void testResumeAfter() throws Exception {
+
+        insert(points1, points2, points3, lines1, lines2, lines3);
+
+        List<DiffEntry> difflist = toList(diffOp.setOldVersion(ObjectId.NULL)
+                .setNewVersion(Ref.WORK_HEAD).call());
+        assertEquals(6, difflist.size());
+
+        for (int i = 0; i < difflist.size(); i++) {
+            String resumeAfter = difflist.get(i).newPath();
+            List<DiffEntry> resumed = toList(geogig.command(DiffOp.class)
+                    .setOldVersion(ObjectId.NULL).setNewVersion(Ref.WORK_HEAD)
+                    .setResumeAfter(resumeAfter).call());
+            assertEquals(difflist.subList(i + 1, difflist.size()), resumed);
+        }
+    }
+
 }
@@ -0,0 +1,104 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.test.integration;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.GeogigTransaction;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.plumbing.GarbageCollectOp;
+import org.locationtech.geogig.api.plumbing.TransactionBegin;
+import org.locationtech.geogig.api.porcelain.BranchCreateOp;
+import org.locationtech.geogig.api.porcelain.BranchDeleteOp;
+import org.locationtech.geogig.api.porcelain.CheckoutOp;
+import org.locationtech.geogig.api.porcelain.CommitOp;
+import org.locationtech.geogig.api.porcelain.ConfigOp;
+import org.locationtech.geogig.api.porcelain.ConfigOp.ConfigAction;
+import org.locationtech.geogig.storage.ObjectDatabase;
+
+public class GarbageCollectOpTest extends RepositoryTestCase {
+
+    private ObjectDatabase objects;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.name")
+                .setValue("groldan").call();
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.email")
+                .setValue("groldan@boundlessgeo.com").call();
+        objects = repo.objectDatabase();
+    }
+
+    @Test
+    public void testDeletedBranch() throws Exception {
+        final ObjectId p1 = insertAndAdd(points1);
+        final RevCommit c1 = geogig.command(CommitOp.class).call();
+
+        geogig.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        final ObjectId p2 = insertAndAdd(points2);
+        final RevCommit c2 = geogig.command(CommitOp.class).call();
+        geogig.command(CheckoutOp.class).setSource("master").call();
+
+        geogig.command(GarbageCollectOp.class).call();
+        GarbageCollectOp.Result result = geogig.command(GarbageCollectOp.class).call();
+        assertEquals(0, result.getDeleted());
+        assertTrue(objects.exists(c2.getId()));
+        final long reachable = result.getReachable();
+
+        geogig.command(BranchDeleteOp.class).setName("branch1").call();
+        result = geogig.command(GarbageCollectOp.class).call();
+        // the commit, its root tree, the Points tree and the feature
+        assertTrue(result.toString(), result.getDeleted() >= 4);
+        assertEquals(reachable - result.getDeleted(), result.getReachable());
+
+        assertTrue(objects.exists(c1.getId()));
+        assertTrue(objects.exists(c1.getTreeId()));
+        assertTrue(objects.exists(p1));
+        assertFalse(objects.exists(c2.getId()));
+        assertFalse(objects.exists(c2.getTreeId()));
+        assertFalse(objects.exists(p2));
+
+        result = geogig.command(GarbageCollectOp.class).call();
+        assertEquals(0, result.getDeleted());
+    }
+
+    @Test
+    public void testAbortedTransaction() throws Exception {
+        insertAndAdd(points1);
+        final RevCommit c1 = geogig.command(CommitOp.class).call();
+
+        GeogigTransaction transaction = geogig.command(TransactionBegin.class).call();
+        final ObjectId p2 = insertAndAdd(transaction, points2);
+        final RevCommit c2 = transaction.command(CommitOp.class).call();
+
+        // reachable from the transaction refs while it's open
+        geogig.command(GarbageCollectOp.class).call();
+        assertTrue(objects.exists(c2.getId()));
+        assertTrue(objects.exists(p2));
+
+        transaction.abort();
+        geogig.command(GarbageCollectOp.class).call();
+        assertTrue(objects.exists(c1.getId()));
+        assertFalse(objects.exists(c2.getId()));
+        assertFalse(objects.exists(p2));
+    }
+
+    @Test
+    public void testRepack() throws Exception {
+        final ObjectId p1 = insertAndAdd(points1);
+        final RevCommit c1 = geogig.command(CommitOp.class).call();
+
+        GarbageCollectOp.Result result = geogig.command(GarbageCollectOp.class).setRepack(true)
+                .call();
+        assertTrue(result.getReachable() > 0);
+        assertEquals(c1, objects.getCommit(c1.getId()));
+        assertTrue(objects.exists(p1));
+    }
+}
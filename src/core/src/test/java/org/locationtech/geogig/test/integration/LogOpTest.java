@@ -35,6 +35,7 @@ import org.locationtech.geogig.api.porcelain.MergeOp.MergeReport;
 import org.opengis.feature.Feature;
 
 import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
@@ -231,6 +232,64 @@ public class LogOpTest extends RepositoryTestCase {
         logOp.setSkip(-1).call();
     }
 
+    @Test
+    public void testResume() throws Exception {
+        List<Feature> features = Arrays.asList(points1, lines1, points2, lines2, points3, lines3);
+        LinkedList<RevCommit> expected = new LinkedList<RevCommit>();
+
+        for (Feature f : features) {
+            insertAndAdd(f);
+            expected.addFirst(geogig.command(CommitOp.class).call());
+        }
+
+        for (boolean firstParent : new boolean[] { false, true }) {
+            List<RevCommit> logged = Lists.newArrayList();
+            List<ObjectId> resumePoint = null;
+            do {
+                LogOp op = geogig.command(LogOp.class).setFirstParentOnly(firstParent)
+                        .setResumeFrom(resumePoint).setLimit(4);
+                Iterator<RevCommit> page = op.call();
+                // consume only part of the page
+                logged.add(page.next());
+                logged.add(page.next());
+                resumePoint = op.getResumePoint();
+            } while (!resumePoint.isEmpty());
+
+            assertEquals(expected, logged);
+        }
+
+        exception.expect(IllegalArgumentException.class);
+        logOp.setTopoOrder(true).setResumeFrom(ImmutableList.of(expected.getLast().getId()))
+                .call();
+    }
+
+    @Test
+    public void testResumeWithSkipAndLimit() throws Exception {
+        List<Feature> features = Arrays.asList(points1, lines1, points2, lines2, points3, lines3);
+        LinkedList<RevCommit> expected = new LinkedList<RevCommit>();
+
+        for (Feature f : features) {
+            insertAndAdd(f);
+            expected.addFirst(geogig.command(CommitOp.class).call());
+        }
+
+        LogOp op = geogig.command(LogOp.class).setSkip(1).setLimit(2);
+        List<RevCommit> logged = Lists.newArrayList(op.call());
+        assertEquals(expected.subList(1, 3), logged);
+
+        // skip is only applied to the fresh walk, limit to each resumed call
+        op = geogig.command(LogOp.class).setSkip(1).setLimit(2)
+                .setResumeFrom(op.getResumePoint());
+        logged = Lists.newArrayList(op.call());
+        assertEquals(expected.subList(3, 5), logged);
+
+        op = geogig.command(LogOp.class).setSkip(1).setLimit(2)
+                .setResumeFrom(op.getResumePoint());
+        logged = Lists.newArrayList(op.call());
+        assertEquals(expected.subList(5, 6), logged);
+        assertTrue(op.getResumePoint().isEmpty());
+    }
+
     @Test
     public void testTemporalConstraint() throws Exception {
 
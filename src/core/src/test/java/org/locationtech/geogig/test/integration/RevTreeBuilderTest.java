@@ -372,6 +372,66 @@ public class RevTreeBuilderTest extends RepositoryTestCase {
         assertEquals(expectedOrder, splitNodes);
     }
 
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        final int numEntries = 20 * 1000;
+        final RevTree original = tree(numEntries).build();
+        odb.put(original);
+
+        List<Node> changes = Lists.newArrayList();
+        // replace, remove, and add a node
+        changes.add(Node.create("10", ObjectId.forString("changed"), ObjectId.NULL,
+                TYPE.FEATURE, new Envelope(0, 1, 0, 1)));
+        changes.add(Node.create("20", ObjectId.NULL, ObjectId.NULL, TYPE.FEATURE, null));
+        changes.add(node(numEntries));
+        Collections.sort(changes, new NodeStorageOrder());
+
+        RevTreeBuilder.UpdateStats stats = new RevTreeBuilder.UpdateStats();
+        RevTree updated = RevTreeBuilder.update(odb, original, changes.iterator(), stats);
+
+        RevTreeBuilder builder = new RevTreeBuilder(odb, original);
+        for (Node node : changes) {
+            if (node.getObjectId().isNull()) {
+                builder.remove(node.getName());
+            } else {
+                builder.put(node);
+            }
+        }
+        RevTree expected = builder.build();
+
+        assertEquals(expected.getId(), updated.getId());
+        assertEquals(numEntries, updated.size());
+        // a two level bucket tree, one bucket tree and one leaf tree per change at most
+        assertTrue(stats.toString(), stats.getTreesRead() <= 2 * changes.size());
+        assertTrue(stats.toString(), stats.getTreesWritten() <= 2 * changes.size());
+    }
+
+    @Test
+    public void testIncrementalUpdateCollapsesBuckets() throws Exception {
+        final int numEntries = RevTree.NORMALIZED_SIZE_LIMIT + 100;
+        final RevTree original = tree(numEntries).build();
+        assertTrue(original.buckets().isPresent());
+        odb.put(original);
+
+        List<Node> changes = Lists.newArrayList();
+        for (int i = 0; i < 200; i++) {
+            changes.add(Node.create(String.valueOf(i), ObjectId.NULL, ObjectId.NULL,
+                    TYPE.FEATURE, null));
+        }
+        Collections.sort(changes, new NodeStorageOrder());
+        RevTree updated = RevTreeBuilder.update(odb, original, changes.iterator());
+
+        RevTreeBuilder builder = new RevTreeBuilder(odb, original);
+        for (Node node : changes) {
+            builder.remove(node.getName());
+        }
+        RevTree expected = builder.build();
+
+        assertFalse(updated.buckets().isPresent());
+        assertEquals(expected.getId(), updated.getId());
+        assertEquals(numEntries - 200, updated.size());
+    }
+
     @Test
     public void testResultingTreeBounds() throws Exception {
         checkTreeBounds(10);
@@ -0,0 +1,171 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.test.integration;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.RevTreeBuilder;
+import org.locationtech.geogig.api.SortedRevTreeBuilder;
+import org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator;
+import org.locationtech.geogig.api.plumbing.diff.DepthTreeIterator.Strategy;
+import org.locationtech.geogig.storage.NodeStorageOrder;
+import org.locationtech.geogig.storage.ObjectDatabase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Envelope;
+
+public class SortedRevTreeBuilderTest extends RepositoryTestCase {
+
+    private ObjectDatabase odb;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        odb = repo.objectDatabase();
+    }
+
+    @Test
+    public void testSameTreeAsRevTreeBuilder() {
+        testSameTreeAsRevTreeBuilder(0);
+        testSameTreeAsRevTreeBuilder(1);
+        testSameTreeAsRevTreeBuilder(RevTree.NORMALIZED_SIZE_LIMIT);
+        testSameTreeAsRevTreeBuilder(RevTree.NORMALIZED_SIZE_LIMIT + 1);
+        testSameTreeAsRevTreeBuilder(1000);
+        testSameTreeAsRevTreeBuilder(56789);
+    }
+
+    private void testSameTreeAsRevTreeBuilder(final int numEntries) {
+        List<Node> nodes = sorted(nodes(0, numEntries));
+        RevTree expected = build(nodes);
+        RevTree actual = new SortedRevTreeBuilder(odb).build(nodes.iterator());
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(numEntries, actual.size());
+        assertEquals(numEntries, count(actual));
+    }
+
+    @Test
+    public void testRemovalsAndRepeatedNodes() {
+        List<Node> nodes = sorted(nodes(0, 1000));
+        List<Node> changes = Lists.newArrayList();
+        for (Node node : nodes) {
+            // remove every other node, replace the rest
+            changes.add(node);
+            if (Integer.parseInt(node.getName()) % 2 == 0) {
+                changes.add(Node.create(node.getName(), ObjectId.NULL, ObjectId.NULL,
+                        TYPE.FEATURE, null));
+            } else {
+                changes.add(Node.create(node.getName(), ObjectId.forString("changed"),
+                        ObjectId.NULL, TYPE.FEATURE, null));
+            }
+        }
+        RevTree tree = new SortedRevTreeBuilder(odb).build(changes.iterator());
+        assertEquals(500, tree.size());
+
+        RevTreeBuilder builder = new RevTreeBuilder(odb);
+        for (Node node : nodes) {
+            if (Integer.parseInt(node.getName()) % 2 != 0) {
+                builder.put(Node.create(node.getName(), ObjectId.forString("changed"),
+                        ObjectId.NULL, TYPE.FEATURE, null));
+            }
+        }
+        assertEquals(builder.build().getId(), tree.getId());
+    }
+
+    @Test
+    public void testMergeWithOriginal() {
+        testMergeWithOriginal(100, 200);
+        testMergeWithOriginal(5000, 3000);
+    }
+
+    private void testMergeWithOriginal(final int originalSize, final int numChanges) {
+        RevTree original = build(sorted(nodes(0, originalSize)));
+        odb.put(original);
+
+        // half the changes replace original nodes, half are new nodes
+        final int from = originalSize - numChanges / 2;
+        List<Node> changes = sorted(nodes(from, from + numChanges));
+        // and remove the first ten original nodes
+        for (int i = 0; i < 10; i++) {
+            changes.add(Node.create(String.valueOf(i), ObjectId.NULL, ObjectId.NULL,
+                    TYPE.FEATURE, null));
+        }
+        changes = sorted(changes);
+
+        RevTree tree = new SortedRevTreeBuilder(odb, original).build(changes.iterator());
+
+        RevTreeBuilder builder = new RevTreeBuilder(odb, original);
+        for (Node node : changes) {
+            if (node.getObjectId().isNull()) {
+                builder.remove(node.getName());
+            } else {
+                builder.put(node);
+            }
+        }
+        RevTree expected = builder.build();
+        assertEquals(expected.getId(), tree.getId());
+        assertEquals(from + numChanges - 10, tree.size());
+    }
+
+    @Test
+    public void testUnsortedInput() {
+        List<Node> nodes = sorted(nodes(0, 10));
+        Collections.reverse(nodes);
+        try {
+            new SortedRevTreeBuilder(odb).build(nodes.iterator());
+            fail("Expected IAE");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("not sorted"));
+        }
+    }
+
+    private RevTree build(List<Node> nodes) {
+        RevTreeBuilder builder = new RevTreeBuilder(odb);
+        for (Node node : nodes) {
+            builder.put(node);
+        }
+        return builder.build();
+    }
+
+    private long count(RevTree tree) {
+        odb.put(tree);
+        Iterator<NodeRef> it = new DepthTreeIterator("", ObjectId.NULL, tree, odb,
+                Strategy.RECURSIVE_FEATURES_ONLY);
+        long count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    private static List<Node> sorted(List<Node> nodes) {
+        return Lists.newArrayList(new NodeStorageOrder().sortedCopy(nodes));
+    }
+
+    private static List<Node> nodes(int from, int to) {
+        ImmutableList.Builder<Node> nodes = ImmutableList.builder();
+        for (int i = from; i < to; i++) {
+            String key = String.valueOf(i);
+            Envelope bounds = new Envelope(i, i + 1, i, i + 1);
+            nodes.add(Node.create(key, ObjectId.forString(key), ObjectId.NULL, TYPE.FEATURE,
+                    bounds));
+        }
+        return nodes.build();
+    }
+}
@@ -0,0 +1,79 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.test.integration;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.plumbing.GarbageCollectOp;
+import org.locationtech.geogig.api.porcelain.CommitOp;
+import org.locationtech.geogig.api.porcelain.ConfigOp;
+import org.locationtech.geogig.api.porcelain.ConfigOp.ConfigAction;
+import org.locationtech.geogig.api.porcelain.LogOp;
+import org.locationtech.geogig.storage.AbstractStagingDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.StagingDatabase;
+
+import com.google.common.collect.Lists;
+
+public class WriteThroughStagingTest extends RepositoryTestCase {
+
+    private ObjectDatabase objects;
+
+    private StagingDatabase index;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET)
+                .setName(AbstractStagingDatabase.WRITE_THROUGH_CONFIG_KEY).setValue("true").call();
+        objects = repo.objectDatabase();
+        index = repo.stagingDatabase();
+        // the config is read when the database is opened
+        assertFalse(index.isWriteThrough());
+        index.close();
+        index.open();
+    }
+
+    @Test
+    public void testStagedObjectsWrittenThrough() throws Exception {
+        assertTrue(index.isWriteThrough());
+
+        final ObjectId p1 = insertAndAdd(points1);
+        assertTrue(objects.exists(p1));
+        assertFalse(index.storedIds().hasNext());
+
+        final RevCommit c1 = geogig.command(CommitOp.class).call();
+        assertTrue(objects.exists(c1.getTreeId()));
+        assertEquals(c1, objects.getCommit(c1.getId()));
+        assertFalse(index.storedIds().hasNext());
+
+        final ObjectId p2 = insertAndAdd(points2);
+        final RevCommit c2 = geogig.command(CommitOp.class).call();
+        assertTrue(objects.exists(p2));
+        assertEquals(Lists.newArrayList(c2, c1),
+                Lists.newArrayList(geogig.command(LogOp.class).call()));
+    }
+
+    @Test
+    public void testDiscardedObjectsCollected() throws Exception {
+        final ObjectId p1 = insertAndAdd(points1);
+        geogig.command(CommitOp.class).call();
+
+        // staged and then replaced before committing
+        final ObjectId modified = insertAndAdd(points1_modified);
+        assertTrue(objects.exists(modified));
+        insertAndAdd(points1);
+
+        GarbageCollectOp.Result result = geogig.command(GarbageCollectOp.class).call();
+        assertTrue(result.toString(), result.getDeleted() > 0);
+        assertFalse(objects.exists(modified));
+        assertTrue(objects.exists(p1));
+    }
+}
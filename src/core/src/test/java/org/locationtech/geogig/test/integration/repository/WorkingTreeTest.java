@@ -481,6 +481,46 @@ public class WorkingTreeTest extends RepositoryTestCase {
         assertFalse(workTree.findUnstaged(appendChild(pointsName, idP3)).isPresent());
     }
 
+    @Test
+    public void testDeletePathsInMultipleTrees() throws Exception {
+        workTree.insert(pointsName, ImmutableList.of(points1, points2, points3).iterator(),
+                LISTENER, null, 3);
+        workTree.insert(linesName, ImmutableList.of(lines1, lines2, lines3).iterator(),
+                LISTENER, null, 3);
+
+        final ObjectId pointsMetadataId = workTree.findUnstaged(pointsName).get().getMetadataId();
+
+        List<String> paths = ImmutableList.of(appendChild(pointsName, idP1),
+                appendChild(linesName, idL2), appendChild(pointsName, idP3),
+                appendChild(linesName, "nonExistentFeature"),
+                appendChild("nonExistentTree", idP2));
+
+        workTree.delete(paths.iterator(), LISTENER);
+
+        assertFalse(workTree.findUnstaged(appendChild(pointsName, idP1)).isPresent());
+        assertTrue(workTree.findUnstaged(appendChild(pointsName, idP2)).isPresent());
+        assertFalse(workTree.findUnstaged(appendChild(pointsName, idP3)).isPresent());
+        assertTrue(workTree.findUnstaged(appendChild(linesName, idL1)).isPresent());
+        assertFalse(workTree.findUnstaged(appendChild(linesName, idL2)).isPresent());
+        assertTrue(workTree.findUnstaged(appendChild(linesName, idL3)).isPresent());
+        assertFalse(workTree.findUnstaged("nonExistentTree").isPresent());
+
+        assertEquals(pointsMetadataId, workTree.findUnstaged(pointsName).get().getMetadataId());
+        assertEquals(1, workTree.countUnstaged(pointsName).featureCount());
+        assertEquals(2, workTree.countUnstaged(linesName).featureCount());
+    }
+
+    @Test
+    public void testDeletePathsInEmptyTreeKeepsMetadataId() throws Exception {
+        final NodeRef treeRef = workTree.createTypeTree("points2", pointsType);
+        assertFalse(treeRef.getMetadataId().isNull());
+
+        workTree.delete(ImmutableList.of(appendChild("points2", idP1)).iterator(), LISTENER);
+
+        assertEquals(treeRef.getMetadataId(), workTree.findUnstaged("points2").get()
+                .getMetadataId());
+    }
+
     @Test
     public void testDeleteFeatureType() throws Exception {
         List<Feature> featureList = new LinkedList<Feature>();
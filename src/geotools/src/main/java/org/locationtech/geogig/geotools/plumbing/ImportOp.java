@@ -50,6 +50,7 @@ import org.locationtech.geogig.api.plumbing.ResolveFeatureType;
 import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.geotools.plumbing.GeoToolsOpException.StatusCode;
 import org.locationtech.geogig.repository.WorkingTree;
+import org.locationtech.geogig.storage.BulkLoadSession;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -171,73 +172,80 @@ public class ImportOp extends AbstractGeoGigOp<RevTree> {
 
         int tableCount = 0;
 
-        for (String typeName : typeNames) {
-            {
-                tableCount++;
-                String tableName = String.format("%-16s", typeName);
-                if (typeName.length() > 16) {
-                    tableName = tableName.substring(0, 13) + "...";
+        // features are made durable once, after all the tables are imported
+        final BulkLoadSession bulkLoad = stagingDatabase().startBulkLoad();
+        try {
+            for (String typeName : typeNames) {
+                {
+                    tableCount++;
+                    String tableName = String.format("%-16s", typeName);
+                    if (typeName.length() > 16) {
+                        tableName = tableName.substring(0, 13) + "...";
+                    }
+                    progressListener.setDescription("Importing " + tableName + " ("
+                            + tableCount + "/" + typeNames.length + ")... ");
                 }
-                progressListener.setDescription("Importing " + tableName + " (" + tableCount + "/"
-                        + typeNames.length + ")... ");
-            }
 
-            FeatureSource featureSource = getFeatureSource(typeName);
-            SimpleFeatureType featureType = (SimpleFeatureType) featureSource.getSchema();
+                FeatureSource featureSource = getFeatureSource(typeName);
+                SimpleFeatureType featureType = (SimpleFeatureType) featureSource.getSchema();
 
-            final String fidPrefix = featureType.getTypeName() + ".";
+                final String fidPrefix = featureType.getTypeName() + ".";
 
-            String path;
-            if (destPath == null) {
-                path = featureType.getTypeName();
-            } else {
-                NodeRef.checkValidPath(destPath);
-                path = destPath;
-                featureType = forceFeatureTypeName(featureType, path);
-            }
+                String path;
+                if (destPath == null) {
+                    path = featureType.getTypeName();
+                } else {
+                    NodeRef.checkValidPath(destPath);
+                    path = destPath;
+                    featureType = forceFeatureTypeName(featureType, path);
+                }
 
-            featureType = overrideGeometryName(featureType);
+                featureType = overrideGeometryName(featureType);
 
-            featureSource = new ForceTypeAndFidFeatureSource<FeatureType, Feature>(featureSource,
-                    featureType, fidPrefix);
-            boolean hasPrimaryKey = hasPrimaryKey(typeName);
-            boolean forbidSorting = !usePaging || !hasPrimaryKey;
-            ((ForceTypeAndFidFeatureSource) featureSource).setForbidSorting(forbidSorting);
+                featureSource = new ForceTypeAndFidFeatureSource<FeatureType, Feature>(
+                        featureSource, featureType, fidPrefix);
+                boolean hasPrimaryKey = hasPrimaryKey(typeName);
+                boolean forbidSorting = !usePaging || !hasPrimaryKey;
+                ((ForceTypeAndFidFeatureSource) featureSource).setForbidSorting(forbidSorting);
 
-            if (destPathFeatureType != null && adaptToDefaultFeatureType && !alter) {
-                featureSource = new FeatureTypeAdapterFeatureSource<FeatureType, Feature>(
-                        featureSource, destPathFeatureType.type());
-            }
+                if (destPathFeatureType != null && adaptToDefaultFeatureType && !alter) {
+                    featureSource = new FeatureTypeAdapterFeatureSource<FeatureType, Feature>(
+                            featureSource, destPathFeatureType.type());
+                }
 
-            ProgressListener taskProgress = subProgress(100.f / typeNames.length);
-            if (overwrite) {
-                try {
-                    workTree.delete(path);
-                    workTree.createTypeTree(path, featureType);
-                } catch (Exception e) {
-                    throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_INSERT);
+                ProgressListener taskProgress = subProgress(100.f / typeNames.length);
+                if (overwrite) {
+                    try {
+                        workTree.delete(path);
+                        workTree.createTypeTree(path, featureType);
+                    } catch (Exception e) {
+                        throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_INSERT);
+                    }
+                }
+
+                if (alter) {
+                    // first we modify the feature type and the existing features, if needed
+                    workTree.updateTypeTree(path, featureType);
+                    Iterator<Feature> transformedIterator = transformFeatures(featureType, path);
+                    try {
+                        final Integer collectionSize = collectionSize(featureSource);
+                        workTree.insert(path, transformedIterator, taskProgress, null,
+                                collectionSize);
+                    } catch (Exception e) {
+                        throw new GeoToolsOpException(StatusCode.UNABLE_TO_INSERT);
+                    }
                 }
-            }
 
-            if (alter) {
-                // first we modify the feature type and the existing features, if needed
-                workTree.updateTypeTree(path, featureType);
-                Iterator<Feature> transformedIterator = transformFeatures(featureType, path);
                 try {
-                    final Integer collectionSize = collectionSize(featureSource);
-                    workTree.insert(path, transformedIterator, taskProgress, null, collectionSize);
+                    insert(workTree, path, featureSource, taskProgress);
+                } catch (GeoToolsOpException e) {
+                    throw e;
                 } catch (Exception e) {
-                    throw new GeoToolsOpException(StatusCode.UNABLE_TO_INSERT);
+                    throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_INSERT);
                 }
             }
-
-            try {
-                insert(workTree, path, featureSource, taskProgress);
-            } catch (GeoToolsOpException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new GeoToolsOpException(e, StatusCode.UNABLE_TO_INSERT);
-            }
+        } finally {
+            bulkLoad.close();
         }
 
         progressListener.setProgress(100.f);
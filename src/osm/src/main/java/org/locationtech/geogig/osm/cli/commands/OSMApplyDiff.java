@@ -31,19 +31,27 @@ import com.google.common.collect.Lists;
 @Parameters(commandNames = "apply-diff", commandDescription = "Apply a OSM diff file to OSM data in the current repo")
 public class OSMApplyDiff extends AbstractCommand implements CLICommand {
 
-    @Parameter(arity = 1, description = "OSM diff file path", required = true)
+    @Parameter(description = "OSM diff file paths, applied in the given order", required = true)
     public List<String> diffFilepath = Lists.newArrayList();
 
+    @Parameter(names = "--message", description = "Commit the applied changes with the given message")
+    public String message;
+
     @Override
     protected void runInternal(GeogigCLI cli) throws IOException {
-        checkParameter(diffFilepath != null && diffFilepath.size() == 1,
-                "One file must be specified");
-        File diffFile = new File(diffFilepath.get(0));
-        checkParameter(diffFile.exists(), "The specified OSM diff file does not exist");
+        checkParameter(diffFilepath != null && !diffFilepath.isEmpty(),
+                "At least one file must be specified");
+        OSMApplyDiffOp op = cli.getGeogig().command(OSMApplyDiffOp.class);
+        for (String path : diffFilepath) {
+            File diffFile = new File(path);
+            checkParameter(diffFile.exists(), "The specified OSM diff file does not exist: %s",
+                    path);
+            op.addDiffFile(diffFile);
+        }
 
         try {
-            Optional<OSMReport> report = cli.getGeogig().command(OSMApplyDiffOp.class)
-                    .setDiffFile(diffFile).setProgressListener(cli.getProgressListener()).call();
+            Optional<OSMReport> report = op.setMessage(message)
+                    .setProgressListener(cli.getProgressListener()).call();
             if (report.isPresent()) {
                 OSMReport rep = report.get();
                 String msg;
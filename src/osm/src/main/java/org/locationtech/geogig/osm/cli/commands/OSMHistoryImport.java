@@ -19,7 +19,6 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -70,6 +69,7 @@ import org.locationtech.geogig.osm.internal.history.HistoryDownloader;
 import org.locationtech.geogig.osm.internal.history.Node;
 import org.locationtech.geogig.osm.internal.history.Primitive;
 import org.locationtech.geogig.osm.internal.history.Way;
+import org.locationtech.geogig.repository.FeatureToDelete;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.StagingArea;
 import org.locationtech.geogig.repository.WorkingTree;
@@ -80,14 +80,14 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import com.beust.jcommander.Parameters;
 import com.beust.jcommander.ParametersDelegate;
 import com.beust.jcommander.internal.Lists;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -105,6 +105,11 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
 
     private static final GeometryFactory GEOMF = new GeometryFactory();
 
+    /**
+     * How many changesets per download thread to parse ahead of the one being applied
+     */
+    private static final int PREFETCH_SIZE_PER_THREAD = 4;
+
     @ParametersDelegate
     public HistoryImportArgs args = new HistoryImportArgs();
 
@@ -133,6 +138,9 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
                 .setNameFormat("osm-history-fetch-thread-%d").build();
         final ExecutorService executor = Executors.newFixedThreadPool(args.numThreads,
                 threadFactory);
+        final ExecutorService parseExecutor = Executors.newFixedThreadPool(args.numThreads,
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("osm-history-parse-thread-%d").build());
         final File targetDir = resolveTargetDir();
         console.println("Downloading to " + targetDir.getAbsolutePath());
         console.flush();
@@ -143,11 +151,15 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
         Envelope env = parseBbox();
         Predicate<Changeset> filter = parseFilter(env);
         downloader.setChangesetFilter(filter);
+        // parse upcoming changesets while the current one is being applied and committed
+        downloader.setPrefetch(parseExecutor, PREFETCH_SIZE_PER_THREAD * args.numThreads);
         try {
             importOsmHistory(cli, console, downloader, env);
         } finally {
+            parseExecutor.shutdownNow();
             executor.shutdownNow();
             try {
+                parseExecutor.awaitTermination(30, TimeUnit.SECONDS);
                 executor.awaitTermination(30, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
                 throw new CommandFailedException(e);
@@ -404,8 +416,15 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
 
         long cnt = 0;
 
-        Set<String> deletes = Sets.newHashSet();
-        Multimap<String, SimpleFeature> insertsByParent = HashMultimap.create();
+        // the latest change to each feature, by path
+        Map<String, Feature> changed = Maps.newLinkedHashMap();
+        // the trees that exist or will exist once the changes are applied
+        Set<String> existingTrees = Sets.newHashSet();
+        for (String treePath : ImmutableList.of(NODE_TYPE_NAME, WAY_TYPE_NAME)) {
+            if (workTree.findUnstaged(treePath).isPresent()) {
+                existingTrees.add(treePath);
+            }
+        }
 
         while (changes.hasNext()) {
             Change change = changes.next();
@@ -416,7 +435,10 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
             final String parentPath = NodeRef.parentPath(featurePath);
             if (Change.Type.delete.equals(change.getType())) {
                 cnt++;
-                deletes.add(featurePath);
+                SimpleFeatureType type = NODE_TYPE_NAME.equals(parentPath) ? nodeType()
+                        : wayType();
+                changed.put(featurePath,
+                        new FeatureToDelete(type, NodeRef.nodeFromPath(featurePath)));
             } else {
                 final Primitive primitive = change.getNode().isPresent() ? change.getNode().get()
                         : change.getWay().get();
@@ -430,27 +452,39 @@ public class OSMHistoryImport extends AbstractCommand implements CLICommand {
 
                 if (featureFilter == null
                         || featureFilter.intersects((Envelope) feature.getBounds())) {
-                    insertsByParent.put(parentPath, feature);
+                    changed.put(featurePath, feature);
+                    existingTrees.add(parentPath);
                     cnt++;
                 }
             }
         }
 
-        for (String parentPath : insertsByParent.keySet()) {
-            Collection<SimpleFeature> features = insertsByParent.get(parentPath);
-            if (features.isEmpty()) {
+        // deleting from a tree that doesn't exist would create it
+        List<Feature> features = Lists.newArrayList();
+        for (Map.Entry<String, Feature> e : changed.entrySet()) {
+            final Feature feature = e.getValue();
+            if (feature instanceof FeatureToDelete
+                    && !existingTrees.contains(NodeRef.parentPath(e.getKey()))) {
                 continue;
             }
-
-            Iterator<? extends Feature> iterator = features.iterator();
-            ProgressListener listener = new DefaultProgressListener();
-            List<org.locationtech.geogig.api.Node> insertedTarget = null;
-            Integer collectionSize = Integer.valueOf(features.size());
-            workTree.insert(parentPath, iterator, listener, insertedTarget, collectionSize);
+            features.add(feature);
         }
-        if (!deletes.isEmpty()) {
-            workTree.delete(deletes.iterator());
+        if (features.isEmpty()) {
+            return cnt;
         }
+
+        // inserts and deletes go through a single pass, building each affected tree once
+        Function<Feature, String> treePathResolver = new Function<Feature, String>() {
+            @Override
+            public String apply(Feature feature) {
+                return feature.getType().getName().getLocalPart();
+            }
+        };
+        ProgressListener listener = new DefaultProgressListener();
+        List<org.locationtech.geogig.api.Node> insertedTarget = null;
+        Integer collectionSize = Integer.valueOf(features.size());
+        workTree.insert(treePathResolver, features.iterator(), listener, insertedTarget,
+                collectionSize);
         return cnt;
     }
 
@@ -0,0 +1,90 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.locationtech.geogig.api.FeatureBuilder;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+
+/**
+ * Converts batches of feature {@link NodeRef}s to {@link SimpleFeature}s, fetching their
+ * {@link RevFeature}s with a single {@link ObjectDatabase#getAll(Iterable) getAll} call per batch,
+ * and parsing each feature type only once.
+ * <p>
+ * The features returned for a batch are not guaranteed to be in the same order than the refs.
+ */
+class FeatureFetcher implements Function<List<NodeRef>, Iterator<SimpleFeature>> {
+
+    static final int FETCH_SIZE = 1000;
+
+    private final ObjectDatabase source;
+
+    private final Map<ObjectId, FeatureBuilder> builders = Maps.newHashMap();
+
+    public FeatureFetcher(ObjectDatabase source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the features for the given refs, fetched in batches of {@value #FETCH_SIZE}
+     */
+    public static Iterator<SimpleFeature> fetch(Iterator<NodeRef> refs, ObjectDatabase source) {
+        Iterator<List<NodeRef>> batches = Iterators.partition(refs, FETCH_SIZE);
+        return Iterators.concat(Iterators.transform(batches, new FeatureFetcher(source)));
+    }
+
+    @Override
+    public Iterator<SimpleFeature> apply(List<NodeRef> refs) {
+        // more than one feature may have the same contents, hence the same object id
+        ArrayListMultimap<ObjectId, NodeRef> index = ArrayListMultimap.create();
+        for (NodeRef ref : refs) {
+            index.put(ref.objectId(), ref);
+        }
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>(refs.size());
+        Iterator<RevObject> objects = source.getAll(new ArrayList<ObjectId>(index.keySet()));
+        while (objects.hasNext()) {
+            RevFeature revFeature = (RevFeature) objects.next();
+            for (NodeRef ref : index.removeAll(revFeature.getId())) {
+                FeatureBuilder builder = builder(ref.getMetadataId());
+                features.add((SimpleFeature) builder.build(ref.name(), revFeature));
+            }
+        }
+        if (!index.isEmpty()) {
+            NodeRef missing = index.values().iterator().next();
+            throw new IllegalStateException("Feature " + missing.path() + " not found");
+        }
+        return features.iterator();
+    }
+
+    private FeatureBuilder builder(ObjectId metadataId) {
+        FeatureBuilder builder = builders.get(metadataId);
+        if (builder == null) {
+            RevFeatureType type = source.getFeatureType(metadataId);
+            builder = new FeatureBuilder(type);
+            builders.put(metadataId, builder);
+        }
+        return builder;
+    }
+}
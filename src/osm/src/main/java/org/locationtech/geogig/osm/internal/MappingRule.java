@@ -18,12 +18,14 @@ import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.referencing.CRS;
 import org.locationtech.geogig.storage.FieldType;
 import org.locationtech.geogig.storage.text.TextValueSerializer;
 import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureFactory;
 import org.opengis.feature.GeometryAttribute;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -136,18 +138,20 @@ public class MappingRule {
     @Nullable
     private List<DefaultField> defaultFields;
 
-    private SimpleFeatureType featureType;
-
-    private SimpleFeatureBuilder featureBuilder;
+    private volatile SimpleFeatureType featureType;
 
     private Class<?> geometryType;
 
     private GeomRestriction geomRestriction;
 
-    private ArrayList<String> _mandatoryTags = null;
+    private volatile ArrayList<String> _mandatoryTags = null;
 
     private static GeometryFactory gf = new GeometryFactory();
 
+    /** Cached instance to avoid multiple factory lookups */
+    private static final FeatureFactory FEATURE_FACTORY = CommonFactoryFinder
+            .getFeatureFactory(null);
+
     public MappingRule(final String name, final Map<String, List<String>> filter,
             @Nullable final Map<String, List<String>> filterExclude,
             final Map<String, AttributeDefinition> fields,
@@ -176,6 +180,13 @@ public class MappingRule {
      * @return
      */
     public SimpleFeatureType getFeatureType() {
+        if (featureType == null) {
+            buildFeatureType();
+        }
+        return featureType;
+    }
+
+    private synchronized void buildFeatureType() {
         if (featureType == null) {
             SimpleFeatureTypeBuilder fb = new SimpleFeatureTypeBuilder();
             fb.setName(name);
@@ -210,12 +221,7 @@ public class MappingRule {
                 fb.add("nodes", String.class);
             }
             featureType = fb.buildFeatureType();
-
-            featureBuilder = new SimpleFeatureBuilder(featureType);
-
         }
-        return featureType;
-
     }
 
     private GeomRestriction getGeomRestriction() {
@@ -255,7 +261,11 @@ public class MappingRule {
         if (!canBeApplied(feature, tags)) {
             return Optional.absent();
         }
-        for (AttributeDescriptor attribute : getFeatureType().getAttributeDescriptors()) {
+        // not shared, so that rules can be applied concurrently
+        final SimpleFeatureType featureType = getFeatureType();
+        final SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(featureType,
+                FEATURE_FACTORY);
+        for (AttributeDescriptor attribute : featureType.getAttributeDescriptors()) {
             String attrName = attribute.getName().toString();
             Class<?> clazz = attribute.getType().getBinding();
             if (Geometry.class.isAssignableFrom(clazz)) {
@@ -438,14 +448,15 @@ public class MappingRule {
 
     private ArrayList<String> getMandatoryTags() {
         if (_mandatoryTags == null) {
-            _mandatoryTags = Lists.newArrayList();
+            ArrayList<String> mandatoryTags = Lists.newArrayList();
             if (exclude != null) {
                 for (String key : this.exclude.keySet()) {
                     if (exclude.get(key) == null) {
-                        _mandatoryTags.add(key);
+                        mandatoryTags.add(key);
                     }
                 }
             }
+            _mandatoryTags = mandatoryTags;
         }
         return _mandatoryTags;
 
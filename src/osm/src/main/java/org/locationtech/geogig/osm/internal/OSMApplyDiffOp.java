@@ -13,8 +13,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
@@ -22,15 +24,23 @@ import javax.annotation.Nullable;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.api.ProgressListener;
+import org.locationtech.geogig.api.RevFeature;
 import org.locationtech.geogig.api.SubProgressListener;
 import org.locationtech.geogig.api.plumbing.FindTreeChild;
+import org.locationtech.geogig.api.porcelain.AddOp;
+import org.locationtech.geogig.api.porcelain.CommitOp;
 import org.locationtech.geogig.osm.internal.coordcache.BDBJEPointCache;
 import org.locationtech.geogig.osm.internal.coordcache.PointCache;
+import org.locationtech.geogig.osm.internal.log.AddOSMLogEntry;
+import org.locationtech.geogig.osm.internal.log.OSMLogEntry;
 import org.locationtech.geogig.repository.FeatureToDelete;
 import org.locationtech.geogig.repository.WorkingTree;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
@@ -48,7 +58,12 @@ import org.openstreetmap.osmosis.xml.v0_6.XmlChangeReader;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
@@ -63,6 +78,11 @@ import com.vividsolutions.jts.geom.PrecisionModel;
  * Changes are filtered to restrict additions to just those new features within the bbox of the
  * current OSM data in the repo, honoring the filter that might have been used to import that
  * preexistent data
+ * <p>
+ * Several consecutive diff files (e.g. minutely replication diffs) can be applied at once. Their
+ * changes are coalesced so that only the latest change to each entity is applied, and the ways in
+ * the repository that reference a modified node get their geometry recomputed. If a commit
+ * {@link #setMessage(String) message} is given, the whole batch is committed at once.
  * 
  */
 
@@ -78,25 +98,70 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
     // new PackedCoordinateSequenceFactory());
     /**
-     * The file to import
+     * The files to import, in the order they are to be applied
      */
-    private File file;
+    private List<File> files = Lists.newArrayList();
 
+    private String message;
+
+    /**
+     * Sets the single diff file to apply
+     * 
+     * @param file the osmChange file to apply
+     * @return {@code this}
+     */
     public OSMApplyDiffOp setDiffFile(File file) {
-        this.file = file;
+        this.files.clear();
+        return addDiffFile(file);
+    }
+
+    /**
+     * Adds a diff file to apply after the ones already added
+     * 
+     * @param file the osmChange file to apply
+     * @return {@code this}
+     */
+    public OSMApplyDiffOp addDiffFile(File file) {
+        checkNotNull(file);
+        this.files.add(file);
+        return this;
+    }
+
+    /**
+     * Sets the message to commit the applied changes with. If not set, changes are only applied
+     * to the working tree
+     * 
+     * @param message the commit message
+     * @return {@code this}
+     */
+    public OSMApplyDiffOp setMessage(String message) {
+        this.message = message;
         return this;
     }
 
     @Override
     protected Optional<OSMReport> _call() {
-        checkNotNull(file);
-        Preconditions.checkArgument(file.exists(), "File does not exist: " + file);
+        checkArgument(!files.isEmpty(), "No diff file provided");
+        for (File file : files) {
+            Preconditions.checkArgument(file.exists(), "File does not exist: " + file);
+        }
 
         ProgressListener progressListener = getProgressListener();
         progressListener.setDescription("Applying OSM diff file to GeoGig repo...");
 
         OSMReport report = parseDiffFileAndInsert();
 
+        if (message != null && report != null && !progressListener.isCanceled()) {
+            ObjectId newTreeId = workingTree().getTree().getId();
+            progressListener.setDescription("Staging features...");
+            command(AddOp.class).setProgressListener(progressListener).call();
+            progressListener.setDescription("Committing features...");
+            command(CommitOp.class).setMessage(message).setProgressListener(progressListener)
+                    .call();
+            OSMLogEntry entry = new OSMLogEntry(newTreeId, report.getLatestChangeset(),
+                    report.getLatestTimestamp());
+            command(AddOSMLogEntry.class).setEntry(entry).call();
+        }
         return Optional.fromNullable(report);
 
     }
@@ -107,20 +172,42 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         final int queueCapacity = 100 * 1000;
         final int timeout = 1;
         final TimeUnit timeoutUnit = TimeUnit.SECONDS;
+        final ObjectId baseWayTreeId = WayNodeIndex.wayTreeId(workTree);
+
         // With this iterator and the osm parsing happening on a separate thread, we follow a
         // producer/consumer approach so that the osm parse thread produces features into the
         // iterator's queue, and WorkingTree.insert consumes them on this thread
-        QueueIterator<Feature> target = new QueueIterator<Feature>(queueCapacity, timeout,
-                timeoutUnit);
-
-        XmlChangeReader reader = new XmlChangeReader(file, true, resolveCompressionMethod(file));
+        final QueueIterator<Feature> target = new QueueIterator<Feature>(queueCapacity,
+                timeout, timeoutUnit);
 
         ProgressListener progressListener = getProgressListener();
-        ConvertAndImportSink sink = new ConvertAndImportSink(target, context, workingTree(),
+        final ConvertAndImportSink sink = new ConvertAndImportSink(target, context, workingTree(),
                 platform(), new SubProgressListener(progressListener, 100));
-        reader.setChangeSink(sink);
 
-        Thread readerThread = new Thread(reader, "osm-diff-reader-thread");
+        Runnable readerTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    CoalescingSink changes = new CoalescingSink();
+                    for (File file : files) {
+                        XmlChangeReader diffReader = new XmlChangeReader(file, true,
+                                resolveCompressionMethod(file));
+                        diffReader.setChangeSink(changes);
+                        diffReader.run();
+                    }
+                    changes.replay(sink);
+                    sink.updateAffectedWays();
+                    sink.complete();
+                } catch (RuntimeException e) {
+                    sink.setFailure(e);
+                    target.cancel();
+                } finally {
+                    sink.release();
+                }
+            }
+        };
+
+        Thread readerThread = new Thread(readerTask, "osm-diff-reader-thread");
         readerThread.start();
 
         // used to set the task status name, but report no progress so it does not interfere
@@ -142,6 +229,18 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         workTree.insert(parentTreePathResolver, target, noProgressReportingListener, null, null);
 
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            throw Throwables.propagate(e);
+        }
+        if (sink.getFailure() != null) {
+            throw Throwables.propagate(sink.getFailure());
+        }
+        if (!progressListener.isCanceled()) {
+            WayNodeIndex.update(context, baseWayTreeId, sink.getWayNodeUpdates(),
+                    WayNodeIndex.wayTreeId(workTree));
+        }
         OSMReport report = new OSMReport(sink.getCount(), sink.getNodeCount(), sink.getWayCount(),
                 sink.getUnprocessedCount(), sink.getLatestChangeset(), sink.getLatestTimestamp());
         return report;
@@ -157,6 +256,75 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         return CompressionMethod.None;
     }
 
+    /**
+     * A sink that collects the changes of several consecutive diffs keeping only the latest change
+     * to each node and way, to be {@link #replay(ChangeSink) replayed} as a single diff.
+     * <p>
+     * The latest change is the one with the highest entity version, or the one read last for equal
+     * versions. An entity created and then deleted within the batch is not replayed at all, and an
+     * entity created and then modified is replayed as created.
+     */
+    static class CoalescingSink implements ChangeSink {
+
+        private final Map<Long, ChangeContainer> nodes = Maps.newLinkedHashMap();
+
+        private final Map<Long, ChangeContainer> ways = Maps.newLinkedHashMap();
+
+        @Override
+        public void initialize(Map<String, Object> metaData) {
+        }
+
+        @Override
+        public void process(ChangeContainer change) {
+            final Entity entity = change.getEntityContainer().getEntity();
+            final Map<Long, ChangeContainer> changes;
+            if (entity instanceof Node) {
+                changes = nodes;
+            } else if (entity instanceof Way) {
+                changes = ways;
+            } else {
+                return;
+            }
+            final Long id = Long.valueOf(entity.getId());
+            final ChangeContainer previous = changes.remove(id);
+            if (previous == null) {
+                changes.put(id, change);
+                return;
+            }
+            if (previous.getEntityContainer().getEntity().getVersion() > entity.getVersion()) {
+                changes.put(id, previous);
+                return;
+            }
+            if (ChangeAction.Create.equals(previous.getAction())) {
+                if (ChangeAction.Delete.equals(change.getAction())) {
+                    return;
+                }
+                change = new ChangeContainer(change.getEntityContainer(), ChangeAction.Create);
+            }
+            changes.put(id, change);
+        }
+
+        /**
+         * Sends the coalesced changes to {@code sink}, nodes first so that way geometries are
+         * built out of the latest node locations
+         */
+        public void replay(ChangeSink sink) {
+            for (ChangeContainer change : Iterables.concat(nodes.values(), ways.values())) {
+                sink.process(change);
+            }
+        }
+
+        @Override
+        public void complete() {
+            // called at the end of each diff file
+        }
+
+        @Override
+        public void release() {
+            // called at the end of each diff file
+        }
+    }
+
     /**
      * A sink that processes OSM changes and translates the to the repository working tree
      * 
@@ -170,6 +338,8 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
         };
 
+        private static final int LOCATION_INDEX = OSMUtils.nodeType().indexOf("location");
+
         private int count = 0;
 
         private int nodeCount;
@@ -194,10 +364,29 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         private Geometry bbox;
 
+        private Context context;
+
+        /**
+         * Nodes whose location may have changed, to update the ways that reference them
+         */
+        private Set<Long> modifiedNodes = Sets.newHashSet();
+
+        /**
+         * Ways already changed by the processed changes
+         */
+        private Set<Long> changedWays = Sets.newHashSet();
+
+        private int updatedWayCount;
+
+        private WayNodeIndex.Updates wayNodes = new WayNodeIndex.Updates();
+
+        private volatile RuntimeException failure;
+
         public ConvertAndImportSink(QueueIterator<Feature> target, Context cmdLocator,
                 WorkingTree workTree, Platform platform, ProgressListener progressListener) {
             super();
             this.target = target;
+            this.context = cmdLocator;
             this.workTree = workTree;
             this.progressListener = progressListener;
             this.latestChangeset = 0;
@@ -235,6 +424,33 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             return wayCount;
         }
 
+        /**
+         * @return the number of ways not present in the processed changes whose geometry was
+         *         recomputed because some of their nodes were modified
+         */
+        public long getUpdatedWayCount() {
+            return updatedWayCount;
+        }
+
+        public void setFailure(RuntimeException failure) {
+            this.failure = failure;
+        }
+
+        /**
+         * @return the ways added and removed from the way tree by the processed changes
+         */
+        public WayNodeIndex.Updates getWayNodeUpdates() {
+            return wayNodes;
+        }
+
+        /**
+         * @return the error that aborted the processing of changes, if any
+         */
+        @Nullable
+        public RuntimeException getFailure() {
+            return failure;
+        }
+
         @Override
         public void complete() {
             try {
@@ -263,11 +479,19 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             final EntityContainer entityContainer = container.getEntityContainer();
             final Entity entity = entityContainer.getEntity();
             final ChangeAction changeAction = container.getAction();
+            if (entity instanceof Way) {
+                changedWays.add(Long.valueOf(entity.getId()));
+            } else if (entity instanceof Node && changeAction.equals(ChangeAction.Modify)) {
+                modifiedNodes.add(Long.valueOf(entity.getId()));
+            }
             if (changeAction.equals(ChangeAction.Delete)) {
                 SimpleFeatureType ft = entity instanceof Node ? OSMUtils.nodeType() : OSMUtils
                         .wayType();
                 String id = Long.toString(entity.getId());
                 target.put(new FeatureToDelete(ft, id));
+                if (entity instanceof Way) {
+                    wayNodes.removeWay(entity.getId());
+                }
                 return;
             }
             if (changeAction.equals(ChangeAction.Modify)) {
@@ -301,11 +525,64 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
                 return;
             }
             if (geom != null) {
-                System.err.printf("%s within %s? %s\n", geom, bbox, geom.within(bbox));
                 if (changeAction.equals(ChangeAction.Create) && geom.within(bbox)
                         || changeAction.equals(ChangeAction.Modify)) {
                     Feature feature = converter.toFeature(entity, geom);
                     target.put(feature);
+                    if (entity instanceof Way) {
+                        wayNodes.addWay(entity.getId(),
+                                Lists.transform(((Way) entity).getWayNodes(), NODELIST_TO_ID_LIST));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Recomputes the geometry of the ways in the working tree that reference any of the
+         * modified nodes, unless the way itself was changed too. Must be called once all the
+         * changes were processed.
+         * <p>
+         * The affected ways are looked up in the {@link WayNodeIndex}, which is rebuilt first if
+         * it's not up to date with the working tree.
+         */
+        public void updateAffectedWays() {
+            if (modifiedNodes.isEmpty()) {
+                return;
+            }
+            Optional<org.locationtech.geogig.api.Node> waysTree = workTree
+                    .findUnstaged(OSMUtils.WAY_TYPE_NAME);
+            if (!waysTree.isPresent()) {
+                return;
+            }
+            final ObjectId metadataId = waysTree.get().getMetadataId().or(ObjectId.NULL);
+            final WayNodeIndex index = WayNodeIndex.get(context);
+            List<NodeRef> refs = Lists.newArrayList();
+            for (Long wayId : index.getWays(modifiedNodes)) {
+                if (changedWays.contains(wayId)) {
+                    continue;
+                }
+                String path = NodeRef.appendChild(OSMUtils.WAY_TYPE_NAME, wayId.toString());
+                Optional<org.locationtech.geogig.api.Node> ref = workTree.findUnstaged(path);
+                if (ref.isPresent()) {
+                    refs.add(new NodeRef(ref.get(), OSMUtils.WAY_TYPE_NAME, metadataId));
+                }
+            }
+            Iterator<SimpleFeature> ways = FeatureFetcher.fetch(refs.iterator(),
+                    context.stagingDatabase());
+            while (ways.hasNext()) {
+                if (progressListener.isCanceled()) {
+                    target.cancel();
+                    throw new OsmosisRuntimeException("Cancelled by user");
+                }
+                SimpleFeature way = ways.next();
+                List<Long> nodeIds = WayNodeIndex.parseNodes((String) way.getAttribute("nodes"));
+                Geometry geom = parseLine(nodeIds);
+                if (geom != null) {
+                    SimpleFeatureBuilder builder = new SimpleFeatureBuilder(way.getFeatureType());
+                    builder.init(way);
+                    builder.set("way", geom);
+                    target.put(builder.buildFeature(way.getID()));
+                    updatedWayCount++;
                 }
             }
         }
@@ -356,15 +633,18 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         protected Geometry parseLine(Way way) {
             final List<WayNode> nodes = way.getWayNodes();
 
-            if (nodes.size() < 2) {
+            return parseLine(Lists.transform(nodes, NODELIST_TO_ID_LIST));
+        }
+
+        @Nullable
+        private Geometry parseLine(List<Long> ids) {
+            if (ids.size() < 2) {
                 unableToProcessCount++;
                 return null;
             }
 
-            final List<Long> ids = Lists.transform(nodes, NODELIST_TO_ID_LIST);
-
             try {
-                CoordinateSequence coordinates = pointCache.get(ids);
+                CoordinateSequence coordinates = getCoordinates(ids);
                 return GEOMF.createLineString(coordinates);
             } catch (IllegalArgumentException e) {
                 unableToProcessCount++;
@@ -372,6 +652,46 @@ public class OSMApplyDiffOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
 
         }
+
+        /**
+         * Returns the coordinates of the given nodes, looking up in the working tree the ones that
+         * are not part of the changes processed so far
+         * 
+         * @throws IllegalArgumentException if a node is not found
+         */
+        private CoordinateSequence getCoordinates(List<Long> ids) {
+            try {
+                return pointCache.get(ids);
+            } catch (IllegalArgumentException notAllCached) {
+                for (Long id : ids) {
+                    try {
+                        pointCache.get(ImmutableList.of(id));
+                    } catch (IllegalArgumentException notCached) {
+                        Optional<Point> location = findNodeLocation(id);
+                        if (!location.isPresent()) {
+                            throw new IllegalArgumentException("Node #" + id + " not found");
+                        }
+                        OSMCoordinateSequence cs = CSFAC.create(1, 2);
+                        cs.setOrdinate(0, 0, location.get().getX());
+                        cs.setOrdinate(0, 1, location.get().getY());
+                        pointCache.put(id, cs);
+                    }
+                }
+                return pointCache.get(ids);
+            }
+        }
+
+        private Optional<Point> findNodeLocation(Long nodeId) {
+            String path = NodeRef.appendChild(OSMUtils.NODE_TYPE_NAME, nodeId.toString());
+            Optional<org.locationtech.geogig.api.Node> ref = workTree.findUnstaged(path);
+            if (!ref.isPresent()) {
+                return Optional.absent();
+            }
+            RevFeature feature = context.stagingDatabase().getFeature(ref.get().getObjectId());
+            Optional<Object> location = feature.getValues().get(LOCATION_INDEX);
+            return location.isPresent() ? Optional.of((Point) location.get()) : Optional
+                    .<Point> absent();
+        }
     }
 
 }
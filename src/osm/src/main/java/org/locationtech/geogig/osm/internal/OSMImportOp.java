@@ -17,9 +17,19 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 
@@ -31,14 +41,15 @@ import org.locationtech.geogig.api.SubProgressListener;
 import org.locationtech.geogig.api.hooks.Hookable;
 import org.locationtech.geogig.api.porcelain.AddOp;
 import org.locationtech.geogig.api.porcelain.CommitOp;
-import org.locationtech.geogig.osm.internal.coordcache.MappedPointCache;
 import org.locationtech.geogig.osm.internal.coordcache.PointCache;
+import org.locationtech.geogig.osm.internal.coordcache.PointCacheType;
 import org.locationtech.geogig.osm.internal.log.AddOSMLogEntry;
 import org.locationtech.geogig.osm.internal.log.OSMLogEntry;
 import org.locationtech.geogig.osm.internal.log.OSMMappingLogEntry;
 import org.locationtech.geogig.osm.internal.log.WriteOSMFilterFile;
 import org.locationtech.geogig.osm.internal.log.WriteOSMMappingEntries;
 import org.locationtech.geogig.repository.WorkingTree;
+import org.locationtech.geogig.storage.BulkLoadSession;
 import org.opengis.feature.Feature;
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
@@ -49,6 +60,7 @@ import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+import org.openstreetmap.osmosis.pbf2.v0_6.PbfReader;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
 
 import com.google.common.base.Function;
@@ -56,8 +68,10 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -65,8 +79,6 @@ import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.PrecisionModel;
 
-import crosby.binary.osmosis.OsmosisReader;
-
 /**
  * Imports data from OSM, whether from a URL that represents an endpoint that supports the OSM
  * overpass api, or from a file with OSM data
@@ -218,10 +230,12 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         EntityConverter converter = new EntityConverter();
 
         OSMReport report;
+        final BulkLoadSession bulkLoad = stagingDatabase().startBulkLoad();
         try {
             report = parseDataFileAndInsert(osmDataFile, osmDataStream, converter);
         } finally {
             Closeables.closeQuietly(osmDataStream);
+            bulkLoad.close();
         }
 
         if (!progressListener.isCanceled() && report != null) {
@@ -297,9 +311,12 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             compression = resolveCompressionMethod(file);
         }
 
+        final int numThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
         RunnableSource reader;
         if (pbf) {
-            reader = new OsmosisReader(dataIn);
+            // inflates and decodes the file blocks in parallel, but sends the entities to the sink
+            // in the same order they're in the file
+            reader = new PbfReader(file, numThreads);
         } else {
             reader = new org.locationtech.geogig.osm.internal.XmlReader(dataIn, true, compression);
         }
@@ -309,19 +326,20 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             workTree.delete(OSMUtils.NODE_TYPE_NAME);
             workTree.delete(OSMUtils.WAY_TYPE_NAME);
         }
+        final ObjectId baseWayTreeId = WayNodeIndex.wayTreeId(workTree);
 
-        final int queueCapacity = 100 * 1000;
+        final int queueCapacity = 100;
         final int timeout = 1;
         final TimeUnit timeoutUnit = TimeUnit.SECONDS;
-        // With this iterator and the osm parsing happening on a separate thread, we follow a
-        // producer/consumer approach so that the osm parse thread produces featrures into the
-        // iterator's queue, and WorkingTree.insert consumes them on this thread
-        QueueIterator<Feature> iterator = new QueueIterator<Feature>(queueCapacity, timeout,
-                timeoutUnit);
+        // With this iterator and the osm parsing happening on separate threads, we follow a
+        // producer/consumer approach so that the osm conversion threads produce batches of
+        // features into the iterator's queue, and WorkingTree.insert consumes them on this thread
+        QueueIterator<List<Feature>> iterator = new QueueIterator<List<Feature>>(queueCapacity,
+                timeout, timeoutUnit);
 
         ProgressListener progressListener = getProgressListener();
         ConvertAndImportSink sink = new ConvertAndImportSink(converter, iterator, platform(),
-                mapping, noRaw, new SubProgressListener(progressListener, 100));
+                mapping, noRaw, numThreads, new SubProgressListener(progressListener, 100));
         reader.setSink(sink);
 
         Thread readerThread = new Thread(reader, "osm-import-reader-thread");
@@ -347,11 +365,25 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
         };
 
-        workTree.insert(parentTreePathResolver, iterator, noPorgressReportingListener, null, null);
+        Iterator<Feature> features = Iterators.concat(Iterators.transform(iterator,
+                new Function<List<Feature>, Iterator<Feature>>() {
+                    @Override
+                    public Iterator<Feature> apply(List<Feature> batch) {
+                        return batch.iterator();
+                    }
+                }));
+        workTree.insert(parentTreePathResolver, features, noPorgressReportingListener, null, null);
 
+        if (sink.getFailure() != null) {
+            throw Throwables.propagate(sink.getFailure());
+        }
         if (sink.getCount() == 0) {
             throw new EmptyOSMDownloadException();
         }
+        if (!progressListener.isCanceled()) {
+            WayNodeIndex.update(context, baseWayTreeId, sink.getWayNodeUpdates(),
+                    WayNodeIndex.wayTreeId(workTree));
+        }
 
         OSMReport report = new OSMReport(sink.getCount(), sink.getNodeCount(), sink.getWayCount(),
                 sink.getUnprocessedCount(), sink.getLatestChangeset(), sink.getLatestTimestamp());
@@ -371,7 +403,12 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
     /**
      * A sink that processes OSM entities by converting them to GeoGig features and inserting them
      * into the repository working tree
-     * 
+     * <p>
+     * Entities are received in the order they come in the OSM data, and node coordinates are
+     * saved to the {@link PointCache} right away, so that the nodes a way refers to are always
+     * cached by the time the way is processed. Converting the entities to features and applying
+     * the mapping rules to them is performed on a pool of worker threads, in batches, and the
+     * resulting features are handed over to the target iterator in batches too.
      */
     static class ConvertAndImportSink implements Sink {
 
@@ -382,13 +419,18 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             }
         };
 
+        /**
+         * Number of entities converted to features by a single task
+         */
+        private static final int BATCH_SIZE = 1000;
+
         private int count = 0;
 
         private int nodeCount;
 
         private int wayCount;
 
-        private int unableToProcessCount = 0;
+        private AtomicInteger unableToProcessCount = new AtomicInteger();
 
         private EntityConverter converter;
 
@@ -398,7 +440,7 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         private PointCache pointCache;
 
-        private QueueIterator<Feature> target;
+        private QueueIterator<List<Feature>> target;
 
         private ProgressListener progressListener;
 
@@ -408,9 +450,35 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         private Stopwatch sw;
 
-        public ConvertAndImportSink(EntityConverter converter, QueueIterator<Feature> target,
-                Platform platform, Mapping mapping, boolean noRaw, ProgressListener progressListener) {
+        private final ExecutorService executor;
+
+        private final int maxPendingTasks;
+
+        private final Deque<Future<?>> pendingTasks = new ArrayDeque<Future<?>>();
+
+        private List<Entity> batch = new ArrayList<Entity>(BATCH_SIZE);
+
+        private List<Geometry> batchGeometries = new ArrayList<Geometry>(BATCH_SIZE);
+
+        private boolean batchHasWays;
+
+        /**
+         * Whether there may be tasks building way geometries out of the point cache running, in
+         * which case they're waited for before adding more nodes to the cache
+         */
+        private boolean waysInFlight;
+
+        private boolean completed;
+
+        private volatile Throwable failure;
+
+        private final WayNodeIndex.Updates wayNodes = new WayNodeIndex.Updates();
+
+        public ConvertAndImportSink(EntityConverter converter,
+                QueueIterator<List<Feature>> target, Platform platform, Mapping mapping,
+                boolean noRaw, int numThreads, ProgressListener progressListener) {
             super();
+            Preconditions.checkArgument(numThreads > 0, "numThreads must be > 0");
             this.converter = converter;
             this.target = target;
             this.mapping = mapping;
@@ -418,13 +486,17 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             this.progressListener = progressListener;
             this.latestChangeset = 0;
             this.latestTimestamp = 0;
-            // this.pointCache = new BDBJEPointCache(platform);
-            this.pointCache = new MappedPointCache(platform);
+            this.pointCache = PointCacheType.fromSystemProperty(PointCacheType.SORTED).create(
+                    platform);
+            ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                    .setNameFormat("osm-import-converter-%d").setDaemon(true).build();
+            this.executor = Executors.newFixedThreadPool(numThreads, threadFactory);
+            this.maxPendingTasks = 2 * numThreads;
             this.sw = Stopwatch.createStarted();
         }
 
         public long getUnprocessedCount() {
-            return unableToProcessCount;
+            return unableToProcessCount.get();
         }
 
         public long getCount() {
@@ -439,9 +511,27 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             return wayCount;
         }
 
+        /**
+         * @return the ways imported to the way tree
+         */
+        public WayNodeIndex.Updates getWayNodeUpdates() {
+            return wayNodes;
+        }
+
+        /**
+         * @return the error that aborted the import, if any
+         */
+        @Nullable
+        public Throwable getFailure() {
+            return failure;
+        }
+
         @Override
         public void complete() {
             try {
+                submitBatch();
+                awaitPendingTasks();
+                completed = true;
                 progressListener.setProgress(count);
                 progressListener.complete();
                 sw.stop();
@@ -449,6 +539,7 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
                 progressListener.setDescription(msg);
             } finally {
                 try {
+                    executor.shutdown();
                     target.noMoreInput();
                 } finally {
                     pointCache.dispose();
@@ -458,13 +549,25 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
 
         @Override
         public void release() {
-            pointCache.dispose();
+            try {
+                if (!completed) {
+                    // the reader failed or was cancelled, don't leave the consumer waiting
+                    executor.shutdownNow();
+                    if (failure == null && !progressListener.isCanceled()) {
+                        failure = new OsmosisRuntimeException("OSM data import aborted");
+                    }
+                    target.cancel();
+                }
+            } finally {
+                pointCache.dispose();
+            }
         }
 
         @Override
         public void process(EntityContainer entityContainer) {
             if (progressListener.isCanceled()) {
                 target.cancel();
+                executor.shutdownNow();
                 throw new OsmosisRuntimeException("Cancelled by user");
             }
             Entity entity = entityContainer.getEntity();
@@ -477,33 +580,111 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
             switch (entity.getType()) {
             case Node:
                 nodeCount++;
+                if (batchHasWays) {
+                    // the ways received so far are built with the coordinates their nodes had
+                    // back then, not with this one
+                    submitBatch();
+                }
+                if (waysInFlight) {
+                    // don't require the point cache to support concurrent reads and writes
+                    awaitPendingTasks();
+                }
                 geom = parsePoint((Node) entity);
                 break;
             case Way:
                 wayCount++;
-                geom = parseLine((Way) entity);
+                if (((Way) entity).getWayNodes().size() < 2) {
+                    unableToProcessCount.incrementAndGet();
+                    return;
+                }
+                if (!noRaw) {
+                    wayNodes.addWay(entity.getId(),
+                            Lists.transform(((Way) entity).getWayNodes(), NODELIST_TO_ID_LIST));
+                }
+                // geometry built by the conversion task
+                batchHasWays = true;
                 break;
             default:
                 return;
             }
-            if (geom != null) {
+            batch.add(entity);
+            batchGeometries.add(geom);
+            if (batch.size() == BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+
+        private void submitBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            final List<Entity> entities = batch;
+            final List<Geometry> geometries = batchGeometries;
+            batch = new ArrayList<Entity>(BATCH_SIZE);
+            batchGeometries = new ArrayList<Geometry>(BATCH_SIZE);
+            waysInFlight |= batchHasWays;
+            batchHasWays = false;
+
+            while (pendingTasks.size() >= maxPendingTasks) {
+                await(pendingTasks.removeFirst());
+            }
+            pendingTasks.addLast(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    convert(entities, geometries);
+                }
+            }));
+        }
 
+        private void awaitPendingTasks() {
+            while (!pendingTasks.isEmpty()) {
+                await(pendingTasks.removeFirst());
+            }
+            waysInFlight = false;
+        }
+
+        private void await(Future<?> task) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                failure = e;
+                target.cancel();
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+                target.cancel();
+                executor.shutdownNow();
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+
+        /**
+         * Converts a batch of entities to features, applies the mapping rules to them if needed,
+         * and hands them over to the target iterator.
+         * 
+         * @param geometries the geometries of the entities, {@code null} for the ways, which are
+         *        built out of the point cache
+         */
+        private void convert(List<Entity> entities, List<Geometry> geometries) {
+            List<Feature> features = new ArrayList<Feature>(entities.size());
+            for (int i = 0; i < entities.size(); i++) {
+                Entity entity = entities.get(i);
+                Geometry geom = geometries.get(i);
+                if (geom == null) {
+                    geom = parseLine((Way) entity);
+                }
                 @Nullable
                 Feature feature = converter.toFeature(entity, geom);
                 if (mapping != null && feature != null) {
-                    List<MappedFeature> mapped = mapping.map(feature);
-                    if (!mapped.isEmpty()) {
-                        for (MappedFeature m : mapped) {
-                            target.put(m);
-                        }
-                    }
+                    features.addAll(mapping.map(feature));
                 }
                 if (feature == null || noRaw) {
-                    return;
+                    continue;
                 }
-
-                target.put(feature);
-
+                features.add(feature);
+            }
+            if (!features.isEmpty()) {
+                target.put(features);
             }
         }
 
@@ -544,18 +725,10 @@ public class OSMImportOp extends AbstractGeoGigOp<Optional<OSMReport>> {
         }
 
         /**
-         * @return {@code null} if the way nodes cannot be found, or its list of nodes is too short,
-         *         the parsed {@link LineString} otherwise
+         * @return the parsed {@link LineString} out of the way nodes in the point cache
          */
-        @Nullable
         protected Geometry parseLine(Way way) {
             final List<WayNode> nodes = way.getWayNodes();
-
-            if (nodes.size() < 2) {
-                unableToProcessCount++;
-                return null;
-            }
-
             final List<Long> ids = Lists.transform(nodes, NODELIST_TO_ID_LIST);
 
             CoordinateSequence coordinates = pointCache.get(ids);
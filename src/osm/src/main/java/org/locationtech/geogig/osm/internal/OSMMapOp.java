@@ -11,22 +11,24 @@ package org.locationtech.geogig.osm.internal;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-
-import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.locationtech.geogig.api.AbstractGeoGigOp;
-import org.locationtech.geogig.api.FeatureBuilder;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
-import org.locationtech.geogig.api.RevFeature;
-import org.locationtech.geogig.api.RevFeatureTypeImpl;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
 import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
-import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.api.plumbing.RevParse;
 import org.locationtech.geogig.api.porcelain.AddOp;
 import org.locationtech.geogig.api.porcelain.CommitOp;
@@ -34,11 +36,11 @@ import org.locationtech.geogig.osm.internal.log.OSMMappingLogEntry;
 import org.locationtech.geogig.osm.internal.log.WriteOSMMappingEntries;
 import org.opengis.feature.Feature;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Creates new data in a geogig repository, based on the current OSM data in the repository and a
@@ -49,6 +51,11 @@ import com.google.common.collect.Iterators;
  */
 public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
 
+    /**
+     * Number of features mapped by a single task
+     */
+    private static final int BATCH_SIZE = 1000;
+
     /**
      * The mapping to use
      */
@@ -93,13 +100,13 @@ public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
 
         ObjectId oldTreeId = workingTree().getTree().getId();
 
-        Iterator<Feature> nodes;
+        Iterator<? extends Feature> nodes;
         if (mapping.canUseNodes()) {
             nodes = getFeatures("WORK_HEAD:node");
         } else {
             nodes = Iterators.emptyIterator();
         }
-        Iterator<Feature> ways;
+        Iterator<? extends Feature> ways;
         if (mapping.canUseWays()) {
             ways = getFeatures("WORK_HEAD:way");
         } else {
@@ -109,16 +116,7 @@ public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
 
         if (iterator.hasNext()) {
             FeatureMapFlusher insertsByParent = new FeatureMapFlusher(workingTree());
-            while (iterator.hasNext()) {
-                Feature feature = iterator.next();
-                List<MappedFeature> mappedFeatures = mapping.map(feature);
-                if (!mappedFeatures.isEmpty()) {
-                    for (MappedFeature mapped : mappedFeatures) {
-                        String path = mapped.getPath();
-                        insertsByParent.put(path, mapped);
-                    }
-                }
-            }
+            map(iterator, insertsByParent);
             insertsByParent.flushAll();
 
             ObjectId newTreeId = workingTree().getTree().getId();
@@ -136,7 +134,61 @@ public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
 
     }
 
-    private Iterator<Feature> getFeatures(String ref) {
+    /**
+     * Applies the mapping to the features in batches, on as many threads as processors are
+     * available, and hands over the mapped features to {@code target} on the calling thread, in
+     * the same order they'd be produced if the features were mapped sequentially.
+     */
+    private void map(Iterator<Feature> features, FeatureMapFlusher target) {
+        final int numThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        final int maxPendingTasks = 2 * numThreads;
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("osm-map-%d")
+                .setDaemon(true).build();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, threadFactory);
+        try {
+            Deque<Future<List<MappedFeature>>> pending;
+            pending = new ArrayDeque<Future<List<MappedFeature>>>();
+            Iterator<List<Feature>> batches = Iterators.partition(features, BATCH_SIZE);
+            while (batches.hasNext()) {
+                final List<Feature> batch = batches.next();
+                pending.addLast(executor.submit(new Callable<List<MappedFeature>>() {
+                    @Override
+                    public List<MappedFeature> call() {
+                        List<MappedFeature> mapped = new ArrayList<MappedFeature>();
+                        for (Feature feature : batch) {
+                            mapped.addAll(mapping.map(feature));
+                        }
+                        return mapped;
+                    }
+                }));
+                if (pending.size() >= maxPendingTasks) {
+                    put(pending.removeFirst(), target);
+                }
+            }
+            while (!pending.isEmpty()) {
+                put(pending.removeFirst(), target);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void put(Future<List<MappedFeature>> task, FeatureMapFlusher target) {
+        List<MappedFeature> mappedFeatures;
+        try {
+            mappedFeatures = task.get();
+        } catch (InterruptedException e) {
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        for (MappedFeature mapped : mappedFeatures) {
+            String path = mapped.getPath();
+            target.put(path, mapped);
+        }
+    }
+
+    private Iterator<? extends Feature> getFeatures(String ref) {
         Optional<ObjectId> id = command(RevParse.class).setRefSpec(ref).call();
         if (!id.isPresent()) {
             return Iterators.emptyIterator();
@@ -146,30 +198,6 @@ public class OSMMapOp extends AbstractGeoGigOp<RevTree> {
 
         Iterator<NodeRef> iterator = op.call();
 
-        Function<NodeRef, Feature> nodeRefToFeature = new Function<NodeRef, Feature>() {
-
-            private final Map<String, FeatureBuilder> builders = //
-            ImmutableMap.<String, FeatureBuilder> of(//
-                    OSMUtils.NODE_TYPE_NAME, //
-                    new FeatureBuilder(RevFeatureTypeImpl.build(OSMUtils.nodeType())), //
-                    OSMUtils.WAY_TYPE_NAME,//
-                    new FeatureBuilder(RevFeatureTypeImpl.build(OSMUtils.wayType())));
-
-            private final RevObjectParse parseCommand = command(RevObjectParse.class);
-
-            @Override
-            @Nullable
-            public Feature apply(@Nullable NodeRef ref) {
-                RevFeature revFeature = parseCommand.setObjectId(ref.objectId())
-                        .call(RevFeature.class).get();
-                final String parentPath = ref.getParentPath();
-                FeatureBuilder featureBuilder = builders.get(parentPath);
-                String fid = ref.name();
-                Feature feature = featureBuilder.build(fid, revFeature);
-                return feature;
-            }
-
-        };
-        return Iterators.transform(iterator, nodeRefToFeature);
+        return FeatureFetcher.fetch(iterator, stagingDatabase());
     }
 }
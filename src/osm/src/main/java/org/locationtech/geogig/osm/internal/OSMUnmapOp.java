@@ -19,7 +19,6 @@ import java.util.Set;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.locationtech.geogig.api.AbstractGeoGigOp;
 import org.locationtech.geogig.api.NodeRef;
-import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevFeature;
 import org.locationtech.geogig.api.RevFeatureType;
 import org.locationtech.geogig.api.RevFeatureTypeImpl;
@@ -35,15 +34,17 @@ import org.locationtech.geogig.osm.internal.log.ReadOSMMapping;
 import org.locationtech.geogig.osm.internal.log.ReadOSMMappingLogEntry;
 import org.opengis.feature.Property;
 import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.PropertyDescriptor;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 
 import com.beust.jcommander.internal.Maps;
+import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
@@ -136,29 +137,10 @@ public class OSMUnmapOp extends AbstractGeoGigOp<RevTree> {
                 .setStrategy(Strategy.FEATURES_ONLY).call();
 
         FeatureMapFlusher flusher = new FeatureMapFlusher(workingTree());
-        while (iter.hasNext()) {
-            NodeRef node = iter.next();
-            RevFeature revFeature = command(RevObjectParse.class).setObjectId(node.objectId())
-                    .call(RevFeature.class).get();
-            RevFeatureType revFeatureType = command(RevObjectParse.class)
-                    .setObjectId(node.getMetadataId()).call(RevFeatureType.class).get();
-            List<PropertyDescriptor> descriptors = revFeatureType.sortedDescriptors();
-            ImmutableList<Optional<Object>> values = revFeature.getValues();
-            SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(
-                    (SimpleFeatureType) revFeatureType.type());
-            String id = null;
-            for (int i = 0; i < descriptors.size(); i++) {
-                PropertyDescriptor descriptor = descriptors.get(i);
-                if (descriptor.getName().getLocalPart().equals("id")) {
-                    id = values.get(i).get().toString();
-                }
-                Optional<Object> value = values.get(i);
-                featureBuilder.set(descriptor.getName(), value.orNull());
-            }
-            Preconditions.checkNotNull(id, "No 'id' attribute found");
-            SimpleFeature feature = featureBuilder.buildFeature(id);
+        Iterator<SimpleFeature> features = FeatureFetcher.fetch(iter, stagingDatabase());
+        while (features.hasNext()) {
+            SimpleFeature feature = withMappedId(features.next());
             unmapFeature(feature, flusher);
-
         }
 
         flusher.flushAll();
@@ -172,43 +154,54 @@ public class OSMUnmapOp extends AbstractGeoGigOp<RevTree> {
                     .setNewTree(workingTree().getTree().getId())
                     .setOldTree(entry.get().getPostMappingId()).call();
 
-            while (diffs.hasNext()) {
-                DiffEntry diff = diffs.next();
-                if (diff.changeType().equals(DiffEntry.ChangeType.REMOVED)) {
-
-                    ObjectId featureId = diff.getOldObject().getNode().getObjectId();
-                    RevFeature revFeature = command(RevObjectParse.class).setObjectId(featureId)
-                            .call(RevFeature.class).get();
-                    RevFeatureType revFeatureType = command(RevObjectParse.class)
-                            .setObjectId(diff.getOldObject().getMetadataId())
-                            .call(RevFeatureType.class).get();
-                    List<PropertyDescriptor> descriptors = revFeatureType.sortedDescriptors();
-                    ImmutableList<Optional<Object>> values = revFeature.getValues();
-                    SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(
-                            (SimpleFeatureType) revFeatureType.type());
-                    String id = null;
-                    for (int i = 0; i < descriptors.size(); i++) {
-                        PropertyDescriptor descriptor = descriptors.get(i);
-                        if (descriptor.getName().getLocalPart().equals("id")) {
-                            id = values.get(i).get().toString();
+            Iterator<NodeRef> removed = Iterators.transform(
+                    Iterators.filter(diffs, new Predicate<DiffEntry>() {
+                        @Override
+                        public boolean apply(DiffEntry diff) {
+                            return diff.changeType().equals(DiffEntry.ChangeType.REMOVED);
                         }
-                        Optional<Object> value = values.get(i);
-                        featureBuilder.set(descriptor.getName(), value.orNull());
-                    }
-                    Preconditions.checkNotNull(id, "No 'id' attribute found");
-                    SimpleFeature feature = featureBuilder.buildFeature(id);
-                    Class<?> clazz = feature.getDefaultGeometryProperty().getType().getBinding();
-                    String deletePath = clazz.equals(Point.class) ? OSMUtils.NODE_TYPE_NAME
-                            : OSMUtils.WAY_TYPE_NAME;
-                    workingTree().delete(deletePath, id);
-                }
-            }
+                    }), new Function<DiffEntry, NodeRef>() {
+                        @Override
+                        public NodeRef apply(DiffEntry diff) {
+                            return diff.getOldObject();
+                        }
+                    });
+
+            Iterator<SimpleFeature> removedFeatures = FeatureFetcher.fetch(removed,
+                    stagingDatabase());
+            Iterator<String> deletePaths = Iterators.transform(removedFeatures,
+                    new Function<SimpleFeature, String>() {
+                        @Override
+                        public String apply(SimpleFeature removed) {
+                            SimpleFeature feature = withMappedId(removed);
+                            Class<?> clazz = feature.getDefaultGeometryProperty().getType()
+                                    .getBinding();
+                            String deletePath = clazz.equals(Point.class) ? OSMUtils.NODE_TYPE_NAME
+                                    : OSMUtils.WAY_TYPE_NAME;
+                            return NodeRef.appendChild(deletePath, feature.getID());
+                        }
+                    });
+            workingTree().delete(deletePaths);
         }
 
         return workingTree().getTree();
 
     }
 
+    /**
+     * @return the feature identified by the value of its "id" attribute, which is the id of the
+     *         raw OSM entity it was mapped from
+     */
+    private SimpleFeature withMappedId(SimpleFeature feature) {
+        Object id = feature.getAttribute("id");
+        Preconditions.checkNotNull(id, "No 'id' attribute found");
+        if (id.toString().equals(feature.getID())) {
+            return feature;
+        }
+        return SimpleFeatureBuilder.build(feature.getFeatureType(), feature.getAttributes(),
+                id.toString());
+    }
+
     private void unmapFeature(SimpleFeature feature, FeatureMapFlusher mapFlusher) {
         Class<?> clazz = feature.getDefaultGeometryProperty().getType().getBinding();
         if (clazz.equals(Point.class)) {
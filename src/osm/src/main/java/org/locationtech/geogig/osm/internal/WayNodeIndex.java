@@ -0,0 +1,520 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
+import org.locationtech.geogig.api.plumbing.LsTreeOp;
+import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
+import org.locationtech.geogig.api.plumbing.ResolveGeogigDir;
+import org.locationtech.geogig.repository.WorkingTree;
+import org.opengis.feature.simple.SimpleFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+
+/**
+ * A reverse index of the ways in the working tree that reference each OSM node, used to find out
+ * which way geometries need to be recomputed when nodes move.
+ * <p>
+ * The index is a list of {@code (node id, way id)} pairs held in two parallel {@code long} arrays,
+ * sorted by node id and then way id, so that looking up the ways of a node is a binary search.
+ * <p>
+ * The index is persisted to the {@code .geogig/osm/waynodes} file, tagged with a format version
+ * and the id of the working tree's {@code way} tree it was computed for. An index that doesn't
+ * match the current way tree (for example, after checking out another branch) is stale and
+ * {@link #get(Context) rebuilt} from the way features when needed. Operations that change the way
+ * tree keep the index up to date by {@link #update(Context, ObjectId, Updates, ObjectId) applying}
+ * the ways they added and removed.
+ */
+class WayNodeIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WayNodeIndex.class);
+
+    private static final int MAGIC = 0x574e4958;
+
+    /**
+     * Version of the persisted format, indexes written with a different version are rebuilt
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private static final String FILE_NAME = "waynodes";
+
+    private static final long[] NO_WAYS = new long[0];
+
+    private final ObjectId wayTreeId;
+
+    private final long[] nodeIds;
+
+    private final long[] wayIds;
+
+    private final int size;
+
+    /**
+     * @param wayTreeId the id of the way tree the index was computed for
+     * @param nodeIds node ids, sorted
+     * @param wayIds the ids of the ways referencing the nodes at the same index in
+     *        {@code nodeIds}, sorted for each node id
+     * @param size number of pairs
+     */
+    WayNodeIndex(ObjectId wayTreeId, long[] nodeIds, long[] wayIds, int size) {
+        checkNotNull(wayTreeId);
+        checkArgument(size <= nodeIds.length && size <= wayIds.length);
+        this.wayTreeId = wayTreeId;
+        this.nodeIds = nodeIds;
+        this.wayIds = wayIds;
+        this.size = size;
+    }
+
+    /**
+     * @return an index with no ways
+     */
+    static WayNodeIndex empty(ObjectId wayTreeId) {
+        return new WayNodeIndex(wayTreeId, NO_WAYS, NO_WAYS, 0);
+    }
+
+    /**
+     * @return the id of the way tree this index was computed for
+     */
+    public ObjectId getWayTreeId() {
+        return wayTreeId;
+    }
+
+    /**
+     * @return the number of {@code (node, way)} pairs in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the ids of the ways referencing the given node, sorted
+     */
+    public long[] getWays(long nodeId) {
+        int from = lowerBound(nodeId);
+        int to = from;
+        while (to < size && nodeIds[to] == nodeId) {
+            to++;
+        }
+        return from == to ? NO_WAYS : Arrays.copyOfRange(wayIds, from, to);
+    }
+
+    /**
+     * @return the ids of the ways referencing any of the given nodes
+     */
+    public SortedSet<Long> getWays(Iterable<Long> nodeIds) {
+        SortedSet<Long> ways = Sets.newTreeSet();
+        for (Long nodeId : nodeIds) {
+            for (long wayId : getWays(nodeId.longValue())) {
+                ways.add(Long.valueOf(wayId));
+            }
+        }
+        return ways;
+    }
+
+    /**
+     * Returns a new index out of this one where the ways removed or added by {@code updates} no
+     * longer reference their previous nodes, and the added ways reference their new nodes.
+     *
+     * @param newWayTreeId the id of the way tree the resulting index corresponds to
+     */
+    public WayNodeIndex apply(Updates updates, ObjectId newWayTreeId) {
+        final long[] touched;
+        final int touchedSize;
+        final long[] addedNodes;
+        final long[] addedWays;
+        final int addedSize;
+        synchronized (updates) {
+            updates.prepare();
+            touched = updates.touched;
+            touchedSize = updates.touchedSize;
+            addedNodes = updates.nodeIds;
+            addedWays = updates.wayIds;
+            addedSize = updates.size;
+        }
+
+        long[] newNodes = new long[size + addedSize];
+        long[] newWays = new long[size + addedSize];
+        int count = 0;
+        int i = 0, j = 0;
+        while (i < size || j < addedSize) {
+            long node, way;
+            if (j == addedSize || (i < size
+                    && compare(nodeIds[i], wayIds[i], addedNodes[j], addedWays[j]) <= 0)) {
+                node = nodeIds[i];
+                way = wayIds[i];
+                i++;
+                if (Arrays.binarySearch(touched, 0, touchedSize, way) >= 0) {
+                    continue;
+                }
+            } else {
+                node = addedNodes[j];
+                way = addedWays[j];
+                j++;
+            }
+            // closed ways reference their first node twice
+            if (count > 0 && newNodes[count - 1] == node && newWays[count - 1] == way) {
+                continue;
+            }
+            newNodes[count] = node;
+            newWays[count] = way;
+            count++;
+        }
+        return new WayNodeIndex(newWayTreeId, newNodes, newWays, count);
+    }
+
+    private int lowerBound(long nodeId) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (nodeIds[mid] < nodeId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(long node1, long way1, long node2, long way2) {
+        if (node1 != node2) {
+            return node1 < node2 ? -1 : 1;
+        }
+        return way1 < way2 ? -1 : (way1 == way2 ? 0 : 1);
+    }
+
+    /**
+     * @return the id of the {@code way} tree in the working tree, or {@link ObjectId#NULL} if
+     *         there's none
+     */
+    static ObjectId wayTreeId(WorkingTree workTree) {
+        Optional<Node> tree = workTree.findUnstaged(OSMUtils.WAY_TYPE_NAME);
+        return tree.isPresent() ? tree.get().getObjectId() : ObjectId.NULL;
+    }
+
+    /**
+     * Returns the index for the current working tree's way tree, rebuilding it out of the way
+     * features if the persisted one is missing or stale.
+     */
+    static WayNodeIndex get(Context context) {
+        final ObjectId wayTreeId = wayTreeId(context.workingTree());
+        Optional<WayNodeIndex> index = load(context);
+        if (index.isPresent() && index.get().getWayTreeId().equals(wayTreeId)) {
+            return index.get();
+        }
+        WayNodeIndex rebuilt = build(context, wayTreeId);
+        rebuilt.save(context);
+        return rebuilt;
+    }
+
+    /**
+     * Updates the persisted index after an operation changed the working tree's way tree from
+     * {@code baseWayTreeId} to {@code newWayTreeId}. If the persisted index doesn't correspond to
+     * {@code baseWayTreeId} it is discarded instead, to be rebuilt when needed.
+     */
+    static void update(Context context, ObjectId baseWayTreeId, Updates updates,
+            ObjectId newWayTreeId) {
+        Optional<WayNodeIndex> base;
+        if (baseWayTreeId.isNull()) {
+            base = Optional.of(empty(baseWayTreeId));
+        } else {
+            base = load(context);
+        }
+        if (base.isPresent() && base.get().getWayTreeId().equals(baseWayTreeId)) {
+            if (base.get().getWayTreeId().equals(newWayTreeId) && updates.isEmpty()) {
+                return;
+            }
+            base.get().apply(updates, newWayTreeId).save(context);
+        } else {
+            file(context).delete();
+        }
+    }
+
+    private static WayNodeIndex build(Context context, ObjectId wayTreeId) {
+        Updates updates = new Updates();
+        if (!wayTreeId.isNull()) {
+            Iterator<NodeRef> refs = context.command(LsTreeOp.class)
+                    .setReference(Ref.WORK_HEAD + ":" + OSMUtils.WAY_TYPE_NAME)
+                    .setStrategy(Strategy.FEATURES_ONLY).call();
+            Iterator<SimpleFeature> ways = FeatureFetcher.fetch(refs, context.stagingDatabase());
+            while (ways.hasNext()) {
+                SimpleFeature way = ways.next();
+                String nodes = (String) way.getAttribute("nodes");
+                updates.addWay(Long.parseLong(way.getID()), parseNodes(nodes));
+            }
+        }
+        return updates.build(wayTreeId);
+    }
+
+    /**
+     * Parses the value of a way feature's {@code nodes} attribute
+     */
+    static List<Long> parseNodes(String nodes) {
+        List<Long> nodeIds = Lists.newArrayList();
+        for (String nodeId : Splitter.on(';').omitEmptyStrings().split(nodes)) {
+            nodeIds.add(Long.valueOf(nodeId));
+        }
+        return nodeIds;
+    }
+
+    static File file(Context context) {
+        Optional<File> geogigDir = new ResolveGeogigDir(context.platform()).getFile();
+        checkState(geogigDir.isPresent(), "Not in a geogig repository");
+        return new File(new File(geogigDir.get(), "osm"), FILE_NAME);
+    }
+
+    /**
+     * @return the persisted index, or absent if there's none or it was written with a different
+     *         {@link #FORMAT_VERSION format version}
+     */
+    static Optional<WayNodeIndex> load(Context context) {
+        final File file = file(context);
+        if (!file.exists()) {
+            return Optional.absent();
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+                    64 * 1024));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return Optional.absent();
+            }
+            byte[] rawTreeId = new byte[ObjectId.NUM_BYTES];
+            in.readFully(rawTreeId);
+            final int size = in.readInt();
+            long[] nodeIds = new long[size];
+            long[] wayIds = new long[size];
+            for (int i = 0; i < size; i++) {
+                nodeIds[i] = in.readLong();
+            }
+            for (int i = 0; i < size; i++) {
+                wayIds[i] = in.readLong();
+            }
+            return Optional.of(new WayNodeIndex(ObjectId.createNoClone(rawTreeId), nodeIds,
+                    wayIds, size));
+        } catch (EOFException e) {
+            LOGGER.warn("Ignoring truncated way nodes index {}", file);
+            return Optional.absent();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Persists this index, replacing the current one
+     */
+    void save(Context context) {
+        final File file = file(context);
+        final File tmp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try {
+            Files.createParentDirs(file);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp), 64 * 1024));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.write(wayTreeId.getRawValue());
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(nodeIds[i]);
+                }
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(wayIds[i]);
+                }
+            } finally {
+                out.close();
+            }
+            file.delete();
+            Files.move(tmp, file);
+        } catch (IOException e) {
+            tmp.delete();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Collects the ways added and removed by an operation, to {@link WayNodeIndex#apply apply}
+     * them to an index. The last change recorded for a way is the one that counts.
+     */
+    static class Updates {
+
+        private long[] nodeIds = new long[1024];
+
+        private long[] wayIds = new long[1024];
+
+        private int size;
+
+        /**
+         * The ways added or removed, in the order they were recorded
+         */
+        private long[] touched = new long[1024];
+
+        /**
+         * For each touched way, the index of its first added pair, or {@code -1} if it was removed
+         */
+        private int[] starts = new int[1024];
+
+        private int touchedSize;
+
+        /**
+         * Records a way removed from the way tree
+         */
+        public synchronized void removeWay(long wayId) {
+            touch(wayId, -1);
+        }
+
+        /**
+         * Records a way added to the way tree, replacing its previous version if any
+         */
+        public synchronized void addWay(long wayId, List<Long> nodes) {
+            touch(wayId, size);
+            final int required = size + nodes.size();
+            if (required > nodeIds.length) {
+                int capacity = Math.max(required, 2 * nodeIds.length);
+                nodeIds = Arrays.copyOf(nodeIds, capacity);
+                wayIds = Arrays.copyOf(wayIds, capacity);
+            }
+            for (Long nodeId : nodes) {
+                nodeIds[size] = nodeId.longValue();
+                wayIds[size] = wayId;
+                size++;
+            }
+        }
+
+        private void touch(long wayId, int start) {
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, 2 * touchedSize);
+                starts = Arrays.copyOf(starts, 2 * touchedSize);
+            }
+            touched[touchedSize] = wayId;
+            starts[touchedSize] = start;
+            touchedSize++;
+        }
+
+        public synchronized boolean isEmpty() {
+            return touchedSize == 0;
+        }
+
+        /**
+         * @return a new index out of the added ways only
+         */
+        public WayNodeIndex build(ObjectId wayTreeId) {
+            return empty(wayTreeId).apply(this, wayTreeId);
+        }
+
+        /**
+         * Leaves a single entry per way in {@link #touched}, sorted by way id, discards the pairs
+         * of ways added and then removed or added again, and sorts the remaining pairs by node id
+         * and way id
+         */
+        synchronized void prepare() {
+            // stable sort by way id, so the last change to each way comes last
+            long[] ways = Arrays.copyOf(touched, touchedSize);
+            long[] order = new long[touchedSize];
+            for (int i = 0; i < touchedSize; i++) {
+                order[i] = i;
+            }
+            mergeSort(ways, order, new long[touchedSize], new long[touchedSize], 0, touchedSize);
+            int[] lastStarts = new int[touchedSize];
+            int count = 0;
+            for (int i = 0; i < touchedSize; i++) {
+                if (i + 1 < touchedSize && ways[i + 1] == ways[i]) {
+                    continue;
+                }
+                ways[count] = ways[i];
+                lastStarts[count] = starts[(int) order[i]];
+                count++;
+            }
+
+            int kept = 0;
+            for (int p = 0; p < size; p++) {
+                int start = lastStarts[Arrays.binarySearch(ways, 0, count, wayIds[p])];
+                if (start >= 0 && p >= start) {
+                    nodeIds[kept] = nodeIds[p];
+                    wayIds[kept] = wayIds[p];
+                    kept++;
+                }
+            }
+            size = kept;
+            mergeSort(nodeIds, wayIds, new long[size], new long[size], 0, size);
+
+            for (int i = 0; i < count; i++) {
+                // all the remaining pairs are valid
+                lastStarts[i] = Math.min(lastStarts[i], 0);
+            }
+            touched = ways;
+            starts = lastStarts;
+            touchedSize = count;
+        }
+
+        /**
+         * Sorts the parallel arrays by {@code first} and then {@code second}, stable
+         */
+        private static void mergeSort(long[] first, long[] second, long[] tmpFirst,
+                long[] tmpSecond, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            mergeSort(first, second, tmpFirst, tmpSecond, from, mid);
+            mergeSort(first, second, tmpFirst, tmpSecond, mid, to);
+            if (compare(first[mid - 1], second[mid - 1], first[mid], second[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(first, from, tmpFirst, from, to - from);
+            System.arraycopy(second, from, tmpSecond, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid || j < to) {
+                int src;
+                if (j == to
+                        || (i < mid && compare(tmpFirst[i], tmpSecond[i], tmpFirst[j],
+                                tmpSecond[j]) <= 0)) {
+                    src = i++;
+                } else {
+                    src = j++;
+                }
+                first[k] = tmpFirst[src];
+                second[k] = tmpSecond[src];
+                k++;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import org.locationtech.geogig.api.Platform;
+
+/**
+ * The available {@link PointCache} implementations, selectable through the
+ * {@code geogig.osm.pointCache} system property (e.g. {@code -Dgeogig.osm.pointCache=bdbje}).
+ */
+public enum PointCacheType {
+    /**
+     * @see BDBJEPointCache
+     */
+    BDBJE {
+        @Override
+        public PointCache create(Platform platform) {
+            return new BDBJEPointCache(platform);
+        }
+    },
+    /**
+     * @see MappedPointCache
+     */
+    MAPPED {
+        @Override
+        public PointCache create(Platform platform) {
+            return new MappedPointCache(platform);
+        }
+    },
+    /**
+     * @see SortedPointCache
+     */
+    SORTED {
+        @Override
+        public PointCache create(Platform platform) {
+            return new SortedPointCache(platform);
+        }
+    };
+
+    public static final String SYSTEM_PROPERTY = "geogig.osm.pointCache";
+
+    /**
+     * Creates a new point cache of this type, using the repository's temporary directory
+     */
+    public abstract PointCache create(Platform platform);
+
+    /**
+     * @param defaultType the type to use if the {@code geogig.osm.pointCache} system property is
+     *        not set
+     * @return the point cache type given by the {@code geogig.osm.pointCache} system property, or
+     *         {@code defaultType} if not set
+     * @throws IllegalArgumentException if the system property value is not a valid cache type
+     */
+    public static PointCacheType fromSystemProperty(PointCacheType defaultType) {
+        String type = System.getProperty(SYSTEM_PROPERTY);
+        if (type == null || type.trim().isEmpty()) {
+            return defaultType;
+        }
+        try {
+            return valueOf(type.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + SYSTEM_PROPERTY + " value: " + type
+                    + ". Expected one of bdbje, mapped, sorted");
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.plumbing.ResolveGeogigDir;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequence;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequenceFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+
+/**
+ * A {@link PointCache} that keeps node ids and coordinates in sorted primitive arrays, with no
+ * per node object allocation.
+ * <p>
+ * Coordinates are added to an in-memory chunk of parallel {@code long} (node ids) and {@code int}
+ * (fixed precision ordinates) arrays. Once the chunk is full it's sorted by node id (unless the
+ * nodes were already added in order, as they come in a sorted OSM extract) and moved to a memory
+ * mapped file inside the repository's {@code .geogig/tmp} directory, where it's looked up by binary
+ * search. The in-memory chunk is also sorted in place by the first lookup following out of order
+ * additions, so it's always binary searched too.
+ * <p>
+ * As long as nodes are added in ascending id order, the chunks don't overlap and finding the one
+ * holding a node is a binary search too; otherwise all the chunks whose id range contains the node
+ * are searched, latest first, so that the latest coordinate added for a node id is the one
+ * returned.
+ * <p>
+ * Lookups only take a shared read lock, so any number of threads can build geometries out of the
+ * cache at the same time, while additions, sorting the in-memory chunk and disposing the cache
+ * take the exclusive write lock.
+ */
+public class SortedPointCache implements PointCache {
+
+    private static final Random RANDOM = new Random();
+
+    private static final OSMCoordinateSequenceFactory CSFAC = new OSMCoordinateSequenceFactory();
+
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Size of a node on disk, {@code sizeOf(long) + 2 * sizeOf(int)}
+     */
+    private static final int RECSIZE = 16;
+
+    private final int chunkSize;
+
+    private File parentDir;
+
+    private File dataFile;
+
+    private RandomAccessFile randomAccessFile;
+
+    private FileChannel channel;
+
+    private long fileSize;
+
+    private Chunk[] chunks = new Chunk[16];
+
+    /**
+     * The max node id of each chunk, to binary search the chunk a node belongs to if they're
+     * {@link #chunksOrdered ordered}
+     */
+    private long[] chunkMaxIds = new long[16];
+
+    private int chunkCount;
+
+    /**
+     * Whether the id ranges of the chunks are disjoint and ascending
+     */
+    private boolean chunksOrdered = true;
+
+    private long[] ids;
+
+    private int[] coords;
+
+    private int size;
+
+    /**
+     * Whether the node ids in the current chunk are strictly ascending
+     */
+    private boolean sorted = true;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SortedPointCache(Platform platform) {
+        this(platform, DEFAULT_CHUNK_SIZE);
+    }
+
+    SortedPointCache(Platform platform, int chunkSize) {
+        checkArgument(chunkSize > 0, "chunkSize must be > 0");
+        this.chunkSize = chunkSize;
+        final Optional<File> geogigDir = new ResolveGeogigDir(platform).getFile();
+        checkState(geogigDir.isPresent());
+        this.parentDir = new File(new File(geogigDir.get(), "tmp"), "pointcache_"
+                + Math.abs(RANDOM.nextInt()));
+        checkState(parentDir.exists() || parentDir.mkdirs());
+        this.parentDir.deleteOnExit();
+
+        this.dataFile = new File(parentDir, "coordinates.dat");
+        this.dataFile.deleteOnExit();
+        try {
+            checkState(dataFile.createNewFile(), "unable to create coordinates file");
+            this.randomAccessFile = new RandomAccessFile(dataFile, "rw");
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        this.channel = randomAccessFile.getChannel();
+        this.ids = new long[chunkSize];
+        this.coords = new int[2 * chunkSize];
+    }
+
+    @Override
+    public void put(Long nodeId, OSMCoordinateSequence coord) {
+        Preconditions.checkNotNull(nodeId, "id is null");
+        Preconditions.checkNotNull(coord, "coord is null");
+        Preconditions.checkArgument(1 == coord.size(), "coord list size is not 1");
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkState(channel != null, "cache is disposed");
+
+            if (size == chunkSize) {
+                seal();
+            }
+            final long id = nodeId.longValue();
+            final int[] ordinates = coord.ordinates();
+            if (size > 0 && id <= ids[size - 1]) {
+                sorted = false;
+            }
+            ids[size] = id;
+            coords[2 * size] = ordinates[0];
+            coords[2 * size + 1] = ordinates[1];
+            size++;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public OSMCoordinateSequence get(List<Long> ids) {
+        Preconditions.checkNotNull(ids, "ids is null");
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            checkState(channel != null, "cache is disposed");
+            if (!sorted) {
+                // the read lock can't be upgraded, sort under the write lock and downgrade
+                readLock.unlock();
+                final Lock writeLock = lock.writeLock();
+                writeLock.lock();
+                try {
+                    checkState(channel != null, "cache is disposed");
+                    if (!sorted) {
+                        sortAndRemoveDuplicates();
+                        sorted = true;
+                    }
+                } finally {
+                    readLock.lock();
+                    writeLock.unlock();
+                }
+            }
+
+            final int numNodes = ids.size();
+            OSMCoordinateSequence sequence = CSFAC.create(numNodes);
+            int[] ordinates = sequence.ordinates();
+            for (int i = 0; i < numNodes; i++) {
+                long nodeId = ids.get(i).longValue();
+                if (!find(nodeId, ordinates, 2 * i)) {
+                    throw new IllegalArgumentException("Node #" + nodeId + " not found");
+                }
+            }
+            return sequence;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            try {
+                Closeables.close(channel, true);
+                Closeables.close(randomAccessFile, true);
+            } catch (IOException e) {
+                //
+            } finally {
+                channel = null;
+                randomAccessFile = null;
+                chunks = null;
+                ids = null;
+                coords = null;
+            }
+            dataFile.delete();
+            parentDir.delete();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Copies the coordinate of the given node to {@code target} at {@code offset}
+     *
+     * @return {@code false} if the node is not found
+     */
+    private boolean find(final long nodeId, final int[] target, final int offset) {
+        // the current chunk holds the latest coordinates added
+        final int index = Arrays.binarySearch(ids, 0, size, nodeId);
+        if (index >= 0) {
+            target[offset] = coords[2 * index];
+            target[offset + 1] = coords[2 * index + 1];
+            return true;
+        }
+
+        if (chunksOrdered) {
+            int c = Arrays.binarySearch(chunkMaxIds, 0, chunkCount, nodeId);
+            if (c < 0) {
+                c = -(c + 1);
+            }
+            return c < chunkCount && chunks[c].find(nodeId, target, offset);
+        }
+        for (int c = chunkCount - 1; c >= 0; c--) {
+            if (chunks[c].find(nodeId, target, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the current chunk, if needed, and moves it to the memory mapped file
+     */
+    private void seal() {
+        if (!sorted) {
+            sortAndRemoveDuplicates();
+        }
+        final long minId = ids[0];
+        final long maxId = ids[size - 1];
+        final long position = fileSize;
+        final long length = (long) RECSIZE * size;
+        ByteBuffer buffer;
+        try {
+            buffer = channel.map(MapMode.READ_WRITE, position, length);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        fileSize += length;
+
+        ByteBuffer idsView = buffer.duplicate();
+        idsView.limit(8 * size);
+        LongBuffer idBuffer = idsView.slice().asLongBuffer();
+        idBuffer.put(ids, 0, size);
+
+        ByteBuffer coordsView = buffer.duplicate();
+        coordsView.position(8 * size);
+        IntBuffer coordBuffer = coordsView.slice().asIntBuffer();
+        coordBuffer.put(coords, 0, 2 * size);
+
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, 2 * chunkCount);
+            chunkMaxIds = Arrays.copyOf(chunkMaxIds, 2 * chunkCount);
+        }
+        if (chunkCount > 0 && minId <= chunkMaxIds[chunkCount - 1]) {
+            chunksOrdered = false;
+        }
+        chunks[chunkCount] = new Chunk(idBuffer, coordBuffer, size, minId, maxId);
+        chunkMaxIds[chunkCount] = maxId;
+        chunkCount++;
+
+        size = 0;
+        sorted = true;
+    }
+
+    private void sortAndRemoveDuplicates() {
+        // stable sort so that the last coordinate added for a node comes last
+        mergeSort(ids, coords, new long[size], new int[2 * size], 0, size);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (i + 1 < size && ids[i + 1] == ids[i]) {
+                continue;
+            }
+            ids[count] = ids[i];
+            coords[2 * count] = coords[2 * i];
+            coords[2 * count + 1] = coords[2 * i + 1];
+            count++;
+        }
+        size = count;
+    }
+
+    private static void mergeSort(long[] ids, int[] coords, long[] tmpIds, int[] tmpCoords,
+            int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        mergeSort(ids, coords, tmpIds, tmpCoords, from, mid);
+        mergeSort(ids, coords, tmpIds, tmpCoords, mid, to);
+        if (ids[mid - 1] <= ids[mid]) {
+            return;
+        }
+        System.arraycopy(ids, from, tmpIds, from, to - from);
+        System.arraycopy(coords, 2 * from, tmpCoords, 2 * from, 2 * (to - from));
+        int i = from, j = mid, k = from;
+        while (i < mid || j < to) {
+            int src;
+            if (j == to || (i < mid && tmpIds[i] <= tmpIds[j])) {
+                src = i++;
+            } else {
+                src = j++;
+            }
+            ids[k] = tmpIds[src];
+            coords[2 * k] = tmpCoords[2 * src];
+            coords[2 * k + 1] = tmpCoords[2 * src + 1];
+            k++;
+        }
+    }
+
+    /**
+     * A sorted run of nodes in the memory mapped file, node ids first, followed by their
+     * coordinates in the same order
+     */
+    private static class Chunk {
+
+        private final LongBuffer ids;
+
+        private final IntBuffer coords;
+
+        private final int size;
+
+        private final long minId;
+
+        private final long maxId;
+
+        Chunk(LongBuffer ids, IntBuffer coords, int size, long minId, long maxId) {
+            this.ids = ids;
+            this.coords = coords;
+            this.size = size;
+            this.minId = minId;
+            this.maxId = maxId;
+        }
+
+        public boolean find(final long nodeId, final int[] target, final int offset) {
+            if (nodeId < minId || nodeId > maxId) {
+                return false;
+            }
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final long midId = ids.get(mid);
+                if (midId < nodeId) {
+                    low = mid + 1;
+                } else if (midId > nodeId) {
+                    high = mid - 1;
+                } else {
+                    target[offset] = coords.get(2 * mid);
+                    target[offset + 1] = coords.get(2 * mid + 1);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
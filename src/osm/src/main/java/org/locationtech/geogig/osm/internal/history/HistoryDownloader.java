@@ -10,6 +10,7 @@
 package org.locationtech.geogig.osm.internal.history;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.BufferedInputStream;
 import java.io.File;
@@ -17,10 +18,16 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import javax.annotation.Nullable;
 import javax.xml.stream.XMLStreamException;
 
 import com.google.common.base.Function;
@@ -33,6 +40,7 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ContiguousSet;
 import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
 import com.google.common.io.Closeables;
 
@@ -49,6 +57,11 @@ public class HistoryDownloader {
 
     private Predicate<Changeset> filter = Predicates.alwaysTrue();
 
+    @Nullable
+    private ExecutorService parseExecutor;
+
+    private int prefetchSize;
+
     /**
      * @param osmAPIUrl api url, e.g. {@code http://api.openstreetmap.org/api/0.6},
      *        {@code file:/path/to/downloaded/changesets}
@@ -70,6 +83,25 @@ public class HistoryDownloader {
         this.filter = filter;
     }
 
+    /**
+     * Makes the iterator returned by {@link #fetchChangesets()} parse the contents of up to
+     * {@code prefetchSize} changesets ahead of the one being consumed, so that downloading and
+     * parsing changesets overlaps with applying them.
+     * <p>
+     * The contents of each prefetched changeset are fully parsed and held in memory until it's
+     * consumed.
+     * 
+     * @param parseExecutor the executor to parse the changesets contents on, must not be the one
+     *        given to the constructor, as parsing waits for the download to finish
+     * @param prefetchSize how many changesets to parse ahead at most
+     */
+    public void setPrefetch(ExecutorService parseExecutor, int prefetchSize) {
+        checkNotNull(parseExecutor);
+        checkArgument(prefetchSize > 0, "prefetchSize must be > 0");
+        this.parseExecutor = parseExecutor;
+        this.prefetchSize = prefetchSize;
+    }
+
     /**
     *
     */
@@ -125,9 +157,81 @@ public class HistoryDownloader {
 
         Iterator<Iterator<Changeset>> changesets = Iterators.transform(partitions, asChangesets);
         Iterator<Changeset> concat = Iterators.concat(changesets);
+        if (parseExecutor != null) {
+            concat = new PrefetchingIterator(concat);
+        }
         return concat;
     }
 
+    /**
+     * Keeps a window of upcoming changesets whose contents are being parsed on the
+     * {@link #parseExecutor}, and returns them in order
+     */
+    private class PrefetchingIterator extends AbstractIterator<Changeset> {
+
+        private final Iterator<Changeset> changesets;
+
+        private final Deque<Changeset> window = new ArrayDeque<Changeset>();
+
+        public PrefetchingIterator(Iterator<Changeset> changesets) {
+            this.changesets = changesets;
+        }
+
+        @Override
+        protected Changeset computeNext() {
+            while (window.size() < prefetchSize && changesets.hasNext()) {
+                Changeset changeset = changesets.next();
+                if (filter.apply(changeset)) {
+                    prefetch(changeset);
+                }
+                window.addLast(changeset);
+            }
+            return window.isEmpty() ? endOfData() : window.removeFirst();
+        }
+
+        private void prefetch(Changeset changeset) {
+            final Supplier<Optional<Iterator<Change>>> changes = changeset.getChanges();
+            Future<Optional<List<Change>>> parsed = parseExecutor
+                    .submit(new Callable<Optional<List<Change>>>() {
+                        @Override
+                        public Optional<List<Change>> call() {
+                            Optional<Iterator<Change>> iterator = changes.get();
+                            if (!iterator.isPresent()) {
+                                return Optional.absent();
+                            }
+                            List<Change> list = Lists.newArrayList(iterator.get());
+                            return Optional.of(list);
+                        }
+                    });
+            changeset.setChanges(new ParsedChangesSupplier(parsed));
+        }
+    }
+
+    private static class ParsedChangesSupplier implements Supplier<Optional<Iterator<Change>>> {
+
+        private final Future<Optional<List<Change>>> parsed;
+
+        public ParsedChangesSupplier(Future<Optional<List<Change>>> parsed) {
+            this.parsed = parsed;
+        }
+
+        @Override
+        public Optional<Iterator<Change>> get() {
+            Optional<List<Change>> changes;
+            try {
+                changes = parsed.get();
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+            if (!changes.isPresent()) {
+                return Optional.absent();
+            }
+            return Optional.of(changes.get().iterator());
+        }
+    }
+
     private Optional<Iterator<Change>> parseChanges(Supplier<Optional<File>> file) {
 
         final Optional<File> changesFile;
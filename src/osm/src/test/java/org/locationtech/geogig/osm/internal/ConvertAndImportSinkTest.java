@@ -0,0 +1,381 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.DefaultProgressListener;
+import org.locationtech.geogig.api.ProgressListener;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.plumbing.RevObjectParse;
+import org.locationtech.geogig.storage.FieldType;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Tests the parallel conversion of OSM entities by {@link OSMImportOp.ConvertAndImportSink},
+ * with enough entities to span several conversion batches.
+ */
+public class ConvertAndImportSinkTest extends RepositoryTestCase {
+
+    private static final int NODES = 3000;
+
+    private static final int WAYS = 1500;
+
+    private static final int LATE_NODES = 1000;
+
+    private static final int LATE_WAYS = 500;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.configDatabase().put("user.name", "groldan");
+        repo.configDatabase().put("user.email", "groldan@boundlessgeo.com");
+    }
+
+    @Test
+    public void testParallelConversionMatchesSequential() throws Exception {
+        List<Entity> entities = entities();
+        Mapping mapping = mapping();
+
+        Map<String, String> sequential = geometries(run(entities, 1, mapping));
+        Map<String, String> parallel = geometries(run(entities, 4, mapping));
+
+        assertEquals(sequential, parallel);
+        assertEquals(NODES + LATE_NODES, count(parallel, "node/"));
+        assertEquals(WAYS + LATE_WAYS, count(parallel, "way/"));
+        // both rules of the mapping applied concurrently to every way
+        assertEquals(expectedResidential(), count(parallel, "residential/"));
+        assertEquals(expectedOneway(), count(parallel, "oneway/"));
+    }
+
+    @Test
+    public void testNodeAfterWays() throws Exception {
+        List<Feature> features = run(entities(), 4, null);
+
+        // node 1 was sent again with a new location after the first ways
+        List<Double> node1 = Lists.newArrayList();
+        Geometry firstWay = null;
+        Geometry lateWay = null;
+        for (Feature f : features) {
+            String id = f.getIdentifier().getID();
+            Geometry geom = (Geometry) f.getDefaultGeometryProperty().getValue();
+            String type = f.getType().getName().getLocalPart();
+            if ("node".equals(type) && "1".equals(id)) {
+                node1.add(Double.valueOf(geom.getCoordinate().x));
+            } else if ("way".equals(type) && "1".equals(id)) {
+                firstWay = geom;
+            } else if ("way".equals(type) && String.valueOf(WAYS + 1).equals(id)) {
+                lateWay = geom;
+            }
+        }
+        // the new node location comes after the old one
+        assertEquals(ImmutableList.of(lon(1), 50D), node1);
+        // ways received before the new node location are built with the old one
+        assertEquals(lon(1), firstWay.getCoordinates()[0].x, 1E-7);
+        // and the ones received after it with the new one
+        assertEquals(50D, lateWay.getCoordinates()[0].x, 1E-7);
+    }
+
+    @Test
+    public void testConverterFailure() throws Exception {
+        final IllegalStateException error = new IllegalStateException("conversion failed");
+        EntityConverter converter = new EntityConverter() {
+            @Override
+            public SimpleFeature toFeature(Entity entity, Geometry geom) {
+                if (entity instanceof Way && entity.getId() == 700) {
+                    throw error;
+                }
+                return super.toFeature(entity, geom);
+            }
+        };
+        QueueIterator<List<Feature>> target = newTarget();
+        OSMImportOp.ConvertAndImportSink sink = new OSMImportOp.ConvertAndImportSink(converter,
+                target, geogig.getPlatform(), null, false, 4, new DefaultProgressListener());
+        try {
+            feed(sink, entities());
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertSame(error, e);
+        }
+        assertSame(error, sink.getFailure());
+        // the consumer is not left waiting for more features
+        assertFalse(target.hasNext());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        List<Entity> entities = entities();
+        final ProgressListener listener = new DefaultProgressListener();
+        QueueIterator<List<Feature>> target = newTarget();
+        OSMImportOp.ConvertAndImportSink sink = new OSMImportOp.ConvertAndImportSink(
+                new EntityConverter(), target, geogig.getPlatform(), null, false, 4, listener);
+        try {
+            for (int i = 0; i < entities.size(); i++) {
+                if (i == NODES) {
+                    listener.cancel();
+                }
+                sink.process(container(entities.get(i)));
+            }
+            fail("expected OsmosisRuntimeException");
+        } catch (OsmosisRuntimeException e) {
+            assertEquals("Cancelled by user", e.getMessage());
+        } finally {
+            sink.release();
+        }
+        // cancelling is not a failure
+        assertNull(sink.getFailure());
+        assertFalse(target.hasNext());
+    }
+
+    @Test
+    public void testImportFileWithMapping() throws Exception {
+        File file = tempFolder.newFile("generated.xml");
+        writeXml(file);
+
+        geogig.command(OSMImportOp.class).setDataSource(file.getAbsolutePath())
+                .setMapping(mapping()).call();
+
+        // imported features are committed when there's a mapping
+        assertEquals(NODES, treeSize("node"));
+        assertEquals(WAYS, treeSize("way"));
+        assertEquals(expectedResidential(WAYS), treeSize("residential"));
+        assertEquals(expectedOneway(WAYS), treeSize("oneway"));
+
+        // a way built out of the nodes of the last conversion batches
+        Optional<org.locationtech.geogig.api.Node> way = geogig.getRepository().workingTree()
+                .findUnstaged("residential/" + WAYS);
+        assertTrue(way.isPresent());
+        Optional<RevFeature> feature = geogig.command(RevObjectParse.class)
+                .setObjectId(way.get().getObjectId()).call(RevFeature.class);
+        Geometry geom = (Geometry) feature.get().getValues().get(1).get();
+        assertEquals(lon(2 * WAYS - 1), geom.getCoordinates()[0].x, 1E-7);
+        assertEquals(lat(2 * WAYS), geom.getCoordinates()[1].y, 1E-7);
+    }
+
+    private long treeSize(String path) {
+        Optional<RevTree> tree = geogig.command(RevObjectParse.class).setRefSpec("HEAD:" + path)
+                .call(RevTree.class);
+        assertTrue(tree.isPresent());
+        return tree.get().size();
+    }
+
+    private List<Feature> run(List<Entity> entities, int numThreads, Mapping mapping) {
+        QueueIterator<List<Feature>> target = newTarget();
+        OSMImportOp.ConvertAndImportSink sink = new OSMImportOp.ConvertAndImportSink(
+                new EntityConverter(), target, geogig.getPlatform(), mapping, false, numThreads,
+                new DefaultProgressListener());
+        feed(sink, entities);
+        assertNull(sink.getFailure());
+        assertEquals(entities.size(), sink.getCount());
+
+        List<Feature> features = Lists.newArrayList();
+        while (target.hasNext()) {
+            features.addAll(target.next());
+        }
+        return features;
+    }
+
+    /**
+     * Feeds the entities to the sink the way the OSM readers do
+     */
+    private void feed(OSMImportOp.ConvertAndImportSink sink, List<Entity> entities) {
+        try {
+            for (Entity entity : entities) {
+                sink.process(container(entity));
+            }
+            sink.complete();
+        } finally {
+            sink.release();
+        }
+    }
+
+    private QueueIterator<List<Feature>> newTarget() {
+        // large enough for the conversion tasks never to block
+        return new QueueIterator<List<Feature>>(10000, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the geometry of each feature by path, the latest one if a feature comes more than
+     *         once
+     */
+    private Map<String, String> geometries(List<Feature> features) {
+        Map<String, String> geometries = Maps.newHashMap();
+        for (Feature f : features) {
+            String path = f instanceof MappedFeature ? ((MappedFeature) f).getPath() : f
+                    .getType().getName().getLocalPart();
+            geometries.put(path + "/" + f.getIdentifier().getID(),
+                    String.valueOf(f.getDefaultGeometryProperty().getValue()));
+        }
+        return geometries;
+    }
+
+    private int count(Map<String, String> geometries, String prefix) {
+        int count = 0;
+        for (String path : geometries.keySet()) {
+            if (path.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Nodes first, then ways made of two consecutive nodes each, then node 1 again with a new
+     * location, more nodes, and ways made of node 1 and one of the later nodes
+     */
+    private List<Entity> entities() {
+        List<Entity> entities = Lists.newArrayList();
+        for (long id = 1; id <= NODES; id++) {
+            entities.add(node(id, lon(id), lat(id)));
+        }
+        for (long id = 1; id <= WAYS; id++) {
+            entities.add(way(id, 2 * id - 1, 2 * id));
+        }
+        entities.add(node(1, 50, 10));
+        for (long id = NODES + 1; id <= NODES + LATE_NODES; id++) {
+            entities.add(node(id, lon(id), lat(id)));
+        }
+        for (long id = WAYS + 1; id <= WAYS + LATE_WAYS; id++) {
+            entities.add(way(id, 1, NODES + id - WAYS));
+        }
+        return entities;
+    }
+
+    private static double lon(long nodeId) {
+        return nodeId / 1000D;
+    }
+
+    private static double lat(long nodeId) {
+        return nodeId / 2000D;
+    }
+
+    private static List<Tag> tags(long wayId) {
+        List<Tag> tags = Lists.newArrayList();
+        if (wayId % 2 == 0) {
+            tags.add(new Tag("highway", "residential"));
+        }
+        if (wayId % 3 == 0) {
+            tags.add(new Tag("oneway", "yes"));
+        }
+        return tags;
+    }
+
+    private int expectedResidential() {
+        return expectedResidential(WAYS + LATE_WAYS);
+    }
+
+    private int expectedResidential(int ways) {
+        return ways / 2;
+    }
+
+    private int expectedOneway() {
+        return expectedOneway(WAYS + LATE_WAYS);
+    }
+
+    private int expectedOneway(int ways) {
+        return ways / 3;
+    }
+
+    private Node node(long id, double lon, double lat) {
+        return new Node(new CommonEntityData(id, 1, new Date(1000L), new OsmUser(1, "user"), 1L),
+                lat, lon);
+    }
+
+    private Way way(long id, long... nodeIds) {
+        List<WayNode> wayNodes = Lists.newArrayList();
+        for (long nodeId : nodeIds) {
+            wayNodes.add(new WayNode(nodeId));
+        }
+        return new Way(new CommonEntityData(id, 1, new Date(1000L), new OsmUser(1, "user"), 1L,
+                tags(id)), wayNodes);
+    }
+
+    private EntityContainer container(Entity e) {
+        if (e instanceof Node) {
+            return new NodeContainer((Node) e);
+        }
+        return new WayContainer((Way) e);
+    }
+
+    private Mapping mapping() {
+        Map<String, AttributeDefinition> fields = ImmutableMap.of("geom", new AttributeDefinition(
+                "geom", FieldType.LINESTRING));
+        Map<String, List<String>> residential = Maps.newHashMap();
+        residential.put("highway", Lists.newArrayList("residential"));
+        Map<String, List<String>> oneway = Maps.newHashMap();
+        oneway.put("oneway", Lists.newArrayList("yes"));
+        Map<String, List<String>> exclude = Maps.newHashMap();
+        return new Mapping(ImmutableList.of(new MappingRule("residential", residential, exclude,
+                fields, null), new MappingRule("oneway", oneway, exclude, fields, null)));
+    }
+
+    /**
+     * Writes the nodes and ways received before node 1 is sent again as an OSM XML file
+     */
+    private void writeXml(File file) throws IOException {
+        Writer w = Files.newWriter(file, Charsets.UTF_8);
+        try {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\">\n");
+            String attributes = "version=\"1\" timestamp=\"2014-01-01T00:00:00Z\" "
+                    + "changeset=\"1\" uid=\"1\" user=\"user\"";
+            for (long id = 1; id <= NODES; id++) {
+                w.write(String.format("  <node id=\"%d\" lat=\"%s\" lon=\"%s\" %s/>\n", id,
+                        lat(id), lon(id), attributes));
+            }
+            for (long id = 1; id <= WAYS; id++) {
+                w.write(String.format("  <way id=\"%d\" %s>\n", id, attributes));
+                w.write(String.format("    <nd ref=\"%d\"/>\n    <nd ref=\"%d\"/>\n", 2 * id - 1,
+                        2 * id));
+                for (Tag tag : tags(id)) {
+                    w.write(String.format("    <tag k=\"%s\" v=\"%s\"/>\n", tag.getKey(),
+                            tag.getValue()));
+                }
+                w.write("  </way>\n");
+            }
+            w.write("</osm>\n");
+        } finally {
+            w.close();
+        }
+    }
+}
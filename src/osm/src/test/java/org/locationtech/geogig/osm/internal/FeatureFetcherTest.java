@@ -0,0 +1,149 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Test;
+import org.locationtech.geogig.api.DefaultProgressListener;
+import org.locationtech.geogig.api.FeatureBuilder;
+import org.locationtech.geogig.api.Node;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.RevObject.TYPE;
+import org.locationtech.geogig.api.plumbing.LsTreeOp;
+import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
+import org.locationtech.geogig.api.plumbing.RevObjectParse;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Tests {@link FeatureFetcher} against parsing each feature on its own, with enough features to
+ * span several fetch batches.
+ */
+public class FeatureFetcherTest extends RepositoryTestCase {
+
+    private static final int NODES = 2 * FeatureFetcher.FETCH_SIZE + 500;
+
+    /**
+     * Nodes with the same contents than others, hence the same object id
+     */
+    private static final int COPIES = 100;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        List<SimpleFeature> nodes = Lists.newArrayList();
+        for (int id = 1; id <= NODES; id++) {
+            nodes.add(node(String.valueOf(id), id));
+        }
+        for (int id = 1; id <= COPIES; id++) {
+            nodes.add(node(String.valueOf(NODES + id), id));
+        }
+        repo.workingTree().insert(OSMUtils.NODE_TYPE_NAME, nodes.iterator(),
+                new DefaultProgressListener(), null, nodes.size());
+    }
+
+    @Test
+    public void testFetchMatchesSequentialParsing() throws Exception {
+        Map<String, SimpleFeature> expected = Maps.newHashMap();
+        Iterator<NodeRef> refs = refs();
+        while (refs.hasNext()) {
+            NodeRef ref = refs.next();
+            expected.put(ref.name(), parse(ref));
+        }
+        assertEquals(NODES + COPIES, expected.size());
+
+        ObjectDatabase db = spy(repo.stagingDatabase());
+        Map<String, SimpleFeature> fetched = Maps.newHashMap();
+        Iterator<SimpleFeature> features = FeatureFetcher.fetch(refs(), db);
+        while (features.hasNext()) {
+            SimpleFeature feature = features.next();
+            assertNull(feature.getID(), fetched.put(feature.getID(), feature));
+        }
+
+        assertEquals(expected.keySet(), fetched.keySet());
+        for (SimpleFeature feature : expected.values()) {
+            SimpleFeature actual = fetched.get(feature.getID());
+            assertEquals(feature.getFeatureType(), actual.getFeatureType());
+            assertEquals(feature.getAttributes(), actual.getAttributes());
+        }
+        // the copies got a feature each
+        assertEquals(fetched.get("1").getAttributes(),
+                fetched.get(String.valueOf(NODES + 1)).getAttributes());
+
+        // one query per batch, and the feature type is parsed only once
+        final int batches = (NODES + COPIES + FeatureFetcher.FETCH_SIZE - 1)
+                / FeatureFetcher.FETCH_SIZE;
+        verify(db, times(batches)).getAll(any(Iterable.class));
+        verify(db, times(1)).getFeatureType(any(ObjectId.class));
+    }
+
+    @Test
+    public void testMissingFeature() throws Exception {
+        NodeRef existing = refs().next();
+        ObjectId metadataId = existing.getMetadataId();
+        Node missing = Node.create("missing", ObjectId.forString("missing"), metadataId,
+                TYPE.FEATURE, null);
+        List<NodeRef> refs = ImmutableList.of(existing, new NodeRef(missing,
+                OSMUtils.NODE_TYPE_NAME, metadataId));
+        try {
+            FeatureFetcher.fetch(refs.iterator(), repo.stagingDatabase()).next();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("node/missing"));
+        }
+    }
+
+    private Iterator<NodeRef> refs() {
+        return geogig.command(LsTreeOp.class).setStrategy(Strategy.DEPTHFIRST_ONLY_FEATURES)
+                .setReference("WORK_HEAD:" + OSMUtils.NODE_TYPE_NAME).call();
+    }
+
+    /**
+     * Builds the feature for a ref the way it used to be done, one object at a time
+     */
+    private SimpleFeature parse(NodeRef ref) {
+        RevFeature revFeature = geogig.command(RevObjectParse.class)
+                .setObjectId(ref.objectId()).call(RevFeature.class).get();
+        RevFeatureType type = geogig.command(RevObjectParse.class)
+                .setObjectId(ref.getMetadataId()).call(RevFeatureType.class).get();
+        return (SimpleFeature) new FeatureBuilder(type).build(ref.name(), revFeature);
+    }
+
+    private SimpleFeature node(String fid, int seed) {
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(OSMUtils.nodeType());
+        builder.set("visible", true);
+        builder.set("version", 1);
+        builder.set("timestamp", 1000L);
+        builder.set("tags", "name:n" + seed);
+        builder.set("changeset", 1L);
+        builder.set("user", "user");
+        builder.set("location",
+                new GeometryFactory().createPoint(new Coordinate(seed / 1000D, seed / 2000D)));
+        return builder.buildFeature(fid);
+    }
+}
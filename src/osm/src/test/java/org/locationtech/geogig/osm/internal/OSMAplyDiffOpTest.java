@@ -10,15 +10,20 @@
 package org.locationtech.geogig.osm.internal;
 
 import java.io.File;
+import java.util.Iterator;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevFeature;
 import org.locationtech.geogig.api.plumbing.RevObjectParse;
+import org.locationtech.geogig.api.porcelain.LogOp;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
 
 import com.google.common.base.Optional;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
 
 public class OSMAplyDiffOpTest extends RepositoryTestCase {
     @Rule
@@ -82,4 +87,49 @@ public class OSMAplyDiffOpTest extends RepositoryTestCase {
         assertFalse(revFeature.isPresent());
 
     }
+
+    @Test
+    public void testApplyDiffBatch() throws Exception {
+        String filename = getClass().getResource("ways.xml").getFile();
+        geogig.command(OSMImportOp.class).setDataSource(new File(filename).getAbsolutePath())
+                .call();
+
+        File diff1 = new File(getClass().getResource("minute_diff1.xml").getFile());
+        File diff2 = new File(getClass().getResource("minute_diff2.xml").getFile());
+        OSMReport report = geogig.command(OSMApplyDiffOp.class).addDiffFile(diff1)
+                .addDiffFile(diff2).setMessage("minutely diffs").call().get();
+        assertEquals(0, report.getUnpprocessedCount());
+        assertEquals(16000002L, report.getLatestChangeset());
+
+        // the latest modification wins
+        Optional<RevFeature> node = geogig.command(RevObjectParse.class)
+                .setRefSpec("HEAD:node/269237867").call(RevFeature.class);
+        assertTrue(node.isPresent());
+        int locationIndex = OSMUtils.nodeType().indexOf("location");
+        Point location = (Point) node.get().getValues().get(locationIndex).get();
+        assertEquals(7.1940903, location.getX(), 1E-7);
+
+        // created and deleted within the batch
+        node = geogig.command(RevObjectParse.class).setRefSpec("HEAD:node/2500000002")
+                .call(RevFeature.class);
+        assertFalse(node.isPresent());
+        node = geogig.command(RevObjectParse.class).setRefSpec("HEAD:node/2500000001")
+                .call(RevFeature.class);
+        assertTrue(node.isPresent());
+
+        // way not in the diffs whose node was moved
+        Optional<RevFeature> way = geogig.command(RevObjectParse.class)
+                .setRefSpec("HEAD:way/51502277").call(RevFeature.class);
+        assertTrue(way.isPresent());
+        int wayIndex = OSMUtils.wayType().indexOf("way");
+        LineString line = (LineString) way.get().getValues().get(wayIndex).get();
+        assertEquals(2, line.getNumPoints());
+        assertEquals(7.1924199, line.getCoordinateN(0).x, 1E-7);
+        assertEquals(7.1940903, line.getCoordinateN(1).x, 1E-7);
+
+        // a single commit for the whole batch
+        Iterator<RevCommit> log = geogig.command(LogOp.class).call();
+        assertEquals("minutely diffs", log.next().getMessage());
+        assertFalse(log.hasNext());
+    }
 }
@@ -15,14 +15,20 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.DefaultProgressListener;
+import org.locationtech.geogig.api.FeatureBuilder;
 import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevFeature;
+import org.locationtech.geogig.api.RevFeatureBuilder;
 import org.locationtech.geogig.api.RevFeatureType;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
+import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
 import org.locationtech.geogig.api.plumbing.ResolveFeatureType;
 import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.api.porcelain.AddOp;
@@ -32,12 +38,16 @@ import org.locationtech.geogig.osm.internal.log.ResolveOSMMappingLogFolder;
 import org.locationtech.geogig.repository.WorkingTree;
 import org.locationtech.geogig.storage.FieldType;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.type.PropertyDescriptor;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
 
 public class OSMMapOpTest extends RepositoryTestCase {
     @Rule
@@ -497,4 +507,114 @@ public class OSMMapOpTest extends RepositoryTestCase {
         assertEquals(4, list.size());
     }
 
+    @Test
+    public void testMappingSeveralBatches() throws Exception {
+        // enough nodes and ways to span several fetch and mapping batches
+        final int nodes = 2500;
+        final int ways = 1200;
+        insertNodesAndWays(nodes, ways);
+        geogig.command(AddOp.class).call();
+        geogig.command(CommitOp.class).setMessage("msg").call();
+
+        Map<String, AttributeDefinition> pointFields = Maps.newHashMap();
+        pointFields.put("geom", new AttributeDefinition("geom", FieldType.POINT));
+        pointFields.put("name", new AttributeDefinition("name", FieldType.STRING));
+        Map<String, List<String>> amenity = Maps.newHashMap();
+        amenity.put("amenity", new ArrayList<String>());
+        Map<String, AttributeDefinition> lineFields = Maps.newHashMap();
+        lineFields.put("geom", new AttributeDefinition("geom", FieldType.LINESTRING));
+        lineFields.put("name", new AttributeDefinition("name", FieldType.STRING));
+        Map<String, List<String>> residential = Maps.newHashMap();
+        residential.put("highway", Lists.newArrayList("residential"));
+        Map<String, List<String>> filterExclude = Maps.newHashMap();
+        Mapping mapping = new Mapping(ImmutableList.of(new MappingRule("amenity", amenity,
+                filterExclude, pointFields, null), new MappingRule("residential", residential,
+                filterExclude, lineFields, null)));
+
+        // map each feature on its own first
+        Map<String, ObjectId> expected = Maps.newHashMap();
+        for (String tree : ImmutableList.of("node", "way")) {
+            Iterator<NodeRef> refs = geogig.command(LsTreeOp.class)
+                    .setStrategy(Strategy.DEPTHFIRST_ONLY_FEATURES)
+                    .setReference("WORK_HEAD:" + tree).call();
+            while (refs.hasNext()) {
+                for (MappedFeature mapped : mapping.map(parse(refs.next()))) {
+                    String path = NodeRef.appendChild(mapped.getPath(), mapped.getIdentifier()
+                            .getID());
+                    expected.put(path, RevFeatureBuilder.build(mapped).getId());
+                }
+            }
+        }
+        assertEquals(nodes / 2 + ways - ways / 3, expected.size());
+
+        geogig.command(OSMMapOp.class).setMapping(mapping).call();
+
+        Map<String, ObjectId> actual = Maps.newHashMap();
+        for (String tree : ImmutableList.of("amenity", "residential")) {
+            Iterator<NodeRef> refs = geogig.command(LsTreeOp.class)
+                    .setStrategy(Strategy.DEPTHFIRST_ONLY_FEATURES)
+                    .setReference("HEAD:" + tree).call();
+            while (refs.hasNext()) {
+                NodeRef ref = refs.next();
+                actual.put(ref.path(), ref.objectId());
+            }
+        }
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Builds the feature for a ref one object at a time
+     */
+    private Feature parse(NodeRef ref) {
+        RevFeature revFeature = geogig.command(RevObjectParse.class)
+                .setObjectId(ref.objectId()).call(RevFeature.class).get();
+        RevFeatureType type = geogig.command(RevObjectParse.class)
+                .setObjectId(ref.getMetadataId()).call(RevFeatureType.class).get();
+        return new FeatureBuilder(type).build(ref.name(), revFeature);
+    }
+
+    /**
+     * Inserts nodes with an amenity tag every other one, and ways joining two consecutive nodes,
+     * two thirds of them residential
+     */
+    private void insertNodesAndWays(int nodes, int ways) {
+        GeometryFactory gf = new GeometryFactory();
+        List<SimpleFeature> features = Lists.newArrayList();
+        SimpleFeatureBuilder nodeBuilder = new SimpleFeatureBuilder(OSMUtils.nodeType());
+        for (int id = 1; id <= nodes; id++) {
+            setDefaults(nodeBuilder);
+            nodeBuilder.set("tags", (id % 2 == 0 ? "amenity:school|" : "") + "name:n" + id);
+            nodeBuilder.set("location", gf.createPoint(coordinate(id)));
+            features.add(nodeBuilder.buildFeature(String.valueOf(id)));
+        }
+        repo.workingTree().insert(OSMUtils.NODE_TYPE_NAME, features.iterator(),
+                new DefaultProgressListener(), null, features.size());
+
+        features.clear();
+        SimpleFeatureBuilder wayBuilder = new SimpleFeatureBuilder(OSMUtils.wayType());
+        for (int id = 1; id <= ways; id++) {
+            setDefaults(wayBuilder);
+            wayBuilder.set("tags", "highway:" + (id % 3 == 0 ? "primary" : "residential")
+                    + "|name:w" + id);
+            wayBuilder.set("nodes", (2 * id - 1) + ";" + (2 * id));
+            wayBuilder.set("way", gf.createLineString(new Coordinate[] {
+                    coordinate(2 * id - 1), coordinate(2 * id) }));
+            features.add(wayBuilder.buildFeature(String.valueOf(id)));
+        }
+        repo.workingTree().insert(OSMUtils.WAY_TYPE_NAME, features.iterator(),
+                new DefaultProgressListener(), null, features.size());
+    }
+
+    private static void setDefaults(SimpleFeatureBuilder builder) {
+        builder.set("visible", true);
+        builder.set("version", 1);
+        builder.set("timestamp", 1000L);
+        builder.set("changeset", 1L);
+        builder.set("user", "user");
+    }
+
+    private static Coordinate coordinate(int nodeId) {
+        return new Coordinate(nodeId / 1000D, nodeId / 2000D);
+    }
+
 }
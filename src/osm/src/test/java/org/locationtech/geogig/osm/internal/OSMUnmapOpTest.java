@@ -11,6 +11,7 @@ package org.locationtech.geogig.osm.internal;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -18,8 +19,14 @@ import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.DefaultProgressListener;
+import org.locationtech.geogig.api.FeatureBuilder;
+import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevFeature;
 import org.locationtech.geogig.api.RevFeatureType;
+import org.locationtech.geogig.api.plumbing.LsTreeOp;
+import org.locationtech.geogig.api.plumbing.LsTreeOp.Strategy;
 import org.locationtech.geogig.api.plumbing.ResolveFeatureType;
 import org.locationtech.geogig.api.plumbing.RevObjectParse;
 import org.locationtech.geogig.api.porcelain.AddOp;
@@ -600,6 +607,110 @@ public class OSMUnmapOpTest extends RepositoryTestCase {
 
     }
 
+    @Test
+    public void testUnmappingSeveralBatches() throws Exception {
+        // enough mapped features to span several fetch batches, and enough deleted ones too
+        final int nodes = 3000;
+        List<SimpleFeature> features = Lists.newArrayList();
+        SimpleFeatureBuilder nodeBuilder = new SimpleFeatureBuilder(OSMUtils.nodeType());
+        GeometryFactory gf = new GeometryFactory();
+        for (int id = 1; id <= nodes; id++) {
+            nodeBuilder.set("visible", true);
+            nodeBuilder.set("version", 1);
+            nodeBuilder.set("timestamp", 1000L);
+            nodeBuilder.set("changeset", 1L);
+            nodeBuilder.set("user", "user");
+            nodeBuilder.set("tags", "amenity:school|name:n" + id);
+            nodeBuilder.set("location", gf.createPoint(new Coordinate(id / 1000D, id / 2000D)));
+            features.add(nodeBuilder.buildFeature(String.valueOf(id)));
+        }
+        WorkingTree workTree = geogig.getRepository().workingTree();
+        workTree.insert(OSMUtils.NODE_TYPE_NAME, features.iterator(),
+                new DefaultProgressListener(), null, features.size());
+        geogig.command(AddOp.class).call();
+        geogig.command(CommitOp.class).setMessage("msg").call();
+
+        Map<String, AttributeDefinition> fields = Maps.newHashMap();
+        fields.put("geom", new AttributeDefinition("geom", FieldType.POINT));
+        fields.put("name", new AttributeDefinition("name", FieldType.STRING));
+        Map<String, List<String>> filter = Maps.newHashMap();
+        filter.put("amenity", new ArrayList<String>());
+        Map<String, List<String>> filterExclude = Maps.newHashMap();
+        Mapping mapping = new Mapping(ImmutableList.of(new MappingRule("schools", filter,
+                filterExclude, fields, null)));
+        geogig.command(OSMMapOp.class).setMapping(mapping).call();
+        final Map<String, ObjectId> original = objectIds("WORK_HEAD:node");
+        assertEquals(nodes, original.size());
+
+        // rename every fifth school, delete the other even ones
+        List<SimpleFeature> renamed = Lists.newArrayList();
+        List<String> deleted = Lists.newArrayList();
+        Iterator<NodeRef> refs = geogig.command(LsTreeOp.class)
+                .setStrategy(Strategy.DEPTHFIRST_ONLY_FEATURES)
+                .setReference("WORK_HEAD:schools").call();
+        while (refs.hasNext()) {
+            NodeRef ref = refs.next();
+            int id = Integer.parseInt(ref.name());
+            if (id % 5 == 0) {
+                SimpleFeature mapped = parse(ref);
+                SimpleFeatureBuilder builder = new SimpleFeatureBuilder(mapped.getFeatureType());
+                builder.init(mapped);
+                builder.set("name", "renamed" + id);
+                renamed.add(builder.buildFeature(ref.name()));
+            } else if (id % 2 == 0) {
+                deleted.add(ref.path());
+            }
+        }
+        assertEquals(nodes / 5, renamed.size());
+        assertEquals(nodes / 2 - nodes / 10, deleted.size());
+        workTree.insert("schools", renamed.iterator(), new DefaultProgressListener(), null,
+                renamed.size());
+        workTree.delete(deleted.iterator());
+
+        geogig.command(OSMUnmapOp.class).setPath("schools").call();
+
+        // renamed schools get their tags merged, deleted ones are gone, the rest is untouched
+        final int NODE_TAGS_FIELD = 3;
+        final int NODE_GEOM_FIELD = 6;
+        final Map<String, ObjectId> unmapped = objectIds("WORK_HEAD:node");
+        for (int id = 1; id <= nodes; id++) {
+            String fid = String.valueOf(id);
+            if (id % 5 == 0) {
+                ImmutableList<Optional<Object>> values = geogig.command(RevObjectParse.class)
+                        .setObjectId(unmapped.get(fid)).call(RevFeature.class).get().getValues();
+                String tags = values.get(NODE_TAGS_FIELD).get().toString();
+                assertTrue(tags, tags.contains("name:renamed" + id));
+                assertTrue(tags, tags.contains("amenity:school"));
+                assertEquals(gf.createPoint(new Coordinate(id / 1000D, id / 2000D)),
+                        values.get(NODE_GEOM_FIELD).get());
+            } else if (id % 2 == 0) {
+                assertFalse(fid, unmapped.containsKey(fid));
+            } else {
+                assertEquals(fid, original.get(fid), unmapped.get(fid));
+            }
+        }
+        assertEquals(nodes - deleted.size(), unmapped.size());
+    }
+
+    private Map<String, ObjectId> objectIds(String tree) {
+        Map<String, ObjectId> ids = Maps.newHashMap();
+        Iterator<NodeRef> refs = geogig.command(LsTreeOp.class)
+                .setStrategy(Strategy.DEPTHFIRST_ONLY_FEATURES).setReference(tree).call();
+        while (refs.hasNext()) {
+            NodeRef ref = refs.next();
+            ids.put(ref.name(), ref.objectId());
+        }
+        return ids;
+    }
+
+    private SimpleFeature parse(NodeRef ref) {
+        RevFeature revFeature = geogig.command(RevObjectParse.class)
+                .setObjectId(ref.objectId()).call(RevFeature.class).get();
+        RevFeatureType type = geogig.command(RevObjectParse.class)
+                .setObjectId(ref.getMetadataId()).call(RevFeatureType.class).get();
+        return (SimpleFeature) new FeatureBuilder(type).build(ref.name(), revFeature);
+    }
+
     @Test
     public void testUnmappingWithoutIDAttribute() throws Exception {
         insert(points1);
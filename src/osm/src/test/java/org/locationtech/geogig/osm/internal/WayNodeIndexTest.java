@@ -0,0 +1,112 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class WayNodeIndexTest extends RepositoryTestCase {
+
+    private Context context;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        repo.configDatabase().put("user.name", "groldan");
+        repo.configDatabase().put("user.email", "groldan@boundlessgeo.com");
+        context = geogig.getContext();
+    }
+
+    @Test
+    public void testUpdates() {
+        WayNodeIndex.Updates updates = new WayNodeIndex.Updates();
+        updates.addWay(10, ImmutableList.of(1L, 2L, 3L, 1L));
+        updates.addWay(20, ImmutableList.of(3L, 4L));
+        updates.addWay(30, ImmutableList.of(5L, 6L));
+        WayNodeIndex index = updates.build(ObjectId.NULL);
+
+        assertEquals(7, index.size());
+        assertArrayEquals(new long[] { 10 }, index.getWays(1));
+        assertArrayEquals(new long[] { 10, 20 }, index.getWays(3));
+        assertArrayEquals(new long[0], index.getWays(7));
+        assertEquals(ImmutableSet.of(10L, 20L, 30L),
+                index.getWays(ImmutableList.of(2L, 4L, 5L, 8L)));
+
+        updates = new WayNodeIndex.Updates();
+        updates.removeWay(10);
+        updates.addWay(20, ImmutableList.of(4L, 5L));
+        // added and removed, no longer in the index
+        updates.addWay(40, ImmutableList.of(1L, 2L));
+        updates.removeWay(40);
+        ObjectId treeId = ObjectId.forString("way tree");
+        index = index.apply(updates, treeId);
+
+        assertEquals(treeId, index.getWayTreeId());
+        assertArrayEquals(new long[0], index.getWays(1));
+        assertArrayEquals(new long[0], index.getWays(3));
+        assertArrayEquals(new long[] { 20 }, index.getWays(4));
+        assertArrayEquals(new long[] { 20, 30 }, index.getWays(5));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testMaintainedByImport() throws Exception {
+        importWays();
+        Optional<WayNodeIndex> index = WayNodeIndex.load(context);
+        assertTrue(index.isPresent());
+        assertEquals(WayNodeIndex.wayTreeId(repo.workingTree()), index.get().getWayTreeId());
+        assertArrayEquals(new long[] { 31045880, 31347480, 51502277 },
+                index.get().getWays(345117527));
+        assertArrayEquals(new long[] { 51502277 }, index.get().getWays(269237867));
+    }
+
+    @Test
+    public void testStaleIndexIsRebuilt() throws Exception {
+        importWays();
+        WayNodeIndex.Updates updates = new WayNodeIndex.Updates();
+        updates.addWay(1, ImmutableList.of(345117527L, 2L));
+        updates.build(ObjectId.forString("some other tree")).save(context);
+
+        WayNodeIndex index = WayNodeIndex.get(context);
+        assertEquals(WayNodeIndex.wayTreeId(repo.workingTree()), index.getWayTreeId());
+        assertArrayEquals(new long[] { 31045880, 31347480, 51502277 },
+                index.getWays(345117527));
+        assertTrue(WayNodeIndex.load(context).isPresent());
+        assertEquals(index.size(), WayNodeIndex.load(context).get().size());
+    }
+
+    @Test
+    public void testMaintainedByApplyDiff() throws Exception {
+        importWays();
+        File diff = new File(getClass().getResource("changeset_missing_nodes.xml").getFile());
+        geogig.command(OSMApplyDiffOp.class).setDiffFile(diff).call();
+
+        Optional<WayNodeIndex> index = WayNodeIndex.load(context);
+        assertTrue(index.isPresent());
+        assertEquals(WayNodeIndex.wayTreeId(repo.workingTree()), index.get().getWayTreeId());
+        // way 51502277 was replaced, way 31347480 couldn't be applied and keeps its nodes
+        assertArrayEquals(new long[] { 31045880, 31347480, 51502277 },
+                index.get().getWays(345117527));
+        assertArrayEquals(new long[] { 51502277 }, index.get().getWays(269237867));
+    }
+
+    private void importWays() {
+        String filename = getClass().getResource("ways.xml").getFile();
+        geogig.command(OSMImportOp.class).setDataSource(new File(filename).getAbsolutePath())
+                .call();
+    }
+}
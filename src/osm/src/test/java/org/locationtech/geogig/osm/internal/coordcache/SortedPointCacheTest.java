@@ -0,0 +1,154 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.osm.internal.coordcache;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.Platform;
+import org.locationtech.geogig.api.TestPlatform;
+import org.locationtech.geogig.osm.internal.OSMCoordinateSequence;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+
+public class SortedPointCacheTest extends PointCacheTest {
+
+    @Override
+    protected SortedPointCache createCache(Platform platform) {
+        return new SortedPointCache(platform);
+    }
+
+    private SortedPointCache createCache(int chunkSize) {
+        TestPlatform platform = new TestPlatform(tmpFolder.getRoot());
+        return new SortedPointCache(platform, chunkSize);
+    }
+
+    @Test
+    public void testSortedInputAcrossChunks() {
+        SortedPointCache cache = createCache(10);
+        try {
+            for (int n = 0; n < 95; n++) {
+                cache.put(Long.valueOf(n), coord(n));
+            }
+            CoordinateSequence sequence = cache.get(ImmutableList.of(94L, 0L, 9L, 10L, 55L));
+            assertEquals(5, sequence.size());
+            assertEquals(94, sequence.getX(0), 1E-9);
+            assertEquals(0, sequence.getX(1), 1E-9);
+            assertEquals(9, sequence.getX(2), 1E-9);
+            assertEquals(10, sequence.getX(3), 1E-9);
+            assertEquals(55, sequence.getX(4), 1E-9);
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testUnsortedInputAcrossChunks() {
+        SortedPointCache cache = createCache(10);
+        try {
+            for (int n = 0; n < 50; n++) {
+                int id = (n * 7) % 50;
+                cache.put(Long.valueOf(id), coord(id));
+            }
+            for (long id = 0; id < 50; id++) {
+                CoordinateSequence sequence = cache.get(ImmutableList.of(id));
+                assertEquals(id, sequence.getX(0), 1E-9);
+            }
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testLatestCoordinateWins() {
+        SortedPointCache cache = createCache(4);
+        try {
+            cache.put(1L, coord(1));
+            cache.put(2L, coord(2));
+            cache.put(1L, coord(10));
+            cache.put(3L, coord(3));
+            // seals the first chunk, with a duplicate id
+            cache.put(2L, coord(20));
+            cache.put(1L, coord(100));
+
+            CoordinateSequence sequence = cache.get(ImmutableList.of(1L, 2L, 3L));
+            assertEquals(100, sequence.getX(0), 1E-9);
+            assertEquals(20, sequence.getX(1), 1E-9);
+            assertEquals(3, sequence.getX(2), 1E-9);
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testLookupsBetweenUnsortedAdditions() {
+        SortedPointCache cache = createCache(10);
+        try {
+            cache.put(3L, coord(3));
+            cache.put(1L, coord(1));
+            cache.put(2L, coord(2));
+            assertEquals(1, cache.get(ImmutableList.of(1L)).getX(0), 1E-9);
+
+            // out of order again, and replacing a coordinate of the now sorted chunk
+            cache.put(0L, coord(0));
+            cache.put(2L, coord(20));
+            CoordinateSequence sequence = cache.get(ImmutableList.of(0L, 1L, 2L, 3L));
+            assertEquals(0, sequence.getX(0), 1E-9);
+            assertEquals(1, sequence.getX(1), 1E-9);
+            assertEquals(20, sequence.getX(2), 1E-9);
+            assertEquals(3, sequence.getX(3), 1E-9);
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final SortedPointCache cache = createCache(100);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // out of order, so that the first lookups race to sort the current chunk
+            for (int n = 0; n < 250; n++) {
+                int id = (n * 7) % 250;
+                cache.put(Long.valueOf(id), coord(id));
+            }
+            List<Future<Void>> lookups = Lists.newArrayList();
+            for (int t = 0; t < 8; t++) {
+                lookups.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (long id = 0; id < 250; id++) {
+                            CoordinateSequence sequence = cache.get(ImmutableList.of(id));
+                            assertEquals(id, sequence.getX(0), 1E-9);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> lookup : lookups) {
+                lookup.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            cache.dispose();
+        }
+    }
+
+    private OSMCoordinateSequence coord(double ordinate) {
+        return new OSMCoordinateSequence(new Coordinate[] { new Coordinate(ordinate, ordinate) });
+    }
+}
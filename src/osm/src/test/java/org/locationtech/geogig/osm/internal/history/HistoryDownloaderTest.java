@@ -92,6 +92,43 @@ public class HistoryDownloaderTest extends Assert {
         assertTrue(list.get(3).getWay().isPresent());
     }
 
+    @Test
+    public void testFetchChangesetContentsPrefetched() throws Exception {
+        ExecutorService parseExecutor = Executors.newFixedThreadPool(2);
+        try {
+            localResourcesDownloader.setPrefetch(parseExecutor, 3);
+            Iterator<Changeset> changesetsIterator = localResourcesDownloader.fetchChangesets();
+
+            List<Changeset> changesets = Lists.newArrayList();
+            List<List<Change>> changes = Lists.newArrayList();
+            while (changesetsIterator.hasNext()) {
+                Changeset changeset = changesetsIterator.next();
+                changesets.add(changeset);
+                changes.add(Lists.newArrayList(changeset.getChanges().get().get()));
+            }
+            assertEquals(10, changesets.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i + 1, changesets.get(i).getId());
+            }
+
+            List<Change> list = changes.get(0);
+            assertEquals(3, list.size());// see 01_10/1/download.xml
+            assertTrue(list.get(0).getNode().isPresent());
+            assertTrue(list.get(1).getNode().isPresent());
+            assertTrue(list.get(2).getWay().isPresent());
+
+            // 01_10/10/download.xml is empty
+            assertTrue(changes.get(9).isEmpty());
+
+            // 01_10/5/download.xml
+            list = changes.get(4);
+            assertEquals(4, list.size());
+            assertTrue(list.get(3).getWay().isPresent());
+        } finally {
+            parseExecutor.shutdownNow();
+        }
+    }
+
     @Ignore
     @Test
     public void testFetchFailingChangesetsOnline() throws Exception {
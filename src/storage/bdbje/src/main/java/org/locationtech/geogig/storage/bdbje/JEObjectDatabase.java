@@ -15,8 +15,8 @@ import static com.sleepycat.je.OperationStatus.NOTFOUND;
 import static com.sleepycat.je.OperationStatus.SUCCESS;
 
 import java.io.ByteArrayInputStream;
-import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,7 +24,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -32,6 +32,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
@@ -39,17 +40,21 @@ import javax.annotation.Nullable;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.storage.AbstractObjectDatabase;
+import org.locationtech.geogig.storage.BulkLoadSession;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.ObjectIdBloomFilter;
 import org.locationtech.geogig.storage.ObjectReader;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.RawObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
@@ -59,6 +64,7 @@ import com.google.common.collect.UnmodifiableIterator;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.ning.compress.lzf.LZFInputStream;
 import com.sleepycat.je.CacheMode;
+import com.sleepycat.je.CheckpointConfig;
 import com.sleepycat.je.Cursor;
 import com.sleepycat.je.CursorConfig;
 import com.sleepycat.je.Database;
@@ -73,7 +79,18 @@ import com.sleepycat.je.Transaction;
 import com.sleepycat.je.TransactionConfig;
 
 /**
- * 
+ * Object database backed by BDB JE.
+ * <p>
+ * Objects may be split across several JE databases in the same environment, partitioned by key
+ * range on the first byte of their {@link ObjectId}. The number of partitions is read from the
+ * {@code bdbje.partitions} repository config key when the databases are first created (e.g.
+ * {@code geogig init --config bdbje.partitions=4}), defaults to one, and is fixed afterwards.
+ * Having several partitions reduces the contention of concurrent writers on the same B-tree, and
+ * lets bulk operations work on each partition in parallel.
+ * <p>
+ * Writable databases keep an {@link ObjectIdBloomFilter} of the stored ids, saved to the
+ * environment directory when closed, so that looking up objects that are not stored, the common
+ * case when importing new data, doesn't need to search the B-tree.
  */
 abstract class JEObjectDatabase extends AbstractObjectDatabase implements ObjectDatabase {
 
@@ -82,6 +99,19 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JEObjectDatabase.class);
 
+    /**
+     * Name of the JE database holding the objects, or the first partition's if there are more than
+     * one. Further partitions are named {@code ObjectDatabase.<index>}
+     */
+    private static final String DATABASE_NAME = "ObjectDatabase";
+
+    /**
+     * Config key for the number of partitions, only read when the databases are created
+     */
+    static final String PARTITIONS_CONFIG_KEY = "bdbje.partitions";
+
+    private static final int MAX_PARTITIONS = 256;
+
     private static final int SYNC_BYTES_LIMIT = 512 * 1024 * 1024;
 
     @Nullable
@@ -89,6 +119,31 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     private ExecutorService writerService;
 
+    /**
+     * Runs lookups on different partitions concurrently, only created if there are more than one
+     * partition
+     */
+    @Nullable
+    private ExecutorService readerService;
+
+    /**
+     * Runs the inserts of the sorted buffers concurrently while a bulk load session is open
+     */
+    private ExecutorService bulkWriterService;
+
+    /**
+     * Number of open bulk load sessions, see {@link #startBulkLoad()}
+     */
+    private final AtomicInteger bulkLoadSessions = new AtomicInteger();
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Size of the buffers bulk inserts are sorted and written in while a bulk load session is
+     * open, larger than {@link #BUFFER_SIZE} for longer runs of sequential B-tree insertions
+     */
+    private static final int BULK_LOAD_BUFFER_SIZE = 4 * 1024 * 1024;
+
     /**
      * The default number of objects bulk operations are partitioned into
      * 
@@ -102,6 +157,11 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     private static final String OBJECT_DURABILITY_CONFIG_KEY = "bdbje.object_durability";
 
+    /**
+     * Name of the file the {@link #idFilter} is saved to, inside the environment directory
+     */
+    static final String ID_FILTER_FILE = "ids.bloom";
+
     private EnvironmentBuilder envProvider;
 
     /**
@@ -109,7 +169,22 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
      */
     protected Environment env;
 
-    protected Database objectDb;
+    /**
+     * The JE databases for each key range partition, in key order
+     */
+    protected Database[] partitions;
+
+    /**
+     * The lowest possible key of each partition but the first one, used to split sorted sets of
+     * ids by partition
+     */
+    private ObjectId[] partitionLowerBounds;
+
+    /**
+     * Filter of the stored ids, {@code null} if the database is read only
+     */
+    @Nullable
+    private ObjectIdBloomFilter idFilter;
 
     protected final ConfigDatabase configDB;
 
@@ -152,14 +227,29 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                 writerService.shutdown();
                 waitForServiceShutDown(writerService);
             }
-            if (objectDb != null) {
-                objectDb.close();
-                objectDb = null;
+            if (bulkWriterService != null) {
+                bulkWriterService.shutdown();
+                waitForServiceShutDown(bulkWriterService);
+            }
+            if (readerService != null) {
+                readerService.shutdown();
+                waitForServiceShutDown(readerService);
+                readerService = null;
+            }
+            if (partitions != null) {
+                for (Database db : partitions) {
+                    db.close();
+                }
+                partitions = null;
             }
             if (dbSyncService != null) {
                 dbSyncService.shutdown();
                 waitForServiceShutDown(dbSyncService);
             }
+            if (idFilter != null) {
+                idFilter.save();
+                idFilter = null;
+            }
             LOGGER.trace("ObjectDatabase closed. Closing environment...");
             if (!readOnly) {
                 env.sync();
@@ -184,7 +274,7 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     @Override
     public boolean isOpen() {
-        return objectDb != null;
+        return partitions != null;
     }
 
     @Override
@@ -193,24 +283,52 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             LOGGER.trace("Environment {} already open", env.getHome());
             return;
         }
-        this.objectDb = createDatabase();
+        this.partitions = createDatabases();
+        this.partitionLowerBounds = new ObjectId[partitions.length];
+        for (int i = 1; i < partitions.length; i++) {
+            // the lowest first byte mapping to partition i
+            int firstByte = (i * 256 + partitions.length - 1) / partitions.length;
+            byte[] raw = new byte[ObjectId.NUM_BYTES];
+            raw[0] = (byte) firstByte;
+            partitionLowerBounds[i] = ObjectId.createNoClone(raw);
+        }
+        if (!readOnly) {
+            idFilter = ObjectIdBloomFilter.open(new File(env.getHome(), ID_FILTER_FILE),
+                    new Supplier<Iterator<ObjectId>>() {
+                        @Override
+                        public Iterator<ObjectId> get() {
+                            return new StoredIdsIterator();
+                        }
+                    });
+        }
 
-        int nWriterThreads = 1;
+        final int nProcessors = Runtime.getRuntime().availableProcessors();
+        // one writer per partition, for inserts on different partitions not to wait on each other
+        final int nWriterThreads = Math.min(partitions.length, nProcessors);
         writerService = Executors.newFixedThreadPool(nWriterThreads, new ThreadFactoryBuilder()
                 .setNameFormat("BDBJE-" + env.getHome().getName() + "-WRITE-THREAD-%d").build());
-        if (!objectDb.getConfig().getTransactional()) {
-            dbSyncService = Executors.newFixedThreadPool(nWriterThreads, new ThreadFactoryBuilder()
+        bulkWriterService = Executors.newFixedThreadPool(nProcessors,
+                new ThreadFactoryBuilder().setNameFormat(
+                        "BDBJE-" + env.getHome().getName() + "-BULK-WRITE-THREAD-%d").build());
+        if (partitions.length > 1) {
+            readerService = Executors.newFixedThreadPool(nWriterThreads, new ThreadFactoryBuilder()
+                    .setNameFormat("BDBJE-" + env.getHome().getName() + "-READ-THREAD-%d").build());
+        }
+        if (!isTransactional()) {
+            dbSyncService = Executors.newFixedThreadPool(1, new ThreadFactoryBuilder()
                     .setNameFormat("BDBJE-" + env.getHome().getName() + "-SYNC-THREAD-%d").build());
         }
 
-        LOGGER.debug("Object database opened at {}. Transactional: {}", env.getHome(), objectDb
-                .getConfig().getTransactional());
+        LOGGER.debug("Object database opened at {}. Transactional: {}, partitions: {}",
+                env.getHome(), isTransactional(), partitions.length);
 
     }
 
-    protected Database createDatabase() {
+    /**
+     * Opens the JE databases for all the partitions, creating them if they don't exist yet.
+     */
+    protected Database[] createDatabases() {
 
-        final String databaseName = "ObjectDatabase";
         Environment environment;
         try {
             environment = createEnvironment(readOnly);
@@ -219,7 +337,14 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     "The repository is already open by another process for writing", e);
         }
 
-        if (!environment.getDatabaseNames().contains(databaseName)) {
+        final List<String> databaseNames;
+        try {
+            databaseNames = partitionNames(environment);
+        } catch (RuntimeException e) {
+            environment.close();
+            throw e;
+        }
+        if (!environment.getDatabaseNames().containsAll(databaseNames)) {
             if (readOnly) {
                 environment.close();
                 try {
@@ -227,22 +352,21 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                 } catch (EnvironmentLockedException e) {
                     throw new IllegalStateException(String.format(
                             "Environment open readonly but database %s does not exist.",
-                            databaseName));
+                            databaseNames));
                 }
             }
             DatabaseConfig dbConfig = new DatabaseConfig();
             dbConfig.setAllowCreate(true);
-            Database openDatabase = environment.openDatabase(null, databaseName, dbConfig);
-            openDatabase.close();
+            for (String databaseName : databaseNames) {
+                Database openDatabase = environment.openDatabase(null, databaseName, dbConfig);
+                openDatabase.close();
+            }
             environment.flushLog(true);
             environment.close();
             environment = createEnvironment(readOnly);
         }
 
-        // System.err.println("Opened ObjectDatabase at " + env.getHome()
-        // + ". Environment read-only: " + environment.getConfig().getReadOnly()
-        // + " database read only: " + this.readOnly);
-        Database database;
+        Database[] databases = new Database[databaseNames.size()];
         try {
             LOGGER.debug("Opening ObjectDatabase at {}", environment.getHome());
 
@@ -255,22 +379,103 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             dbConfig.setTransactional(transactional);
             dbConfig.setDeferredWrite(!transactional);
 
-            database = environment.openDatabase(null, databaseName, dbConfig);
+            for (int i = 0; i < databases.length; i++) {
+                databases[i] = environment.openDatabase(null, databaseNames.get(i), dbConfig);
+            }
         } catch (RuntimeException e) {
+            for (Database db : databases) {
+                if (db != null) {
+                    db.close();
+                }
+            }
             if (environment != null) {
                 environment.close();
             }
             throw e;
         }
         this.env = environment;
-        return database;
+        return databases;
 
     }
 
+    /**
+     * Returns the names of the partition databases. If the object database already exists in the
+     * environment its number of partitions is preserved, otherwise it's taken from the
+     * {@link #PARTITIONS_CONFIG_KEY} config key.
+     */
+    private List<String> partitionNames(Environment environment) {
+        final List<String> existing = environment.getDatabaseNames();
+        int numPartitions;
+        if (existing.contains(partitionName(0))) {
+            numPartitions = 1;
+            while (existing.contains(partitionName(numPartitions))) {
+                numPartitions++;
+            }
+        } else {
+            numPartitions = configDB.get(PARTITIONS_CONFIG_KEY, Integer.class).or(1).intValue();
+            Preconditions.checkArgument(numPartitions > 0 && numPartitions <= MAX_PARTITIONS,
+                    "%s shall be between 1 and %s: %s", PARTITIONS_CONFIG_KEY, MAX_PARTITIONS,
+                    numPartitions);
+        }
+        List<String> names = new ArrayList<String>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            names.add(partitionName(i));
+        }
+        return names;
+    }
+
+    private static String partitionName(final int index) {
+        return index == 0 ? DATABASE_NAME : DATABASE_NAME + "." + index;
+    }
+
+    /**
+     * @return the index of the partition for objects whose id starts with the given (unsigned)
+     *         byte
+     */
+    private int partitionIndex(final int firstByte) {
+        return (firstByte * partitions.length) >>> 8;
+    }
+
+    private Database partitionOf(final ObjectId id) {
+        return partitions[partitionIndex(id.byteN(0))];
+    }
+
+    /**
+     * @return the view of the sorted {@code offsets} whose keys belong to the given partition
+     */
+    private SortedMap<ObjectId, int[]> partitionView(final TreeMap<ObjectId, int[]> offsets,
+            final int partition) {
+        if (partitions.length == 1) {
+            return offsets;
+        }
+        if (partition == 0) {
+            return offsets.headMap(partitionLowerBounds[1]);
+        }
+        if (partition == partitions.length - 1) {
+            return offsets.tailMap(partitionLowerBounds[partition]);
+        }
+        return offsets.subMap(partitionLowerBounds[partition], partitionLowerBounds[partition + 1]);
+    }
+
+    private boolean isTransactional() {
+        return partitions[0].getConfig().getTransactional();
+    }
+
     @Override
     protected List<ObjectId> lookUpInternal(final byte[] partialId) {
         checkOpen();
 
+        if (partialId.length > 0) {
+            return lookUp(partitions[partitionIndex(partialId[0] & 0xFF)], partialId);
+        }
+        List<ObjectId> matches = new ArrayList<ObjectId>();
+        for (Database db : partitions) {
+            matches.addAll(lookUp(db, partialId));
+        }
+        return matches;
+    }
+
+    private List<ObjectId> lookUp(final Database objectDb, final byte[] partialId) {
         DatabaseEntry key;
         {
             byte[] keyData = partialId.clone();
@@ -320,6 +525,9 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         checkOpen();
 
         Preconditions.checkNotNull(id, "id");
+        if (!mightContain(id)) {
+            return false;
+        }
 
         DatabaseEntry key = new DatabaseEntry(id.getRawValue());
         DatabaseEntry data = new DatabaseEntry();
@@ -328,21 +536,170 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
         final LockMode lockMode = LockMode.READ_UNCOMMITTED;
         Transaction transaction = null;
-        OperationStatus status = objectDb.get(transaction, key, data, lockMode);
+        OperationStatus status = partitionOf(id).get(transaction, key, data, lockMode);
+        if (SUCCESS != status && idFilter != null) {
+            idFilter.falsePositive();
+        }
         return SUCCESS == status;
     }
 
+    private boolean mightContain(final ObjectId id) {
+        return idFilter == null || idFilter.mightContain(id);
+    }
+
+    /**
+     * @return the statistics of the filter of stored ids, or {@code null} if the database is
+     *         closed or read only
+     */
+    @Nullable
+    public ObjectIdBloomFilter.Stats getIdFilterStats() {
+        ObjectIdBloomFilter idFilter = this.idFilter;
+        return idFilter == null ? null : idFilter.stats();
+    }
+
+    /**
+     * Lists the ids of each partition in key order. Keys are read in batches, closing the cursor
+     * after each one, so that an iterator that's not fully consumed doesn't leave cursors open.
+     */
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        checkOpen();
+        return new StoredIdsIterator();
+    }
+
+    /**
+     * Iterates over the ids of all the stored objects, in key order, with a non transactional
+     * cursor per partition and batch of keys
+     */
+    private class StoredIdsIterator extends AbstractIterator<ObjectId> {
+
+        private static final int BATCH_SIZE = 10 * 1000;
+
+        private int partition;
+
+        @Nullable
+        private byte[] lastKey;
+
+        private Iterator<ObjectId> batch = Iterators.emptyIterator();
+
+        @Override
+        protected ObjectId computeNext() {
+            while (!batch.hasNext()) {
+                if (partition == partitions.length) {
+                    return endOfData();
+                }
+                List<ObjectId> ids = nextBatch();
+                if (ids.size() < BATCH_SIZE) {
+                    partition++;
+                    lastKey = null;
+                }
+                batch = ids.iterator();
+            }
+            return batch.next();
+        }
+
+        private List<ObjectId> nextBatch() {
+            List<ObjectId> ids = new ArrayList<ObjectId>(BATCH_SIZE);
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry data = new DatabaseEntry();
+            // do not retrieve data
+            data.setPartial(0, 0, true);
+            CursorConfig cursorConfig = new CursorConfig();
+            cursorConfig.setReadUncommitted(true);
+            Cursor cursor = partitions[partition].openCursor(null, cursorConfig);
+            try {
+                OperationStatus status;
+                if (lastKey == null) {
+                    status = cursor.getFirst(key, data, LockMode.READ_UNCOMMITTED);
+                } else {
+                    key.setData(lastKey);
+                    status = cursor.getSearchKeyRange(key, data, LockMode.READ_UNCOMMITTED);
+                    if (SUCCESS.equals(status) && Arrays.equals(lastKey, key.getData())) {
+                        status = cursor.getNext(key, data, LockMode.READ_UNCOMMITTED);
+                    }
+                }
+                while (SUCCESS.equals(status)) {
+                    ids.add(ObjectId.createNoClone(key.getData()));
+                    if (ids.size() == BATCH_SIZE) {
+                        lastKey = key.getData();
+                        break;
+                    }
+                    key = new DatabaseEntry();
+                    status = cursor.getNext(key, data, LockMode.READ_UNCOMMITTED);
+                }
+            } finally {
+                cursor.close();
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Rewrites the given live objects in order. The JE storage is log structured, B-tree leaves
+     * point to records appended to the log files in write order, so overwriting the objects lays
+     * them out contiguously in the given order.
+     * <p>
+     * Afterwards the cleaner is run until there are no more log files to clean, reclaiming the
+     * space of the records made obsolete by the rewrite and by deleted objects, and a checkpoint
+     * is forced so that the cleaned log files can be deleted.
+     */
+    @Override
+    public void repack(final Iterator<ObjectId> liveIds) {
+        checkWritable();
+        Stopwatch sw = Stopwatch.createStarted();
+        long rewritten = 0;
+        final DatabaseEntry data = new DatabaseEntry();
+        final BulkLoadSession session = startBulkLoad();
+        try {
+            UnmodifiableIterator<List<ObjectId>> batches = partition(liveIds,
+                    getBulkPartitionSize());
+            while (batches.hasNext()) {
+                final Transaction transaction = newTransaction();
+                try {
+                    for (ObjectId id : batches.next()) {
+                        DatabaseEntry key = new DatabaseEntry(id.getRawValue());
+                        Database db = partitionOf(id);
+                        if (SUCCESS.equals(db.get(transaction, key, data, LockMode.RMW))) {
+                            db.put(transaction, key, data);
+                            rewritten++;
+                        }
+                    }
+                    commit(transaction);
+                } catch (RuntimeException e) {
+                    abort(transaction);
+                    throw e;
+                }
+            }
+        } finally {
+            session.close();
+        }
+        int cleaned = 0;
+        for (int files = env.cleanLog(); files > 0; files = env.cleanLog()) {
+            cleaned += files;
+        }
+        CheckpointConfig force = new CheckpointConfig();
+        force.setForce(true);
+        env.checkpoint(force);
+        LOGGER.debug("Repacked {}: rewrote {} objects and cleaned {} log files in {}",
+                env.getHome(), rewritten, cleaned, sw.stop());
+    }
+
     @Override
     protected InputStream getRawInternal(final ObjectId id, final boolean failIfNotFound) {
         checkOpen();
 
         Preconditions.checkNotNull(id, "id");
-        DatabaseEntry key = new DatabaseEntry(id.getRawValue());
+        OperationStatus operationStatus = NOTFOUND;
         DatabaseEntry data = new DatabaseEntry();
-
-        final LockMode lockMode = LockMode.READ_UNCOMMITTED;
-        Transaction transaction = null;
-        OperationStatus operationStatus = objectDb.get(transaction, key, data, lockMode);
+        if (mightContain(id)) {
+            DatabaseEntry key = new DatabaseEntry(id.getRawValue());
+            final LockMode lockMode = LockMode.READ_UNCOMMITTED;
+            Transaction transaction = null;
+            operationStatus = partitionOf(id).get(transaction, key, data, lockMode);
+            if (NOTFOUND.equals(operationStatus) && idFilter != null) {
+                idFilter.falsePositive();
+            }
+        }
         if (NOTFOUND.equals(operationStatus)) {
             if (failIfNotFound) {
                 throw new IllegalArgumentException("Object does not exist: " + id.toString()
@@ -365,8 +722,18 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             return;
         }
 
-        final int buffSize = 256 * 1024;
-        BulkInsert task = new BulkInsert(objects, listener, buffSize);
+        final int buffSize = isBulkLoading() ? BULK_LOAD_BUFFER_SIZE : BUFFER_SIZE;
+        BulkInsert task = new BulkInsert(listener, buffSize) {
+            @Override
+            protected ObjectId writeNext(InternalByteArrayOutputStream out) {
+                if (!objects.hasNext()) {
+                    return null;
+                }
+                RevObject o = objects.next();
+                writeObject(o, out);
+                return o.getId();
+            }
+        };
 
         try {
             task.run();
@@ -375,21 +742,109 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         }
     }
 
-    private class BulkInsert {
+    /**
+     * Stores the raw objects data as is if they're in this database's serialization format,
+     * through the same buffered and sorted bulk insert than {@link #putAll}
+     */
+    @Override
+    public void putRaw(final Iterator<RawObject> objects, final BulkOpListener listener) {
+        checkNotNull(objects);
+        checkNotNull(listener);
+        checkWritable();
+
+        if (!objects.hasNext()) {
+            return;
+        }
+
+        final int buffSize = isBulkLoading() ? BULK_LOAD_BUFFER_SIZE : BUFFER_SIZE;
+        BulkInsert task = new BulkInsert(listener, buffSize) {
+            @Override
+            protected ObjectId writeNext(InternalByteArrayOutputStream out) {
+                if (!objects.hasNext()) {
+                    return null;
+                }
+                RawObject o = objects.next();
+                byte[] data = toStorageFormat(o);
+                out.write(data, 0, data.length);
+                return o.getId();
+            }
+        };
+
+        try {
+            task.run();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Starts a bulk load session during which inserts are not synced to disk, and the sorted
+     * buffers {@link #putAll(Iterator, BulkOpListener) putAll} and
+     * {@link #putRaw(Iterator, BulkOpListener) putRaw} split the objects into are larger and
+     * inserted concurrently.
+     * <p>
+     * For transactional databases, transactions are committed with
+     * {@link Durability#COMMIT_NO_SYNC} and the log is flushed once the last session is closed; a
+     * transactional database can't be switched to deferred-write mode. Non transactional databases
+     * are already deferred-write, and are synced once the last session is closed instead of
+     * periodically.
+     */
+    @Override
+    public BulkLoadSession startBulkLoad() {
+        checkWritable();
+        bulkLoadSessions.incrementAndGet();
+        return new BulkLoadSession() {
+
+            private final AtomicBoolean closed = new AtomicBoolean();
+
+            @Override
+            public void close() {
+                if (closed.compareAndSet(false, true) && bulkLoadSessions.decrementAndGet() == 0) {
+                    syncBulkLoad();
+                }
+            }
+        };
+    }
+
+    private boolean isBulkLoading() {
+        return bulkLoadSessions.get() > 0;
+    }
+
+    private synchronized void syncBulkLoad() {
+        if (!isOpen()) {
+            // close() already synced the environment
+            return;
+        }
+        Stopwatch sw = Stopwatch.createStarted();
+        if (isTransactional()) {
+            env.flushLog(true);
+        } else {
+            for (Database db : partitions) {
+                db.sync();
+            }
+        }
+        LOGGER.debug("Synced {} after bulk load in {}", env.getHome(), sw.stop());
+    }
+
+    private abstract class BulkInsert {
 
         private BulkOpListener listener;
 
         private int buffSize;
 
-        private Iterator<? extends RevObject> objects;
-
-        public BulkInsert(final Iterator<? extends RevObject> objects,
-                final BulkOpListener listener, final int buffSize) {
-            this.objects = objects;
+        public BulkInsert(final BulkOpListener listener, final int buffSize) {
             this.listener = listener;
             this.buffSize = buffSize;
         }
 
+        /**
+         * Writes the compressed serialized form of the next object to insert to {@code out}
+         * 
+         * @return the id of the object written, or {@code null} if there are no more objects
+         */
+        @Nullable
+        protected abstract ObjectId writeNext(InternalByteArrayOutputStream out);
+
         public Integer run() throws Exception {
             int count = 0;
             List<Future<Void>> pendingWrites = new ArrayList<Future<Void>>();
@@ -405,14 +860,11 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     count++;
                     objectsInBuffer++;
                     if (out.size() >= buffSize) {
-                        Future<Void> future = insertSortedObjects(offsets, out);
-                        // future.get();
-                        // out.reset();
-                        // offsets.clear();
+                        pendingWrites.addAll(insertSortedObjects(offsets, out));
                         out = new InternalByteArrayOutputStream(this.buffSize);
                         offsets = Maps.newTreeMap(ObjectId.NATURAL_ORDER);
-                        pendingWrites.add(future);
-                        if (pendingWrites.size() == 10) {
+                        // up to ten buffers pending to be written
+                        if (pendingWrites.size() >= 10 * partitions.length) {
                             waitForWrites(pendingWrites);
                         }
 
@@ -423,8 +875,7 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     }
                 }
                 if (!offsets.isEmpty()) {
-                    Future<Void> future = insertSortedObjects(offsets, out);
-                    pendingWrites.add(future);
+                    pendingWrites.addAll(insertSortedObjects(offsets, out));
                     LOGGER.debug("Inserted {} objects with a byte buffer of {} KB",
                             objectsInBuffer, (out.size() / 1024));
                 }
@@ -454,22 +905,37 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             pendingWrites.clear();
         }
 
-        private Future<Void> insertSortedObjects(TreeMap<ObjectId, int[]> offsets,
+        /**
+         * Submits one insert task per partition the sorted objects in the buffer belong to, so
+         * that they're written in parallel.
+         */
+        private List<Future<Void>> insertSortedObjects(TreeMap<ObjectId, int[]> offsets,
                 InternalByteArrayOutputStream buffer) throws Exception {
 
-            return writerService.submit(new InsertTask(offsets, buffer, listener));
+            ExecutorService service = isBulkLoading() ? bulkWriterService : writerService;
+            List<Future<Void>> inserts = new ArrayList<Future<Void>>(partitions.length);
+            for (int i = 0; i < partitions.length; i++) {
+                SortedMap<ObjectId, int[]> partitionOffsets = partitionView(offsets, i);
+                if (!partitionOffsets.isEmpty()) {
+                    inserts.add(service.submit(new InsertTask(partitions[i], partitionOffsets,
+                            buffer, listener)));
+                }
+            }
+            return inserts;
         }
 
         private boolean serializeNextObject(TreeMap<ObjectId, int[]> offsets,
                 InternalByteArrayOutputStream out) {
-            if (!objects.hasNext()) {
+            int offset = out.size();
+            ObjectId id = writeNext(out);
+            if (id == null) {
                 return false;
             }
-            RevObject o = objects.next();
-            int offset = out.size();
-            writeObject(o, out);
+            if (idFilter != null) {
+                idFilter.put(id);
+            }
             int size = out.size() - offset;
-            offsets.put(o.getId(), new int[] { offset, size });
+            offsets.put(id, new int[] { offset, size });
 
             return true;
         }
@@ -478,16 +944,24 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     private AtomicInteger bytesWritten = new AtomicInteger();
 
+    /**
+     * Inserts the sorted objects of a buffer that belong to a single partition. Tasks for the
+     * different partitions of a buffer only read from it and from their own view of the offsets,
+     * and may run concurrently; listener callbacks are serialized.
+     */
     private class InsertTask implements Callable<Void> {
 
-        private TreeMap<ObjectId, int[]> offsets;
+        private Database objectDb;
+
+        private SortedMap<ObjectId, int[]> offsets;
 
         private InternalByteArrayOutputStream buffer;
 
         private BulkOpListener listener;
 
-        public InsertTask(TreeMap<ObjectId, int[]> offsets, InternalByteArrayOutputStream buffer,
-                BulkOpListener listener) {
+        public InsertTask(Database objectDb, SortedMap<ObjectId, int[]> offsets,
+                InternalByteArrayOutputStream buffer, BulkOpListener listener) {
+            this.objectDb = objectDb;
             this.offsets = offsets;
             this.buffer = buffer;
             this.listener = listener;
@@ -500,28 +974,27 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
             final int numObjects = offsets.size();
             try {
-                final int bufferBytes = buffer.size();
+                int bufferBytes = 0;
                 DatabaseEntry key = new DatabaseEntry(new byte[ObjectId.NUM_BYTES]);
                 final byte[] rawData = buffer.bytes();
 
-                for (Iterator<Map.Entry<ObjectId, int[]>> it = offsets.entrySet().iterator(); it
-                        .hasNext();) {
-                    Entry<ObjectId, int[]> e = it.next();
-                    it.remove();
+                for (Map.Entry<ObjectId, int[]> e : offsets.entrySet()) {
                     final ObjectId objectId = e.getKey();
                     int offset = e.getValue()[0];
                     int size = e.getValue()[1];
+                    bufferBytes += size;
 
                     objectId.getRawValue(key.getData());
                     DatabaseEntry data = new DatabaseEntry(rawData, offset, size);
 
                     OperationStatus status = objectDb.putNoOverwrite(transaction, key, data);
-                    if (OperationStatus.SUCCESS.equals(status)) {
-                        listener.inserted(objectId, size);
-                    } else if (OperationStatus.KEYEXIST.equals(status)) {
-                        listener.found(objectId, null);
+                    synchronized (listener) {
+                        if (OperationStatus.SUCCESS.equals(status)) {
+                            listener.inserted(objectId, size);
+                        } else if (OperationStatus.KEYEXIST.equals(status)) {
+                            listener.found(objectId, null);
+                        }
                     }
-
                 }
                 final boolean transactional = objectDb.getConfig().getTransactional();
                 if (transactional) {
@@ -533,8 +1006,9 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     synchronized (bytesWritten) {
                         totalWritten = bytesWritten.addAndGet(bufferBytes);
                     }
-                    if (totalWritten >= SYNC_BYTES_LIMIT) {
-                        writerService.execute(new FlushLogTask(bytesWritten, objectDb));
+                    // deferred writes are synced once at the end of a bulk load
+                    if (totalWritten >= SYNC_BYTES_LIMIT && !isBulkLoading()) {
+                        writerService.execute(new FlushLogTask(bytesWritten, partitions));
                     }
                 }
             } catch (Exception e) {
@@ -555,12 +1029,12 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
         private volatile AtomicInteger bytesWritten;
 
-        private Database objectDb;
+        private Database[] databases;
 
-        public FlushLogTask(AtomicInteger bytesWritten, Database objectDb) {
+        public FlushLogTask(AtomicInteger bytesWritten, Database[] databases) {
             this.bytesWritten = bytesWritten;
-            this.objectDb = objectDb;
-            this.env = objectDb.getEnvironment();
+            this.databases = databases;
+            this.env = databases[0].getEnvironment();
         }
 
         @Override
@@ -582,8 +1056,10 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                     @Override
                     public void run() {
                         Stopwatch sw = Stopwatch.createStarted();
-                        if (objectDb.getConfig().getDeferredWrite()) {
-                            objectDb.sync();
+                        if (databases[0].getConfig().getDeferredWrite()) {
+                            for (Database db : databases) {
+                                db.sync();
+                            }
                             env.evictMemory();
                             env.cleanLog();
                             // env.sync();
@@ -601,6 +1077,9 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
     @Override
     protected boolean putInternal(final ObjectId id, final byte[] rawData) {
         checkWritable();
+        if (idFilter != null) {
+            idFilter.put(id);
+        }
 
         final Transaction transaction = newTransaction();
 
@@ -624,7 +1103,7 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         DatabaseEntry key = new DatabaseEntry(rawKey);
         DatabaseEntry data = new DatabaseEntry(rawData);
 
-        status = objectDb.putNoOverwrite(transaction, key, data);
+        status = partitionOf(id).putNoOverwrite(transaction, key, data);
         return status;
     }
 
@@ -638,13 +1117,17 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
         final OperationStatus status;
         try {
-            status = objectDb.delete(transaction, key);
+            status = partitionOf(id).delete(transaction, key);
             commit(transaction);
         } catch (RuntimeException e) {
             abort(transaction);
             throw e;
         }
-        return SUCCESS.equals(status);
+        final boolean deleted = SUCCESS.equals(status);
+        if (deleted && idFilter != null) {
+            idFilter.deleted(1);
+        }
+        return deleted;
     }
 
     private void abort(@Nullable Transaction transaction) {
@@ -685,11 +1168,21 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             final Transaction transaction = newTransaction();
 
             CursorConfig cconfig = new CursorConfig();
-            final Cursor cursor = objectDb.openCursor(transaction, cconfig);
+            Cursor cursor = null;
+            Database cursorDb = null;
 
             try {
                 DatabaseEntry key = new DatabaseEntry(new byte[ObjectId.NUM_BYTES]);
                 for (ObjectId id : nextIds) {
+                    // sorted ids come grouped by partition
+                    Database objectDb = partitionOf(id);
+                    if (objectDb != cursorDb) {
+                        if (cursor != null) {
+                            cursor.close();
+                        }
+                        cursor = objectDb.openCursor(transaction, cconfig);
+                        cursorDb = objectDb;
+                    }
                     // copy id to key object without allocating new byte[]
                     id.getRawValue(key.getData());
 
@@ -708,12 +1201,17 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
                 }
                 cursor.close();
             } catch (Exception e) {
-                cursor.close();
+                if (cursor != null) {
+                    cursor.close();
+                }
                 abort(transaction);
                 Throwables.propagate(e);
             }
             commit(transaction);
         }
+        if (idFilter != null) {
+            idFilter.deleted(count);
+        }
         return count;
     }
 
@@ -722,17 +1220,35 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
         Preconditions.checkNotNull(ids, "ids");
         checkOpen();
 
-        return new CursorRevObjectIterator(ids.iterator(), listener);
-    }
+        final ObjectReader<RevObject> reader = serializationFactory.createObjectReader();
 
-    private class CursorRevObjectIterator extends AbstractIterator<RevObject> implements Closeable {
+        return new CursorObjectIterator<RevObject>(ids.iterator(), listener) {
+            @Override
+            protected RevObject decode(ObjectId id, byte[] data) throws IOException {
+                return reader.read(id, new LZFInputStream(new ByteArrayInputStream(data)));
+            }
+        };
+    }
 
-        private final ObjectReader<RevObject> reader = serializationFactory.createObjectReader();
+    @Override
+    public Iterator<RawObject> getRaw(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        Preconditions.checkNotNull(ids, "ids");
+        checkOpen();
 
-        @Nullable
-        private Transaction transaction;
+        return new CursorObjectIterator<RawObject>(ids.iterator(), listener) {
+            @Override
+            protected RawObject decode(ObjectId id, byte[] data) {
+                return new RawObject(id, data, serializationFactory);
+            }
+        };
+    }
 
-        private Cursor cursor;
+    /**
+     * Looks up the objects in batches of {@link #getBulkPartitionSize()} ids. The ids of each batch
+     * are sorted, hence grouped by partition, and the partitions of a batch are looked up
+     * concurrently. Objects are decoded and the listener is called on the iterating thread.
+     */
+    private abstract class CursorObjectIterator<T> extends AbstractIterator<T> {
 
         private BulkOpListener listener;
 
@@ -740,95 +1256,143 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
         private Iterator<ObjectId> sortedIds;
 
-        /**
-         * Uses a transaction to open a read only cursor for it to work when called from a different
-         * threads than the one it was created at. The transaction is aborted at {@link #close()}
-         */
-        public CursorRevObjectIterator(final Iterator<ObjectId> objectIds,
+        private Iterator<byte[]> sortedData;
+
+        public CursorObjectIterator(final Iterator<ObjectId> objectIds,
                 final BulkOpListener listener) {
 
             this.unsortedIds = Iterators.partition(objectIds, getBulkPartitionSize());
             this.sortedIds = Iterators.emptyIterator();
-
+            this.sortedData = Iterators.emptyIterator();
             this.listener = listener;
-            CursorConfig cursorConfig = new CursorConfig();
-            cursorConfig.setReadUncommitted(true);
-            transaction = getOrCreateTransaction();
-            this.cursor = objectDb.openCursor(transaction, cursorConfig);
         }
 
-        private Transaction getOrCreateTransaction() {
-            final boolean transactional = objectDb.getConfig().getTransactional();
-            if (!transactional) {
-                return null;
-            }
-            TransactionConfig config = new TransactionConfig();
-            config.setReadUncommitted(true);
-            Transaction t = env.beginTransaction(null, config);
-            return t;
-        }
+        /**
+         * Creates the object returned by this iterator out of the stored data
+         */
+        protected abstract T decode(ObjectId id, byte[] data) throws IOException;
 
         @Override
-        protected RevObject computeNext() {
-            if (!sortedIds.hasNext()) {
-                if (unsortedIds.hasNext()) {
-                    List<ObjectId> unsorted = unsortedIds.next();
-                    List<ObjectId> sorted = ObjectId.NATURAL_ORDER.sortedCopy(unsorted);
+        protected T computeNext() {
+            while (true) {
+                if (!sortedIds.hasNext()) {
+                    if (!unsortedIds.hasNext()) {
+                        return endOfData();
+                    }
+                    List<ObjectId> sorted = ObjectId.NATURAL_ORDER.sortedCopy(unsortedIds.next());
+                    sorted = filterNotStored(sorted);
+                    if (sorted.isEmpty()) {
+                        continue;
+                    }
+                    this.sortedData = lookUp(sorted).iterator();
                     this.sortedIds = sorted.iterator();
+                }
+                final ObjectId id = sortedIds.next();
+                final byte[] data = sortedData.next();
+                if (data == null) {
+                    if (idFilter != null) {
+                        idFilter.falsePositive();
+                    }
+                    listener.notFound(id);
+                    continue;
+                }
+                T found;
+                try {
+                    found = decode(id, data);
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+                listener.found(id, data.length);
+                return found;
+            }
+        }
+
+        /**
+         * Reports the ids the filter knows are not stored as not found, and returns the rest
+         */
+        private List<ObjectId> filterNotStored(final List<ObjectId> ids) {
+            if (idFilter == null) {
+                return ids;
+            }
+            List<ObjectId> mightBeStored = new ArrayList<ObjectId>(ids.size());
+            for (ObjectId id : ids) {
+                if (idFilter.mightContain(id)) {
+                    mightBeStored.add(id);
                 } else {
-                    close();
-                    return endOfData();
+                    listener.notFound(id);
+                }
+            }
+            return mightBeStored;
+        }
+
+        private List<byte[]> lookUp(final List<ObjectId> sortedIds) {
+            List<PartitionLookup> lookups = new ArrayList<PartitionLookup>(partitions.length);
+            int from = 0;
+            for (int i = 1; i <= sortedIds.size(); i++) {
+                Database db = partitionOf(sortedIds.get(from));
+                if (i == sortedIds.size() || partitionOf(sortedIds.get(i)) != db) {
+                    lookups.add(new PartitionLookup(db, sortedIds.subList(from, i)));
+                    from = i;
                 }
             }
+            if (lookups.size() == 1) {
+                return lookups.get(0).call();
+            }
+            List<byte[]> data = new ArrayList<byte[]>(sortedIds.size());
             try {
+                for (Future<List<byte[]>> partitionData : readerService.invokeAll(lookups)) {
+                    data.addAll(partitionData.get());
+                }
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Looks up the data of a sorted list of ids that belong to the same partition, returning a
+     * list with the data of each id or {@code null} if not found, in the same order.
+     */
+    private static class PartitionLookup implements Callable<List<byte[]>> {
+
+        private final Database objectDb;
 
+        private final List<ObjectId> sortedIds;
+
+        PartitionLookup(Database objectDb, List<ObjectId> sortedIds) {
+            this.objectDb = objectDb;
+            this.sortedIds = sortedIds;
+        }
+
+        /**
+         * Opens a non transactional read uncommitted cursor, closed before returning, so that it
+         * can be called from a different thread than the one the lookup was created at
+         */
+        @Override
+        public List<byte[]> call() {
+            List<byte[]> found = new ArrayList<byte[]>(sortedIds.size());
+            CursorConfig cursorConfig = new CursorConfig();
+            cursorConfig.setReadUncommitted(true);
+            Cursor cursor = objectDb.openCursor(null, cursorConfig);
+            try {
                 byte[] keyBuff = new byte[ObjectId.NUM_BYTES];
                 DatabaseEntry key = new DatabaseEntry(keyBuff);
-
-                RevObject found = null;
-                while (sortedIds.hasNext() && found == null) {
-                    ObjectId id = sortedIds.next();
+                for (ObjectId id : sortedIds) {
                     id.getRawValue(keyBuff);
                     key.setData(keyBuff);
 
                     DatabaseEntry data = new DatabaseEntry();
-                    // lookup data for the next key
                     OperationStatus status;
                     status = cursor.getSearchKey(key, data, LockMode.READ_UNCOMMITTED);
-                    if (SUCCESS.equals(status)) {
-                        InputStream rawData;
-                        rawData = new LZFInputStream(new ByteArrayInputStream(data.getData()));
-                        found = reader.read(id, rawData);
-                        listener.found(found.getId(), data.getSize());
-                    } else {
-                        listener.notFound(id);
-                    }
-                }
-                if (found == null) {
-                    return computeNext();
-                }
-                return found;
-            } catch (Exception e) {
-                try {
-                    throw Throwables.propagate(e);
-                } finally {
-                    close();
+                    found.add(SUCCESS.equals(status) ? data.getData() : null);
                 }
-            }
-        }
-
-        @Override
-        public void close() {
-            sortedIds = null;
-            Cursor cursor = this.cursor;
-            this.cursor = null;
-            if (cursor != null) {
+            } finally {
                 cursor.close();
             }
-            if (transaction != null) {
-                transaction.abort();
-                transaction = null;
-            }
+            return found;
         }
     }
 
@@ -840,7 +1404,7 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
 
     @Nullable
     private Transaction newTransaction() {
-        final boolean transactional = objectDb.getConfig().getTransactional();
+        final boolean transactional = isTransactional();
         if (transactional) {
             TransactionConfig txConfig = new TransactionConfig();
             txConfig.setReadUncommitted(true);
@@ -848,7 +1412,10 @@ abstract class JEObjectDatabase extends AbstractObjectDatabase implements Object
             if (!durability.isPresent()) {
                 durability = configDB.getGlobal(OBJECT_DURABILITY_CONFIG_KEY);
             }
-            if ("safe".equals(durability.orNull())) {
+            if (isBulkLoading()) {
+                // made durable when the last bulk load session is closed
+                txConfig.setDurability(Durability.COMMIT_NO_SYNC);
+            } else if ("safe".equals(durability.orNull())) {
                 txConfig.setDurability(Durability.COMMIT_SYNC);
             } else {
                 txConfig.setDurability(Durability.COMMIT_WRITE_NO_SYNC);
@@ -77,7 +77,7 @@ abstract class JEStagingDatabase extends AbstractStagingDatabase {
     public JEStagingDatabase(final ObjectDatabase repositoryDb,
             final Supplier<JEObjectDatabase> stagingDbSupplier, final Platform platform,
             final ConfigDatabase configDB) {
-        super(Suppliers.ofInstance(repositoryDb), stagingDbSupplier);
+        super(Suppliers.ofInstance(repositoryDb), stagingDbSupplier, configDB);
 
         this.platform = platform;
         this.configDB = configDB;
@@ -10,6 +10,7 @@
 package org.locationtech.geogig.storage.bdbje;
 
 import java.io.File;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -17,13 +18,30 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevObject.TYPE;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.api.TestPlatform;
 import org.locationtech.geogig.repository.Hints;
+import org.locationtech.geogig.storage.BulkLoadSession;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.ObjectIdBloomFilter;
+import org.locationtech.geogig.storage.RawObject;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV2;
 import org.locationtech.geogig.storage.fs.IniFileConfigDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabse;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.sleepycat.je.Environment;
 
 public class JEObjectDatabaseTest extends Assert {
 
@@ -154,4 +172,197 @@ public class JEObjectDatabaseTest extends Assert {
         RevObject revObject = db.get(obj.getId());
         assertEquals(obj, revObject);
     }
+
+    @Test
+    public void testGetRawPutRaw() {
+        db = createDb();
+        RevCommit commit = new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID)
+                .setAuthor("groldan").setMessage("raw").build();
+        db.putAll(ImmutableList.of(RevTree.EMPTY, commit).iterator());
+
+        List<RawObject> raw = Lists.newArrayList(db.getRaw(
+                ImmutableList.of(RevTree.EMPTY_TREE_ID, commit.getId(), ObjectId.forString("x")),
+                BulkOpListener.NOOP_LISTENER));
+        assertEquals(2, raw.size());
+
+        HeapObjectDatabse target = new HeapObjectDatabse();
+        target.open();
+        CountingListener listener = BulkOpListener.newCountingListener();
+        target.putRaw(raw.iterator(), listener);
+        assertEquals(2, listener.inserted());
+        assertEquals(RevTree.EMPTY, target.get(RevTree.EMPTY_TREE_ID));
+        assertEquals(commit, target.get(commit.getId()));
+    }
+
+    @Test
+    public void testPutRawDifferentFormat() {
+        db = createDb();
+        RevCommit commit = new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID)
+                .setAuthor("groldan").setMessage("raw").build();
+        RawObject raw = RawObject.encode(commit, DataStreamSerializationFactoryV2.INSTANCE);
+        assertEquals(TYPE.COMMIT, raw.getType());
+
+        db.putRaw(Iterators.singletonIterator(raw), BulkOpListener.NOOP_LISTENER);
+        assertEquals(commit, db.get(commit.getId()));
+    }
+
+    @Test
+    public void testBulkLoadSession() {
+        db = createDb();
+        List<RevObject> objects = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            objects.add(new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID)
+                    .setAuthor("groldan").setMessage("commit " + i).build());
+        }
+
+        BulkLoadSession session = db.startBulkLoad();
+        BulkLoadSession nested = db.startBulkLoad();
+        CountingListener listener = BulkOpListener.newCountingListener();
+        try {
+            db.putAll(objects.subList(0, 500).iterator(), listener);
+            nested.close();
+            // closing twice has no effect
+            nested.close();
+            db.putAll(objects.iterator(), listener);
+        } finally {
+            session.close();
+        }
+        assertEquals(1000, listener.inserted());
+        assertEquals(500, listener.found());
+
+        db.close();
+        db.open();
+        for (RevObject o : objects) {
+            assertEquals(o, db.get(o.getId()));
+        }
+    }
+
+    @Test
+    public void testIdFilter() {
+        db = createDb();
+        List<RevObject> objects = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            objects.add(new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID)
+                    .setAuthor("groldan").setMessage("commit " + i).build());
+        }
+        db.putAll(objects.iterator());
+        db.close();
+
+        File filterFile = new File(new File(folder.getRoot(), ".geogig/"
+                + JEObjectDatabase.ENVIRONMENT_NAME), JEObjectDatabase.ID_FILTER_FILE);
+        assertTrue(filterFile.exists());
+        db.open();
+        assertFalse(filterFile.exists());
+        ObjectIdBloomFilter.Stats stats = ((JEObjectDatabase) db).getIdFilterStats();
+        assertEquals(100, stats.insertions());
+
+        for (RevObject o : objects) {
+            assertTrue(db.exists(o.getId()));
+        }
+        List<ObjectId> missing = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            missing.add(ObjectId.forString("missing " + i));
+            assertFalse(db.exists(missing.get(i)));
+        }
+        CountingListener listener = BulkOpListener.newCountingListener();
+        assertFalse(db.getAll(missing, listener).hasNext());
+        assertEquals(100, listener.notFound());
+
+        stats = ((JEObjectDatabase) db).getIdFilterStats();
+        assertEquals(300, stats.lookups());
+        assertEquals(200, stats.negatives() + stats.falsePositives());
+
+        // a database not closed cleanly has no filter file and rebuilds it
+        db.close();
+        assertTrue(filterFile.delete());
+        db.open();
+        assertEquals(100, ((JEObjectDatabase) db).getIdFilterStats().insertions());
+        for (RevObject o : objects) {
+            assertTrue(db.exists(o.getId()));
+        }
+    }
+
+    @Test
+    public void testStoredIdsAndRepack() {
+        ConfigDatabase configDB = new IniFileConfigDatabase(platform);
+        configDB.put(JEObjectDatabase.PARTITIONS_CONFIG_KEY, "2");
+        db = createDb();
+        List<RevObject> objects = Lists.newArrayList();
+        List<ObjectId> ids = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            RevCommit c = new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID)
+                    .setAuthor("groldan").setMessage("commit " + i).build();
+            objects.add(c);
+            ids.add(c.getId());
+        }
+        db.putAll(objects.iterator());
+        assertEquals(ImmutableSet.copyOf(ids), ImmutableSet.copyOf(db.storedIds()));
+
+        db.deleteAll(ids.subList(0, 500).iterator());
+        List<ObjectId> live = Lists.reverse(ids.subList(500, 1000));
+        assertEquals(ImmutableSet.copyOf(live), ImmutableSet.copyOf(db.storedIds()));
+
+        db.repack(live.iterator());
+        db.close();
+        db.open();
+        assertEquals(ImmutableSet.copyOf(live), ImmutableSet.copyOf(db.storedIds()));
+        for (RevObject o : objects.subList(500, 1000)) {
+            assertEquals(o, db.get(o.getId()));
+        }
+    }
+
+    @Test
+    public void testPartitions() {
+        ConfigDatabase configDB = new IniFileConfigDatabase(platform);
+        configDB.put(JEObjectDatabase.PARTITIONS_CONFIG_KEY, "4");
+        db = createDb();
+
+        List<RevObject> objects = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            objects.add(new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID)
+                    .setAuthor("groldan").setMessage("commit " + i).build());
+        }
+        CountingListener listener = BulkOpListener.newCountingListener();
+        db.putAll(objects.iterator(), listener);
+        assertEquals(1000, listener.inserted());
+
+        List<ObjectId> ids = Lists.newArrayList();
+        for (RevObject o : objects) {
+            ids.add(o.getId());
+            assertTrue(db.exists(o.getId()));
+        }
+        ids.add(ObjectId.forString("missing"));
+        listener = BulkOpListener.newCountingListener();
+        List<RevObject> found = Lists.newArrayList(db.getAll(ids, listener));
+        assertEquals(1000, found.size());
+        assertEquals(1000, listener.found());
+        assertEquals(1, listener.notFound());
+        assertEquals(ImmutableSet.copyOf(objects), ImmutableSet.copyOf(found));
+
+        ObjectId id = objects.get(0).getId();
+        assertEquals(ImmutableList.of(id), db.lookUp(id.toString().substring(0, 10)));
+
+        listener = BulkOpListener.newCountingListener();
+        db.deleteAll(ids.subList(0, 500).iterator(), listener);
+        assertEquals(500, listener.deleted());
+
+        // the number of partitions is fixed once the databases are created
+        configDB.put(JEObjectDatabase.PARTITIONS_CONFIG_KEY, "2");
+        db.close();
+        db.open();
+        for (int i = 0; i < objects.size(); i++) {
+            assertEquals(i >= 500, db.exists(objects.get(i).getId()));
+        }
+        db.close();
+
+        Environment env = envProvider.setRelativePath(JEObjectDatabase.ENVIRONMENT_NAME).get();
+        try {
+            assertTrue(env.getDatabaseNames().containsAll(
+                    ImmutableList.of("ObjectDatabase", "ObjectDatabase.1", "ObjectDatabase.2",
+                            "ObjectDatabase.3")));
+            assertFalse(env.getDatabaseNames().contains("ObjectDatabase.4"));
+        } finally {
+            env.close();
+        }
+    }
 }
@@ -19,7 +19,7 @@ import com.mongodb.MongoClientURI;
 /**
  * A connection manager for MongoDB-backed storage objects.
  */
-public final class MongoConnectionManager extends
+public class MongoConnectionManager extends
         ConnectionManager<MongoAddress, MongoClient> {
     @Override
     protected MongoClient connect(MongoAddress address) {
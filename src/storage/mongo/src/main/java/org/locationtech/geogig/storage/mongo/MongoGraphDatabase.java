@@ -37,7 +37,7 @@ import com.mongodb.MongoClient;
 public class MongoGraphDatabase implements GraphDatabase {
     private final MongoConnectionManager manager;
 
-    private final ConfigDatabase config;
+    protected final ConfigDatabase config;
 
     private MongoClient client;
     private DBCollection collection;
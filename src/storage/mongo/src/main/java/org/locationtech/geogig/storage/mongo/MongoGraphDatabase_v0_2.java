@@ -0,0 +1,39 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.mongo;
+
+import org.locationtech.geogig.repository.RepositoryConnectionException;
+import org.locationtech.geogig.storage.ConfigDatabase;
+
+import com.google.inject.Inject;
+
+/**
+ * Version 0.2 of the MongoDB graph database. The graph storage is the same than version 0.1's, the
+ * {@code mongodb.version} config key being shared with the {@link MongoObjectDatabase_v0_2 object}
+ * and {@link MongoStagingDatabase_v0_2 staging} databases.
+ */
+public class MongoGraphDatabase_v0_2 extends MongoGraphDatabase {
+
+    @Inject
+    public MongoGraphDatabase_v0_2(final MongoConnectionManager manager,
+            final ConfigDatabase config) {
+        super(manager, config);
+    }
+
+    @Override
+    public void configure() throws RepositoryConnectionException {
+        RepositoryConnectionException.StorageType.GRAPH.configure(config, "mongodb", "0.2");
+    }
+
+    @Override
+    public void checkConfig() throws RepositoryConnectionException {
+        RepositoryConnectionException.StorageType.GRAPH.verify(config, "mongodb", "0.2");
+    }
+}
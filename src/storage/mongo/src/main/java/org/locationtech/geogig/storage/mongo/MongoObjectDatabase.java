@@ -13,13 +13,21 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.Nullable;
+
+import org.bson.types.Binary;
 import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevFeature;
@@ -28,20 +36,23 @@ import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
+import org.locationtech.geogig.storage.BulkLoadSession;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectInserter;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
 import org.locationtech.geogig.storage.ObjectWriter;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 
-import com.google.common.base.Functions;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.mongodb.BasicDBObject;
 import com.mongodb.BasicDBObjectBuilder;
@@ -60,10 +71,85 @@ import com.ning.compress.lzf.LZFOutputStream;
 
 /**
  * An Object database that uses a MongoDB server for persistence.
+ * <p>
+ * Objects are stored as documents holding the object id and its serialized form. How the id is
+ * stored depends on the storage {@link IdSchema schema}: version 0.1 uses the indexed hex string
+ * {@code oid} field, and version 0.2 (see {@link MongoObjectDatabase_v0_2}) the 20 bytes of the
+ * id as the BinData {@code _id}, half the size and using the collection's primary key index.
+ * <p>
+ * Bulk inserts are sent as unordered bulk writes of {@code mongodb.write_batch_size} objects (1000
+ * by default), and bulk reads as {@code $in} queries of {@code mongodb.read_batch_size} ids (1000
+ * by default), several of them running in parallel ahead of the one being consumed.
  * 
  * @see http://mongodb.com/
  */
 public class MongoObjectDatabase implements ObjectDatabase {
+
+    /**
+     * How the object ids are stored in the collection's documents
+     */
+    protected static enum IdSchema {
+        /**
+         * Hex string {@code oid} field, with a secondary index
+         */
+        STRING("oid") {
+            @Override
+            Object encode(ObjectId id) {
+                return id.toString();
+            }
+
+            @Override
+            ObjectId decode(Object value) {
+                return ObjectId.valueOf((String) value);
+            }
+        },
+        /**
+         * The raw bytes of the id as the BinData {@code _id}
+         */
+        BINARY("_id") {
+            @Override
+            Object encode(ObjectId id) {
+                return new Binary(id.getRawValue());
+            }
+
+            @Override
+            ObjectId decode(Object value) {
+                // the driver decodes generic binary data as byte[]
+                byte[] raw = value instanceof Binary ? ((Binary) value).getData()
+                        : (byte[]) value;
+                return ObjectId.createNoClone(raw);
+            }
+        };
+
+        final String field;
+
+        private IdSchema(String field) {
+            this.field = field;
+        }
+
+        abstract Object encode(ObjectId id);
+
+        abstract ObjectId decode(Object value);
+
+        DBObject query(ObjectId id) {
+            return new BasicDBObject(field, encode(id));
+        }
+    }
+
+    private static final String SERIALIZED_OBJECT = "serialized_object";
+
+    private static final String WRITE_BATCH_SIZE_CONFIG_KEY = "mongodb.write_batch_size";
+
+    private static final String READ_BATCH_SIZE_CONFIG_KEY = "mongodb.read_batch_size";
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Max number of bulk write or {@code $in} query batches running at the same time for a single
+     * bulk operation
+     */
+    private static final int MAX_RUNNING_TASKS = 10;
+
     private final MongoConnectionManager manager;
 
     protected final ConfigDatabase config;
@@ -80,6 +166,12 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     private ExecutorService executor;
 
+    private IdSchema idSchema;
+
+    private int writeBatchSize;
+
+    private int readBatchSize;
+
     @Inject
     public MongoObjectDatabase(ConfigDatabase config, MongoConnectionManager manager,
             ExecutorService executor) {
@@ -94,6 +186,20 @@ public class MongoObjectDatabase implements ObjectDatabase {
         this.collectionName = collectionName;
     }
 
+    /**
+     * @return the storage version this database is configured as
+     */
+    protected String getVersion() {
+        return "0.1";
+    }
+
+    /**
+     * @return how object ids are stored
+     */
+    protected IdSchema getIdSchema() {
+        return IdSchema.STRING;
+    }
+
     private RevObject fromBytes(ObjectId id, byte[] buffer) {
         ByteArrayInputStream byteStream = new ByteArrayInputStream(buffer);
         RevObject result;
@@ -133,10 +239,21 @@ public class MongoObjectDatabase implements ObjectDatabase {
         }
         String uri = config.get("mongodb.uri").get();
         String database = config.get("mongodb.database").get();
+        idSchema = getIdSchema();
+        writeBatchSize = config.get(WRITE_BATCH_SIZE_CONFIG_KEY, Integer.class)
+                .or(DEFAULT_BATCH_SIZE).intValue();
+        readBatchSize = config.get(READ_BATCH_SIZE_CONFIG_KEY, Integer.class)
+                .or(DEFAULT_BATCH_SIZE).intValue();
+        Preconditions.checkArgument(writeBatchSize > 0, "%s shall be positive",
+                WRITE_BATCH_SIZE_CONFIG_KEY);
+        Preconditions.checkArgument(readBatchSize > 0, "%s shall be positive",
+                READ_BATCH_SIZE_CONFIG_KEY);
         client = manager.acquire(new MongoAddress(uri));
         db = client.getDB(database);
         collection = db.getCollection(getCollectionName());
-        collection.ensureIndex("oid");
+        if (IdSchema.STRING.equals(idSchema)) {
+            collection.ensureIndex(idSchema.field);
+        }
     }
 
     @Override
@@ -146,7 +263,8 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public void configure() throws RepositoryConnectionException {
-        RepositoryConnectionException.StorageType.OBJECT.configure(config, "mongodb", "0.1");
+        RepositoryConnectionException.StorageType.OBJECT.configure(config, "mongodb",
+                getVersion());
         String uri = config.get("mongodb.uri").or(config.getGlobal("mongodb.uri"))
                 .or("mongodb://localhost:27017/");
         String database = config.get("mongodb.database").or(config.getGlobal("mongodb.database"))
@@ -157,7 +275,7 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public void checkConfig() throws RepositoryConnectionException {
-        RepositoryConnectionException.StorageType.OBJECT.verify(config, "mongodb", "0.1");
+        RepositoryConnectionException.StorageType.OBJECT.verify(config, "mongodb", getVersion());
     }
 
     @Override
@@ -172,30 +290,43 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public boolean exists(ObjectId id) {
-        DBObject query = new BasicDBObject();
-        query.put("oid", id.toString());
-        return collection.find(query).hasNext();
+        return collection.findOne(idSchema.query(id), new BasicDBObject(idSchema.field, 1)) != null;
     }
 
     @Override
     public List<ObjectId> lookUp(final String partialId) {
-        if (partialId.matches("[a-fA-F0-9]+")) {
+        if (!partialId.matches("[a-fA-F0-9]+")) {
+            throw new IllegalArgumentException(
+                    "Prefix query must be done with hexadecimal values only");
+        }
+        DBObject query = new BasicDBObject();
+        if (IdSchema.STRING.equals(idSchema)) {
             DBObject regex = new BasicDBObject();
             regex.put("$regex", "^" + partialId);
-            DBObject query = new BasicDBObject();
-            query.put("oid", regex);
-            DBCursor cursor = collection.find(query);
-            List<ObjectId> ids = new ArrayList<ObjectId>();
+            query.put(idSchema.field, regex);
+        } else {
+            // range scan over the ids starting with the full bytes of the prefix
+            byte[] raw = ObjectId.toRaw(partialId);
+            byte[] lower = Arrays.copyOf(raw, ObjectId.NUM_BYTES);
+            byte[] upper = Arrays.copyOf(raw, ObjectId.NUM_BYTES);
+            Arrays.fill(upper, raw.length, upper.length, (byte) 0xFF);
+            query.put(idSchema.field, BasicDBObjectBuilder.start().add("$gte", new Binary(lower))
+                    .add("$lte", new Binary(upper)).get());
+        }
+        DBCursor cursor = collection.find(query, new BasicDBObject(idSchema.field, 1));
+        List<ObjectId> found = new ArrayList<ObjectId>();
+        try {
             while (cursor.hasNext()) {
-                DBObject elem = cursor.next();
-                String oid = (String) elem.get("oid");
-                ids.add(ObjectId.valueOf(oid));
+                ObjectId id = idSchema.decode(cursor.next().get(idSchema.field));
+                // odd length prefixes only matched the full bytes
+                if (id.toString().startsWith(partialId)) {
+                    found.add(id);
+                }
             }
-            return ids;
-        } else {
-            throw new IllegalArgumentException(
-                    "Prefix query must be done with hexadecimal values only");
+        } finally {
+            cursor.close();
         }
+        return found;
     }
 
     @Override
@@ -215,15 +346,15 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public RevObject getIfPresent(ObjectId id) {
-        DBObject query = new BasicDBObject();
-        query.put("oid", id.toString());
-        DBCursor results = collection.find(query);
-        if (results.hasNext()) {
-            DBObject result = results.next();
-            return fromBytes(id, (byte[]) result.get("serialized_object"));
-        } else {
-            return null;
-        }
+        byte[] bytes = getBytesIfPresent(id);
+        return bytes == null ? null : fromBytes(id, bytes);
+    }
+
+    @Nullable
+    private byte[] getBytesIfPresent(ObjectId id) {
+        DBObject fields = new BasicDBObject(SERIALIZED_OBJECT, 1);
+        DBObject result = collection.findOne(idSchema.query(id), fields);
+        return result == null ? null : (byte[]) result.get(SERIALIZED_OBJECT);
     }
 
     @Override
@@ -257,17 +388,23 @@ public class MongoObjectDatabase implements ObjectDatabase {
     }
 
     private long deleteChunk(List<ObjectId> ids) {
-        List<String> idStrings = Lists.transform(ids, Functions.toStringFunction());
-        DBObject query = BasicDBObjectBuilder.start().push("oid").add("$in", idStrings).pop().get();
+        DBObject query = BasicDBObjectBuilder.start().push(idSchema.field)
+                .add("$in", encode(ids)).pop().get();
         WriteResult result = collection.remove(query);
         return result.getN();
     }
 
+    private List<Object> encode(List<ObjectId> objectIds) {
+        List<Object> encoded = new ArrayList<Object>(objectIds.size());
+        for (ObjectId id : objectIds) {
+            encoded.add(idSchema.encode(id));
+        }
+        return encoded;
+    }
+
     @Override
     public boolean delete(ObjectId id) {
-        DBObject query = new BasicDBObject();
-        query.put("oid", id.toString());
-        return collection.remove(query).getLastError().ok();
+        return collection.remove(idSchema.query(id)).getLastError().ok();
     }
 
     @Override
@@ -285,19 +422,28 @@ public class MongoObjectDatabase implements ObjectDatabase {
         return count;
     }
 
+    /**
+     * Objects are immutable, so an existing object is never rewritten
+     * 
+     * @return {@code true} if the object didn't exist
+     */
     @Override
     public boolean put(final RevObject object) {
-        DBObject query = new BasicDBObject();
-        query.put("oid", object.getId().toString());
-        DBObject record = toDocument(object);
-        return collection.update(query, record, true, false).getLastError().ok();
+        DBObject query = idSchema.query(object.getId());
+        WriteResult result = collection.update(query, insertOnly(toBytes(object)), true, false);
+        return !result.isUpdateOfExisting();
+    }
+
+    /**
+     * @return the update that sets the serialized object only if the upsert inserts the document
+     */
+    private static DBObject insertOnly(final byte[] serializedObject) {
+        return new BasicDBObject("$setOnInsert", new BasicDBObject(SERIALIZED_OBJECT,
+                serializedObject));
     }
 
-    private DBObject toDocument(final RevObject object) {
-        DBObject record = new BasicDBObject();
-        record.put("oid", object.getId().toString());
-        record.put("serialized_object", toBytes(object));
-        return record;
+    private byte[] toBytes(final RawObject object) {
+        return object.isFormat(serializers) ? object.getData() : toBytes(object.parse());
     }
 
     @Override
@@ -307,37 +453,107 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public void putAll(Iterator<? extends RevObject> objects, BulkOpListener listener) {
+        putSerialized(Iterators.transform(objects, new Function<RevObject, SerializedObject>() {
+            @Override
+            public SerializedObject apply(RevObject object) {
+                return new SerializedObject(object.getId(), toBytes(object));
+            }
+        }), listener);
+    }
+
+    /**
+     * Stores the raw objects data as is if they're in this database's serialization format,
+     * through the same bulk insert than {@link #putAll(Iterator, BulkOpListener)}
+     */
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        putSerialized(Iterators.transform(objects, new Function<RawObject, SerializedObject>() {
+            @Override
+            public SerializedObject apply(RawObject object) {
+                return new SerializedObject(object.getId(), toBytes(object));
+            }
+        }), listener);
+    }
+
+    /**
+     * Bulk inserts already go through batched bulk write operations, so there's no bulk load mode.
+     */
+    @Override
+    public BulkLoadSession startBulkLoad() {
+        return BulkLoadSession.NOOP;
+    }
+
+    /**
+     * Scans the collection fetching only the id field of each document
+     */
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        DBCursor cursor = collection.find(new BasicDBObject(), new BasicDBObject(idSchema.field,
+                1));
+        return Iterators.transform(cursor, new Function<DBObject, ObjectId>() {
+            @Override
+            public ObjectId apply(DBObject document) {
+                return idSchema.decode(document.get(idSchema.field));
+            }
+        });
+    }
+
+    /**
+     * Documents are not stored in insertion order, and compacting a collection is an
+     * administrative operation of the MongoDB server, so there's nothing to do.
+     */
+    @Override
+    public void repack(Iterator<ObjectId> liveIds) {
+        // nothing to do
+    }
+
+    private static class SerializedObject {
+
+        final ObjectId id;
+
+        final byte[] data;
+
+        SerializedObject(ObjectId id, byte[] data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Sends the objects as unordered bulk writes of {@link #writeBatchSize} upserts that only set
+     * the serialized object on insert, so existing objects are reported as found.
+     */
+    private void putSerialized(Iterator<SerializedObject> objects, BulkOpListener listener) {
         Preconditions.checkNotNull(executor, "executor service not set");
         if (!objects.hasNext()) {
             return;
         }
 
-        final int bulkSize = 1000;
-        final int maxRunningTasks = 10;
-
         final AtomicBoolean cancelCondition = new AtomicBoolean();
 
-        List<ObjectId> ids = Lists.newArrayListWithCapacity(bulkSize);
-        List<Future<?>> runningTasks = new ArrayList<Future<?>>(maxRunningTasks);
+        List<ObjectId> batchIds = Lists.newArrayListWithCapacity(writeBatchSize);
+        List<Future<?>> runningTasks = new ArrayList<Future<?>>(MAX_RUNNING_TASKS);
 
-        BulkWriteOperation bulkOperation = collection.initializeOrderedBulkOperation();
+        BulkWriteOperation bulkOperation = collection.initializeUnorderedBulkOperation();
         try {
             while (objects.hasNext()) {
-                RevObject object = objects.next();
-                bulkOperation.insert(toDocument(object));
+                SerializedObject object = objects.next();
+                bulkOperation.find(idSchema.query(object.id)).upsert()
+                        .updateOne(insertOnly(object.data));
 
-                ids.add(object.getId());
+                batchIds.add(object.id);
 
-                if (ids.size() == bulkSize || !objects.hasNext()) {
-                    InsertTask task = new InsertTask(bulkOperation, listener, ids, cancelCondition);
+                if (batchIds.size() == writeBatchSize || !objects.hasNext()) {
+                    InsertTask task = new InsertTask(bulkOperation, listener, batchIds,
+                            cancelCondition);
                     runningTasks.add(executor.submit(task));
 
                     if (objects.hasNext()) {
-                        bulkOperation = collection.initializeOrderedBulkOperation();
-                        ids = Lists.newArrayListWithCapacity(bulkSize);
+                        bulkOperation = collection.initializeUnorderedBulkOperation();
+                        batchIds = Lists.newArrayListWithCapacity(writeBatchSize);
                     }
                 }
-                if (runningTasks.size() == maxRunningTasks) {
+                if (runningTasks.size() == MAX_RUNNING_TASKS) {
                     waitForTasks(runningTasks);
                 }
             }
@@ -360,6 +576,11 @@ public class MongoObjectDatabase implements ObjectDatabase {
         runningTasks.clear();
     }
 
+    /**
+     * Executes a bulk write of upserts; the ones that resulted in an insert are reported as
+     * inserted and the rest as found. Listener callbacks are serialized, as several tasks may run
+     * concurrently.
+     */
     private static class InsertTask implements Runnable {
 
         private BulkWriteOperation bulkOperation;
@@ -386,23 +607,24 @@ public class MongoObjectDatabase implements ObjectDatabase {
             BulkWriteResult bulkResult = bulkOperation.execute(WriteConcern.ACKNOWLEDGED);
             List<BulkWriteUpsert> upserts = bulkResult.getUpserts();
 
-            for (BulkWriteUpsert upsert : upserts) {
-                if (cancelCondition.get()) {
-                    return;
-                }
-                int index = upsert.getIndex();
-                ObjectId existing = ids.set(index, null);
-                listener.found(existing, null);
-            }
-            for (ObjectId inserted : ids) {
-                if (cancelCondition.get()) {
-                    return;
-                }
-                if (inserted != null) {
+            synchronized (listener) {
+                for (BulkWriteUpsert upsert : upserts) {
+                    if (cancelCondition.get()) {
+                        return;
+                    }
+                    int index = upsert.getIndex();
+                    ObjectId inserted = ids.set(index, null);
                     listener.inserted(inserted, null);
                 }
+                for (ObjectId existing : ids) {
+                    if (cancelCondition.get()) {
+                        return;
+                    }
+                    if (existing != null) {
+                        listener.found(existing, null);
+                    }
+                }
             }
-
             ids.clear();
         }
 
@@ -420,28 +642,117 @@ public class MongoObjectDatabase implements ObjectDatabase {
 
     @Override
     public Iterator<RevObject> getAll(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        return new BatchReadIterator<RevObject>(ids.iterator(), listener) {
+            @Override
+            protected RevObject decode(ObjectId id, byte[] data) {
+                return fromBytes(id, data);
+            }
+        };
+    }
 
-        return new AbstractIterator<RevObject>() {
-            final Iterator<ObjectId> queryIds = ids.iterator();
-
+    @Override
+    public Iterator<RawObject> getRaw(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        return new BatchReadIterator<RawObject>(ids.iterator(), listener) {
             @Override
-            protected RevObject computeNext() {
-                RevObject obj = null;
-                while (obj == null) {
-                    if (!queryIds.hasNext()) {
-                        return endOfData();
-                    }
-                    ObjectId id = queryIds.next();
-                    obj = getIfPresent(id);
-                    if (obj == null) {
+            protected RawObject decode(ObjectId id, byte[] data) {
+                return new RawObject(id, data, serializers);
+            }
+        };
+    }
+
+    /**
+     * Fetches the objects in batches of {@link #readBatchSize} ids, each with a single {@code $in}
+     * query run on the executor service. Up to {@link #MAX_RUNNING_TASKS} batches are fetched ahead
+     * of the one being consumed. Objects are returned, and the listener called, on the iterating
+     * thread in the order of the requested ids.
+     */
+    private abstract class BatchReadIterator<T> extends AbstractIterator<T> {
+
+        private final Iterator<List<ObjectId>> batches;
+
+        private final BulkOpListener listener;
+
+        private final Queue<List<ObjectId>> pendingIds = Lists.newLinkedList();
+
+        private final Queue<Future<Map<ObjectId, byte[]>>> pendingData = Lists.newLinkedList();
+
+        private Iterator<ObjectId> currentIds = Iterators.emptyIterator();
+
+        private Map<ObjectId, byte[]> currentData;
+
+        BatchReadIterator(Iterator<ObjectId> ids, BulkOpListener listener) {
+            Preconditions.checkNotNull(executor, "executor service not set");
+            this.batches = Iterators.partition(ids, readBatchSize);
+            this.listener = listener;
+        }
+
+        protected abstract T decode(ObjectId id, byte[] data);
+
+        @Override
+        protected T computeNext() {
+            while (true) {
+                while (currentIds.hasNext()) {
+                    ObjectId id = currentIds.next();
+                    byte[] data = currentData.get(id);
+                    if (data == null) {
                         listener.notFound(id);
                     } else {
-                        listener.found(obj.getId(), null);
+                        listener.found(id, data.length);
+                        return decode(id, data);
                     }
                 }
-                return obj == null ? endOfData() : obj;
+                while (pendingIds.size() < MAX_RUNNING_TASKS && batches.hasNext()) {
+                    List<ObjectId> batch = batches.next();
+                    pendingIds.add(batch);
+                    pendingData.add(executor.submit(new FindTask(collection, batch)));
+                }
+                if (pendingIds.isEmpty()) {
+                    return endOfData();
+                }
+                currentIds = pendingIds.remove().iterator();
+                try {
+                    currentData = pendingData.remove().get();
+                } catch (InterruptedException e) {
+                    throw Throwables.propagate(e);
+                } catch (ExecutionException e) {
+                    throw Throwables.propagate(e.getCause());
+                }
             }
-        };
+        }
+    }
+
+    /**
+     * Fetches the serialized objects for a batch of ids with a single {@code $in} query
+     */
+    private class FindTask implements Callable<Map<ObjectId, byte[]>> {
+
+        private final DBCollection collection;
+
+        private final List<ObjectId> batch;
+
+        FindTask(DBCollection collection, List<ObjectId> batch) {
+            this.collection = collection;
+            this.batch = batch;
+        }
+
+        @Override
+        public Map<ObjectId, byte[]> call() {
+            DBObject query = BasicDBObjectBuilder.start().push(idSchema.field)
+                    .add("$in", encode(batch)).pop().get();
+            DBObject fields = new BasicDBObject(idSchema.field, 1).append(SERIALIZED_OBJECT, 1);
+            Map<ObjectId, byte[]> found = Maps.newHashMap();
+            DBCursor cursor = collection.find(query, fields).batchSize(batch.size());
+            try {
+                while (cursor.hasNext()) {
+                    DBObject document = cursor.next();
+                    found.put(idSchema.decode(document.get(idSchema.field)),
+                            (byte[]) document.get(SERIALIZED_OBJECT));
+                }
+            } finally {
+                cursor.close();
+            }
+            return found;
+        }
     }
 
     public DBCollection getCollection(String name) {
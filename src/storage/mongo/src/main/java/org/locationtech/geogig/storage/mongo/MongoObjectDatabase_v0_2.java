@@ -0,0 +1,44 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.mongo;
+
+import java.util.concurrent.ExecutorService;
+
+import org.locationtech.geogig.storage.ConfigDatabase;
+
+import com.google.inject.Inject;
+
+/**
+ * Version 0.2 of the MongoDB object database, storing object ids as the 20 bytes BinData
+ * {@code _id} of their documents.
+ */
+public class MongoObjectDatabase_v0_2 extends MongoObjectDatabase {
+
+    @Inject
+    public MongoObjectDatabase_v0_2(ConfigDatabase config, MongoConnectionManager manager,
+            ExecutorService executor) {
+        this(config, manager, "objects", executor);
+    }
+
+    MongoObjectDatabase_v0_2(ConfigDatabase config, MongoConnectionManager manager,
+            String collectionName, ExecutorService executor) {
+        super(config, manager, collectionName, executor);
+    }
+
+    @Override
+    protected String getVersion() {
+        return "0.2";
+    }
+
+    @Override
+    protected IdSchema getIdSchema() {
+        return IdSchema.BINARY;
+    }
+}
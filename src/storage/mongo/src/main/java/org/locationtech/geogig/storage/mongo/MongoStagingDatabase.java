@@ -38,13 +38,17 @@ public class MongoStagingDatabase extends AbstractStagingDatabase implements Sta
 
     protected DBCollection conflicts;
 
-    private ConfigDatabase config;
+    protected final ConfigDatabase config;
 
     @Inject
     public MongoStagingDatabase(final ConfigDatabase config, final MongoConnectionManager manager,
             final ObjectDatabase repositoryDb, ExecutorService executor) {
-        super(Suppliers.ofInstance(repositoryDb), Suppliers.ofInstance(new MongoObjectDatabase(
-                config, manager, "staging", executor)));
+        this(config, repositoryDb, new MongoObjectDatabase(config, manager, "staging", executor));
+    }
+
+    protected MongoStagingDatabase(final ConfigDatabase config, final ObjectDatabase repositoryDb,
+            final MongoObjectDatabase stagingDb) {
+        super(Suppliers.ofInstance(repositoryDb), Suppliers.ofInstance(stagingDb), config);
         this.config = config;
     }
 
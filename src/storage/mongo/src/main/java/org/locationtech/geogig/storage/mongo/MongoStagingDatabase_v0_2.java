@@ -0,0 +1,43 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.mongo;
+
+import java.util.concurrent.ExecutorService;
+
+import org.locationtech.geogig.repository.RepositoryConnectionException;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.ObjectDatabase;
+
+import com.google.inject.Inject;
+
+/**
+ * Version 0.2 of the MongoDB staging database, whose staged objects are stored the same way than
+ * {@link MongoObjectDatabase_v0_2}'s.
+ */
+public class MongoStagingDatabase_v0_2 extends MongoStagingDatabase {
+
+    @Inject
+    public MongoStagingDatabase_v0_2(final ConfigDatabase config,
+            final MongoConnectionManager manager, final ObjectDatabase repositoryDb,
+            ExecutorService executor) {
+        super(config, repositoryDb, new MongoObjectDatabase_v0_2(config, manager, "staging",
+                executor));
+    }
+
+    @Override
+    public void configure() throws RepositoryConnectionException {
+        RepositoryConnectionException.StorageType.STAGING.configure(config, "mongodb", "0.2");
+    }
+
+    @Override
+    public void checkConfig() throws RepositoryConnectionException {
+        RepositoryConnectionException.StorageType.STAGING.verify(config, "mongodb", "0.2");
+    }
+}
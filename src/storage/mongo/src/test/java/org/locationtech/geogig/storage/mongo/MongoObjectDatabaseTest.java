@@ -0,0 +1,194 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.storage.mongo;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.TestPlatform;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.RawObject;
+import org.locationtech.geogig.storage.fs.IniFileConfigDatabase;
+
+import com.github.fakemongo.Fongo;
+import com.google.common.collect.Lists;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+
+/**
+ * Runs against an in-process fake MongoDB server, so it doesn't need a live one
+ */
+public class MongoObjectDatabaseTest extends Assert {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConfigDatabase config;
+
+    private MongoConnectionManager manager;
+
+    private ExecutorService executor;
+
+    private MongoObjectDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = folder.getRoot();
+        folder.newFolder(".geogig");
+        TestPlatform platform = new TestPlatform(root);
+        platform.setUserHome(folder.newFolder("home"));
+
+        config = new IniFileConfigDatabase(platform);
+        config.put("mongodb.uri", "mongodb://localhost:27017/");
+        config.put("mongodb.database", "geogig");
+        // small batches to exercise several concurrent writes and reads
+        config.put("mongodb.write_batch_size", "300");
+        config.put("mongodb.read_batch_size", "200");
+
+        manager = new FakeConnectionManager();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+        executor.shutdownNow();
+    }
+
+    private MongoObjectDatabase createDb(boolean binaryIds) throws Exception {
+        MongoObjectDatabase db;
+        if (binaryIds) {
+            db = new MongoObjectDatabase_v0_2(config, manager, executor);
+        } else {
+            db = new MongoObjectDatabase(config, manager, executor);
+        }
+        db.configure();
+        db.open();
+        return db;
+    }
+
+    @Test
+    public void testBinaryIds() throws Exception {
+        db = createDb(true);
+        assertEquals("0.2", config.get("mongodb.version").get());
+
+        RevCommit commit = commit("c1");
+        assertTrue(db.put(commit));
+        assertFalse(db.put(commit));
+        assertTrue(db.exists(commit.getId()));
+        assertEquals(commit, db.get(commit.getId()));
+        assertNull(db.getIfPresent(ObjectId.forString("missing")));
+
+        DBObject document = db.getCollection("objects").findOne();
+        assertEquals(commit.getId(), MongoObjectDatabase.IdSchema.BINARY.decode(document
+                .get("_id")));
+        assertNull(document.get("oid"));
+    }
+
+    @Test
+    public void testPutAllGetAll() throws Exception {
+        db = createDb(true);
+        testPutAllGetAll(db);
+    }
+
+    @Test
+    public void testPutAllGetAllStringIds() throws Exception {
+        db = createDb(false);
+        testPutAllGetAll(db);
+    }
+
+    private void testPutAllGetAll(MongoObjectDatabase db) {
+        List<RevObject> objects = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            objects.add(commit("commit " + i));
+        }
+        CountingListener listener = BulkOpListener.newCountingListener();
+        db.putAll(objects.subList(0, 400).iterator(), listener);
+        assertEquals(400, listener.inserted());
+
+        listener = BulkOpListener.newCountingListener();
+        db.putAll(objects.iterator(), listener);
+        assertEquals(600, listener.inserted());
+        assertEquals(400, listener.found());
+
+        List<ObjectId> ids = Lists.newArrayList();
+        for (RevObject o : Lists.reverse(objects)) {
+            ids.add(o.getId());
+        }
+        ids.add(500, ObjectId.forString("missing"));
+
+        listener = BulkOpListener.newCountingListener();
+        List<RevObject> result = Lists.newArrayList(db.getAll(ids, listener));
+        // results come in the requested order
+        assertEquals(Lists.reverse(objects), result);
+        assertEquals(1000, listener.found());
+        assertEquals(1, listener.notFound());
+
+        List<RawObject> raw = Lists.newArrayList(db.getRaw(ids.subList(0, 10),
+                BulkOpListener.NOOP_LISTENER));
+        assertEquals(10, raw.size());
+        assertEquals(objects.get(999), raw.get(0).parse());
+
+        assertEquals(500, db.deleteAll(ids.subList(0, 500).iterator()));
+        assertFalse(db.exists(objects.get(999).getId()));
+        assertTrue(db.exists(objects.get(0).getId()));
+    }
+
+    @Test
+    public void testReopenChecksVersion() throws Exception {
+        db = createDb(true);
+        db.close();
+        try {
+            new MongoObjectDatabase(config, manager, executor).checkConfig();
+            fail("Expected version mismatch");
+        } catch (Exception e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("0.2"));
+        }
+        db = createDb(true);
+        db.checkConfig();
+    }
+
+    private static RevCommit commit(String message) {
+        return new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID).setAuthor("groldan")
+                .setMessage(message).build();
+    }
+
+    private static class FakeConnectionManager extends MongoConnectionManager {
+
+        private final Fongo fongo = new Fongo("geogig");
+
+        @Override
+        protected MongoClient connect(MongoAddress address) {
+            return fongo.getMongo();
+        }
+
+        @Override
+        protected void disconnect(MongoClient client) {
+            // nothing to release for the in-process server
+        }
+    }
+}
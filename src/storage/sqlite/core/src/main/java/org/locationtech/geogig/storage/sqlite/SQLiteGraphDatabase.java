@@ -16,6 +16,7 @@ import java.io.File;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 import org.locationtech.geogig.api.ObjectId;
@@ -27,6 +28,7 @@ import org.locationtech.geogig.storage.GraphDatabase;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Base class for SQLite based graph database.
@@ -37,6 +39,12 @@ import com.google.common.collect.Lists;
  */
 public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
 
+    /**
+     * Default maximum number of nodes loaded by a single {@link #ancestry} call while traversing
+     * the graph
+     */
+    public static final int DEFAULT_ANCESTRY_CHUNK_SIZE = 1000;
+
     final ConfigDatabase configdb;
 
     final Platform platform;
@@ -121,29 +129,7 @@ public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
 
     @Override
     public int getDepth(ObjectId commitId) {
-        int depth = 0;
-
-        Queue<String> q = Lists.newLinkedList();
-        Iterables.addAll(q, outgoing(commitId.toString(), cx));
-
-        List<String> next = Lists.newArrayList();
-        while (!q.isEmpty()) {
-            depth++;
-            while (!q.isEmpty()) {
-                String n = q.poll();
-                List<String> parents = Lists.newArrayList(outgoing(n, cx));
-                if (parents.size() == 0) {
-                    return depth;
-                }
-
-                Iterables.addAll(next, parents);
-            }
-
-            q.addAll(next);
-            next.clear();
-        }
-
-        return depth;
+        return depth(commitId.toString(), cx);
     }
 
     @Override
@@ -171,12 +157,16 @@ public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
      * Creates the graph tables with the following schema:
      * 
      * <pre>
-     * nodes(id:varchar PRIMARY KEY)
-     * edges(src:varchar, dst:varchar, PRIMARY KEY(src,dst))
-     * props(nid:varchar, key:varchar, val:varchar, PRIMARY KEY(nid,key))
+     * nodes(nid:integer PRIMARY KEY, id:varchar UNIQUE, added:integer)
+     * edges(src:integer, dst:integer, PRIMARY KEY(src,dst))
+     * props(nid:integer, key:varchar, val:varchar, PRIMARY KEY(nid,key))
      * mappings(alias:varchar, nid:varchar)
      * </pre>
      * 
+     * Where {@code nodes.nid} is the integer key edges and properties refer nodes by, and
+     * {@code nodes.added} flags whether the node was {@link #put(String, Object) added} or only
+     * created as the destination of a relationship.
+     * 
      * Implementations of this method should be prepared to be called multiple times, so must check
      * if the tables already exist.
      * 
@@ -259,12 +249,115 @@ public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
      */
     protected abstract void clear(T cx);
 
+    /**
+     * Computes the length of the shortest path from the specified node to a root node (one with no
+     * outgoing relationships).
+     * <p>
+     * This default implementation walks the graph one {@link #outgoing} call per node, subclasses
+     * are encouraged to override it with a single query.
+     * </p>
+     */
+    protected int depth(String node, T cx) {
+        int depth = 0;
+
+        Queue<String> q = Lists.newLinkedList();
+        Iterables.addAll(q, outgoing(node, cx));
+
+        List<String> next = Lists.newArrayList();
+        while (!q.isEmpty()) {
+            depth++;
+            while (!q.isEmpty()) {
+                String n = q.poll();
+                List<String> parents = Lists.newArrayList(outgoing(n, cx));
+                if (parents.size() == 0) {
+                    return depth;
+                }
+
+                Iterables.addAll(next, parents);
+            }
+
+            q.addAll(next);
+            next.clear();
+        }
+
+        return depth;
+    }
+
+    /**
+     * Returns the nodes closest to the specified node through outgoing relationships, including
+     * the node itself, mapped to their outgoing nodes in relationship creation order.
+     * <p>
+     * Nodes are collected breadth first, up to {@code limit} of them, and each returned node comes
+     * with all of its outgoing nodes, even when those are left out of the result.
+     * <p>
+     * This default implementation walks the graph one {@link #outgoing} call per node, subclasses
+     * are encouraged to override it with a single query.
+     * </p>
+     * 
+     * @param limit The maximum number of nodes to return.
+     * @return The ancestry of the node, or an empty map if the node does not exist.
+     */
+    protected Map<String, List<String>> ancestry(String node, int limit, T cx) {
+        Map<String, List<String>> ancestry = Maps.newHashMap();
+        Queue<String> q = Lists.newLinkedList();
+        q.add(node);
+        while (!q.isEmpty() && ancestry.size() < limit) {
+            String n = q.poll();
+            if (!ancestry.containsKey(n)) {
+                List<String> parents = Lists.newArrayList(outgoing(n, cx));
+                ancestry.put(n, parents);
+                q.addAll(parents);
+            }
+        }
+        return ancestry;
+    }
+
+    /**
+     * @return the maximum number of nodes a traversal loads at once through {@link #ancestry}
+     */
+    protected int ancestryChunkSize() {
+        return DEFAULT_ANCESTRY_CHUNK_SIZE;
+    }
+
+    /**
+     * The outgoing nodes of the nodes a traversal went through, shared by all the nodes of the
+     * traversal. Asking for the outgoing nodes of a node that's not cached yet loads a bounded
+     * chunk of its ancestry with a single {@link #ancestry} call, so that walking a few parent
+     * edges away costs one query, and walking the whole history one query per chunk.
+     */
+    private class AncestryCache {
+
+        private final Map<ObjectId, ImmutableList<ObjectId>> parents = Maps.newHashMap();
+
+        ImmutableList<ObjectId> parents(ObjectId node) {
+            ImmutableList<ObjectId> nodeParents = parents.get(node);
+            if (nodeParents == null) {
+                Map<String, List<String>> chunk = ancestry(node.toString(), ancestryChunkSize(),
+                        cx);
+                for (Map.Entry<String, List<String>> e : chunk.entrySet()) {
+                    parents.put(ObjectId.valueOf(e.getKey()), ImmutableList.copyOf(Iterables
+                            .transform(e.getValue(), StringToObjectId.INSTANCE)));
+                }
+                nodeParents = parents.get(node);
+                if (nodeParents == null) {
+                    // the node doesn't exist
+                    nodeParents = ImmutableList.of();
+                    parents.put(node, nodeParents);
+                }
+            }
+            return nodeParents;
+        }
+    }
+
     private class SQLiteGraphNode extends GraphNode {
 
         private ObjectId id;
 
-        public SQLiteGraphNode(ObjectId id) {
+        private AncestryCache ancestry;
+
+        public SQLiteGraphNode(ObjectId id, AncestryCache ancestry) {
             this.id = id;
+            this.ancestry = ancestry;
         }
 
         @Override
@@ -278,15 +371,13 @@ public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
             if (direction == Direction.IN || direction == Direction.BOTH) {
                 Iterator<String> nodeEdges = incoming(id.toString(), cx).iterator();
                 while (nodeEdges.hasNext()) {
-                    String otherNode = nodeEdges.next();
-                    edges.add(new GraphEdge(new SQLiteGraphNode(ObjectId.valueOf(otherNode)), this));
+                    ObjectId child = ObjectId.valueOf(nodeEdges.next());
+                    edges.add(new GraphEdge(new SQLiteGraphNode(child, ancestry), this));
                 }
             }
             if (direction == Direction.OUT || direction == Direction.BOTH) {
-                Iterator<String> nodeEdges = outgoing(id.toString(), cx).iterator();
-                while (nodeEdges.hasNext()) {
-                    String otherNode = nodeEdges.next();
-                    edges.add(new GraphEdge(this, new SQLiteGraphNode(ObjectId.valueOf(otherNode))));
+                for (ObjectId parent : ancestry.parents(id)) {
+                    edges.add(new GraphEdge(this, new SQLiteGraphNode(parent, ancestry)));
                 }
             }
             return edges.iterator();
@@ -301,6 +392,6 @@ public abstract class SQLiteGraphDatabase<T> implements GraphDatabase {
 
     @Override
     public GraphNode getNode(ObjectId id) {
-        return new SQLiteGraphNode(id);
+        return new SQLiteGraphNode(id, new AncestryCache());
     }
 }
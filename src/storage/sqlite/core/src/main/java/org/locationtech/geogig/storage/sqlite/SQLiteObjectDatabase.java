@@ -32,16 +32,21 @@ import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.repository.RepositoryConnectionException;
+import org.locationtech.geogig.storage.BulkLoadSession;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.geogig.storage.ObjectInserter;
 import org.locationtech.geogig.storage.ObjectSerializingFactory;
+import org.locationtech.geogig.storage.RawObject;
 import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
 
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 
 /**
  * Base class for SQLite based object database.
@@ -99,12 +104,26 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
 
     @Override
     public boolean exists(ObjectId id) {
-        return has(id.toString(), cx);
+        return has(id, cx);
     }
 
     @Override
-    public List<ObjectId> lookUp(String partialId) {
-        return Lists.newArrayList(transform(search(partialId, cx), StringToObjectId.INSTANCE));
+    public List<ObjectId> lookUp(final String partialId) {
+        Preconditions.checkNotNull(partialId);
+        final byte[] raw = ObjectId.toRaw(partialId);
+        List<ObjectId> matches = Lists.newArrayList(search(raw, cx));
+
+        // If the length of the partial string is odd, then the last character wasn't considered in
+        // the lookup, we need to filter the list further.
+        if (partialId.length() % 2 != 0) {
+            Iterator<ObjectId> it = matches.iterator();
+            while (it.hasNext()) {
+                if (!it.next().toString().startsWith(partialId)) {
+                    it.remove();
+                }
+            }
+        }
+        return matches;
     }
 
     @Override
@@ -129,7 +148,7 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
 
     @Override
     public RevObject getIfPresent(ObjectId id) {
-        InputStream bytes = get(id.toString(), cx);
+        InputStream bytes = get(id, cx);
         return readObject(bytes, id);
     }
 
@@ -188,9 +207,8 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
 
     @Override
     public boolean put(RevObject object) {
-        String id = object.getId().toString();
         try {
-            put(id, writeObject(object), cx);
+            put(object.getId(), writeObject(object), cx);
         } catch (IOException e) {
             throw new RuntimeException("Unable to serialize object: " + object);
         }
@@ -212,9 +230,53 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
         }
     }
 
+    /**
+     * Objects are stored uncompressed, so they're compressed on the fly to honour the
+     * {@link RawObject} contract.
+     */
+    @Override
+    public Iterator<RawObject> getRaw(Iterable<ObjectId> ids, final BulkOpListener listener) {
+        return filter(transform(ids, new Function<ObjectId, RawObject>() {
+            @Override
+            public RawObject apply(ObjectId id) {
+                InputStream stream = get(id, cx);
+                if (stream == null) {
+                    listener.notFound(id);
+                    return null;
+                }
+                byte[] bytes;
+                try {
+                    bytes = ByteStreams.toByteArray(stream);
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+                listener.found(id, bytes.length);
+                return new RawObject(id, RawObject.compress(bytes), serializer);
+            }
+        }), Predicates.notNull()).iterator();
+    }
+
+    @Override
+    public void putRaw(Iterator<RawObject> objects, BulkOpListener listener) {
+        while (objects.hasNext()) {
+            RawObject obj = objects.next();
+            put(obj.getId(), new ByteArrayInputStream(toStorageFormat(obj)), cx);
+            listener.inserted(obj.getId(), null);
+        }
+    }
+
+    /**
+     * Bulk inserts are already batched in a single transaction by implementations, so there's no
+     * bulk load mode.
+     */
+    @Override
+    public BulkLoadSession startBulkLoad() {
+        return BulkLoadSession.NOOP;
+    }
+
     @Override
     public boolean delete(ObjectId objectId) {
-        return delete(objectId.toString(), cx);
+        return delete(objectId, cx);
     }
 
     @Override
@@ -235,6 +297,23 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
         return count;
     }
 
+    @Override
+    public Iterator<ObjectId> storedIds() {
+        Preconditions.checkState(isOpen(), "No open database connection");
+        return storedIds(cx);
+    }
+
+    /**
+     * Rewrites the objects in the given order if the database lays them out in insertion order,
+     * and then compacts the database file to reclaim the space of deleted objects.
+     */
+    @Override
+    public void repack(Iterator<ObjectId> liveIds) {
+        Preconditions.checkState(isOpen(), "No open database connection");
+        repack(liveIds, cx);
+        vacuum(cx);
+    }
+
     @Override
     public ObjectInserter newObjectInserter() {
         return new ObjectInserter(this);
@@ -261,6 +340,21 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
         return new ByteArrayInputStream(bout.toByteArray());
     }
 
+    /**
+     * Returns the binary representation of a raw object as stored in the database, avoiding to
+     * parse it if it's already encoded in this database's format.
+     */
+    protected byte[] toStorageFormat(RawObject object) {
+        if (object.isFormat(serializer)) {
+            return object.getUncompressedData();
+        }
+        try {
+            return ByteStreams.toByteArray(writeObject(object.parse()));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     /**
      * Opens a database connection, returning the object representing connection state.
      */
@@ -277,9 +371,11 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
      * Creates the object table with the following schema:
      * 
      * <pre>
-     * objects(id:varchar PRIMARY KEY, object:blob)
+     * objects(id:blob PRIMARY KEY, object:blob)
      * </pre>
      * 
+     * Where {@code id} is the 20 bytes {@link ObjectId#getRawValue() raw value} of the object id.
+     * 
      * Implementations of this method should be prepared to be called multiple times, so must check
      * if the table already exists.
      * 
@@ -290,16 +386,16 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
     /**
      * Determines if the object with the specified id exists.
      */
-    protected abstract boolean has(String id, C cx);
+    protected abstract boolean has(ObjectId id, C cx);
 
     /**
-     * Searches for objects with ids that match the speciifed partial string.
+     * Searches for objects whose ids start with the specified bytes.
      * 
-     * @param partialId The partial id.
+     * @param partialId The leading bytes of the object ids to look up.
      * 
      * @return Iterable of matches.
      */
-    protected abstract Iterable<String> search(String partialId, C cx);
+    protected abstract Iterable<ObjectId> search(byte[] partialId, C cx);
 
     /**
      * Retrieves the object with the specified id.
@@ -307,17 +403,33 @@ public abstract class SQLiteObjectDatabase<C> implements ObjectDatabase {
      * Must return <code>null</code> if no such object exists.
      * </p>
      */
-    protected abstract InputStream get(String id, C cx);
+    protected abstract InputStream get(ObjectId id, C cx);
 
     /**
      * Inserts or updates the object with the specified id.
      */
-    protected abstract void put(String id, InputStream obj, C cx);
+    protected abstract void put(ObjectId id, InputStream obj, C cx);
 
     /**
      * Deletes the object with the specified id.
      * 
      * @return Flag indicating if object was actually removed.
      */
-    protected abstract boolean delete(String id, C cx);
+    protected abstract boolean delete(ObjectId id, C cx);
+
+    /**
+     * Lists the ids of all the objects in the database.
+     */
+    protected abstract Iterator<ObjectId> storedIds(C cx);
+
+    /**
+     * Rewrites the objects with the given ids in the given order, if the layout of the objects in
+     * the database follows their insertion order; does nothing otherwise.
+     */
+    protected abstract void repack(Iterator<ObjectId> liveIds, C cx);
+
+    /**
+     * Rebuilds the database file, reclaiming the space of deleted objects.
+     */
+    protected abstract void vacuum(C cx);
 }
@@ -44,7 +44,7 @@ public abstract class SQLiteStagingDatabase<T> extends AbstractStagingDatabase {
     public SQLiteStagingDatabase(ObjectDatabase repoDb, SQLiteObjectDatabase<T> stageDb,
             ConfigDatabase configdb, Platform platform) {
 
-        super(Suppliers.ofInstance(repoDb), Suppliers.ofInstance(stageDb));
+        super(Suppliers.ofInstance(repoDb), Suppliers.ofInstance(stageDb), configdb);
 
         this.configdb = configdb;
         this.platform = platform;
@@ -19,6 +19,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
@@ -27,10 +29,18 @@ import org.locationtech.geogig.storage.ConfigDatabase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
 /**
  * Graph database based on xerial SQLite jdbc driver.
+ * <p>
+ * Nodes are assigned an integer key that edges and properties refer them by, and traversals such
+ * as {@link #getDepth(org.locationtech.geogig.api.ObjectId) depth} computation and ancestry look
+ * ups are resolved with recursive queries instead of one query per node. Graphs created with the
+ * former schema, relating nodes by their {@code VARCHAR} ids, are migrated when opened.
+ * </p>
  * 
  * @author Justin Deoliveira, Boundless
  */
@@ -46,6 +56,12 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
 
     static final String MAPPINGS = "mappings";
 
+    /**
+     * Version of the graph schema, {@code 0} being the original one relating nodes by their
+     * {@code VARCHAR} ids
+     */
+    static final int SCHEMA_VERSION = 1;
+
     @Inject
     public XerialGraphDatabase(ConfigDatabase configdb, Platform platform) {
         super(configdb, platform);
@@ -63,25 +79,47 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
     @Override
     public void init(DataSource ds) {
         new DbOp<Void>() {
+            @Override
+            protected boolean isAutoCommit() {
+                return false;
+            }
+
             @Override
             protected Void doRun(Connection cx) throws IOException, SQLException {
                 Statement st = open(cx.createStatement());
 
-                String sql = format("CREATE TABLE IF NOT EXISTS %s (id VARCHAR PRIMARY KEY)", NODES);
-                st.execute(log(sql, LOG));
+                ResultSet rs = open(st.executeQuery("PRAGMA user_version"));
+                final int version = rs.next() ? rs.getInt(1) : 0;
+                if (version >= SCHEMA_VERSION) {
+                    cx.commit();
+                    return null;
+                }
+
+                final boolean migrate = tableExists(cx, NODES);
+                if (migrate) {
+                    LOG.info("Migrating graph database to integer node keys...");
+                    // indexes keep their names when the table is renamed
+                    st.execute(log(format("DROP INDEX IF EXISTS %s_src_index", EDGES), LOG));
+                    st.execute(log(format("DROP INDEX IF EXISTS %s_dst_index", EDGES), LOG));
+                    for (String table : new String[] { NODES, EDGES, PROPS }) {
+                        st.execute(log(format("ALTER TABLE %s RENAME TO %s_v0", table, table),
+                                LOG));
+                    }
+                }
 
-                sql = format("CREATE TABLE IF NOT EXISTS %s (src VARCHAR, dst VARCHAR, "
-                        + "PRIMARY KEY (src,dst))", EDGES);
+                String sql = format("CREATE TABLE IF NOT EXISTS %s (nid INTEGER PRIMARY KEY, "
+                        + "id VARCHAR NOT NULL UNIQUE, added INTEGER NOT NULL DEFAULT 0)", NODES);
                 st.execute(log(sql, LOG));
 
-                sql = format("CREATE INDEX IF NOT EXISTS %s_src_index ON %s(src)", EDGES, EDGES);
+                sql = format("CREATE TABLE IF NOT EXISTS %s (src INTEGER NOT NULL, "
+                        + "dst INTEGER NOT NULL, PRIMARY KEY (src,dst))", EDGES);
                 st.execute(log(sql, LOG));
 
                 sql = format("CREATE INDEX IF NOT EXISTS %s_dst_index ON %s(dst)", EDGES, EDGES);
                 st.execute(log(sql, LOG));
 
                 sql = format(
-                        "CREATE TABLE IF NOT EXISTS %s (nid VARCHAR, key VARCHAR, val VARCHAR,"
+                        "CREATE TABLE IF NOT EXISTS %s (nid INTEGER, key VARCHAR, val VARCHAR,"
                                 + " PRIMARY KEY(nid,key))", PROPS);
                 st.execute(log(sql, LOG));
 
@@ -94,28 +132,72 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
                         MAPPINGS);
                 st.execute(log(sql, LOG));
 
+                if (migrate) {
+                    migrate(st);
+                }
+                st.execute(log("PRAGMA user_version = " + SCHEMA_VERSION, LOG));
+                cx.commit();
                 return null;
             }
         }.run(ds);
+    }
 
+    private static boolean tableExists(Connection cx, String table) throws SQLException {
+        PreparedStatement ps = cx
+                .prepareStatement("SELECT name FROM sqlite_master WHERE type='table' AND name=?");
+        try {
+            ps.setString(1, table);
+            return ps.executeQuery().next();
+        } finally {
+            ps.close();
+        }
     }
 
-    @Override
-    public boolean put(final String node, DataSource ds) {
-        if (has(node, ds)) {
-            return false;
+    /**
+     * Copies the contents of the version zero tables, renamed with a {@code _v0} suffix, into the
+     * current ones and drops them.
+     */
+    private static void migrate(Statement st) throws SQLException {
+        String sql = format("INSERT INTO %s (id, added) SELECT id, 1 FROM %s_v0", NODES, NODES);
+        st.execute(log(sql, LOG));
+
+        sql = format("INSERT OR IGNORE INTO %s (id) SELECT src FROM %s_v0 "
+                + "UNION SELECT dst FROM %s_v0 UNION SELECT nid FROM %s_v0", NODES, EDGES, EDGES,
+                PROPS);
+        st.execute(log(sql, LOG));
+
+        sql = format("INSERT OR IGNORE INTO %s (src, dst) SELECT s.nid, d.nid FROM %s_v0 e "
+                + "JOIN %s s ON s.id = e.src JOIN %s d ON d.id = e.dst ORDER BY e.rowid", EDGES,
+                EDGES, NODES, NODES);
+        st.execute(log(sql, LOG));
+
+        sql = format("INSERT OR REPLACE INTO %s (nid, key, val) SELECT n.nid, p.key, p.val "
+                + "FROM %s_v0 p JOIN %s n ON n.id = p.nid", PROPS, PROPS, NODES);
+        st.execute(log(sql, LOG));
+
+        for (String table : new String[] { NODES, EDGES, PROPS }) {
+            st.execute(log(format("DROP TABLE %s_v0", table), LOG));
         }
+    }
 
+    @Override
+    public boolean put(final String node, DataSource ds) {
         return new DbOp<Boolean>() {
             @Override
             protected Boolean doRun(Connection cx) throws IOException, SQLException {
-                String sql = format("INSERT OR IGNORE INTO %s (id) VALUES (?)", NODES);
+                String sql = format("INSERT OR IGNORE INTO %s (id, added) VALUES (?, 1)", NODES);
 
                 PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, node)));
                 ps.setString(1, node);
+                if (ps.executeUpdate() > 0) {
+                    return true;
+                }
 
-                ps.executeUpdate();
-                return true;
+                // the node may exist only as the destination of a relationship
+                sql = format("UPDATE %s SET added = 1 WHERE id = ? AND added = 0", NODES);
+                ps = open(cx.prepareStatement(log(sql, LOG, node)));
+                ps.setString(1, node);
+                return ps.executeUpdate() > 0;
             }
         }.run(ds);
     }
@@ -125,15 +207,13 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
         return new DbOp<Boolean>() {
             @Override
             protected Boolean doRun(Connection cx) throws IOException, SQLException {
-                String sql = format("SELECT count(*) FROM %s WHERE id = ?", NODES);
+                String sql = format("SELECT 1 FROM %s WHERE id = ? AND added = 1", NODES);
 
                 PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, node)));
                 ps.setString(1, node);
 
                 ResultSet rs = open(ps.executeQuery());
-                rs.next();
-
-                return rs.getInt(1) > 0;
+                return rs.next();
             }
         }.run(ds);
     }
@@ -141,15 +221,30 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
     @Override
     public void relate(final String src, final String dst, DataSource ds) {
         new DbOp<Void>() {
+            @Override
+            protected boolean isAutoCommit() {
+                return false;
+            }
+
             @Override
             protected Void doRun(Connection cx) throws IOException, SQLException {
-                String sql = format("INSERT or IGNORE INTO %s (src, dst) VALUES (?, ?)", EDGES);
+                String sql = format("INSERT OR IGNORE INTO %s (id) VALUES (?)", NODES);
 
-                PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, src, dst)));
+                PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, src)));
                 ps.setString(1, src);
-                ps.setString(2, dst);
+                ps.executeUpdate();
+                ps.setString(1, dst);
+                ps.executeUpdate();
+
+                sql = format("INSERT OR IGNORE INTO %s (src, dst) SELECT s.nid, d.nid "
+                        + "FROM %s s, %s d WHERE s.id = ? AND d.id = ?", EDGES, NODES, NODES);
 
+                ps = open(cx.prepareStatement(log(sql, LOG, src, dst)));
+                ps.setString(1, src);
+                ps.setString(2, dst);
                 ps.executeUpdate();
+
+                cx.commit();
                 return null;
             }
         }.run(ds);
@@ -191,16 +286,29 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
     @Override
     public void property(final String node, final String key, final String val, DataSource ds) {
         new DbOp<Void>() {
+            @Override
+            protected boolean isAutoCommit() {
+                return false;
+            }
+
             @Override
             protected Void doRun(Connection cx) throws IOException, SQLException {
-                String sql = format("INSERT OR REPLACE INTO %s (nid,key,val) VALUES (?,?,?)", PROPS);
+                String sql = format("INSERT OR IGNORE INTO %s (id) VALUES (?)", NODES);
 
-                PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, node, key, val)));
+                PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, node)));
                 ps.setString(1, node);
-                ps.setString(2, key);
-                ps.setString(3, val);
+                ps.executeUpdate();
+
+                sql = format("INSERT OR REPLACE INTO %s (nid,key,val) "
+                        + "SELECT nid, ?, ? FROM %s WHERE id = ?", PROPS, NODES);
 
+                ps = open(cx.prepareStatement(log(sql, LOG, key, val, node)));
+                ps.setString(1, key);
+                ps.setString(2, val);
+                ps.setString(3, node);
                 ps.executeUpdate();
+
+                cx.commit();
                 return null;
             }
         }.run(ds);
@@ -211,7 +319,8 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
         return new DbOp<String>() {
             @Override
             protected String doRun(Connection cx) throws IOException, SQLException {
-                String sql = format("SELECT val FROM %s WHERE nid = ? AND key = ?", PROPS);
+                String sql = format("SELECT p.val FROM %s p JOIN %s n ON n.nid = p.nid "
+                        + "WHERE n.id = ? AND p.key = ?", PROPS, NODES);
 
                 PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, node, key)));
                 ps.setString(1, node);
@@ -233,7 +342,9 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
         ResultSet rs = new DbOp<ResultSet>() {
             @Override
             protected ResultSet doRun(Connection cx) throws IOException, SQLException {
-                String sql = format("SELECT dst FROM %s WHERE src = ?", EDGES);
+                String sql = format("SELECT d.id FROM %s s JOIN %s e ON e.src = s.nid "
+                        + "JOIN %s d ON d.nid = e.dst WHERE s.id = ? ORDER BY e.rowid", NODES,
+                        EDGES, NODES);
 
                 PreparedStatement ps = cx.prepareStatement(log(sql, LOG, node));
                 ps.setString(1, node);
@@ -251,7 +362,8 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
         ResultSet rs = new DbOp<ResultSet>() {
             @Override
             protected ResultSet doRun(Connection cx) throws IOException, SQLException {
-                String sql = format("SELECT src FROM %s WHERE dst = ?", EDGES);
+                String sql = format("SELECT s.id FROM %s d JOIN %s e ON e.dst = d.nid "
+                        + "JOIN %s s ON s.nid = e.src WHERE d.id = ?", NODES, EDGES, NODES);
 
                 PreparedStatement ps = cx.prepareStatement(log(sql, LOG, node));
                 ps.setString(1, node);
@@ -262,6 +374,72 @@ public class XerialGraphDatabase extends SQLiteGraphDatabase<DataSource> {
         return new StringResultSetIterable(rs, cx);
     }
 
+    /**
+     * Override to compute the depth with a single recursive query.
+     */
+    @Override
+    protected int depth(final String node, DataSource ds) {
+        return new DbOp<Integer>() {
+            @Override
+            protected Integer doRun(Connection cx) throws IOException, SQLException {
+                String sql = format("WITH RECURSIVE ancestors(nid, depth) AS ("
+                        + "SELECT nid, 0 FROM %s WHERE id = ? UNION "
+                        + "SELECT e.dst, a.depth + 1 FROM ancestors a JOIN %s e ON e.src = a.nid) "
+                        + "SELECT min(a.depth) FROM ancestors a "
+                        + "WHERE NOT EXISTS (SELECT 1 FROM %s e WHERE e.src = a.nid)", NODES,
+                        EDGES, EDGES);
+
+                PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, node)));
+                ps.setString(1, node);
+
+                ResultSet rs = open(ps.executeQuery());
+                // min() is null if the node doesn't exist
+                return rs.next() ? Integer.valueOf(rs.getInt(1)) : Integer.valueOf(0);
+            }
+        }.run(ds).intValue();
+    }
+
+    /**
+     * Override to fetch the ancestry chunk with a single recursive query, whose {@code LIMIT} stops
+     * the breadth first recursion once {@code limit} nodes are found.
+     */
+    @Override
+    protected Map<String, List<String>> ancestry(final String node, final int limit,
+            DataSource ds) {
+        return new DbOp<Map<String, List<String>>>() {
+            @Override
+            protected Map<String, List<String>> doRun(Connection cx) throws IOException,
+                    SQLException {
+                String sql = format("WITH RECURSIVE ancestors(nid) AS ("
+                        + "SELECT nid FROM %s WHERE id = ? UNION "
+                        + "SELECT e.dst FROM ancestors a JOIN %s e ON e.src = a.nid LIMIT ?) "
+                        + "SELECT n.id, p.id FROM ancestors a JOIN %s n ON n.nid = a.nid "
+                        + "LEFT JOIN %s e ON e.src = a.nid LEFT JOIN %s p ON p.nid = e.dst "
+                        + "ORDER BY a.nid, e.rowid", NODES, EDGES, NODES, EDGES, NODES);
+
+                PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, node, limit)));
+                ps.setString(1, node);
+                ps.setInt(2, limit);
+
+                ResultSet rs = open(ps.executeQuery());
+                Map<String, List<String>> ancestry = Maps.newHashMap();
+                while (rs.next()) {
+                    String id = rs.getString(1);
+                    List<String> parents = ancestry.get(id);
+                    if (parents == null) {
+                        parents = Lists.newArrayListWithCapacity(2);
+                        ancestry.put(id, parents);
+                    }
+                    String parent = rs.getString(2);
+                    if (parent != null) {
+                        parents.add(parent);
+                    }
+                }
+                return ancestry;
+            }
+        }.run(ds);
+    }
+
     @Override
     public void clear(DataSource ds) {
         new DbOp<Void>() {
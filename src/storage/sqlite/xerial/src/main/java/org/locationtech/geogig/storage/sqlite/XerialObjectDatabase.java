@@ -20,9 +20,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javax.annotation.Nullable;
 import javax.sql.DataSource;
 
 import org.locationtech.geogig.api.ObjectId;
@@ -30,17 +35,41 @@ import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ConfigDatabase;
+import org.locationtech.geogig.storage.RawObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
 
 /**
  * Object database based on Xerial SQLite jdbc driver.
- * 
+ * <p>
+ * Objects are stored in a table keyed by the 20 bytes raw value of their ids, as a
+ * {@code WITHOUT ROWID} table when supported by the SQLite version, so that the objects are
+ * clustered by id and prefix look ups are range scans over the primary key. The database runs in
+ * WAL journal mode so that readers don't block writers, and each thread reuses its own
+ * connection.
+ * <p>
+ * Databases created with the former schema, where ids were stored as hex strings, are migrated
+ * when opened. The schema version is tracked by SQLite's {@code user_version} pragma.
+ * <p>
+ * Alternatively, the {@link Layout#SEQUENTIAL sequential} layout can be chosen through the
+ * {@link #LAYOUT_CONFIG_KEY} config key when the database is created. Objects are then stored in
+ * insertion order and looked up through a secondary index of ids, and {@link #repack(Iterator)}
+ * rewrites them in the given order, so that scanning large trees reads the database file mostly
+ * sequentially.
+ *
  * @author Justin Deoliveira, Boundless
  */
 public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
@@ -49,10 +78,47 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
 
     static final String OBJECTS = "objects";
 
+    /**
+     * Version of the objects table schema, {@code 0} being the original one with hex string ids
+     */
+    static final int SCHEMA_VERSION = 1;
+
+    /**
+     * Config key for the {@link Layout} of the objects table, only read when the table is created
+     */
+    static final String LAYOUT_CONFIG_KEY = "sqlite.layout";
+
+    /**
+     * How the objects table lays out the objects
+     */
+    public static enum Layout {
+        /**
+         * Objects clustered by id, in a {@code WITHOUT ROWID} table if supported. The default.
+         */
+        CLUSTERED,
+        /**
+         * Objects in insertion order, keyed by an automatically assigned sequence number, with a
+         * unique index of ids
+         */
+        SEQUENTIAL
+    }
+
+    /**
+     * How many ids to query at once by {@link #getAll}, kept well below SQLite's default maximum
+     * number of host parameters of 999
+     */
+    static final int GET_ALL_PARTITION_SIZE = 500;
+
     final int partitionSize = 10 * 1000; // TODO make configurable
 
     final String dbName;
 
+    private final ThreadLocal<Connection> threadConnection = new ThreadLocal<Connection>();
+
+    private final Set<Connection> openConnections = Sets.newConcurrentHashSet();
+
+    private Layout layout;
+
     @Inject
     public XerialObjectDatabase(ConfigDatabase configdb, Platform platform) {
         this(configdb, platform, "objects");
@@ -72,6 +138,32 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
 
     @Override
     protected void close(DataSource ds) {
+        for (Connection c : openConnections) {
+            try {
+                c.close();
+            } catch (SQLException e) {
+                LOG.debug("error closing connection", e);
+            }
+        }
+        openConnections.clear();
+    }
+
+    /**
+     * @return the connection for the calling thread, created on demand. It's closed when the
+     *         database is closed.
+     */
+    Connection connection(DataSource ds) {
+        Connection c = threadConnection.get();
+        try {
+            if (c == null || c.isClosed()) {
+                c = ds.getConnection();
+                threadConnection.set(c);
+                openConnections.add(c);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Unable to obatain connection", e);
+        }
+        return c;
     }
 
     @Override
@@ -79,56 +171,268 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
         new DbOp<Void>() {
             @Override
             protected Void doRun(Connection cx) throws SQLException {
-                String sql = format(
-                        "CREATE TABLE IF NOT EXISTS %s (id varchar PRIMARY KEY, object blob)",
-                        OBJECTS);
-                open(cx.createStatement()).execute(log(sql, LOG));
+                // WAL mode is persistent, but can't be set inside a transaction
+                ResultSet rs = open(open(cx.createStatement()).executeQuery(
+                        log("PRAGMA journal_mode=WAL", LOG)));
+                rs.next();
+                LOG.debug("journal mode: {}", rs.getString(1));
                 return null;
             }
-        }.run(ds);
+        }.run(connection(ds));
+
+        new DbOp<Void>() {
+            @Override
+            protected boolean isAutoCommit() {
+                return false;
+            }
+
+            @Override
+            protected Void doRun(Connection cx) throws SQLException {
+                Statement st = open(cx.createStatement());
+                ResultSet rs = open(st.executeQuery("PRAGMA user_version"));
+                final int version = rs.next() ? rs.getInt(1) : 0;
+                if (version >= SCHEMA_VERSION) {
+                    layout = hasColumn(cx, OBJECTS, "seq") ? Layout.SEQUENTIAL
+                            : Layout.CLUSTERED;
+                    cx.commit();
+                    return null;
+                }
+                layout = configuredLayout();
+                if (tableExists(cx, OBJECTS)) {
+                    migrate(cx);
+                } else {
+                    st.execute(log(createTableSql(cx, OBJECTS, layout), LOG));
+                }
+                st.execute(log("PRAGMA user_version = " + SCHEMA_VERSION, LOG));
+                cx.commit();
+                return null;
+            }
+        }.run(connection(ds));
+    }
+
+    /**
+     * Iterates over the ids of all the stored objects, closing the query once exhausted
+     */
+    private static class StoredIdsIterator extends AbstractIterator<ObjectId> {
+
+        private final Connection cx;
+
+        private Statement st;
+
+        private ResultSet rs;
+
+        StoredIdsIterator(Connection cx) {
+            this.cx = cx;
+        }
+
+        @Override
+        protected ObjectId computeNext() {
+            try {
+                if (rs == null) {
+                    st = cx.createStatement();
+                    rs = st.executeQuery(log(format("SELECT id FROM %s", OBJECTS), LOG));
+                }
+                if (rs.next()) {
+                    return ObjectId.createNoClone(rs.getBytes(1));
+                }
+                rs.close();
+                st.close();
+                return endOfData();
+            } catch (SQLException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+
+    /**
+     * @return the layout for new databases, as set by the {@link #LAYOUT_CONFIG_KEY} config key
+     */
+    private Layout configuredLayout() {
+        Optional<String> value = configdb.get(LAYOUT_CONFIG_KEY);
+        if (!value.isPresent()) {
+            return Layout.CLUSTERED;
+        }
+        try {
+            return Layout.valueOf(value.get().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(format("%s shall be one of %s: %s",
+                    LAYOUT_CONFIG_KEY, Arrays.toString(Layout.values()), value.get()));
+        }
+    }
+
+    /**
+     * @return the layout the objects table was created with
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    private static String createTableSql(Connection cx, String table, Layout layout)
+            throws SQLException {
+        if (Layout.SEQUENTIAL.equals(layout)) {
+            return format("CREATE TABLE IF NOT EXISTS %s "
+                    + "(seq INTEGER PRIMARY KEY, id BLOB NOT NULL UNIQUE, object BLOB)", table);
+        }
+        String withoutRowid = supportsWithoutRowid(cx) ? " WITHOUT ROWID" : "";
+        return format("CREATE TABLE IF NOT EXISTS %s (id BLOB PRIMARY KEY, object BLOB)%s",
+                table, withoutRowid);
+    }
+
+    /**
+     * {@code WITHOUT ROWID} tables are supported since SQLite 3.8.2
+     */
+    private static boolean supportsWithoutRowid(Connection cx) throws SQLException {
+        Statement st = cx.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT sqlite_version()");
+            rs.next();
+            String[] version = rs.getString(1).split("\\.");
+            int major = Integer.parseInt(version[0]);
+            int minor = version.length > 1 ? Integer.parseInt(version[1]) : 0;
+            int patch = version.length > 2 ? Integer.parseInt(version[2]) : 0;
+            return major > 3 || (major == 3 && (minor > 8 || (minor == 8 && patch >= 2)));
+        } finally {
+            st.close();
+        }
+    }
+
+    private static boolean hasColumn(Connection cx, String table, String column)
+            throws SQLException {
+        Statement st = cx.createStatement();
+        try {
+            ResultSet rs = st.executeQuery(format("PRAGMA table_info(%s)", table));
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            st.close();
+        }
+    }
+
+    private static boolean tableExists(Connection cx, String table) throws SQLException {
+        PreparedStatement ps = cx
+                .prepareStatement("SELECT name FROM sqlite_master WHERE type='table' AND name=?");
+        try {
+            ps.setString(1, table);
+            return ps.executeQuery().next();
+        } finally {
+            ps.close();
+        }
+    }
+
+    /**
+     * Copies the objects of a version zero objects table, with hex string ids, to a new table with
+     * binary ids, and replaces the old table with the new one.
+     */
+    private void migrate(Connection cx) throws SQLException {
+        final String tmpTable = OBJECTS + "_v" + SCHEMA_VERSION;
+        LOG.info("Migrating {} database to binary object ids...", dbName);
+
+        Statement st = cx.createStatement();
+        try {
+            st.execute(log(format("DROP TABLE IF EXISTS %s", tmpTable), LOG));
+            st.execute(log(createTableSql(cx, tmpTable, layout), LOG));
+
+            String insert = format("INSERT OR IGNORE INTO %s (id,object) VALUES (?,?)", tmpTable);
+            PreparedStatement ps = cx.prepareStatement(log(insert, LOG));
+            long count = 0;
+            try {
+                ResultSet rs = st.executeQuery(format("SELECT id, object FROM %s", OBJECTS));
+                while (rs.next()) {
+                    ps.setBytes(1, ObjectId.toRaw(rs.getString(1)));
+                    ps.setBytes(2, rs.getBytes(2));
+                    ps.addBatch();
+                    if (++count % partitionSize == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                rs.close();
+                ps.executeBatch();
+            } finally {
+                ps.close();
+            }
+            st.execute(log(format("DROP TABLE %s", OBJECTS), LOG));
+            st.execute(log(format("ALTER TABLE %s RENAME TO %s", tmpTable, OBJECTS), LOG));
+            LOG.info("Migrated {} objects", count);
+        } finally {
+            st.close();
+        }
     }
 
     @Override
-    public boolean has(final String id, DataSource ds) {
+    public boolean has(final ObjectId id, DataSource ds) {
         return new DbOp<Boolean>() {
             @Override
             protected Boolean doRun(Connection cx) throws SQLException {
-                String sql = format("SELECT count(*) FROM %s WHERE id = ?", OBJECTS);
+                String sql = format("SELECT 1 FROM %s WHERE id = ?", OBJECTS);
 
                 PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, id)));
-                ps.setString(1, id);
+                ps.setBytes(1, id.getRawValue());
 
                 ResultSet rs = open(ps.executeQuery());
-                rs.next();
-
-                return rs.getInt(1) > 0;
+                return rs.next();
             }
-        }.run(ds);
+        }.run(connection(ds));
     }
 
+    /**
+     * Finds the ids starting with the given bytes with a range scan over the primary key.
+     */
     @Override
-    public Iterable<String> search(final String partialId, DataSource ds) {
-        Connection cx = Xerial.newConnection(ds);
-        final ResultSet rs = new DbOp<ResultSet>() {
+    public Iterable<ObjectId> search(final byte[] partialId, DataSource ds) {
+        return new DbOp<List<ObjectId>>() {
             @Override
-            protected ResultSet doRun(Connection cx) throws SQLException {
-                String sql = format("SELECT id FROM %s WHERE id LIKE '%%%s%%'", OBJECTS, partialId);
-                return cx.createStatement().executeQuery(log(sql, LOG));
+            protected List<ObjectId> doRun(Connection cx) throws SQLException {
+                final byte[] upperBound = upperBound(partialId);
+                String sql = format("SELECT id FROM %s WHERE id >= ?%s", OBJECTS,
+                        upperBound == null ? "" : " AND id < ?");
+
+                PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG)));
+                ps.setBytes(1, partialId);
+                if (upperBound != null) {
+                    ps.setBytes(2, upperBound);
+                }
+                ResultSet rs = open(ps.executeQuery());
+                List<ObjectId> matches = Lists.newArrayListWithCapacity(2);
+                while (rs.next()) {
+                    matches.add(ObjectId.createNoClone(rs.getBytes(1)));
+                }
+                return matches;
             }
-        }.run(cx);
+        }.run(connection(ds));
+    }
 
-        return new StringResultSetIterable(rs, cx);
+    /**
+     * @return the smallest byte array greater than all the arrays starting with {@code prefix},
+     *         or {@code null} if there's none (the prefix is empty or all its bytes are
+     *         {@code 0xFF})
+     */
+    @Nullable
+    static byte[] upperBound(final byte[] prefix) {
+        byte[] upper = prefix.clone();
+        for (int i = upper.length - 1; i >= 0; i--) {
+            if (upper[i] != (byte) 0xFF) {
+                upper[i]++;
+                byte[] bound = new byte[i + 1];
+                System.arraycopy(upper, 0, bound, 0, i + 1);
+                return bound;
+            }
+        }
+        return null;
     }
 
     @Override
-    public InputStream get(final String id, DataSource ds) {
+    public InputStream get(final ObjectId id, DataSource ds) {
         return new DbOp<InputStream>() {
             @Override
             protected InputStream doRun(Connection cx) throws SQLException {
                 String sql = format("SELECT object FROM %s WHERE id = ?", OBJECTS);
 
                 PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, id)));
-                ps.setString(1, id);
+                ps.setBytes(1, id.getRawValue());
 
                 ResultSet rs = open(ps.executeQuery());
                 if (!rs.next()) {
@@ -138,39 +442,215 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
                 byte[] bytes = rs.getBytes(1);
                 return new ByteArrayInputStream(bytes);
             }
-        }.run(ds);
+        }.run(connection(ds));
+    }
+
+    /**
+     * Fetches the contents of the objects with the given ids in a single query
+     *
+     * @return the serialized objects found, by id
+     */
+    Map<ObjectId, byte[]> getChunk(final List<ObjectId> ids, DataSource ds) {
+        return new DbOp<Map<ObjectId, byte[]>>() {
+            @Override
+            protected Map<ObjectId, byte[]> doRun(Connection cx) throws SQLException {
+                String params = Strings.repeat("?,", ids.size());
+                String sql = format("SELECT id, object FROM %s WHERE id IN (%s)", OBJECTS,
+                        params.substring(0, params.length() - 1));
+
+                PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG)));
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setBytes(i + 1, ids.get(i).getRawValue());
+                }
+                ResultSet rs = open(ps.executeQuery());
+                Map<ObjectId, byte[]> found = Maps.newHashMap();
+                while (rs.next()) {
+                    found.put(ObjectId.createNoClone(rs.getBytes(1)), rs.getBytes(2));
+                }
+                return found;
+            }
+        }.run(connection(ds));
+    }
+
+    /**
+     * Override to fetch objects in chunks of {@link #GET_ALL_PARTITION_SIZE} ids per query.
+     */
+    @Override
+    public Iterator<RevObject> getAll(final Iterable<ObjectId> ids,
+            final BulkOpListener listener) {
+        Preconditions.checkState(isOpen(), "No open database connection");
+        final DataSource ds = cx;
+        final Iterator<List<ObjectId>> partitions = Iterables.partition(ids,
+                GET_ALL_PARTITION_SIZE).iterator();
+
+        return new AbstractIterator<RevObject>() {
+
+            private Iterator<RevObject> chunk = Iterators.emptyIterator();
+
+            @Override
+            protected RevObject computeNext() {
+                while (!chunk.hasNext()) {
+                    if (!partitions.hasNext()) {
+                        return endOfData();
+                    }
+                    List<ObjectId> chunkIds = partitions.next();
+                    Map<ObjectId, byte[]> found = getChunk(chunkIds, ds);
+                    List<RevObject> objects = Lists.newArrayListWithCapacity(found.size());
+                    for (ObjectId id : chunkIds) {
+                        byte[] bytes = found.get(id);
+                        if (bytes == null) {
+                            listener.notFound(id);
+                        } else {
+                            listener.found(id, Integer.valueOf(bytes.length));
+                            objects.add(readObject(new ByteArrayInputStream(bytes), id));
+                        }
+                    }
+                    chunk = objects.iterator();
+                }
+                return chunk.next();
+            }
+        };
     }
 
+    /**
+     * Override to fetch objects in chunks of {@link #GET_ALL_PARTITION_SIZE} ids per query.
+     */
     @Override
-    public void put(final String id, final InputStream obj, DataSource ds) {
+    public Iterator<RawObject> getRaw(final Iterable<ObjectId> ids, final BulkOpListener listener) {
+        Preconditions.checkState(isOpen(), "No open database connection");
+        final DataSource ds = cx;
+        final Iterator<List<ObjectId>> partitions = Iterables.partition(ids,
+                GET_ALL_PARTITION_SIZE).iterator();
+
+        return new AbstractIterator<RawObject>() {
+
+            private Iterator<RawObject> chunk = Iterators.emptyIterator();
+
+            @Override
+            protected RawObject computeNext() {
+                while (!chunk.hasNext()) {
+                    if (!partitions.hasNext()) {
+                        return endOfData();
+                    }
+                    List<ObjectId> chunkIds = partitions.next();
+                    Map<ObjectId, byte[]> found = getChunk(chunkIds, ds);
+                    List<RawObject> objects = Lists.newArrayListWithCapacity(found.size());
+                    for (ObjectId id : chunkIds) {
+                        byte[] bytes = found.get(id);
+                        if (bytes == null) {
+                            listener.notFound(id);
+                        } else {
+                            listener.found(id, Integer.valueOf(bytes.length));
+                            objects.add(new RawObject(id, RawObject.compress(bytes), serializer));
+                        }
+                    }
+                    chunk = objects.iterator();
+                }
+                return chunk.next();
+            }
+        };
+    }
+
+    @Override
+    public void put(final ObjectId id, final InputStream obj, DataSource ds) {
         new DbOp<Void>() {
             @Override
             protected Void doRun(Connection cx) throws SQLException, IOException {
                 String sql = format("INSERT OR IGNORE INTO %s (id,object) VALUES (?,?)", OBJECTS);
 
                 PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, id, obj)));
-                ps.setString(1, id);
+                ps.setBytes(1, id.getRawValue());
                 ps.setBytes(2, ByteStreams.toByteArray(obj));
                 ps.executeUpdate();
 
                 return null;
             }
-        }.run(ds);
+        }.run(connection(ds));
     }
 
     @Override
-    public boolean delete(final String id, DataSource ds) {
+    public boolean delete(final ObjectId id, DataSource ds) {
         return new DbOp<Boolean>() {
             @Override
             protected Boolean doRun(Connection cx) throws SQLException {
                 String sql = format("DELETE FROM %s WHERE id = ?", OBJECTS);
 
                 PreparedStatement ps = open(cx.prepareStatement(log(sql, LOG, id)));
-                ps.setString(1, id);
+                ps.setBytes(1, id.getRawValue());
 
                 return ps.executeUpdate() > 0;
             }
-        }.run(ds);
+        }.run(connection(ds));
+    }
+
+    @Override
+    protected Iterator<ObjectId> storedIds(DataSource ds) {
+        return new StoredIdsIterator(connection(ds));
+    }
+
+    /**
+     * Copies the objects to a new table in the given order, followed by the objects not in
+     * {@code liveIds}, and replaces the objects table with it. Only the sequential layout is
+     * rewritten, the clustered one keeps the objects in id order regardless.
+     */
+    @Override
+    protected void repack(final Iterator<ObjectId> liveIds, DataSource ds) {
+        if (!Layout.SEQUENTIAL.equals(layout)) {
+            return;
+        }
+        new DbOp<Void>() {
+            @Override
+            protected boolean isAutoCommit() {
+                return false;
+            }
+
+            @Override
+            protected Void doRun(Connection cx) throws SQLException {
+                final String tmpTable = OBJECTS + "_repack";
+                Statement st = open(cx.createStatement());
+                try {
+                    st.execute(log(format("DROP TABLE IF EXISTS %s", tmpTable), LOG));
+                    st.execute(log(createTableSql(cx, tmpTable, Layout.SEQUENTIAL), LOG));
+
+                    String copy = format("INSERT OR IGNORE INTO %s (id,object) "
+                            + "SELECT id, object FROM %s WHERE id = ?", tmpTable, OBJECTS);
+                    PreparedStatement ps = open(cx.prepareStatement(log(copy, LOG)));
+                    long count = 0;
+                    while (liveIds.hasNext()) {
+                        ps.setBytes(1, liveIds.next().getRawValue());
+                        ps.addBatch();
+                        if (++count % partitionSize == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                    ps.executeBatch();
+                    // objects not reached are kept, after the reached ones
+                    st.execute(log(format("INSERT OR IGNORE INTO %s (id,object) "
+                            + "SELECT id, object FROM %s ORDER BY seq", tmpTable, OBJECTS), LOG));
+                    st.execute(log(format("DROP TABLE %s", OBJECTS), LOG));
+                    st.execute(log(format("ALTER TABLE %s RENAME TO %s", tmpTable, OBJECTS),
+                            LOG));
+                    cx.commit();
+                    LOG.debug("Repacked {} objects", count);
+                } catch (SQLException e) {
+                    cx.rollback();
+                    throw e;
+                }
+                return null;
+            }
+        }.run(connection(ds));
+    }
+
+    @Override
+    protected void vacuum(DataSource ds) {
+        new DbOp<Void>() {
+            @Override
+            protected Void doRun(Connection cx) throws SQLException {
+                // can't run inside a transaction
+                open(cx.createStatement()).execute(log("VACUUM", LOG));
+                return null;
+            }
+        }.run(connection(ds));
     }
 
     /**
@@ -200,7 +680,7 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
                     List<? extends RevObject> objs = it.next();
                     for (RevObject obj : objs) {
                         stmt.setBytes(1, ByteStreams.toByteArray(writeObject(obj)));
-                        stmt.setString(2, obj.getId().toString());
+                        stmt.setBytes(2, obj.getId().getRawValue());
                         stmt.addBatch();
                     }
 
@@ -211,7 +691,48 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
 
                 return null;
             }
-        }.run(cx);
+        }.run(connection(cx));
+    }
+
+    /**
+     * Override to optimize batch insert.
+     */
+    @Override
+    public void putRaw(final Iterator<RawObject> objects, final BulkOpListener listener) {
+        Preconditions.checkState(isOpen(), "No open database connection");
+        new DbOp<Void>() {
+            @Override
+            protected boolean isAutoCommit() {
+                return false;
+            }
+
+            @Override
+            protected Void doRun(Connection cx) throws SQLException, IOException {
+                // use INSERT OR IGNORE to deal with duplicates cleanly
+                String sql = format("INSERT OR IGNORE INTO %s (object,id) VALUES (?,?)", OBJECTS);
+                PreparedStatement stmt = open(cx.prepareStatement(log(sql, LOG)));
+
+                // partition the objects into chunks for batch processing
+                Iterator<List<RawObject>> it = Iterators.partition(objects, partitionSize);
+
+                while (it.hasNext()) {
+                    List<RawObject> objs = it.next();
+                    List<ObjectId> ids = Lists.newArrayListWithCapacity(objs.size());
+                    for (RawObject obj : objs) {
+                        stmt.setBytes(1, toStorageFormat(obj));
+                        stmt.setBytes(2, obj.getId().getRawValue());
+                        stmt.addBatch();
+                        ids.add(obj.getId());
+                    }
+
+                    notifyInsertedIds(stmt.executeBatch(), ids, listener);
+                    stmt.clearParameters();
+                }
+                cx.commit();
+
+                return null;
+            }
+        }.run(connection(cx));
     }
 
     void notifyInserted(int[] inserted, List<? extends RevObject> objects, BulkOpListener listener) {
@@ -222,6 +743,14 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
         }
     }
 
+    void notifyInsertedIds(int[] inserted, List<ObjectId> ids, BulkOpListener listener) {
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                listener.inserted(ids.get(i), null);
+            }
+        }
+    }
+
     /**
      * Override to optimize batch delete.
      */
@@ -247,7 +776,7 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
                 while (it.hasNext()) {
                     List<ObjectId> l = it.next();
                     for (ObjectId id : l) {
-                        stmt.setString(1, id.toString());
+                        stmt.setBytes(1, id.getRawValue());
                         stmt.addBatch();
                     }
 
@@ -258,7 +787,7 @@ public class XerialObjectDatabase extends SQLiteObjectDatabase<DataSource> {
 
                 return count;
             }
-        }.run(cx);
+        }.run(connection(cx));
     }
 
     long notifyDeleted(int[] deleted, List<ObjectId> ids, BulkOpListener listener) {
@@ -9,15 +9,37 @@
  */
 package org.locationtech.geogig.test.integration.sqlite;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.ObjectId;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.GraphDatabase.Direction;
+import org.locationtech.geogig.storage.GraphDatabase.GraphEdge;
+import org.locationtech.geogig.storage.GraphDatabase.GraphNode;
 import org.locationtech.geogig.storage.GraphDatabaseTest;
 import org.locationtech.geogig.storage.fs.IniFileConfigDatabase;
+import org.locationtech.geogig.storage.sqlite.Xerial;
 import org.locationtech.geogig.storage.sqlite.XerialGraphDatabase;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
 public class XerialGraphDatabaseTest extends GraphDatabaseTest {
     @Rule
     public TemporaryFolder temp = new TemporaryFolder();
@@ -27,4 +49,158 @@ public class XerialGraphDatabaseTest extends GraphDatabaseTest {
         ConfigDatabase configdb = new IniFileConfigDatabase(platform);
         return new XerialGraphDatabase(configdb, platform);
     }
+
+    @Test
+    public void testParentsOrderAndAncestry() throws Exception {
+        ObjectId root = ObjectId.forString("root");
+        ObjectId left = ObjectId.forString("left");
+        ObjectId right = ObjectId.forString("right");
+        ObjectId merge = ObjectId.forString("merge");
+        database.put(root, ImmutableList.<ObjectId> of());
+        database.put(left, ImmutableList.of(root));
+        database.put(right, ImmutableList.of(root));
+        database.put(merge, ImmutableList.of(right, left));
+
+        assertEquals(ImmutableList.of(right, left), database.getParents(merge));
+        assertEquals(2, database.getDepth(merge));
+
+        GraphNode node = database.getNode(merge);
+        List<ObjectId> parents = Lists.newArrayList();
+        Iterator<GraphEdge> edges = node.getEdges(Direction.OUT);
+        while (edges.hasNext()) {
+            GraphNode parent = edges.next().getToNode();
+            parents.add(parent.getIdentifier());
+            Iterator<GraphEdge> grandParents = parent.getEdges(Direction.OUT);
+            assertEquals(root, grandParents.next().getToNode().getIdentifier());
+            assertFalse(grandParents.hasNext());
+        }
+        assertEquals(ImmutableList.of(right, left), parents);
+        assertFalse(database.getNode(root).getEdges(Direction.OUT).hasNext());
+    }
+
+    @Test
+    public void testAncestryLoadedInChunks() throws Exception {
+        database.close();
+        CountingGraphDatabase counting = new CountingGraphDatabase(new IniFileConfigDatabase(
+                platform), platform);
+        database = counting;
+        database.open();
+
+        List<ObjectId> history = Lists.newArrayList();
+        ImmutableList<ObjectId> parents = ImmutableList.of();
+        for (int i = 0; i < 100; i++) {
+            ObjectId commit = ObjectId.forString("commit " + i);
+            database.put(commit, parents);
+            history.add(0, commit);
+            parents = ImmutableList.of(commit);
+        }
+
+        // a nearby ancestor costs a single bounded query
+        GraphNode node = database.getNode(history.get(0));
+        for (int i = 1; i <= 3; i++) {
+            node = node.getEdges(Direction.OUT).next().getToNode();
+            assertEquals(history.get(i), node.getIdentifier());
+        }
+        assertEquals(1, counting.queries);
+        assertEquals(CountingGraphDatabase.CHUNK_SIZE, counting.nodesRead);
+
+        // the whole history costs one query per chunk
+        counting.queries = 0;
+        counting.nodesRead = 0;
+        node = database.getNode(history.get(0));
+        for (int i = 1; i < history.size(); i++) {
+            node = node.getEdges(Direction.OUT).next().getToNode();
+            assertEquals(history.get(i), node.getIdentifier());
+        }
+        assertFalse(node.getEdges(Direction.OUT).hasNext());
+        assertEquals(history.size() / CountingGraphDatabase.CHUNK_SIZE, counting.queries);
+        assertEquals(history.size(), counting.nodesRead);
+
+        // nodes reached through incoming edges share the traversal's chunks
+        counting.queries = 0;
+        node = database.getNode(history.get(50));
+        GraphNode parent = node.getEdges(Direction.OUT).next().getToNode();
+        GraphNode child = parent.getEdges(Direction.IN).next().getFromNode();
+        assertEquals(history.get(50), child.getIdentifier());
+        assertEquals(history.get(51), child.getEdges(Direction.OUT).next().getToNode()
+                .getIdentifier());
+        assertEquals(1, counting.queries);
+    }
+
+    @Test
+    public void testMigrateVarcharSchema() throws Exception {
+        database.close();
+        File graph = new File(new File(tmpFolder.getRoot(), ".geogig"), "graph.db");
+        assertTrue(graph.delete());
+
+        ObjectId root = ObjectId.forString("root");
+        ObjectId child = ObjectId.forString("child");
+        ObjectId orphan = ObjectId.forString("orphan");
+
+        // create a graph with the former schema
+        DataSource ds = Xerial.newDataSource(graph);
+        Connection cx = ds.getConnection();
+        try {
+            Statement st = cx.createStatement();
+            st.execute("CREATE TABLE nodes (id VARCHAR PRIMARY KEY)");
+            st.execute("CREATE TABLE edges (src VARCHAR, dst VARCHAR, PRIMARY KEY (src,dst))");
+            st.execute("CREATE INDEX edges_src_index ON edges(src)");
+            st.execute("CREATE INDEX edges_dst_index ON edges(dst)");
+            st.execute("CREATE TABLE props (nid VARCHAR, key VARCHAR, val VARCHAR,"
+                    + " PRIMARY KEY(nid,key))");
+            st.execute("CREATE TABLE mappings (alias VARCHAR PRIMARY KEY, nid VARCHAR)");
+            st.execute(String.format("INSERT INTO nodes VALUES ('%s'), ('%s')", root, child));
+            st.execute(String.format("INSERT INTO edges VALUES ('%s', '%s'), ('%s', '%s')",
+                    child, root, root, orphan));
+            st.execute(String.format("INSERT INTO props VALUES ('%s', '%s', 'true')", child,
+                    GraphDatabase.SPARSE_FLAG));
+            st.close();
+        } finally {
+            cx.close();
+        }
+
+        database.open();
+        assertTrue(database.exists(root));
+        assertTrue(database.exists(child));
+        // only known as the destination of an edge
+        assertFalse(database.exists(orphan));
+        assertEquals(ImmutableList.of(root), database.getParents(child));
+        assertEquals(ImmutableList.of(child), database.getChildren(root));
+        assertEquals(2, database.getDepth(child));
+        assertTrue(database.getNode(child).isSparse());
+        assertFalse(database.getNode(root).isSparse());
+
+        // adding the node afterwards reports it as added
+        assertTrue(database.put(orphan, ImmutableList.<ObjectId> of()));
+        assertFalse(database.put(orphan, ImmutableList.<ObjectId> of()));
+    }
+
+    /**
+     * Counts the ancestry queries and the nodes they return
+     */
+    private static class CountingGraphDatabase extends XerialGraphDatabase {
+
+        static final int CHUNK_SIZE = 10;
+
+        int queries;
+
+        int nodesRead;
+
+        CountingGraphDatabase(ConfigDatabase configdb, Platform platform) {
+            super(configdb, platform);
+        }
+
+        @Override
+        protected int ancestryChunkSize() {
+            return CHUNK_SIZE;
+        }
+
+        @Override
+        protected Map<String, List<String>> ancestry(String node, int limit, DataSource ds) {
+            Map<String, List<String>> ancestry = super.ancestry(node, limit, ds);
+            queries++;
+            nodesRead += ancestry.size();
+            return ancestry;
+        }
+    }
 }
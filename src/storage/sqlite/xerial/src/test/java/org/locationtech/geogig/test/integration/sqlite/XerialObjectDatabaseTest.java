@@ -0,0 +1,264 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.test.integration.sqlite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.api.CommitBuilder;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.RevCommit;
+import org.locationtech.geogig.api.RevObject;
+import org.locationtech.geogig.api.RevTree;
+import org.locationtech.geogig.api.TestPlatform;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.datastream.DataStreamSerializationFactoryV1;
+import org.locationtech.geogig.storage.fs.IniFileConfigDatabase;
+import org.locationtech.geogig.storage.sqlite.Xerial;
+import org.locationtech.geogig.storage.sqlite.XerialObjectDatabase;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class XerialObjectDatabaseTest extends Assert {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestPlatform platform;
+
+    private XerialObjectDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = folder.getRoot();
+        folder.newFolder(".geogig");
+        platform = new TestPlatform(root);
+        platform.setUserHome(folder.newFolder("home"));
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+    }
+
+    private XerialObjectDatabase createDb() {
+        return createDb("objects");
+    }
+
+    private XerialObjectDatabase createDb(String dbName) {
+        XerialObjectDatabase db = new XerialObjectDatabase(new IniFileConfigDatabase(platform),
+                platform, dbName);
+        db.open();
+        return db;
+    }
+
+    @Test
+    public void testPutGet() {
+        db = createDb();
+        RevCommit commit = commit("c1");
+        assertFalse(db.exists(commit.getId()));
+        assertTrue(db.put(commit));
+        assertTrue(db.exists(commit.getId()));
+        assertEquals(commit, db.get(commit.getId()));
+        assertNull(db.getIfPresent(ObjectId.forString("missing")));
+
+        assertTrue(db.delete(commit.getId()));
+        assertFalse(db.exists(commit.getId()));
+    }
+
+    @Test
+    public void testGetAll() {
+        db = createDb();
+        List<RevObject> objects = Lists.newArrayList();
+        for (int i = 0; i < 1200; i++) {
+            objects.add(commit("commit " + i));
+        }
+        db.putAll(objects.iterator());
+
+        List<ObjectId> ids = Lists.newArrayList();
+        ObjectId missing = ObjectId.forString("missing");
+        for (int i = objects.size() - 1; i >= 0; i--) {
+            ids.add(objects.get(i).getId());
+            if (i == 600) {
+                ids.add(missing);
+            }
+        }
+
+        CountingListener listener = BulkOpListener.newCountingListener();
+        List<RevObject> result = Lists.newArrayList(db.getAll(ids, listener));
+        assertEquals(objects.size(), result.size());
+        assertEquals(objects.size(), listener.found());
+        assertEquals(1, listener.notFound());
+        // results come in the requested order
+        assertEquals(Lists.reverse(objects), result);
+    }
+
+    @Test
+    public void testLookUp() {
+        db = createDb();
+        RevCommit commit = commit("c1");
+        db.putAll(ImmutableList.of(RevTree.EMPTY, commit).iterator());
+
+        String id = commit.getId().toString();
+        assertEquals(ImmutableList.of(commit.getId()), db.lookUp(id.substring(0, 8)));
+        assertEquals(ImmutableList.of(commit.getId()), db.lookUp(id.substring(0, 7)));
+        assertEquals(ImmutableList.of(commit.getId()), db.lookUp(id));
+        String other = id.charAt(6) == 'f' ? "0" : "f";
+        assertTrue(db.lookUp(id.substring(0, 6) + other).isEmpty());
+    }
+
+    @Test
+    public void testObjectsStoredByOtherConnections() {
+        db = createDb();
+        assertFalse(db.exists(commit("c1").getId()));
+
+        // another process writing to the same database, as allowed by WAL mode
+        XerialObjectDatabase other = createDb();
+        try {
+            List<RevObject> objects = Lists.newArrayList();
+            for (int i = 0; i < 100; i++) {
+                objects.add(commit("commit " + i));
+            }
+            other.putAll(objects.iterator());
+            other.put(commit("c1"));
+
+            assertTrue(db.exists(commit("c1").getId()));
+            assertEquals(commit("c1"), db.get(commit("c1").getId()));
+            List<ObjectId> ids = Lists.newArrayList();
+            for (RevObject o : objects) {
+                ids.add(o.getId());
+            }
+            assertEquals(objects, Lists.newArrayList(db.getAll(ids)));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void testMigrateHexIds() throws Exception {
+        RevCommit commit = commit("c1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataStreamSerializationFactoryV1.INSTANCE.createObjectWriter(commit.getType()).write(
+                commit, out);
+
+        // create a database with the former schema
+        DataSource ds = Xerial.newDataSource(new File(new File(folder.getRoot(), ".geogig"),
+                "objects.db"));
+        Connection cx = ds.getConnection();
+        try {
+            Statement st = cx.createStatement();
+            st.execute("CREATE TABLE objects (id varchar PRIMARY KEY, object blob)");
+            st.close();
+            PreparedStatement ps = cx.prepareStatement("INSERT INTO objects VALUES (?,?)");
+            ps.setString(1, commit.getId().toString());
+            ps.setBytes(2, out.toByteArray());
+            ps.executeUpdate();
+            ps.close();
+        } finally {
+            cx.close();
+        }
+
+        db = createDb();
+        assertTrue(db.exists(commit.getId()));
+        assertEquals(commit, db.get(commit.getId()));
+        assertEquals(ImmutableList.of(commit.getId()),
+                db.lookUp(commit.getId().toString().substring(0, 8)));
+
+        // reopening doesn't migrate again
+        db.close();
+        db = createDb();
+        assertEquals(commit, db.get(commit.getId()));
+    }
+
+    @Test
+    public void testSequentialLayout() throws Exception {
+        db = createDb();
+        assertEquals(XerialObjectDatabase.Layout.CLUSTERED, db.getLayout());
+        db.close();
+
+        // only read when the database is created
+        new IniFileConfigDatabase(platform).put("sqlite.layout", "sequential");
+        db = createDb();
+        assertEquals(XerialObjectDatabase.Layout.CLUSTERED, db.getLayout());
+        db.close();
+
+        db = createDb("sequential");
+        assertEquals(XerialObjectDatabase.Layout.SEQUENTIAL, db.getLayout());
+        List<RevObject> objects = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            objects.add(commit("commit " + i));
+        }
+        db.putAll(objects.iterator());
+        RevCommit notReached = commit("not reached");
+        db.put(notReached);
+
+        // repack in reverse order, with an id not in the database
+        List<ObjectId> order = Lists.newArrayList();
+        for (RevObject o : Lists.reverse(objects)) {
+            order.add(o.getId());
+        }
+        order.add(50, ObjectId.forString("missing"));
+        db.repack(order.iterator());
+        order.remove(50);
+        order.add(notReached.getId());
+
+        assertEquals(notReached, db.get(notReached.getId()));
+        String id = objects.get(0).getId().toString();
+        assertEquals(ImmutableList.of(objects.get(0).getId()), db.lookUp(id.substring(0, 10)));
+        db.close();
+
+        assertEquals(order, storedOrder("sequential"));
+        db = createDb("sequential");
+        assertEquals(XerialObjectDatabase.Layout.SEQUENTIAL, db.getLayout());
+        List<RevObject> expected = Lists.newArrayList(Lists.reverse(objects));
+        expected.add(notReached);
+        assertEquals(expected, Lists.newArrayList(db.getAll(order)));
+    }
+
+    private List<ObjectId> storedOrder(String dbName) throws Exception {
+        List<ObjectId> ids = Lists.newArrayList();
+        DataSource ds = Xerial.newDataSource(new File(new File(folder.getRoot(), ".geogig"),
+                dbName + ".db"));
+        Connection cx = ds.getConnection();
+        try {
+            Statement st = cx.createStatement();
+            ResultSet rs = st.executeQuery("SELECT id FROM objects ORDER BY seq");
+            while (rs.next()) {
+                ids.add(ObjectId.createNoClone(rs.getBytes(1)));
+            }
+            st.close();
+        } finally {
+            cx.close();
+        }
+        return ids;
+    }
+
+    private static RevCommit commit(String message) {
+        return new CommitBuilder().setTreeId(RevTree.EMPTY_TREE_ID).setAuthor("groldan")
+                .setMessage(message).build();
+    }
+}
@@ -0,0 +1,351 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Tag;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * A content addressed cache of web API responses.
+ * <p>
+ * Responses are cached by a key built out of the command arguments resolved to the ids of the
+ * immutable objects the response is computed from (see
+ * {@link org.locationtech.geogig.web.api.CacheableCommand}), hence a cached response never needs
+ * to be invalidated: whenever the repository changes, the same request resolves to a different
+ * key. For the same reason each key gets a strong {@link #etag(String) entity tag} that HTTP
+ * clients and proxies can use to revalidate their copies without the response being recomputed.
+ * <p>
+ * The in-memory cache is bounded by the size of the responses it holds, and evicts the least
+ * recently used ones first. If a spill directory is configured, evicted responses are moved there
+ * instead of being discarded, up to a maximum disk usage.
+ * <p>
+ * The cache is configured through the following system properties:
+ * <ul>
+ * <li>{@code geogig.web.cache.maxBytes}: maximum size in bytes of the responses held in memory,
+ * defaults to {@code 32MB}. A value of zero disables the cache
+ * <li>{@code geogig.web.cache.maxEntryBytes}: maximum size in bytes of a single cacheable
+ * response, defaults to {@code 1MB}. Bigger responses are streamed but not cached
+ * <li>{@code geogig.web.cache.spillDirectory}: directory where to spill responses evicted from
+ * memory, not set by default
+ * <li>{@code geogig.web.cache.maxSpillBytes}: maximum size in bytes of the responses spilled to
+ * disk, defaults to {@code 512MB}
+ * </ul>
+ */
+public class ResponseCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ResponseCache.class.getName());
+
+    public static final String MAX_BYTES_PROPERTY = "geogig.web.cache.maxBytes";
+
+    public static final String MAX_ENTRY_BYTES_PROPERTY = "geogig.web.cache.maxEntryBytes";
+
+    public static final String SPILL_DIRECTORY_PROPERTY = "geogig.web.cache.spillDirectory";
+
+    public static final String MAX_SPILL_BYTES_PROPERTY = "geogig.web.cache.maxSpillBytes";
+
+    private static ResponseCache INSTANCE;
+
+    public static synchronized ResponseCache get() {
+        if (INSTANCE == null) {
+            final long maxBytes = Long.getLong(MAX_BYTES_PROPERTY, 32 * 1024 * 1024);
+            final long maxEntryBytes = Long.getLong(MAX_ENTRY_BYTES_PROPERTY, 1024 * 1024);
+            final String spillDirectory = System.getProperty(SPILL_DIRECTORY_PROPERTY);
+            final long maxSpillBytes = Long.getLong(MAX_SPILL_BYTES_PROPERTY, 512 * 1024 * 1024);
+            INSTANCE = new ResponseCache(maxBytes, maxEntryBytes, spillDirectory == null ? null
+                    : new File(spillDirectory), maxSpillBytes);
+        }
+        return INSTANCE;
+    }
+
+    private final long maxEntryBytes;
+
+    @Nullable
+    private final Cache<String, byte[]> memory;
+
+    @Nullable
+    private final Cache<String, File> disk;
+
+    private final File spillDirectory;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong spilled = new AtomicLong();
+
+    /**
+     * @param maxBytes maximum size in bytes of the responses held in memory, zero disables the
+     *        cache
+     * @param maxEntryBytes maximum size in bytes of a single cacheable response
+     * @param spillDirectory directory where to spill responses evicted from memory, or
+     *        {@code null} to discard them
+     * @param maxSpillBytes maximum size in bytes of the responses spilled to disk
+     */
+    public ResponseCache(final long maxBytes, final long maxEntryBytes,
+            @Nullable final File spillDirectory, final long maxSpillBytes) {
+        checkArgument(maxBytes >= 0, "maxBytes must be >= 0");
+        checkArgument(maxEntryBytes >= 0, "maxEntryBytes must be >= 0");
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.spillDirectory = spillDirectory;
+
+        if (spillDirectory != null && maxBytes > 0 && maxSpillBytes > 0) {
+            spillDirectory.mkdirs();
+            checkArgument(spillDirectory.isDirectory() && spillDirectory.canWrite(),
+                    "Can't write to response cache spill directory %s", spillDirectory);
+            this.disk = CacheBuilder.newBuilder().maximumWeight(maxSpillBytes)
+                    .weigher(new Weigher<String, File>() {
+                        @Override
+                        public int weigh(String key, File file) {
+                            return (int) Math.min(Integer.MAX_VALUE, file.length());
+                        }
+                    }).removalListener(new RemovalListener<String, File>() {
+                        @Override
+                        public void onRemoval(RemovalNotification<String, File> notification) {
+                            // a replaced entry was re-spilled to the same file
+                            if (notification.getCause() != RemovalCause.REPLACED) {
+                                notification.getValue().delete();
+                            }
+                        }
+                    }).build();
+        } else {
+            this.disk = null;
+        }
+
+        if (maxBytes > 0) {
+            this.memory = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+                    .weigher(new Weigher<String, byte[]>() {
+                        @Override
+                        public int weigh(String key, byte[] body) {
+                            return body.length;
+                        }
+                    }).removalListener(new RemovalListener<String, byte[]>() {
+                        @Override
+                        public void onRemoval(RemovalNotification<String, byte[]> notification) {
+                            if (notification.wasEvicted()) {
+                                spill(notification.getKey(), notification.getValue());
+                            }
+                        }
+                    }).build();
+        } else {
+            this.memory = null;
+        }
+    }
+
+    /**
+     * @return whether the cache is enabled at all
+     */
+    public boolean isEnabled() {
+        return memory != null;
+    }
+
+    /**
+     * @return the strong entity tag for the response identified by the given cache key
+     */
+    public static Tag etag(String key) {
+        return new Tag(Hashing.sha1().hashString(key, Charsets.UTF_8).toString(), false);
+    }
+
+    /**
+     * Looks up a cached response, either in memory or spilled to disk.
+     *
+     * @param key the cache key that identifies the response
+     * @param mediaType the media type of the response
+     * @return a representation for the cached response, tagged with its {@link #etag(String)
+     *         entity tag}, or absent if the response is not cached
+     */
+    public Optional<Representation> get(final String key, final MediaType mediaType) {
+        checkNotNull(key);
+        if (memory == null) {
+            return Optional.absent();
+        }
+        byte[] body = memory.getIfPresent(key);
+        if (body == null && disk != null) {
+            body = unspill(key);
+        }
+        if (body == null) {
+            misses.incrementAndGet();
+            return Optional.absent();
+        }
+        hits.incrementAndGet();
+        Representation representation = new BytesRepresentation(mediaType, body);
+        representation.setTag(etag(key));
+        return Optional.of(representation);
+    }
+
+    /**
+     * Decorates a representation so that the response it writes gets cached under the given key
+     * once fully and successfully written, as long as its size doesn't exceed the maximum entry
+     * size.
+     *
+     * @param key the cache key that identifies the response
+     * @param representation the representation that computes the response
+     * @return a representation that writes the same content than {@code representation}
+     */
+    public Representation caching(final String key, final Representation representation) {
+        checkNotNull(key);
+        checkNotNull(representation);
+        if (memory == null) {
+            return representation;
+        }
+        return new OutputRepresentation(representation.getMediaType()) {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                CapturingOutputStream capture = new CapturingOutputStream(out, maxEntryBytes);
+                representation.write(capture);
+                capture.flush();
+                byte[] body = capture.captured();
+                if (body != null) {
+                    memory.put(key, body);
+                }
+            }
+        };
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of responses moved from memory to the spill directory
+     */
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    private void spill(String key, byte[] body) {
+        if (disk == null) {
+            return;
+        }
+        File file = new File(spillDirectory, etag(key).getName());
+        try {
+            Files.write(body, file);
+            disk.put(key, file);
+            spilled.incrementAndGet();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error spilling cached response to " + file, e);
+            file.delete();
+        }
+    }
+
+    @Nullable
+    private byte[] unspill(String key) {
+        final File file = disk.getIfPresent(key);
+        if (file == null) {
+            return null;
+        }
+        byte[] body = null;
+        try {
+            body = Files.toByteArray(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error reading spilled response " + file, e);
+        }
+        // move it back to memory, removing it from disk deletes the file
+        disk.invalidate(key);
+        if (body != null) {
+            memory.put(key, body);
+        }
+        return body;
+    }
+
+    /**
+     * A representation for an already computed response
+     */
+    private static class BytesRepresentation extends OutputRepresentation {
+
+        private final byte[] body;
+
+        BytesRepresentation(MediaType mediaType, byte[] body) {
+            super(mediaType);
+            this.body = body;
+        }
+
+        @Override
+        public void write(OutputStream out) throws IOException {
+            out.write(body);
+        }
+    }
+
+    /**
+     * An output stream that keeps a copy of what's written to the target stream, as long as it
+     * doesn't exceed a given size.
+     */
+    private static class CapturingOutputStream extends FilterOutputStream {
+
+        private final long maxBytes;
+
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingOutputStream(OutputStream out, long maxBytes) {
+            super(out);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        private void capture(byte[] b, int off, int len) {
+            if (copy != null) {
+                if (copy.size() + len > maxBytes) {
+                    copy = null;
+                } else {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+
+        /**
+         * @return the bytes written, or {@code null} if they exceeded the maximum size
+         */
+        @Nullable
+        public byte[] captured() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+}
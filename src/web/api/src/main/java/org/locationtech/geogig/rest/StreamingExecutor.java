@@ -0,0 +1,462 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.data.MediaType;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs web API requests on a bounded thread pool and streams their output back to the client
+ * through a bounded buffer.
+ * <p>
+ * The {@link Representation} produced by a request is written on one of the executor threads, in
+ * chunks that are handed over to the representation returned by
+ * {@link #submit(String, MediaType, Callable)}, which the HTTP connector drains as it sends them to
+ * the client. Only a few chunks per request are buffered, so a slow client slows down the command
+ * producing the response instead of making it accumulate in memory, and a client disconnecting
+ * aborts the command. A client that stops reading without disconnecting aborts the command once
+ * the stall timeout expires, which defaults to the idle timeout of the HTTP connector, so that it
+ * doesn't hold an executor thread and a repository permit after the connector gave up on it.
+ * <p>
+ * The returned representation doesn't wait for the command to run, so the response headers are
+ * made of what the caller knows beforehand, like the media type, and the request thread is only
+ * busy while there's output to send.
+ * <p>
+ * Admission is bounded in two ways: by the size of the executor's waiting queue, and by the
+ * maximum number of requests allowed to run or wait concurrently against a single repository.
+ * Requests exceeding any of those limits are rejected right away with a
+ * {@link RejectedExecutionException}, so that an overloaded server answers quickly instead of
+ * piling up blocked request threads.
+ * <p>
+ * Limits can be set through the following system properties:
+ * <ul>
+ * <li>{@code geogig.web.threads}: number of executor threads, defaults to twice the number of
+ * available processors
+ * <li>{@code geogig.web.queueSize}: number of requests allowed to wait for an executor thread,
+ * defaults to {@code 100}
+ * <li>{@code geogig.web.repositoryLimit}: number of requests allowed to run or wait concurrently
+ * for a single repository, defaults to the number of executor threads
+ * <li>{@code geogig.web.stallTimeout}: milliseconds a request waits for the client to read its
+ * buffered output before being aborted, defaults to {@code 30000}, the default
+ * {@code maxIdleTimeMs} of the Jetty connector
+ * </ul>
+ */
+public class StreamingExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamingExecutor.class.getName());
+
+    public static final String THREADS_PROPERTY = "geogig.web.threads";
+
+    public static final String QUEUE_SIZE_PROPERTY = "geogig.web.queueSize";
+
+    public static final String REPOSITORY_LIMIT_PROPERTY = "geogig.web.repositoryLimit";
+
+    public static final String STALL_TIMEOUT_PROPERTY = "geogig.web.stallTimeout";
+
+    static final int CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * Number of chunks buffered per request before the producing command blocks
+     */
+    static final int BUFFERED_CHUNKS = 16;
+
+    /**
+     * Default for how long a request can wait for the client to consume buffered output before
+     * being aborted, matches the default idle timeout of the Jetty HTTP connector
+     */
+    private static final long DEFAULT_STALL_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static StreamingExecutor INSTANCE;
+
+    public static synchronized StreamingExecutor get() {
+        if (INSTANCE == null) {
+            final int threads = Integer.getInteger(THREADS_PROPERTY, 2 * Runtime.getRuntime()
+                    .availableProcessors());
+            final int queueSize = Integer.getInteger(QUEUE_SIZE_PROPERTY, 100);
+            final int repositoryLimit = Integer.getInteger(REPOSITORY_LIMIT_PROPERTY, threads);
+            final long stallTimeoutMillis = Long.getLong(STALL_TIMEOUT_PROPERTY,
+                    DEFAULT_STALL_TIMEOUT_MILLIS);
+            INSTANCE = new StreamingExecutor(threads, queueSize, repositoryLimit,
+                    stallTimeoutMillis);
+        }
+        return INSTANCE;
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private final int repositoryLimit;
+
+    private final long stallTimeoutMillis;
+
+    /**
+     * Number of requests running or waiting per repository name, only holds repositories with at
+     * least one such request, guarded by {@code this}
+     */
+    private final Map<String, Integer> repositoryLoad = new HashMap<>();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong aborted = new AtomicLong();
+
+    /**
+     * @param threads number of executor threads
+     * @param queueSize number of requests allowed to wait for an executor thread
+     * @param repositoryLimit number of requests allowed to run or wait concurrently for a single
+     *        repository
+     * @param stallTimeoutMillis milliseconds a request waits for the client to read its buffered
+     *        output before being aborted
+     */
+    public StreamingExecutor(final int threads, final int queueSize, final int repositoryLimit,
+            final long stallTimeoutMillis) {
+        checkArgument(threads > 0, "threads must be > 0");
+        checkArgument(queueSize > 0, "queueSize must be > 0");
+        checkArgument(repositoryLimit > 0, "repositoryLimit must be > 0");
+        checkArgument(stallTimeoutMillis > 0, "stallTimeoutMillis must be > 0");
+        this.repositoryLimit = repositoryLimit;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("GeoGIG web requests-%d").build();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules the creation and writing of a representation on the executor.
+     * <p>
+     * This method doesn't wait for {@code producer} to run, so the returned representation only
+     * carries {@code mediaType}; any other property sent as a response header, like the character
+     * set or the entity tag, is up to the caller to set, and has to match what {@code producer}'s
+     * representation writes.
+     *
+     * @param repositoryName identifies the repository the request runs against, for the purpose
+     *        of limiting and reporting the number of concurrent requests per repository
+     * @param mediaType the media type of the representation created by {@code producer}
+     * @param producer creates the representation to write. Since it runs on the executor, any
+     *        expensive work should be done either here or during the representation writing
+     * @return a representation that streams the output of {@code producer}'s representation as
+     *         it's being written
+     * @throws RejectedExecutionException if the executor queue is full or the maximum number of
+     *         concurrent requests for the repository has been reached
+     */
+    public Representation submit(final String repositoryName, final MediaType mediaType,
+            final Callable<? extends Representation> producer) throws RejectedExecutionException {
+        checkNotNull(repositoryName);
+        checkNotNull(mediaType);
+        checkNotNull(producer);
+
+        if (!acquire(repositoryName)) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(String.format(
+                    "Too many concurrent requests for repository %s (%d)", repositoryName,
+                    repositoryLimit));
+        }
+
+        final ChunkPipe pipe = new ChunkPipe(stallTimeoutMillis);
+        final Future<?> future;
+        try {
+            future = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Representation representation = producer.call();
+                        representation.write(pipe);
+                        pipe.close();
+                    } catch (Throwable e) {
+                        if (pipe.isCancelled()) {
+                            aborted.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                            LOGGER.log(Level.WARNING, "Error writing response", e);
+                        }
+                        pipe.fail(e);
+                    } finally {
+                        release(repositoryName);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(repositoryName);
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Server too busy, request queue is full ("
+                    + executor.getQueue().size() + ")", e);
+        }
+
+        return new OutputRepresentation(mediaType) {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                pipe.drainTo(out, future);
+            }
+        };
+    }
+
+    /**
+     * Takes one of the repository's slots
+     *
+     * @return {@code false} if the repository has reached its limit of concurrent requests
+     */
+    private synchronized boolean acquire(final String repositoryName) {
+        Integer load = repositoryLoad.get(repositoryName);
+        int current = load == null ? 0 : load.intValue();
+        if (current >= repositoryLimit) {
+            return false;
+        }
+        repositoryLoad.put(repositoryName, Integer.valueOf(current + 1));
+        return true;
+    }
+
+    /**
+     * Gives back one of the repository's slots, forgetting about the repository once it's idle
+     */
+    private synchronized void release(final String repositoryName) {
+        int current = repositoryLoad.get(repositoryName).intValue();
+        if (current == 1) {
+            repositoryLoad.remove(repositoryName);
+        } else {
+            repositoryLoad.put(repositoryName, Integer.valueOf(current - 1));
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for an executor thread
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of executor threads currently running a request
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getMaxThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getRepositoryLimit() {
+        return repositoryLimit;
+    }
+
+    /**
+     * @return the number of requests that finished, whether successfully or not
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return the number of requests rejected because a limit was exceeded
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of requests that failed while writing their response
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return the number of requests aborted because the client stopped reading the response
+     */
+    public long getAbortedCount() {
+        return aborted.get();
+    }
+
+    /**
+     * @return the number of requests running or waiting for each repository that has any, keyed
+     *         by the repository name given to {@link #submit}
+     */
+    public synchronized Map<String, Integer> getRepositoryLoad() {
+        return ImmutableMap.copyOf(repositoryLoad);
+    }
+
+    /**
+     * An output stream that hands over fixed size chunks to a reader thread through a bounded
+     * queue.
+     */
+    private static class ChunkPipe extends OutputStream {
+
+        private static final byte[] END_OF_STREAM = new byte[0];
+
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(
+                BUFFERED_CHUNKS);
+
+        private byte[] buffer = new byte[CHUNK_SIZE];
+
+        private int count;
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable failure;
+
+        private boolean closed;
+
+        private final long stallTimeoutMillis;
+
+        ChunkPipe(long stallTimeoutMillis) {
+            this.stallTimeoutMillis = stallTimeoutMillis;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                sendBuffer();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    sendBuffer();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Hands over the buffered bytes, if any, so that the client gets whatever has been written
+         * so far
+         */
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                sendBuffer();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                flush();
+                send(END_OF_STREAM);
+                closed = true;
+            }
+        }
+
+        /**
+         * Signals the reader the response can't be completed
+         */
+        public void fail(Throwable e) {
+            this.failure = e;
+            if (!cancelled) {
+                chunks.clear();
+                chunks.offer(END_OF_STREAM);
+            }
+        }
+
+        private void sendBuffer() throws IOException {
+            byte[] chunk;
+            if (count == buffer.length) {
+                chunk = buffer;
+                buffer = new byte[CHUNK_SIZE];
+            } else {
+                chunk = Arrays.copyOf(buffer, count);
+            }
+            count = 0;
+            send(chunk);
+        }
+
+        private void send(byte[] chunk) throws IOException {
+            final long deadline = System.currentTimeMillis() + stallTimeoutMillis;
+            try {
+                while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    if (cancelled) {
+                        throw new IOException("Client stopped reading the response");
+                    }
+                    if (System.currentTimeMillis() > deadline) {
+                        cancelled = true;
+                        throw new IOException(
+                                "Timed out waiting for the client to read the response");
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * Copies the chunks written by the producer to {@code out} until the end of the stream,
+         * cancelling the producer if writing to {@code out} fails
+         */
+        public void drainTo(OutputStream out, Future<?> producer) throws IOException {
+            try {
+                byte[] chunk;
+                while (true) {
+                    chunk = chunks.poll(100, TimeUnit.MILLISECONDS);
+                    if (chunk == null) {
+                        // the producer is done without signalling the end of the stream, it was
+                        // cancelled or aborted
+                        if (producer.isDone() && chunks.isEmpty()) {
+                            throw new IOException("Request aborted", failure);
+                        }
+                        continue;
+                    }
+                    if (chunk == END_OF_STREAM) {
+                        break;
+                    }
+                    out.write(chunk);
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                cancelled = true;
+                throw new IOException(e);
+            } catch (IOException | RuntimeException e) {
+                cancelled = true;
+                throw e;
+            }
+            if (failure != null) {
+                Throwables.propagateIfInstanceOf(failure, IOException.class);
+                throw new IOException(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import static org.locationtech.geogig.rest.Variants.JSON;
+import static org.locationtech.geogig.rest.Variants.XML;
+import static org.locationtech.geogig.rest.Variants.getVariantByExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.restlet.Context;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.resource.Representation;
+import org.restlet.resource.Resource;
+import org.restlet.resource.Variant;
+
+/**
+ * Resource for {@code /executor[.extension]}, reports the load of the {@link StreamingExecutor}
+ * web API requests run on: queue depth, active and rejected requests, and per repository load.
+ */
+public class StreamingExecutorResource extends Resource {
+
+    @Override
+    public void init(Context context, Request request, Response response) {
+        super.init(context, request, response);
+        List<Variant> variants = getVariants();
+        variants.add(XML);
+        variants.add(JSON);
+    }
+
+    @Override
+    public Variant getPreferredVariant() {
+        return getVariantByExtension(getRequest(), getVariants()).or(super.getPreferredVariant());
+    }
+
+    @Override
+    public Representation getRepresentation(Variant variant) {
+        final String rootPath = getRequest().getRootRef().toString();
+        return new StatusRepresentation(variant.getMediaType(), rootPath,
+                StreamingExecutor.get());
+    }
+
+    private static class StatusRepresentation extends JettisonRepresentation {
+
+        private final StreamingExecutor executor;
+
+        public StatusRepresentation(MediaType mediaType, String baseURL,
+                StreamingExecutor executor) {
+            super(mediaType, baseURL);
+            this.executor = executor;
+        }
+
+        @Override
+        protected void write(XMLStreamWriter w) throws XMLStreamException {
+            w.writeStartElement("executor");
+            element(w, "maxThreads", executor.getMaxThreads());
+            element(w, "activeCount", executor.getActiveCount());
+            element(w, "queueDepth", executor.getQueueDepth());
+            element(w, "completedCount", executor.getCompletedCount());
+            element(w, "rejectedCount", executor.getRejectedCount());
+            element(w, "failedCount", executor.getFailedCount());
+            element(w, "abortedCount", executor.getAbortedCount());
+            element(w, "repositoryLimit", executor.getRepositoryLimit());
+            w.writeStartElement("repositories");
+            for (Map.Entry<String, Integer> e : executor.getRepositoryLoad().entrySet()) {
+                w.writeStartElement("repository");
+                element(w, "name", e.getKey());
+                element(w, "load", e.getValue());
+                w.writeEndElement();
+            }
+            w.writeEndElement();
+            w.writeEndElement();
+        }
+    }
+}
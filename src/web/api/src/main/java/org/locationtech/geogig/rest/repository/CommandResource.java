@@ -20,9 +20,12 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
@@ -30,8 +33,12 @@ import javax.xml.stream.XMLStreamWriter;
 import org.codehaus.jettison.mapped.MappedNamespaceConvention;
 import org.codehaus.jettison.mapped.MappedXMLStreamWriter;
 import org.locationtech.geogig.api.GeoGIG;
+import org.locationtech.geogig.rest.ResponseCache;
 import org.locationtech.geogig.rest.RestletException;
+import org.locationtech.geogig.rest.StreamingExecutor;
 import org.locationtech.geogig.rest.WriterRepresentation;
+import org.locationtech.geogig.web.api.CacheKeyBuilder;
+import org.locationtech.geogig.web.api.CacheableCommand;
 import org.locationtech.geogig.web.api.CommandBuilder;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
@@ -41,12 +48,15 @@ import org.locationtech.geogig.web.api.ResponseWriter;
 import org.locationtech.geogig.web.api.StreamResponse;
 import org.locationtech.geogig.web.api.WebAPICommand;
 import org.restlet.Context;
+import org.restlet.data.CharacterSet;
 import org.restlet.data.Form;
 import org.restlet.data.MediaType;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
+import org.restlet.data.Tag;
 import org.restlet.resource.Representation;
 import org.restlet.resource.Resource;
+import org.restlet.resource.StringRepresentation;
 import org.restlet.resource.Variant;
 
 import com.google.common.base.Optional;
@@ -78,35 +88,135 @@ public class CommandResource extends Resource {
         return representation;
     }
 
+    /**
+     * Builds the command out of the request and hands its execution over to the
+     * {@link StreamingExecutor}, which runs it and streams its response from one of its own
+     * threads.
+     */
     private Representation runCommand(Variant variant, Request request) {
 
         final Optional<GeoGIG> geogig = getGeogig(request);
         Preconditions.checkState(geogig.isPresent());
 
-        Representation rep = null;
         WebAPICommand command = null;
         Form options = getRequest().getResourceRef().getQueryAsForm();
         String commandName = (String) getRequest().getAttributes().get("command");
-        MediaType format = resolveFormat(options, variant);
+        final MediaType format = resolveFormat(options, variant);
         try {
             ParameterSet params = new FormParams(options);
             command = CommandBuilder.build(commandName, params);
             assert command != null;
         } catch (CommandSpecException ex) {
-            rep = formatException(ex, format);
+            return formatException(ex, format);
         }
+
+        final WebAPICommand webCommand = command;
+        final String callback = getJSONPCallback();
+        final Optional<String> cacheKey = cacheKey(command, geogig.get(), format, callback);
+        Tag etag = null;
+        if (cacheKey.isPresent()) {
+            etag = ResponseCache.etag(cacheKey.get());
+            if (isNotModified(etag)) {
+                getResponse().setStatus(org.restlet.data.Status.REDIRECTION_NOT_MODIFIED);
+                Representation notModified = new StringRepresentation("", format);
+                notModified.setTag(etag);
+                return notModified;
+            }
+            Optional<Representation> cached = getCache().get(cacheKey.get(), format);
+            if (cached.isPresent()) {
+                cached.get().setTag(etag);
+                return cached.get();
+            }
+        }
+
+        Callable<Representation> producer = new Callable<Representation>() {
+            @Override
+            public Representation call() {
+                Representation rep;
+                try {
+                    RestletContext ctx = new RestletContext(geogig.get());
+                    webCommand.run(ctx);
+                    rep = ctx.getRepresentation(format, callback);
+                    if (cacheKey.isPresent()) {
+                        rep = getCache().caching(cacheKey.get(), rep);
+                    }
+                } catch (IllegalArgumentException ex) {
+                    rep = formatException(ex, format);
+                } catch (Exception ex) {
+                    rep = formatUnexpectedException(ex, format);
+                }
+                return rep;
+            }
+        };
+
+        final String repositoryName = geogig.get().getPlatform().pwd().getName();
+        try {
+            Representation representation = getExecutor().submit(repositoryName, format,
+                    producer);
+            // the command responses are written by WriterRepresentations in their default charset
+            representation.setCharacterSet(CharacterSet.UTF_8);
+            if (etag != null) {
+                representation.setTag(etag);
+            }
+            return representation;
+        } catch (RejectedExecutionException ex) {
+            getLogger().log(Level.INFO, ex.getMessage());
+            getResponse().setStatus(org.restlet.data.Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+            return formatError(ex.getMessage(), format);
+        }
+    }
+
+    /**
+     * @return the executor commands are run on
+     */
+    protected StreamingExecutor getExecutor() {
+        return StreamingExecutor.get();
+    }
+
+    /**
+     * @return the cache cacheable command responses are kept in
+     */
+    protected ResponseCache getCache() {
+        return ResponseCache.get();
+    }
+
+    /**
+     * Computes the key the response of the command is cached by, if the command is a
+     * {@link CacheableCommand}. The key also accounts for the output format, the JSONP callback
+     * and the repository, since two repositories may share the objects a response is computed
+     * from but not its refs, paths or remotes.
+     */
+    private Optional<String> cacheKey(WebAPICommand command, GeoGIG geogig, MediaType format,
+            @Nullable String callback) {
+        if (!(command instanceof CacheableCommand) || !getCache().isEnabled()) {
+            return Optional.absent();
+        }
+        Optional<String> key;
         try {
-            if (command != null) {
-                RestletContext ctx = new RestletContext(geogig.get());
-                command.run(ctx);
-                rep = ctx.getRepresentation(format, getJSONPCallback());
+            key = ((CacheableCommand) command).getCacheKey(new RestletContext(geogig));
+        } catch (RuntimeException e) {
+            // not cacheable, let the command report the error if any
+            return Optional.absent();
+        }
+        if (!key.isPresent()) {
+            return key;
+        }
+        String repository = geogig.getPlatform().pwd().getAbsolutePath();
+        return Optional.of(new CacheKeyBuilder(key.get()).add("repository", repository)
+                .add("format", format).add("callback", callback).build());
+    }
+
+    /**
+     * @return whether the request asks for the response only if its entity tag doesn't match the
+     *         given one, and it does
+     */
+    private boolean isNotModified(Tag etag) {
+        for (Tag tag : getRequest().getConditions().getNoneMatch()) {
+            if ("*".equals(tag.getName()) || etag.getName().equals(tag.getName())) {
+                return true;
             }
-        } catch (IllegalArgumentException ex) {
-            rep = formatException(ex, format);
-        } catch (Exception ex) {
-            rep = formatUnexpectedException(ex, format);
         }
-        return rep;
+        return false;
     }
 
     private Representation formatException(IllegalArgumentException ex, MediaType format) {
@@ -114,12 +224,15 @@ public class CommandResource extends Resource {
         if (logger.isLoggable(Level.FINE)) {
             logger.log(Level.FINE, "CommandSpecException", ex);
         }
+        return formatError(ex.getMessage(), format);
+    }
+
+    private Representation formatError(String message, MediaType format) {
         if (format == CSV_MEDIA_TYPE) {
-            return new StreamWriterRepresentation(format, StreamResponse.error(ex.getMessage()));
+            return new StreamWriterRepresentation(format, StreamResponse.error(message));
         }
-        return new JettisonRepresentation(format, CommandResponse.error(ex.getMessage()),
+        return new JettisonRepresentation(format, CommandResponse.error(message),
                 getJSONPCallback());
-
     }
 
     private Representation formatUnexpectedException(Exception ex, MediaType format) {
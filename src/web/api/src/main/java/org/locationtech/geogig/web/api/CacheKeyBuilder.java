@@ -0,0 +1,74 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web.api;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.plumbing.ResolveTreeish;
+import org.locationtech.geogig.api.plumbing.RevParse;
+
+import com.google.common.base.Optional;
+
+/**
+ * Builds the cache keys for {@link CacheableCommand}s out of the command name, the ids their
+ * arguments resolve to, and the rest of the arguments that affect their response.
+ * <p>
+ * Each value is length prefixed so that no two different sets of arguments can produce the same
+ * key.
+ */
+public final class CacheKeyBuilder {
+
+    private final StringBuilder key = new StringBuilder();
+
+    public CacheKeyBuilder(String commandName) {
+        key.append(commandName);
+    }
+
+    /**
+     * Adds a named argument to the key
+     */
+    public CacheKeyBuilder add(String name, @Nullable Object value) {
+        String s = String.valueOf(value);
+        key.append('&').append(name).append('=').append(s.length()).append(':').append(s);
+        return this;
+    }
+
+    public String build() {
+        return key.toString();
+    }
+
+    /**
+     * Resolves a ref spec to the id of the object it points to.
+     * 
+     * @return the object id, or absent if {@code refSpec} can't be resolved
+     */
+    public static Optional<ObjectId> resolve(Context geogig, String refSpec) {
+        try {
+            return geogig.command(RevParse.class).setRefSpec(refSpec).call();
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Resolves a tree-ish ref spec to the id of the tree it points to.
+     * 
+     * @return the tree id, or absent if {@code treeIsh} can't be resolved
+     */
+    public static Optional<ObjectId> resolveTreeish(Context geogig, String treeIsh) {
+        try {
+            return geogig.command(ResolveTreeish.class).setTreeish(treeIsh).call();
+        } catch (IllegalArgumentException e) {
+            return Optional.absent();
+        }
+    }
+}
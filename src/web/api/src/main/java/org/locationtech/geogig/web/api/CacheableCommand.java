@@ -0,0 +1,30 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web.api;
+
+import com.google.common.base.Optional;
+
+/**
+ * A {@link WebAPICommand} whose response is fully determined by the immutable repository objects
+ * its arguments resolve to, and hence can be cached by the ids of those objects.
+ */
+public interface CacheableCommand extends WebAPICommand {
+
+    /**
+     * Resolves the command arguments to the ids of the objects its response would be computed
+     * from, without actually running the command.
+     * 
+     * @param context the context the command is going to run on
+     * @return a key that identifies the command response given the current state of the
+     *         repository, as built by a {@link CacheKeyBuilder}; or absent if the response can't
+     *         be cached
+     */
+    Optional<String> getCacheKey(CommandContext context);
+}
@@ -176,6 +176,7 @@ public class CommandBuilder {
         command.setUntilTime(options.getFirstValue("untilTime"));
         command.setPage(parseInt(options, "page", 0));
         command.setElementsPerPage(parseInt(options, "show", 30));
+        command.setCursor(options.getFirstValue("cursor", null));
         command.setFirstParentOnly(Boolean.valueOf(options
                 .getFirstValue("firstParentOnly", "false")));
         command.setCountChanges(Boolean.valueOf(options.getFirstValue("countChanges", "false")));
@@ -244,6 +245,7 @@ public class CommandBuilder {
                 "showGeometryChanges", "false")));
         command.setPage(parseInt(options, "page", 0));
         command.setElementsPerPage(parseInt(options, "show", 30));
+        command.setCursor(options.getFirstValue("cursor", null));
         return command;
     }
 
@@ -0,0 +1,147 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web.api;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Utility class to encode and decode the opaque continuation cursors returned by paged commands in
+ * the {@code nextCursor} element of their responses, and accepted back through their
+ * {@code cursor} parameter to resume listing right where the previous page ended.
+ * <p>
+ * A cursor encodes the position of the walk performed by the command (the pending commits of a
+ * history walk, or the path of the last reported difference of a diff), so that fetching a page
+ * costs the same no matter how deep into the results it is. Cursors are url safe strings with no
+ * meaning to the client.
+ */
+public final class PagingCursor {
+
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    private static final String LOG_PREFIX = "log:";
+
+    private static final String DIFF_PREFIX = "diff:";
+
+    private static final String LIMIT_SEPARATOR = ";";
+
+    private PagingCursor() {
+        // utility class
+    }
+
+    /**
+     * @param pending the ids of the commits pending to be visited by a history walk
+     * @param remainingLimit the number of commits the walk may still return, or {@code null} if
+     *        unlimited
+     * @return the cursor for the given history walk position
+     */
+    public static String encodeCommits(List<ObjectId> pending, @Nullable Integer remainingLimit) {
+        String value = LOG_PREFIX + Joiner.on(',').join(pending);
+        if (remainingLimit != null) {
+            value += LIMIT_SEPARATOR + remainingLimit;
+        }
+        return encode(value);
+    }
+
+    /**
+     * @param cursor a cursor as returned by {@link #encodeCommits(List, Integer)}
+     * @return the ids of the commits pending to be visited by the history walk
+     * @throws CommandSpecException if {@code cursor} is not a valid history walk cursor
+     */
+    public static ImmutableList<ObjectId> decodeCommits(String cursor) throws CommandSpecException {
+        String decoded = decode(cursor, LOG_PREFIX);
+        int limitIndex = decoded.indexOf(LIMIT_SEPARATOR);
+        if (limitIndex > -1) {
+            decoded = decoded.substring(0, limitIndex);
+        }
+        ImmutableList.Builder<ObjectId> ids = ImmutableList.builder();
+        try {
+            for (String id : Splitter.on(',').omitEmptyStrings().split(decoded)) {
+                ids.add(ObjectId.valueOf(id));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new CommandSpecException("Invalid cursor: " + cursor);
+        }
+        return ids.build();
+    }
+
+    /**
+     * @param cursor a cursor as returned by {@link #encodeCommits(List, Integer)}
+     * @return the number of commits the history walk may still return, or absent if unlimited
+     * @throws CommandSpecException if {@code cursor} is not a valid history walk cursor
+     */
+    public static Optional<Integer> decodeCommitsLimit(String cursor)
+            throws CommandSpecException {
+        String decoded = decode(cursor, LOG_PREFIX);
+        int limitIndex = decoded.indexOf(LIMIT_SEPARATOR);
+        if (limitIndex == -1) {
+            return Optional.absent();
+        }
+        try {
+            int limit = Integer.parseInt(decoded.substring(limitIndex + 1));
+            if (limit < 0) {
+                throw new CommandSpecException("Invalid cursor: " + cursor);
+            }
+            return Optional.of(Integer.valueOf(limit));
+        } catch (NumberFormatException e) {
+            throw new CommandSpecException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * @param entry the last diff entry reported
+     * @return the cursor to resume a diff right after {@code entry}
+     */
+    public static String encodeDiff(DiffEntry entry) {
+        String path = entry.newPath() == null ? entry.oldPath() : entry.newPath();
+        return encode(DIFF_PREFIX + path);
+    }
+
+    /**
+     * @param cursor a cursor as returned by {@link #encodeDiff(DiffEntry)}
+     * @return the path of the last diff entry reported, to resume the diff right after it
+     * @throws CommandSpecException if {@code cursor} is not a valid diff cursor
+     */
+    public static String decodeDiff(String cursor) throws CommandSpecException {
+        String path = decode(cursor, DIFF_PREFIX);
+        if (path.isEmpty()) {
+            throw new CommandSpecException("Invalid cursor: " + cursor);
+        }
+        return path;
+    }
+
+    private static String encode(String value) {
+        return ENCODING.encode(value.getBytes(Charsets.UTF_8));
+    }
+
+    private static String decode(String cursor, String prefix) throws CommandSpecException {
+        String decoded;
+        try {
+            decoded = new String(ENCODING.decode(cursor), Charsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CommandSpecException("Invalid cursor: " + cursor);
+        }
+        if (!decoded.startsWith(prefix)) {
+            throw new CommandSpecException("Invalid cursor: " + cursor);
+        }
+        return decoded.substring(prefix.length());
+    }
+}
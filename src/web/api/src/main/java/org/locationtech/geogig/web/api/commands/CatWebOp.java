@@ -18,11 +18,14 @@ import org.locationtech.geogig.api.RevObject;
 import org.locationtech.geogig.api.RevTag;
 import org.locationtech.geogig.api.RevTree;
 import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.CacheKeyBuilder;
+import org.locationtech.geogig.web.api.CacheableCommand;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.CommandSpecException;
 import org.locationtech.geogig.web.api.ResponseWriter;
 
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 /**
@@ -31,7 +34,7 @@ import com.google.common.base.Preconditions;
  * Note: This class does not use the internal CatObject implementation.
  */
 
-public class CatWebOp extends AbstractWebAPICommand {
+public class CatWebOp extends AbstractWebAPICommand implements CacheableCommand {
 
     private ObjectId object;
 
@@ -44,6 +47,17 @@ public class CatWebOp extends AbstractWebAPICommand {
         this.object = object;
     }
 
+    @Override
+    public Optional<String> getCacheKey(CommandContext context) {
+        if (object == null || object.isNull()) {
+            return Optional.absent();
+        }
+        if (!this.getCommandLocator(context).stagingDatabase().exists(object)) {
+            return Optional.absent();
+        }
+        return Optional.of(new CacheKeyBuilder("cat").add("objectid", object).build());
+    }
+
     /**
      * Runs the command and builds the appropriate response
      * 
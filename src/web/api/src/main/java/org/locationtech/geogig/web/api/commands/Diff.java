@@ -12,21 +12,29 @@ package org.locationtech.geogig.web.api.commands;
 import java.util.Iterator;
 
 import org.locationtech.geogig.api.Context;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.api.porcelain.DiffOp;
 import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.CacheKeyBuilder;
+import org.locationtech.geogig.web.api.CacheableCommand;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.CommandSpecException;
+import org.locationtech.geogig.web.api.PagingCursor;
 import org.locationtech.geogig.web.api.ResponseWriter;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.ForwardingIterator;
+
 /**
  * Interface for the Diff operation in GeoGig.
  * 
  * Web interface for {@link DiffOp}
  */
 
-public class Diff extends AbstractWebAPICommand {
+public class Diff extends AbstractWebAPICommand implements CacheableCommand {
     private String oldRefSpec;
 
     private String newRefSpec;
@@ -39,6 +47,8 @@ public class Diff extends AbstractWebAPICommand {
 
     private int elementsPerPage;
 
+    private String cursor;
+
     /**
      * Mutator for the oldRefSpec variable
      * 
@@ -93,6 +103,37 @@ public class Diff extends AbstractWebAPICommand {
         this.elementsPerPage = elementsPerPage;
     }
 
+    /**
+     * Mutator for the cursor variable
+     * 
+     * @param cursor - the {@code nextCursor} returned by the previous page, to resume the diff right
+     *        after it instead of skipping {@code page} pages
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * The diff response is cacheable by the ids of the trees being compared.
+     */
+    @Override
+    public Optional<String> getCacheKey(CommandContext context) {
+        if (oldRefSpec == null || oldRefSpec.trim().isEmpty()) {
+            return Optional.absent();
+        }
+        final Context geogig = this.getCommandLocator(context);
+        Optional<ObjectId> oldTree = CacheKeyBuilder.resolveTreeish(geogig, oldRefSpec);
+        Optional<ObjectId> newTree = CacheKeyBuilder.resolveTreeish(geogig,
+                newRefSpec == null ? Ref.WORK_HEAD : newRefSpec);
+        if (!oldTree.isPresent() || !newTree.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.of(new CacheKeyBuilder("diff").add("old", oldTree.get())
+                .add("new", newTree.get()).add("pathFilter", pathFilter)
+                .add("showGeometryChanges", showGeometryChanges).add("page", page)
+                .add("show", elementsPerPage).add("cursor", cursor).build());
+    }
+
     /**
      * Runs the command and builds the appropriate response
      * 
@@ -108,20 +149,58 @@ public class Diff extends AbstractWebAPICommand {
 
         final Context geogig = this.getCommandLocator(context);
 
-        final Iterator<DiffEntry> diff = geogig.command(DiffOp.class).setOldVersion(oldRefSpec)
-                .setNewVersion(newRefSpec).setFilter(pathFilter).call();
+        final DiffOp op = geogig.command(DiffOp.class).setOldVersion(oldRefSpec)
+                .setNewVersion(newRefSpec).setFilter(pathFilter);
+        final int startPage;
+        if (cursor == null) {
+            startPage = page;
+        } else {
+            op.setResumeAfter(PagingCursor.decodeDiff(cursor));
+            startPage = 0;
+        }
+
+        final LastEntryIterator diff = new LastEntryIterator(op.call());
 
         context.setResponseContent(new CommandResponse() {
             @Override
             public void write(ResponseWriter out) throws Exception {
                 out.start();
                 if (showGeometryChanges) {
-                    out.writeGeometryChanges(geogig, diff, page, elementsPerPage);
+                    out.writeGeometryChanges(geogig, diff, startPage, elementsPerPage);
                 } else {
-                    out.writeDiffEntries("diff", page * elementsPerPage, elementsPerPage, diff);
+                    out.writeDiffEntries("diff", startPage * elementsPerPage, elementsPerPage,
+                            diff);
+                }
+                if (diff.hasNext() && diff.last != null) {
+                    out.writeElement("nextCursor", PagingCursor.encodeDiff(diff.last));
                 }
                 out.finish();
             }
         });
     }
+
+    /**
+     * Keeps track of the last diff entry consumed, which is where the next page shall resume from.
+     */
+    private static class LastEntryIterator extends ForwardingIterator<DiffEntry> {
+
+        private final Iterator<DiffEntry> delegate;
+
+        private DiffEntry last;
+
+        LastEntryIterator(Iterator<DiffEntry> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected Iterator<DiffEntry> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public DiffEntry next() {
+            last = super.next();
+            return last;
+        }
+    }
 }
@@ -27,6 +27,8 @@ import org.locationtech.geogig.api.plumbing.diff.FeatureDiff;
 import org.locationtech.geogig.api.plumbing.diff.GenericAttributeDiffImpl;
 import org.locationtech.geogig.api.plumbing.diff.GeometryAttributeDiff;
 import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.CacheKeyBuilder;
+import org.locationtech.geogig.web.api.CacheableCommand;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.CommandSpecException;
@@ -45,7 +47,7 @@ import com.vividsolutions.jts.geom.Geometry;
  * Web interface for {@link FeatureDiff}
  */
 
-public class FeatureDiffWeb extends AbstractWebAPICommand {
+public class FeatureDiffWeb extends AbstractWebAPICommand implements CacheableCommand {
 
     private String path;
 
@@ -112,6 +114,24 @@ public class FeatureDiffWeb extends AbstractWebAPICommand {
         }
     }
 
+    /**
+     * The feature diff is cacheable by the ids of the trees being compared.
+     */
+    @Override
+    public Optional<String> getCacheKey(CommandContext context) {
+        if (path == null || newTreeish == null || oldTreeish == null) {
+            return Optional.absent();
+        }
+        final Context geogig = this.getCommandLocator(context);
+        Optional<ObjectId> newTree = CacheKeyBuilder.resolveTreeish(geogig, newTreeish);
+        Optional<ObjectId> oldTree = CacheKeyBuilder.resolveTreeish(geogig, oldTreeish);
+        if (!newTree.isPresent() || !oldTree.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.of(new CacheKeyBuilder("featurediff").add("path", path)
+                .add("new", newTree.get()).add("old", oldTree.get()).add("all", all).build());
+    }
+
     /**
      * Runs the command and builds the appropriate response
      * 
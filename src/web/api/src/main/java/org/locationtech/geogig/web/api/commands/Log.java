@@ -18,6 +18,9 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+
 import org.geotools.util.Range;
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.GeoGIG;
@@ -39,6 +42,7 @@ import org.locationtech.geogig.web.api.AbstractWebAPICommand;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.CommandSpecException;
+import org.locationtech.geogig.web.api.PagingCursor;
 import org.locationtech.geogig.web.api.ResponseWriter;
 import org.locationtech.geogig.web.api.StreamResponse;
 import org.opengis.feature.type.PropertyDescriptor;
@@ -46,6 +50,7 @@ import org.opengis.feature.type.PropertyDescriptor;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ForwardingIterator;
 import com.google.common.collect.Iterators;
 
 /**
@@ -73,6 +78,8 @@ public class Log extends AbstractWebAPICommand {
 
     private int elementsPerPage;
 
+    private String cursor;
+
     boolean firstParentOnly;
 
     boolean countChanges = false;
@@ -162,6 +169,16 @@ public class Log extends AbstractWebAPICommand {
         this.elementsPerPage = elementsPerPage;
     }
 
+    /**
+     * Mutator for the cursor variable
+     * 
+     * @param cursor - the {@code nextCursor} returned by the previous page, to resume listing right
+     *        after it instead of skipping {@code page} pages
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     /**
      * Mutator for the firstParentOnly variable
      * 
@@ -211,13 +228,21 @@ public class Log extends AbstractWebAPICommand {
     public void run(final CommandContext context) {
         final Context geogig = this.getCommandLocator(context);
 
-        LogOp op = geogig.command(LogOp.class).setFirstParentOnly(firstParentOnly);
+        final LogOp op = geogig.command(LogOp.class).setFirstParentOnly(firstParentOnly);
 
-        if (skip != null) {
-            op.setSkip(skip.intValue());
+        // when resuming, the cursor carries the position of the walk and the remaining limit
+        final Integer walkLimit;
+        if (cursor == null) {
+            walkLimit = limit;
+            if (skip != null) {
+                op.setSkip(skip.intValue());
+            }
+        } else {
+            op.setResumeFrom(PagingCursor.decodeCommits(cursor));
+            walkLimit = PagingCursor.decodeCommitsLimit(cursor).orNull();
         }
-        if (limit != null) {
-            op.setLimit(limit.intValue());
+        if (walkLimit != null) {
+            op.setLimit(walkLimit.intValue());
         }
 
         if (this.sinceTime != null || this.untilTime != null) {
@@ -252,9 +277,27 @@ public class Log extends AbstractWebAPICommand {
             }
         }
 
-        final Iterator<RevCommit> log = op.call();
+        final int[] walked = new int[1];
+        final Iterator<RevCommit> log = new ForwardingIterator<RevCommit>() {
+
+            private final Iterator<RevCommit> walk = op.call();
 
-        Iterators.advance(log, page * elementsPerPage);
+            @Override
+            protected Iterator<RevCommit> delegate() {
+                return walk;
+            }
+
+            @Override
+            public RevCommit next() {
+                RevCommit next = super.next();
+                walked[0]++;
+                return next;
+            }
+        };
+
+        if (cursor == null) {
+            Iterators.advance(log, page * elementsPerPage);
+        }
 
         if (countChanges) {
             final String pathFilter;
@@ -304,6 +347,7 @@ public class Log extends AbstractWebAPICommand {
                 public void write(ResponseWriter out) throws Exception {
                     out.start();
                     out.writeCommitsWithChangeCounts(summarizedLog, elementsPerPage);
+                    writeNextCursor(out, op, log, remaining(walkLimit, walked[0]));
                     out.finish();
                 }
             });
@@ -327,6 +371,7 @@ public class Log extends AbstractWebAPICommand {
                 public void write(ResponseWriter out) throws Exception {
                     out.start();
                     out.writeCommits(log, elementsPerPage, rangeLog);
+                    writeNextCursor(out, op, log, remaining(walkLimit, walked[0]));
                     out.finish();
                 }
             });
@@ -334,6 +379,19 @@ public class Log extends AbstractWebAPICommand {
 
     }
 
+    private static void writeNextCursor(ResponseWriter out, LogOp op, Iterator<RevCommit> log,
+            @Nullable Integer remainingLimit) throws XMLStreamException {
+        if (log.hasNext()) {
+            out.writeElement("nextCursor",
+                    PagingCursor.encodeCommits(op.getResumePoint(), remainingLimit));
+        }
+    }
+
+    @Nullable
+    private static Integer remaining(@Nullable Integer walkLimit, int walked) {
+        return walkLimit == null ? null : Integer.valueOf(walkLimit.intValue() - walked);
+    }
+
     private void writeCSV(GeoGIG geogig, Writer out, Iterator<RevCommit> log) throws Exception {
         String response = "ChangeType,FeatureId,CommitId,Parent CommitIds,Author Name,Author Email,Author Commit Time,Committer Name,Committer Email,Committer Commit Time,Commit Message";
         out.write(response);
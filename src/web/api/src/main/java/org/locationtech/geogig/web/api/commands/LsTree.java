@@ -14,18 +14,24 @@ import java.util.List;
 
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.NodeRef;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
 import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.CacheKeyBuilder;
+import org.locationtech.geogig.web.api.CacheableCommand;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.ResponseWriter;
 
+import com.google.common.base.Optional;
+
 /**
  * Interface for the Ls-Tree operation in GeoGig
  * 
  * Web interface for {@link LsTreeOp}
  */
-public class LsTree extends AbstractWebAPICommand {
+public class LsTree extends AbstractWebAPICommand implements CacheableCommand {
 
     boolean includeTrees;
 
@@ -82,6 +88,32 @@ public class LsTree extends AbstractWebAPICommand {
         this.refList = refList;
     }
 
+    /**
+     * The listing is cacheable by the id of the object the reference is relative to: the tree-ish
+     * before the {@code :} for {@code <tree-ish>:<path>} references, the working tree for paths,
+     * or the referred object itself otherwise.
+     */
+    @Override
+    public Optional<String> getCacheKey(CommandContext context) {
+        String ref = Ref.WORK_HEAD;
+        if (refList != null && !refList.isEmpty()) {
+            ref = refList.get(0);
+        }
+        final Context geogig = this.getCommandLocator(context);
+        final int pathSeparator = ref.lastIndexOf(':');
+        Optional<ObjectId> root = CacheKeyBuilder.resolve(geogig,
+                pathSeparator == -1 ? ref : ref.substring(0, pathSeparator));
+        if (!root.isPresent()) {
+            root = CacheKeyBuilder.resolve(geogig, Ref.WORK_HEAD);
+        }
+        if (!root.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.of(new CacheKeyBuilder("ls-tree").add("root", root.get())
+                .add("ref", ref).add("includeTrees", includeTrees).add("onlyTrees", onlyTrees)
+                .add("recursive", recursive).add("verbose", verbose).build());
+    }
+
     /**
      * Runs the command and builds the appropriate response
      * 
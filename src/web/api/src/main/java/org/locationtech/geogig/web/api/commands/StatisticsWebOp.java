@@ -17,6 +17,7 @@ import org.geotools.util.Range;
 import org.locationtech.geogig.api.Context;
 import org.locationtech.geogig.api.NodeRef;
 import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.Ref;
 import org.locationtech.geogig.api.RevCommit;
 import org.locationtech.geogig.api.RevPerson;
 import org.locationtech.geogig.api.plumbing.LsTreeOp;
@@ -26,6 +27,8 @@ import org.locationtech.geogig.api.plumbing.diff.DiffEntry;
 import org.locationtech.geogig.api.porcelain.DiffOp;
 import org.locationtech.geogig.api.porcelain.LogOp;
 import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.CacheKeyBuilder;
+import org.locationtech.geogig.web.api.CacheableCommand;
 import org.locationtech.geogig.web.api.CommandContext;
 import org.locationtech.geogig.web.api.CommandResponse;
 import org.locationtech.geogig.web.api.ResponseWriter;
@@ -38,7 +41,7 @@ import com.google.common.collect.Lists;
  * List certain statistics of repository.
  */
 
-public class StatisticsWebOp extends AbstractWebAPICommand {
+public class StatisticsWebOp extends AbstractWebAPICommand implements CacheableCommand {
 
     String path;
 
@@ -58,6 +61,32 @@ public class StatisticsWebOp extends AbstractWebAPICommand {
         this.until = until;
     }
 
+    /**
+     * The statistics are cacheable by the id of the commit the history is computed from, the
+     * working tree the feature type sizes are computed from, and the resolved {@code since} time.
+     */
+    @Override
+    public Optional<String> getCacheKey(CommandContext context) {
+        final Context geogig = this.getCommandLocator(context);
+        Optional<ObjectId> untilCommit = CacheKeyBuilder.resolve(geogig, until == null ? Ref.HEAD
+                : until);
+        Optional<ObjectId> workingTree = CacheKeyBuilder.resolve(geogig, Ref.WORK_HEAD);
+        if (!untilCommit.isPresent() || !workingTree.isPresent()) {
+            return Optional.absent();
+        }
+        Long sinceTime = null;
+        if (since != null && !since.trim().isEmpty()) {
+            try {
+                sinceTime = geogig.command(ParseTimestamp.class).setString(since).call();
+            } catch (IllegalArgumentException e) {
+                return Optional.absent();
+            }
+        }
+        return Optional.of(new CacheKeyBuilder("statistics").add("until", untilCommit.get())
+                .add("workingTree", workingTree.get()).add("path", path)
+                .add("since", sinceTime).build());
+    }
+
     /**
      * Runs the command and builds the appropriate response
      * 
@@ -0,0 +1,212 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.restlet.data.MediaType;
+import org.restlet.data.Tag;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Strings;
+
+public class ResponseCacheTest extends Assert {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMissThenHit() throws Exception {
+        ResponseCache cache = new ResponseCache(1024 * 1024, 1024, null, 0);
+        assertTrue(cache.isEnabled());
+
+        assertFalse(cache.get("key", MediaType.APPLICATION_JSON).isPresent());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+
+        Representation caching = cache.caching("key", new BodyRepresentation("response"));
+        assertEquals(MediaType.APPLICATION_JSON, caching.getMediaType());
+        assertEquals("response", write(caching));
+
+        Optional<Representation> cached = cache.get("key", MediaType.APPLICATION_JSON);
+        assertTrue(cached.isPresent());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(MediaType.APPLICATION_JSON, cached.get().getMediaType());
+        assertEquals(ResponseCache.etag("key").getName(), cached.get().getTag().getName());
+        assertEquals("response", write(cached.get()));
+
+        // other keys are not affected
+        assertFalse(cache.get("other", MediaType.APPLICATION_JSON).isPresent());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testNotWrittenNotCached() throws Exception {
+        ResponseCache cache = new ResponseCache(1024 * 1024, 1024, null, 0);
+        cache.caching("key", new BodyRepresentation("response"));
+        assertFalse(cache.get("key", MediaType.APPLICATION_JSON).isPresent());
+    }
+
+    @Test
+    public void testFailedWriteNotCached() throws Exception {
+        ResponseCache cache = new ResponseCache(1024 * 1024, 1024, null, 0);
+        Representation failing = new OutputRepresentation(MediaType.APPLICATION_JSON) {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                out.write("partial".getBytes("UTF-8"));
+                throw new IOException("failed");
+            }
+        };
+        try {
+            write(cache.caching("key", failing));
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertFalse(cache.get("key", MediaType.APPLICATION_JSON).isPresent());
+    }
+
+    @Test
+    public void testMaxEntryBytes() throws Exception {
+        ResponseCache cache = new ResponseCache(1024 * 1024, 100, null, 0);
+
+        final String big = Strings.repeat("a", 101);
+        // bigger responses are still written in full, but not cached
+        assertEquals(big, write(cache.caching("big", new BodyRepresentation(big))));
+        assertFalse(cache.get("big", MediaType.APPLICATION_JSON).isPresent());
+
+        final String max = Strings.repeat("b", 100);
+        assertEquals(max, write(cache.caching("max", new BodyRepresentation(max))));
+        Optional<Representation> cached = cache.get("max", MediaType.APPLICATION_JSON);
+        assertTrue(cached.isPresent());
+        assertEquals(max, write(cached.get()));
+    }
+
+    @Test
+    public void testSpillAndReload() throws Exception {
+        final File spillDirectory = new File(folder.getRoot(), "spill");
+        ResponseCache cache = new ResponseCache(4000, 1000, spillDirectory, 1024 * 1024);
+
+        final int count = 200;
+        for (int i = 0; i < count; i++) {
+            write(cache.caching(key(i), new BodyRepresentation(body(i))));
+        }
+        final long spilled = cache.getSpilledCount();
+        assertTrue(spilled > 0);
+        assertTrue(spillDirectory.list().length > 0);
+
+        // find a response that's been evicted from memory
+        int evicted = -1;
+        for (int i = 0; i < count && evicted == -1; i++) {
+            if (spillFile(spillDirectory, i).exists()) {
+                evicted = i;
+            }
+        }
+        assertTrue(evicted != -1);
+        Optional<Representation> reloaded = cache.get(key(evicted), MediaType.APPLICATION_JSON);
+        assertTrue(reloaded.isPresent());
+        assertEquals(body(evicted), write(reloaded.get()));
+        assertEquals(ResponseCache.etag(key(evicted)).getName(), reloaded.get().getTag()
+                .getName());
+        // it's moved back to memory
+        assertFalse(spillFile(spillDirectory, evicted).exists());
+
+        // nothing's lost
+        for (int i = 0; i < count; i++) {
+            Optional<Representation> cached = cache.get(key(i), MediaType.APPLICATION_JSON);
+            assertTrue(key(i), cached.isPresent());
+            assertEquals(body(i), write(cached.get()));
+        }
+        assertEquals(count + 1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testSpillLimit() throws Exception {
+        final File spillDirectory = new File(folder.getRoot(), "spill");
+        ResponseCache cache = new ResponseCache(4000, 1000, spillDirectory, 2000);
+
+        final int count = 200;
+        for (int i = 0; i < count; i++) {
+            write(cache.caching(key(i), new BodyRepresentation(body(i))));
+        }
+        long spillBytes = 0;
+        for (File file : spillDirectory.listFiles()) {
+            spillBytes += file.length();
+        }
+        assertTrue("spilled bytes: " + spillBytes, spillBytes <= 2000);
+        // the oldest responses are discarded
+        assertFalse(cache.get(key(0), MediaType.APPLICATION_JSON).isPresent());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        ResponseCache cache = new ResponseCache(0, 1024, null, 0);
+        assertFalse(cache.isEnabled());
+
+        Representation rep = new BodyRepresentation("response");
+        assertSame(rep, cache.caching("key", rep));
+        write(rep);
+        assertFalse(cache.get("key", MediaType.APPLICATION_JSON).isPresent());
+    }
+
+    @Test
+    public void testEtag() {
+        Tag etag = ResponseCache.etag("key");
+        assertFalse(etag.isWeak());
+        assertEquals(etag.getName(), ResponseCache.etag("key").getName());
+        assertFalse(etag.getName().equals(ResponseCache.etag("key2").getName()));
+    }
+
+    private static String key(int i) {
+        return "key" + i;
+    }
+
+    /**
+     * @return a 100 bytes response
+     */
+    private static String body(int i) {
+        return Strings.padEnd("response" + i, 100, '.');
+    }
+
+    private static File spillFile(File spillDirectory, int i) {
+        return new File(spillDirectory, ResponseCache.etag(key(i)).getName());
+    }
+
+    private static String write(Representation rep) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rep.write(out);
+        return out.toString("UTF-8");
+    }
+
+    private static class BodyRepresentation extends OutputRepresentation {
+
+        private final String body;
+
+        BodyRepresentation(String body) {
+            super(MediaType.APPLICATION_JSON);
+            this.body = body;
+        }
+
+        @Override
+        public void write(OutputStream out) throws IOException {
+            out.write(body.getBytes("UTF-8"));
+        }
+    }
+}
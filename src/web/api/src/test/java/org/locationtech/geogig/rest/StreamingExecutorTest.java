@@ -0,0 +1,321 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest;
+
+import static org.locationtech.geogig.rest.StreamingExecutor.BUFFERED_CHUNKS;
+import static org.locationtech.geogig.rest.StreamingExecutor.CHUNK_SIZE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.restlet.data.MediaType;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+
+import com.google.common.collect.ImmutableMap;
+
+public class StreamingExecutorTest extends Assert {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Released when a test finishes, so that no producer outlives it
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void testStreamsProducerOutput() throws Exception {
+        StreamingExecutor executor = new StreamingExecutor(2, 2, 2, TIMEOUT_MILLIS);
+        final int size = 10 * CHUNK_SIZE + 123;
+        Producer producer = new Producer(size, null);
+
+        Representation rep = executor.submit("repo", MediaType.APPLICATION_OCTET_STREAM,
+                producer);
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, rep.getMediaType());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rep.write(out);
+        assertContent(size, out.toByteArray());
+        awaitIdle(executor);
+        assertEquals(0, executor.getFailedCount());
+        assertEquals(0, executor.getAbortedCount());
+    }
+
+    @Test
+    public void testSubmitDoesNotWaitForProducer() throws Exception {
+        StreamingExecutor executor = new StreamingExecutor(2, 2, 2, TIMEOUT_MILLIS);
+        final CountDownLatch called = new CountDownLatch(1);
+        Callable<Representation> producer = new Callable<Representation>() {
+            @Override
+            public Representation call() throws Exception {
+                called.countDown();
+                release.await();
+                return new Producer(10, null).call();
+            }
+        };
+
+        Representation rep = executor.submit("repo", MediaType.APPLICATION_JSON, producer);
+        assertNotNull(rep);
+        assertTrue(called.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(ImmutableMap.of("repo", 1), executor.getRepositoryLoad());
+
+        release.countDown();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rep.write(out);
+        assertContent(10, out.toByteArray());
+        awaitIdle(executor);
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        StreamingExecutor executor = new StreamingExecutor(2, 2, 2, TIMEOUT_MILLIS);
+        final int size = 100 * CHUNK_SIZE;
+        Producer producer = new Producer(size, null);
+
+        Representation rep = executor.submit("repo", MediaType.APPLICATION_OCTET_STREAM,
+                producer);
+
+        // the producer blocks once the buffered chunks are full
+        final long maxBuffered = (BUFFERED_CHUNKS + 2) * CHUNK_SIZE;
+        long written = -1;
+        while (written != producer.written.get()) {
+            written = producer.written.get();
+            Thread.sleep(200);
+        }
+        assertTrue(written > 0);
+        assertTrue("written: " + written, written <= maxBuffered);
+        assertEquals(ImmutableMap.of("repo", 1), executor.getRepositoryLoad());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rep.write(out);
+        assertContent(size, out.toByteArray());
+        awaitIdle(executor);
+    }
+
+    @Test
+    public void testStallTimeout() throws Exception {
+        StreamingExecutor executor = new StreamingExecutor(2, 2, 2, 200);
+        Producer producer = new Producer(100 * CHUNK_SIZE, null);
+
+        Representation rep = executor.submit("repo", MediaType.APPLICATION_OCTET_STREAM,
+                producer);
+
+        // nobody reads the response
+        awaitAborted(executor, 1);
+        awaitIdle(executor);
+        assertEquals(0, executor.getFailedCount());
+        assertTrue(producer.written.get() < 100 * CHUNK_SIZE);
+
+        try {
+            rep.write(new ByteArrayOutputStream());
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("aborted"));
+        }
+    }
+
+    @Test
+    public void testClientDisconnectCancelsProducer() throws Exception {
+        StreamingExecutor executor = new StreamingExecutor(2, 2, 2, TIMEOUT_MILLIS);
+        Producer producer = new Producer(100 * CHUNK_SIZE, null);
+
+        Representation rep = executor.submit("repo", MediaType.APPLICATION_OCTET_STREAM,
+                producer);
+
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        try {
+            rep.write(disconnected);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("Broken pipe", e.getMessage());
+        }
+        // the producer gives up well before the stall timeout
+        awaitAborted(executor, 1);
+        awaitIdle(executor);
+        assertEquals(0, executor.getFailedCount());
+        assertTrue(producer.written.get() < 100 * CHUNK_SIZE);
+    }
+
+    @Test
+    public void testProducerFailure() throws Exception {
+        StreamingExecutor executor = new StreamingExecutor(2, 2, 2, TIMEOUT_MILLIS);
+        Producer producer = new Producer(4 * CHUNK_SIZE, new IllegalStateException("failed"));
+
+        Representation rep = executor.submit("repo", MediaType.APPLICATION_OCTET_STREAM,
+                producer);
+        try {
+            rep.write(new ByteArrayOutputStream());
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        awaitIdle(executor);
+        assertEquals(1, executor.getFailedCount());
+        assertEquals(0, executor.getAbortedCount());
+    }
+
+    @Test
+    public void testRepositoryLimit() throws Exception {
+        StreamingExecutor executor = new StreamingExecutor(4, 4, 1, TIMEOUT_MILLIS);
+
+        Representation rep1 = executor.submit("repo1", MediaType.APPLICATION_OCTET_STREAM,
+                new BlockedProducer());
+        try {
+            executor.submit("repo1", MediaType.APPLICATION_OCTET_STREAM, new BlockedProducer());
+            fail("expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("repo1"));
+        }
+        assertEquals(1, executor.getRejectedCount());
+
+        // other repositories are not affected
+        Representation rep2 = executor.submit("repo2", MediaType.APPLICATION_OCTET_STREAM,
+                new BlockedProducer());
+        assertEquals(ImmutableMap.of("repo1", 1, "repo2", 1), executor.getRepositoryLoad());
+
+        release.countDown();
+        rep1.write(new ByteArrayOutputStream());
+        rep2.write(new ByteArrayOutputStream());
+        // idle repositories are forgotten
+        awaitIdle(executor);
+
+        Representation rep3 = executor.submit("repo1", MediaType.APPLICATION_OCTET_STREAM,
+                new BlockedProducer());
+        rep3.write(new ByteArrayOutputStream());
+        awaitIdle(executor);
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        StreamingExecutor executor = new StreamingExecutor(1, 1, 10, TIMEOUT_MILLIS);
+
+        Representation running = executor.submit("repo", MediaType.APPLICATION_OCTET_STREAM,
+                new BlockedProducer());
+        Representation queued = executor.submit("repo", MediaType.APPLICATION_OCTET_STREAM,
+                new BlockedProducer());
+        assertEquals(1, executor.getQueueDepth());
+        try {
+            executor.submit("repo", MediaType.APPLICATION_OCTET_STREAM, new BlockedProducer());
+            fail("expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("queue is full"));
+        }
+        assertEquals(1, executor.getRejectedCount());
+        // the rejected request gave its repository slot back
+        assertEquals(ImmutableMap.of("repo", 2), executor.getRepositoryLoad());
+
+        release.countDown();
+        running.write(new ByteArrayOutputStream());
+        queued.write(new ByteArrayOutputStream());
+        awaitIdle(executor);
+    }
+
+    private static void assertContent(int size, byte[] content) {
+        assertEquals(size, content.length);
+        for (int i = 0; i < size; i++) {
+            if (content[i] != (byte) i) {
+                fail("unexpected byte at " + i);
+            }
+        }
+    }
+
+    private static void awaitIdle(StreamingExecutor executor) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        Map<String, Integer> load = executor.getRepositoryLoad();
+        while (!load.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            load = executor.getRepositoryLoad();
+        }
+        assertEquals(ImmutableMap.of(), load);
+    }
+
+    private static void awaitAborted(StreamingExecutor executor, long expected)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (executor.getAbortedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, executor.getAbortedCount());
+    }
+
+    /**
+     * Creates a representation that writes {@code size} bytes, optionally failing with the given
+     * exception halfway
+     */
+    private static class Producer implements Callable<Representation> {
+
+        final AtomicLong written = new AtomicLong();
+
+        private final int size;
+
+        private final RuntimeException failure;
+
+        Producer(int size, RuntimeException failure) {
+            this.size = size;
+            this.failure = failure;
+        }
+
+        @Override
+        public Representation call() {
+            return new OutputRepresentation(MediaType.APPLICATION_OCTET_STREAM) {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    byte[] buff = new byte[1000];
+                    int i = 0;
+                    while (i < size) {
+                        int len = Math.min(buff.length, size - i);
+                        for (int j = 0; j < len; j++) {
+                            buff[j] = (byte) (i + j);
+                        }
+                        out.write(buff, 0, len);
+                        i += len;
+                        written.set(i);
+                        if (failure != null && i >= size / 2) {
+                            throw failure;
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Creates a representation once the test releases it
+     */
+    private class BlockedProducer implements Callable<Representation> {
+
+        @Override
+        public Representation call() throws Exception {
+            release.await();
+            return new Producer(10, null).call();
+        }
+    }
+}
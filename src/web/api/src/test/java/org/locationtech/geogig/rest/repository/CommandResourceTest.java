@@ -0,0 +1,224 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.rest.repository;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.GeoGIG;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.TestPlatform;
+import org.locationtech.geogig.rest.ResponseCache;
+import org.locationtech.geogig.rest.StreamingExecutor;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.locationtech.geogig.test.integration.TestContextBuilder;
+import org.restlet.Context;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.resource.Representation;
+import org.restlet.resource.StringRepresentation;
+import org.restlet.resource.Variant;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class CommandResourceTest extends RepositoryTestCase {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private StreamingExecutor executor;
+
+    private ResponseCache cache;
+
+    @Override
+    protected void setUpInternal() throws Exception {
+        executor = new StreamingExecutor(2, 2, 1, 10000);
+        cache = new ResponseCache(1024 * 1024, 64 * 1024, null, 0);
+    }
+
+    @Override
+    protected void tearDownInternal() throws Exception {
+        release.countDown();
+    }
+
+    @Test
+    public void testRepositoryLimitRespondsServiceUnavailable() throws Exception {
+        // take the only slot for the repository
+        Representation blocking = executor.submit(envHome.getName(),
+                MediaType.APPLICATION_JSON, new Callable<Representation>() {
+                    @Override
+                    public Representation call() throws Exception {
+                        release.await();
+                        return new StringRepresentation("");
+                    }
+                });
+
+        Response response = response("status", null);
+        Representation rep = get(geogig, response);
+
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, response.getStatus());
+        assertEquals(MediaType.APPLICATION_JSON, rep.getMediaType());
+        String body = write(rep);
+        assertTrue(body, body.contains("Too many concurrent requests for repository "
+                + envHome.getName()));
+        assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        blocking.write(new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testCacheableCommandServedFromCache() throws Exception {
+        final ObjectId id = insertAndAdd(points1);
+        final String query = "objectid=" + id;
+
+        Representation computed = get(geogig, response("cat", query));
+        final Tag etag = computed.getTag();
+        assertNotNull(etag);
+        final String body = write(computed);
+        assertTrue(body, body.contains(id.toString()));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        awaitIdle();
+
+        Response response = response("cat", query);
+        Representation cached = get(geogig, response);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(etag.getName(), cached.getTag().getName());
+        assertEquals(body, write(cached));
+        // served without running the command
+        assertEquals(ImmutableMap.of(), executor.getRepositoryLoad());
+
+        // a different output format is a different response
+        Representation xml = get(geogig, response("cat", query + "&output_format=xml"));
+        assertFalse(etag.getName().equals(xml.getTag().getName()));
+        assertEquals(2, cache.getMissCount());
+        write(xml);
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        final ObjectId id = insertAndAdd(points1);
+        final String query = "objectid=" + id;
+
+        Representation computed = get(geogig, response("cat", query));
+        final Tag etag = computed.getTag();
+        write(computed);
+        awaitIdle();
+
+        Response response = response("cat", query);
+        response.getRequest().getConditions().setNoneMatch(ImmutableList.of(etag));
+        Representation notModified = get(geogig, response);
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+        assertEquals(etag.getName(), notModified.getTag().getName());
+        assertEquals("", write(notModified));
+        // neither computed nor looked up
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+
+        // a stale tag gets the response
+        response = response("cat", query);
+        response.getRequest().getConditions()
+                .setNoneMatch(ImmutableList.of(new Tag("stale", false)));
+        Representation cached = get(geogig, response);
+        assertFalse(Status.REDIRECTION_NOT_MODIFIED.equals(response.getStatus()));
+        assertEquals(etag.getName(), cached.getTag().getName());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testNotServedAcrossRepositories() throws Exception {
+        final ObjectId id = insertAndAdd(points1);
+        final String query = "objectid=" + id;
+
+        final File otherHome = repositoryTempFolder.newFolder("other");
+        GeoGIG other = new GeoGIG(new TestContextBuilder(new TestPlatform(otherHome)).build(),
+                otherHome);
+        try {
+            other.getOrCreateRepository();
+            // both repositories have the same object
+            other.getRepository().stagingDatabase()
+                    .put(geogig.getRepository().stagingDatabase().get(id));
+
+            Representation rep = get(geogig, response("cat", query));
+            final String body = write(rep);
+            awaitIdle();
+
+            Representation otherRep = get(other, response("cat", query));
+            assertFalse(rep.getTag().getName().equals(otherRep.getTag().getName()));
+            assertEquals(2, cache.getMissCount());
+            assertEquals(0, cache.getHitCount());
+            assertEquals(body, write(otherRep));
+        } finally {
+            other.close();
+        }
+    }
+
+    private Response response(String command, String query) {
+        String uri = "http://localhost/repos/" + envHome.getName() + "/" + command;
+        if (query != null) {
+            uri += "?" + query;
+        }
+        Request request = new Request(Method.GET, uri);
+        request.getAttributes().put("command", command);
+        return new Response(request);
+    }
+
+    private Representation get(GeoGIG geogig, Response response) {
+        Request request = response.getRequest();
+        RepositoryProvider provider = mock(RepositoryProvider.class);
+        when(provider.getGeogig(request)).thenReturn(Optional.of(geogig));
+        request.getAttributes().put(RepositoryProvider.KEY, provider);
+
+        CommandResource resource = new CommandResource() {
+            @Override
+            protected StreamingExecutor getExecutor() {
+                return executor;
+            }
+
+            @Override
+            protected ResponseCache getCache() {
+                return cache;
+            }
+        };
+        resource.init(new Context(), request, response);
+        return resource.getRepresentation(new Variant(MediaType.APPLICATION_JSON));
+    }
+
+    private static String write(Representation rep) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rep.write(out);
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Waits for the executor to be done with the responses written so far, they're only cached
+     * once the command finishes
+     */
+    private void awaitIdle() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!executor.getRepositoryLoad().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ImmutableMap.of(), executor.getRepositoryLoad());
+    }
+}
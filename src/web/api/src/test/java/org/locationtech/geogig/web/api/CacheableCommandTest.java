@@ -0,0 +1,240 @@
+/* Copyright (c) 2014 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan (Boundless) - initial implementation
+ */
+package org.locationtech.geogig.web.api;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.locationtech.geogig.api.GeoGIG;
+import org.locationtech.geogig.api.ObjectId;
+import org.locationtech.geogig.api.porcelain.AddOp;
+import org.locationtech.geogig.api.porcelain.CommitOp;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+
+public class CacheableCommandTest extends RepositoryTestCase {
+
+    @Override
+    protected void setUpInternal() throws Exception {
+    }
+
+    @Test
+    public void testKeysDontCollide() {
+        String key1 = new CacheKeyBuilder("cmd").add("a", "1&b=1:2").build();
+        String key2 = new CacheKeyBuilder("cmd").add("a", "1").add("b", "2").build();
+        assertFalse(key1.equals(key2));
+        assertFalse(new CacheKeyBuilder("cmd").add("a", null).build().equals(
+                new CacheKeyBuilder("cmd").add("a", "").build()));
+    }
+
+    @Test
+    public void testCat() throws Exception {
+        final ObjectId p1 = insertAndAdd(points1);
+        final ObjectId p2 = insertAndAdd(points2);
+
+        String key = cacheKey("cat", ImmutableMap.of("objectid", p1.toString())).get();
+        assertTrue(key, key.startsWith("cat&"));
+        assertTrue(key, key.contains(p1.toString()));
+        assertEquals(key, cacheKey("cat", ImmutableMap.of("objectid", p1.toString())).get());
+
+        // the object is immutable, the key doesn't change along with the repository
+        commit();
+        assertEquals(key, cacheKey("cat", ImmutableMap.of("objectid", p1.toString())).get());
+
+        assertFalse(key.equals(cacheKey("cat", ImmutableMap.of("objectid", p2.toString()))
+                .get()));
+
+        ObjectId missing = ObjectId.forString("missing");
+        assertFalse(cacheKey("cat", ImmutableMap.of("objectid", missing.toString()))
+                .isPresent());
+        assertFalse(cacheKey("cat", ImmutableMap.<String, String> of()).isPresent());
+    }
+
+    @Test
+    public void testLsTree() throws Exception {
+        final Map<String, String> none = ImmutableMap.of();
+        String key = cacheKey("ls-tree", none).get();
+        assertTrue(key, key.startsWith("ls-tree&"));
+        assertEquals(key, cacheKey("ls-tree", none).get());
+
+        // the working tree changed
+        insert(points1);
+        String changed = cacheKey("ls-tree", none).get();
+        assertFalse(key.equals(changed));
+        assertEquals(changed, cacheKey("ls-tree", none).get());
+
+        assertFalse(changed.equals(cacheKey("ls-tree", ImmutableMap.of("recursive", "true"))
+                .get()));
+        assertFalse(changed.equals(cacheKey("ls-tree", ImmutableMap.of("showTree", "true"))
+                .get()));
+        assertFalse(changed.equals(cacheKey("ls-tree", ImmutableMap.of("onlyTree", "true"))
+                .get()));
+        assertFalse(changed.equals(cacheKey("ls-tree", ImmutableMap.of("verbose", "true"))
+                .get()));
+        assertFalse(changed.equals(cacheKey("ls-tree",
+                ImmutableMap.of("path", "WORK_HEAD:" + pointsName)).get()));
+
+        // the ref is resolved to the object it points to
+        geogig.command(AddOp.class).call();
+        commit();
+        String head = cacheKey("ls-tree", ImmutableMap.of("path", "HEAD")).get();
+        insert(points2);
+        geogig.command(AddOp.class).call();
+        commit();
+        assertFalse(head.equals(cacheKey("ls-tree", ImmutableMap.of("path", "HEAD")).get()));
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        insertAndAdd(points1);
+        commit();
+        insertAndAdd(points2);
+        commit();
+
+        final Map<String, String> params = ImmutableMap.of("oldRefSpec", "HEAD~1", "newRefSpec",
+                "HEAD");
+        String key = cacheKey("diff", params).get();
+        assertTrue(key, key.startsWith("diff&"));
+        assertEquals(key, cacheKey("diff", params).get());
+
+        assertFalse(key.equals(cacheKey("diff",
+                ImmutableMap.of("oldRefSpec", "HEAD~1", "newRefSpec", "HEAD", "pathFilter",
+                        pointsName)).get()));
+        assertFalse(key.equals(cacheKey("diff",
+                ImmutableMap.of("oldRefSpec", "HEAD~1", "newRefSpec", "HEAD", "page", "1"))
+                .get()));
+        assertFalse(key.equals(cacheKey("diff",
+                ImmutableMap.of("oldRefSpec", "HEAD~1", "newRefSpec", "HEAD",
+                        "showGeometryChanges", "true")).get()));
+
+        // same ref specs, different commits
+        insertAndAdd(points3);
+        commit();
+        assertFalse(key.equals(cacheKey("diff", params).get()));
+
+        assertFalse(cacheKey("diff", ImmutableMap.of("newRefSpec", "HEAD")).isPresent());
+        assertFalse(cacheKey("diff", ImmutableMap.of("oldRefSpec", "nonexistent")).isPresent());
+    }
+
+    @Test
+    public void testFeatureDiff() throws Exception {
+        insertAndAdd(points1);
+        commit();
+        insertAndAdd(points1_modified);
+        commit();
+
+        final String path = pointsName + "/" + idP1;
+        final Map<String, String> params = ImmutableMap.of("path", path, "oldTreeish",
+                "HEAD~1", "newTreeish", "HEAD");
+        String key = cacheKey("featurediff", params).get();
+        assertTrue(key, key.startsWith("featurediff&"));
+        assertEquals(key, cacheKey("featurediff", params).get());
+
+        assertFalse(key.equals(cacheKey("featurediff",
+                ImmutableMap.of("path", path, "oldTreeish", "HEAD~1", "newTreeish", "HEAD",
+                        "all", "true")).get()));
+        assertFalse(key.equals(cacheKey("featurediff",
+                ImmutableMap.of("path", pointsName + "/" + idP2, "oldTreeish", "HEAD~1",
+                        "newTreeish", "HEAD")).get()));
+
+        insertAndAdd(points2);
+        commit();
+        assertFalse(key.equals(cacheKey("featurediff", params).get()));
+
+        assertFalse(cacheKey("featurediff",
+                ImmutableMap.of("path", path, "oldTreeish", "nonexistent", "newTreeish", "HEAD"))
+                .isPresent());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        final Map<String, String> none = ImmutableMap.of();
+        insertAndAdd(points1);
+        commit();
+        String key = cacheKey("statistics", none).get();
+        assertTrue(key, key.startsWith("statistics&"));
+        assertEquals(key, cacheKey("statistics", none).get());
+
+        assertFalse(key.equals(cacheKey("statistics", ImmutableMap.of("path", pointsName))
+                .get()));
+
+        // the working tree changed
+        insert(points2);
+        String changed = cacheKey("statistics", none).get();
+        assertFalse(key.equals(changed));
+
+        geogig.command(AddOp.class).call();
+        commit();
+        assertFalse(changed.equals(cacheKey("statistics", none).get()));
+
+        assertFalse(cacheKey("statistics", ImmutableMap.of("branch", "nonexistent"))
+                .isPresent());
+    }
+
+    private void commit() {
+        geogig.command(CommitOp.class).setMessage("commit").call();
+    }
+
+    private Optional<String> cacheKey(String command, Map<String, String> params) {
+        WebAPICommand webCommand = CommandBuilder.build(command, new MapParams(params));
+        assertTrue(webCommand instanceof CacheableCommand);
+        return ((CacheableCommand) webCommand).getCacheKey(new TestContext(geogig));
+    }
+
+    private static class MapParams implements ParameterSet {
+
+        private final Map<String, String> params;
+
+        MapParams(Map<String, String> params) {
+            this.params = params;
+        }
+
+        @Override
+        public String getFirstValue(String key) {
+            return params.get(key);
+        }
+
+        @Override
+        public String getFirstValue(String key, String defaultValue) {
+            String value = params.get(key);
+            return value == null ? defaultValue : value;
+        }
+
+        @Override
+        public String[] getValuesArray(String key) {
+            String value = params.get(key);
+            return value == null ? new String[0] : value.split(",");
+        }
+    }
+
+    private static class TestContext implements CommandContext {
+
+        private final GeoGIG geogig;
+
+        TestContext(GeoGIG geogig) {
+            this.geogig = geogig;
+        }
+
+        @Override
+        public GeoGIG getGeoGIG() {
+            return geogig;
+        }
+
+        @Override
+        public void setResponseContent(CommandResponse responseContent) {
+        }
+
+        @Override
+        public void setResponseContent(StreamResponse responseContent) {
+        }
+    }
+}
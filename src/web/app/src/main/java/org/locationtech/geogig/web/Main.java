@@ -21,6 +21,7 @@ import org.locationtech.geogig.api.GlobalContextBuilder;
 import org.locationtech.geogig.api.Platform;
 import org.locationtech.geogig.api.plumbing.ResolveGeogigDir;
 import org.locationtech.geogig.cli.CLIContextBuilder;
+import org.locationtech.geogig.rest.StreamingExecutorResource;
 import org.locationtech.geogig.rest.TaskStatusResource;
 import org.locationtech.geogig.rest.osm.OSMRouter;
 import org.locationtech.geogig.rest.repository.CommandResource;
@@ -107,6 +108,9 @@ public class Main extends Application {
         router.attach("/tasks/{taskId}.{extension}", TaskStatusResource.class);
         router.attach("/tasks/{taskId}", TaskStatusResource.class);
 
+        router.attach("/executor", StreamingExecutorResource.class);
+        router.attach("/executor.{extension}", StreamingExecutorResource.class);
+
         router.attach("/osm", osm);
         router.attach("/repo", repo);
         router.attach("/{command}.{extension}", CommandResource.class);